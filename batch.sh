@@ -0,0 +1,20 @@
+#
+# This Source Code Form is subject to the terms of the Mozilla Public License, v.
+# 2.0 with a Healthcare Disclaimer.
+#
+# A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+# be found under the top level directory, named LICENSE.
+#
+# If a copy of the MPL was not distributed with this file, You can obtain one at
+# http://mozilla.org/MPL/2.0/.
+#
+# If a copy of the Healthcare Disclaimer was not distributed with this file, You
+# can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+#
+# Copyright (C) 2016-2018 Persistent Systems, Inc.
+#
+
+# Offline batch calculation with the packaged jar (./mvnw package -DskipTests), e.g.
+#   ./batch.sh --input=patients.csv --output=results.ndjson --resume
+JAR=$(ls cpra-service/target/cpra-service-*.jar | head -1)
+java -cp "${JAR}" -Dloader.main=org.partners.ppm.cpra.CpraBatchCli org.springframework.boot.loader.PropertiesLauncher "$@"
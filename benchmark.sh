@@ -0,0 +1,63 @@
+#!/bin/bash
+#
+# This Source Code Form is subject to the terms of the Mozilla Public License, v.
+# 2.0 with a Healthcare Disclaimer.
+#
+# A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+# be found under the top level directory, named LICENSE.
+#
+# If a copy of the MPL was not distributed with this file, You can obtain one at
+# http://mozilla.org/MPL/2.0/.
+#
+# If a copy of the Healthcare Disclaimer was not distributed with this file, You
+# can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+#
+# Copyright (C) 2016-2018 Persistent Systems, Inc.
+#
+
+
+# Compares the Spring Boot service (cpra-service) with the JDK HTTP server launcher (cpra-server) on this machine:
+# startup time until /api/cpra/versions answers, resident memory once started and after the load, and calculate
+# throughput and latency from CpraLoadGenerator. Both run with the same JVM options, one after the other.
+#   ./mvnw -q package -DskipTests && ./benchmark.sh [requests] [threads]
+# Needs Linux (/proc) and curl. The service runs with its result cache disabled, since the server has none, so both
+# calculate every request; the server gets TCP_NODELAY, which Tomcat already sets for the service.
+set -e
+REQUESTS=${1:-20000}
+THREADS=${2:-8}
+PORT=${PORT:-18080}
+JAVA_OPTS=${JAVA_OPTS:-"-Xms256m -Xmx512m -XX:+UseParallelGC"}
+SERVICE_JAR=$(ls cpra-service/target/cpra-service-*.jar | head -1)
+SERVER_JAR=$(ls cpra-server/target/cpra-server-*.jar | grep -v original | head -1)
+LOG_DIR=$(mktemp -d)
+
+rss() {
+	awk '/VmRSS/ {print $2}' "/proc/$1/status"
+}
+
+run() {
+	local name=$1
+	shift
+	local start=$(date +%s%N)
+	java ${JAVA_OPTS} "$@" > "${LOG_DIR}/${name}.log" 2>&1 &
+	local pid=$!
+	until curl -sf "http://localhost:${PORT}/api/cpra/versions" > /dev/null; do
+		if ! kill -0 ${pid} 2> /dev/null; then
+			echo "${name} did not start; see ${LOG_DIR}/${name}.log"
+			exit 1
+		fi
+		sleep 0.05
+	done
+	local startup=$(( ($(date +%s%N) - start) / 1000000 ))
+	local started_rss=$(rss ${pid})
+	local result=$(java -cp "${SERVER_JAR}" org.partners.ppm.cpra.server.CpraLoadGenerator \
+		--url=http://localhost:${PORT} --requests=${REQUESTS} --threads=${THREADS} 2> /dev/null)
+	local loaded_rss=$(rss ${pid})
+	kill ${pid}
+	wait ${pid} 2> /dev/null || true
+	printf "%-13s startup %6d ms  rss started %7d kB  rss loaded %7d kB  %s\n" \
+		"${name}" "${startup}" "${started_rss}" "${loaded_rss}" "${result}"
+}
+
+run cpra-service -jar "${SERVICE_JAR}" --server.port=${PORT} --cpra.result-cache-max-profiles=0
+run cpra-server -Dsun.net.httpserver.nodelay=true -jar "${SERVER_JAR}" --port=${PORT}
@@ -0,0 +1,44 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra;
+
+/*
+ * The service has no capacity for the request right now (full compute queue, no result within the time limit, or the
+ * version's data set is still loading); the client may retry later, after retryAfterSeconds if that is known. The
+ * service answers it with 503, and Retry-After when known.
+ */
+public class CpraOverloadedException extends CpraRuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long retryAfterSeconds;
+
+	public CpraOverloadedException(String message) {
+		this(message, 0);
+	}
+
+	public CpraOverloadedException(String message, long retryAfterSeconds) {
+		super(message);
+		this.retryAfterSeconds = retryAfterSeconds;
+	}
+
+	/*
+	 * Seconds the client should wait before retrying; 0 if unknown.
+	 */
+	public long getRetryAfterSeconds() {
+		return retryAfterSeconds;
+	}
+}
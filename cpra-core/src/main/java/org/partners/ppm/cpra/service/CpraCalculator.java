@@ -15,9 +15,11 @@
  */
 package org.partners.ppm.cpra.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
@@ -46,6 +48,9 @@ public abstract class CpraCalculator {
 
 	protected static final Integer UNOS_ETHNICITIES = 4; // the number of ethnicities reported against by UNOS for each HLA Frequencies
 
+	// frequencies that should add up to 1 may be off by this much before the self check warns
+	protected static final double SELF_CHECK_SUM_TOLERANCE = 0.001;
+
 	protected CpraConfigHashMap cpraConfigHashMap;
 	
 	protected TreeMap<String, String[]> versionAlleles;
@@ -65,6 +70,9 @@ public abstract class CpraCalculator {
 		// get allele set for version, this is the set of all allowed allele names (A, B, C, DR, DQ, etc.)
 		String alleleListStr = cpraConfigHashMap.get(TOKEN_KEY_HLA_ALLELES,version);
 		String[] alleleSet = alleleListStr.split(TOKEN_KEY_SUB_DELIMITER);
+		// Reverse sort the alleleSet by length once, so helperParseAllele() matches the longest allele name first
+		// without re-sorting the shared array on every request
+		Arrays.sort(alleleSet, Comparator.comparingInt(String::length).reversed());
 		versionAlleles.put(version, alleleSet);
 
 		// get alleles with frequency data set for version
@@ -75,10 +83,99 @@ public abstract class CpraCalculator {
 
 	public abstract
 	CpraDTO calculate(CpraRequest request);
+
+	/*
+	 * Create an engine for the version that keeps the calculator's intermediate state so antibodies can be added
+	 * and removed one at a time.
+	 */
+	public abstract
+	CpraIncrementalEngine newIncrementalEngine(String version);
 	
+	/*
+	 * Estimated work of calculating the profile, in frequency lookups, without calculating it; the service admits
+	 * calculations against a budget of this cost. Throws CpraRuntimeException for an invalid antibody like calculate().
+	 */
+	public abstract
+	long estimateCost(String version, List<String> antibodyList);
+
 	public abstract 
 	CpraDataSet selfCheck(String version);
 
+	/*
+	 * Self check of what the calculators share: one ethnic frequency per ethnicity, adding up to 1.
+	 */
+	protected void helperSelfCheckCommon(String version, CpraDataSet cpraDataSet) {
+		String[] ethnicities = helperEthnicityValues(version);
+		List<String> ethnicFrequencies = cpraDataSet.getEthnicFrequencies();
+		if (ethnicFrequencies != null) {
+			if (ethnicFrequencies.size() != ethnicities.length) {
+				cpraDataSet.addWarning(ethnicFrequencies.size() + " hlaEthnicFrequencies for " + ethnicities.length
+						+ " hlaEthnicities");
+			}
+			double sum = 0.0;
+			try {
+				for (String frequency : ethnicFrequencies) {
+					sum += Double.valueOf(frequency);
+				}
+				if (Math.abs(sum - 1.0) > SELF_CHECK_SUM_TOLERANCE) {
+					cpraDataSet.addWarning("hlaEthnicFrequencies sum to " + sum + ", not 1");
+				}
+			} catch (NumberFormatException e) {
+				cpraDataSet.addWarning("hlaEthnicFrequencies are not all numbers");
+			}
+		}
+	}
+
+	/*
+	 * The index of the antigen's allele in the version's alleles with frequency data, or -1.
+	 */
+	protected int helperFrequencyLocus(String version, String antigen) {
+		String[] allele = helperParseAllele(versionAlleles.get(version), antigen);
+		return allele.length == 2 ? Arrays.asList(versionAllelesWithFreqs.get(version)).indexOf(allele[0]) : -1;
+	}
+
+	/*
+	 * The ethnicities reported in CpraDTO.ethnicCalculatedPRA for the version, in the order the calculator adds them.
+	 * Calculators that only report an overall cPRA return an empty array.
+	 */
+	public String[] reportedEthnicities(String version) {
+		return helperEthnicityValues(version);
+	}
+
+	/*
+	 * The set of antibodies that are valid input for the version: every antigen with an unacceptable antigen
+	 * equivalence entry plus every antigen the calculator has frequency data for, limited to those that parse
+	 * against the version's allele set.
+	 */
+	public List<String> antigenUniverse(String version) {
+		String[] alleleSet = versionAlleles.get(version);
+		List<String> alleleList = Arrays.asList(alleleSet);
+		TreeSet<String> universe = new TreeSet<>();
+		String prefix = TOKEN_KEY_HLA_UNACCEPTABLE_ANGITEN_EQUIVS + TOKEN_KEY_DELIMITER + version + TOKEN_KEY_DELIMITER;
+		for (String key : cpraConfigHashMap.keys(prefix + "*")) {
+			universe.add(key.substring(prefix.length()));
+		}
+		universe.addAll(helperFrequencyAntigens(version));
+
+		List<String> antigens = new ArrayList<>();
+		for (String antigen : universe) {
+			String[] allele = helperParseAllele(alleleSet, antigen);
+			if (allele.length == 2 && alleleList.contains(allele[0])
+					&& antigen.matches(CpraRequest.ANTIBODY_PATTERN)) {
+				antigens.add(antigen);
+			}
+		}
+		log.debug("antigenUniverse({}) has {} antigens", version, antigens.size());
+		return antigens;
+	}
+
+	/*
+	 * Antigens the calculator has frequency data for; the default implementation has none.
+	 */
+	protected Set<String> helperFrequencyAntigens(String version) {
+		return new TreeSet<>();
+	}
+
 	protected String[] helperEthnicityValues(String version)
 	{
 		String ethnicityList = cpraConfigHashMap.get(TOKEN_KEY_HLA_ETHNICITIES,version);
@@ -150,6 +247,33 @@ public abstract class CpraCalculator {
 		return unacceptableAntigens;
 	}
 	
+	/*
+	 * Expand a single antibody into its unacceptable antigens: the antibody itself followed by its equivalents.
+	 */
+	protected List<String> helperExpandAntibody(String version, String antibody) {
+		String[] alleleSet = versionAlleles.get(version);
+		String[] allele = this.helperParseAllele(alleleSet, antibody);
+		if (allele.length!=2) {
+			log.warn("Invalid antibody in the input: {}", antibody);
+			throw new CpraRuntimeException("Invalid antibody in the input");
+		}
+		if (!Arrays.asList(alleleSet).contains(allele[0])) {
+			throw new CpraRuntimeException("Invalid antibody allele");
+		}
+
+		List<String> antigens = new ArrayList<>();
+		antigens.add(antibody);
+		String aeaList = cpraConfigHashMap.get(TOKEN_KEY_HLA_UNACCEPTABLE_ANGITEN_EQUIVS,version,antibody);
+		if (aeaList!=null) {
+			for (String aea : aeaList.split(TOKEN_KEY_SUB_DELIMITER)) {
+				if (!antigens.contains(aea)) {
+					antigens.add(aea);
+				}
+			}
+		}
+		return antigens;
+	}
+
 	protected TreeMap<String, TreeSet<String>> helperUnacceptableAntigenMap( 
 		String version, 
 		List<String> antibodyList, 
@@ -201,8 +325,7 @@ public abstract class CpraCalculator {
 	protected String[] helperParseAllele(String[] alleleSet, String antibody) {
 		
 		String[] allele = new String[]{};
-		// Reverse sort the alleleSet by length
-		Arrays.sort(alleleSet, Comparator.comparingInt(String::length).reversed());
+		// alleleSet is already reverse sorted by length in initializeVersion()
 		if (log.isTraceEnabled()) {
 			log.trace("antibody ({}) alleleSet({})", antibody, Arrays.toString(alleleSet));
 		}
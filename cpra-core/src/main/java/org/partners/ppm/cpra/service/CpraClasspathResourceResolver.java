@@ -0,0 +1,222 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Plain Java CpraResourceResolver for the locations the service accepts:
+ *   classpath*:/dir/*.csv - the matching files in every directory and jar on the class path
+ *   classpath:/dir/x.csv  - the first class path resource of that name
+ *   file:/dir/*.csv       - the matching files of a directory; so is a location without prefix, which falls back to
+ *                           the class path when no file matches, like "main.csv"
+ * Only the file name may contain the wildcards (* and ?); the files of a directory or jar are loaded in name order.
+ * A pattern in the class path root, like classpath*:/*.csv, is matched in the class path directories and the
+ * application jar only (the first class path entry, as java -jar sets it, and the jar of this class, which carries
+ * the data sets), not in every library jar.
+ */
+public class CpraClasspathResourceResolver implements CpraResourceResolver {
+
+	private static final String CLASSPATH_ALL_URL_PREFIX = "classpath*:";
+	private static final String CLASSPATH_URL_PREFIX = "classpath:";
+	private static final String FILE_URL_PREFIX = "file:";
+	private static final String JAR_URL_PREFIX = "jar:file:";
+	private static final String JAR_URL_SEPARATOR = "!/";
+
+	private final ClassLoader classLoader;
+
+	public CpraClasspathResourceResolver() {
+		this(CpraClasspathResourceResolver.class.getClassLoader());
+	}
+
+	public CpraClasspathResourceResolver(ClassLoader classLoader) {
+		this.classLoader = classLoader;
+	}
+
+	@Override
+	public List<URL> resolve(String location) throws IOException {
+		if (location.startsWith(CLASSPATH_ALL_URL_PREFIX)) {
+			return classpath(location.substring(CLASSPATH_ALL_URL_PREFIX.length()), true);
+		}
+		if (location.startsWith(CLASSPATH_URL_PREFIX)) {
+			return classpath(location.substring(CLASSPATH_URL_PREFIX.length()), false);
+		}
+		if (location.startsWith(FILE_URL_PREFIX)) {
+			return files(location.substring(FILE_URL_PREFIX.length()));
+		}
+		List<URL> urls = files(location);
+		return urls.isEmpty() ? classpath(location, false) : urls;
+	}
+
+	private static List<URL> files(String location) throws IOException {
+		int slash = location.lastIndexOf('/');
+		Path dir = Paths.get(slash < 0 ? "." : location.substring(0, slash + 1));
+		return files(dir, glob(location.substring(slash + 1)));
+	}
+
+	private static List<URL> files(Path dir, PathMatcher matcher) throws IOException {
+		if (!Files.isDirectory(dir)) {
+			return Collections.emptyList();
+		}
+		List<Path> paths;
+		try (Stream<Path> files = Files.list(dir)) {
+			paths = files.filter(p -> Files.isRegularFile(p) && matcher.matches(p.getFileName()))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		List<URL> urls = new ArrayList<>();
+		for (Path path : paths) {
+			urls.add(path.toUri().toURL());
+		}
+		return urls;
+	}
+
+	private static PathMatcher glob(String name) {
+		return FileSystems.getDefault().getPathMatcher("glob:" + name);
+	}
+
+	private List<URL> classpath(String location, boolean all) throws IOException {
+		String path = location.startsWith("/") ? location.substring(1) : location;
+		String dir = path.substring(0, path.lastIndexOf('/') + 1);
+		String name = path.substring(dir.length());
+		if (name.indexOf('*') < 0 && name.indexOf('?') < 0) {
+			if (all) {
+				return Collections.list(classLoader.getResources(path));
+			}
+			URL url = classLoader.getResource(path);
+			return url == null ? Collections.<URL>emptyList() : Collections.singletonList(url);
+		}
+
+		PathMatcher matcher = glob(name);
+		Set<File> jars = dir.isEmpty() ? applicationJars() : null;
+		List<URL> urls = new ArrayList<>();
+		for (File root : roots(dir)) {
+			if (jars != null && !root.isDirectory() && !jars.contains(root)) {
+				continue;
+			}
+			List<URL> matches = root.isDirectory() ? files(new File(root, dir).toPath(), matcher) : jarMatches(root, dir, matcher);
+			urls.addAll(matches);
+			if (!all && !matches.isEmpty()) {
+				break;
+			}
+		}
+		return urls;
+	}
+
+	/*
+	 * The directories and jars of the class path, in class path order.
+	 */
+	private Set<File> roots(String dir) throws IOException {
+		Set<File> roots = new LinkedHashSet<>();
+		for (String entry : System.getProperty("java.class.path", "").split(File.pathSeparator)) {
+			if (!entry.isEmpty()) {
+				roots.add(new File(entry).getAbsoluteFile());
+			}
+		}
+		for (ClassLoader cl = classLoader; cl != null; cl = cl.getParent()) {
+			if (cl instanceof URLClassLoader) {
+				for (URL url : ((URLClassLoader) cl).getURLs()) {
+					if ("file".equals(url.getProtocol())) {
+						roots.add(new File(decode(url.getPath())).getAbsoluteFile());
+					}
+				}
+			}
+		}
+		// directories and jars holding the directory, for class loaders that are not URLClassLoaders
+		Enumeration<URL> holders = classLoader.getResources(dir);
+		while (holders.hasMoreElements()) {
+			String url = holders.nextElement().toString();
+			if (url.startsWith(FILE_URL_PREFIX) && url.endsWith(dir)) {
+				roots.add(new File(decode(url.substring(FILE_URL_PREFIX.length(), url.length() - dir.length()))).getAbsoluteFile());
+			} else if (url.startsWith(JAR_URL_PREFIX) && url.contains(JAR_URL_SEPARATOR)) {
+				roots.add(new File(decode(url.substring(JAR_URL_PREFIX.length(), url.indexOf(JAR_URL_SEPARATOR)))).getAbsoluteFile());
+			}
+		}
+		return roots;
+	}
+
+	/*
+	 * The jars whose root is searched for a root pattern: the first class path entry and the jar of this class.
+	 */
+	private static Set<File> applicationJars() {
+		Set<File> jars = new LinkedHashSet<>();
+		String first = System.getProperty("java.class.path", "").split(File.pathSeparator)[0];
+		if (!first.isEmpty()) {
+			jars.add(new File(first).getAbsoluteFile());
+		}
+		CodeSource source = CpraClasspathResourceResolver.class.getProtectionDomain().getCodeSource();
+		if (source != null && source.getLocation() != null && "file".equals(source.getLocation().getProtocol())) {
+			jars.add(new File(decode(source.getLocation().getPath())).getAbsoluteFile());
+		}
+		return jars;
+	}
+
+	private static List<URL> jarMatches(File root, String dir, PathMatcher matcher) throws IOException {
+		if (!root.isFile()) {
+			return Collections.emptyList();
+		}
+		List<String> names = new ArrayList<>();
+		try (JarFile jar = new JarFile(root)) {
+			Enumeration<JarEntry> entries = jar.entries();
+			while (entries.hasMoreElements()) {
+				JarEntry entry = entries.nextElement();
+				String name = entry.getName();
+				if (!entry.isDirectory() && name.startsWith(dir) && name.indexOf('/', dir.length()) < 0
+						&& matcher.matches(Paths.get(name.substring(dir.length())))) {
+					names.add(name);
+				}
+			}
+		} catch (IOException e) {
+			// not a jar
+			return Collections.emptyList();
+		}
+		Collections.sort(names);
+		List<URL> urls = new ArrayList<>();
+		for (String name : names) {
+			urls.add(new URL("jar:" + root.toURI().toURL() + JAR_URL_SEPARATOR + name));
+		}
+		return urls;
+	}
+
+	private static String decode(String path) {
+		try {
+			return URLDecoder.decode(path.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+		} catch (IOException e) {
+			return path;
+		}
+	}
+}
@@ -0,0 +1,240 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.domain.MapItem;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+/*
+ * The data set entries, read from the configuration's CSV files into a CpraDataStore: in the heap unless another store
+ * is given, e.g. off-heap or a Redis server shared by many nodes. Calculators read them one key at a time or, for many
+ * keys, with multiGet().
+ */
+public class CpraConfigHashMap {
+
+	private final Logger log = LoggerFactory.getLogger(CpraConfigHashMap.class);
+	
+	// key token parts
+	private static final String TOKEN_KEY_DELIMITER = ":";
+
+	private final CpraResourceResolver resourceResolver;
+	private final Supplier<CpraDataStore> storeSupplier;
+	private final CpraDataStore store;
+
+	public CpraConfigHashMap() {
+		this(new CpraClasspathResourceResolver());
+	}
+
+	/*
+	 * A map that finds the files of a configuration location with the resolver, e.g. the service's Spring resource
+	 * resolver, which also sees into the nested jars of the packaged application.
+	 */
+	public CpraConfigHashMap(CpraResourceResolver resourceResolver) {
+		this(resourceResolver, CpraHeapDataStore::new);
+	}
+
+	/*
+	 * A map keeping its entries in a store from the supplier (see CpraDataStores).
+	 */
+	public CpraConfigHashMap(CpraResourceResolver resourceResolver, Supplier<CpraDataStore> storeSupplier) {
+		this.resourceResolver = resourceResolver;
+		this.storeSupplier = storeSupplier;
+		this.store = storeSupplier.get();
+	}
+
+	/*
+	 * A map with the same resolver and a new store from the same supplier, for reloading the data sets; a shared store
+	 * (Redis) loads into a new generation, so the previous snapshot keeps reading its own entries meanwhile.
+	 */
+	public CpraConfigHashMap fresh() {
+		return new CpraConfigHashMap(resourceResolver, storeSupplier);
+	}
+
+	public CpraResourceResolver getResourceResolver() {
+		return resourceResolver;
+	}
+
+	public CpraDataStore getStore() {
+		return store;
+	}
+
+	public List<String> keys(String keyPattern) {
+		log.debug("keys({}) in {}", keyPattern, store);
+		List<String> keysList = new ArrayList<>(store.keys(keyPattern));
+		Collections.sort(keysList);
+		return keysList;
+	}
+
+	public void loadConfiguration(String csvFile) {
+
+		log.debug("loadConfiguration({})",csvFile);
+		if (store.isReadOnly()) {
+			log.info("Using the data sets already in {}", store);
+			return;
+		}
+
+		// configure the schema we want to read
+		CsvSchema schema = CsvSchema.builder().addColumn("key").addColumn("value").addColumn("comment")
+				.setUseHeader(true).setAllowComments(true).setQuoteChar('"')
+				.build();
+		CsvMapper mapper = new CsvMapper().enable(CsvParser.Feature.TRIM_SPACES);
+		
+		List<URL> resources = Collections.emptyList();
+		try {
+			//  Use either "classpath*:/*.csv" or "myfile.csv"
+			resources = resourceResolver.resolve(csvFile);
+		} catch (IOException e) {
+			log.error("IO error resolving config resources for '{}'",csvFile);
+		}
+		for (URL resource: resources){
+			String filename = resource.getPath().substring(resource.getPath().lastIndexOf('/') + 1);
+		    log.info("Processing '{}'",filename);
+
+			// configure the reader on what bean to read and how we want to write
+			// that bean
+			ObjectReader mapReader = mapper.readerFor(MapItem.class).with(schema);
+			int c = 0;
+			Map<String, String> entries = new LinkedHashMap<>();
+
+			// read from file
+			try (Reader reader = new InputStreamReader(resource.openStream())) {
+				MappingIterator<MapItem> mi = mapReader.readValues(reader);
+				while (mi.hasNext()) {
+					c++;
+					MapItem item = mi.nextValue();
+					log.trace("{}:{}",item.getKey(),item.getValue());
+					if (item.getKey().length()>0 && item.getValue().length()>0) {
+						entries.put(item.getKey(), item.getValue());
+					}
+				}
+			} catch (FileNotFoundException e) {
+				log.error("Configuration file '{}'; not found as resource",csvFile);
+			} catch (IOException e) {
+				log.error("Configuration file '{}'; IO exception; {}",csvFile, e.getMessage());
+			}
+			store.putAll(entries);
+			log.trace("loadConfiguration({}) {} entries loaded out of {}",csvFile,entries.size(),c);
+		}
+	}
+
+	/*
+	 * SHA-256 of the entries of a version's data set (the keys with the version as their second token, e.g.
+	 * hlaHaplotypeFrequencies:optn_2015:A1;B8), in key order; it changes whenever the version's data changes.
+	 */
+	public String checksum(String version) {
+		List<String> keys = new ArrayList<>();
+		for (String key : store.keys("*" + TOKEN_KEY_DELIMITER + version + "*")) {
+			int start = key.indexOf(TOKEN_KEY_DELIMITER);
+			int end = key.indexOf(TOKEN_KEY_DELIMITER, start + 1);
+			if (key.regionMatches(start + 1, version, 0, version.length())
+					&& (end < 0 ? key.length() : end) == start + 1 + version.length()) {
+				keys.add(key);
+			}
+		}
+		Collections.sort(keys);
+		List<String> values = store.multiGet(keys);
+		TreeMap<String, String> entries = new TreeMap<>();
+		for (int i = 0; i < keys.size(); i++) {
+			if (values.get(i) != null) {
+				entries.put(keys.get(i), values.get(i));
+			}
+		}
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new CpraRuntimeException("SHA-256 is not available for the data set checksum; " + e.getMessage());
+		}
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			digest.update(entry.getKey().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '=');
+			digest.update(entry.getValue().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) '\n');
+		}
+		StringBuilder sb = new StringBuilder();
+		for (byte b : digest.digest()) {
+			sb.append(String.format("%02x", b));
+		}
+		log.debug("checksum({}) of {} entries = {}", version, entries.size(), sb);
+		return sb.toString();
+	}
+
+	public String get(String key) {
+		return store.get(key);
+	}
+
+	/*
+	 * The values of the keys in key order, null for a missing key; one round trip to a remote store.
+	 */
+	public List<String> multiGet(List<String> keys) {
+		return store.multiGet(keys);
+	}
+
+	public String get(String key1, String key2) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(key1).append(TOKEN_KEY_DELIMITER).append(key2);
+		return get(sb.toString());
+	}
+
+	public String get(String key1, String key2, String key3) {
+		StringBuilder sb = new StringBuilder();
+		sb.append(key1).append(TOKEN_KEY_DELIMITER).append(key2).append(TOKEN_KEY_DELIMITER).append(key3);
+		return get(sb.toString());
+	}
+
+	/*
+	 * The load is complete and its snapshot is about to be published (see CpraDataStore.publish()).
+	 */
+	public void publish() {
+		store.publish();
+	}
+
+	/*
+	 * No published snapshot reads the map any more (see CpraDataStore.retire()).
+	 */
+	public void retire() {
+		store.retire();
+	}
+
+	public void close() {
+		store.close();
+	}
+}
@@ -0,0 +1,68 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraContributionDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+
+/*
+ * Per antibody contribution breakdown. Instead of n+1 full calculations, one engine holds the whole profile and each
+ * leave-one-out variant is an incremental remove and re-add of the antibody, while a second engine evaluates each
+ * antibody on its own. Both only touch the terms involving the antibody's antigens.
+ */
+class CpraContributionAnalyzer {
+
+	private CpraContributionAnalyzer() {
+	}
+
+	static List<CpraContributionDTO> analyze(CpraCalculator calculator, String version, List<String> antibodies) {
+		CpraIncrementalEngine profile = calculator.newIncrementalEngine(version);
+		CpraIncrementalEngine single = calculator.newIncrementalEngine(version);
+		for (String antibody : antibodies) {
+			profile.addAntibody(antibody);
+		}
+		CpraDTO all = profile.getResult();
+		String[] ethnicities = calculator.reportedEthnicities(version);
+
+		List<CpraContributionDTO> contributions = new ArrayList<>();
+		for (String antibody : new ArrayList<>(profile.getAntibodies())) {
+			profile.removeAntibody(antibody);
+			CpraDTO without = profile.getResult();
+			profile.addAntibody(antibody);
+
+			single.addAntibody(antibody);
+			CpraDTO alone = single.getResult();
+			single.removeAntibody(antibody);
+
+			CpraContributionDTO contribution = new CpraContributionDTO();
+			contribution.setAntibody(antibody);
+			contribution.setMarginalPRA(alone.getCalculatedPRA());
+			contribution.setLeaveOneOutPRA(all.getCalculatedPRA() - without.getCalculatedPRA());
+			for (int i = 0; i < ethnicities.length && i < all.getEthnicCalculatedPRA().size(); i++) {
+				double allPRA = all.getEthnicCalculatedPRA().get(i).getCalculatedPRA();
+				double withoutPRA = without.getEthnicCalculatedPRA().isEmpty() ? 0.0
+						: without.getEthnicCalculatedPRA().get(i).getCalculatedPRA();
+				contribution.addEthnicContribution(ethnicities[i],
+						alone.getEthnicCalculatedPRA().get(i).getCalculatedPRA(), allPRA - withoutPRA);
+			}
+			contributions.add(contribution);
+		}
+		return contributions;
+	}
+}
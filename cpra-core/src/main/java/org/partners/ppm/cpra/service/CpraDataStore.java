@@ -0,0 +1,87 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Where CpraConfigHashMap keeps the data set entries: in the heap (CpraHeapDataStore), in direct memory outside the
+ * heap (CpraOffHeapDataStore) or in a Redis server shared by many stateless nodes (CpraRedisDataStore). Entries are
+ * written while the data set files are loaded and only read afterwards, by any number of threads.
+ */
+public interface CpraDataStore extends Closeable {
+
+	/*
+	 * The value of the key, or null.
+	 */
+	String get(String key);
+
+	/*
+	 * The values of the keys in key order, null for a missing key; a remote store fetches them in one round trip.
+	 */
+	List<String> multiGet(List<String> keys);
+
+	/*
+	 * The keys matching a glob pattern, in which * matches any characters; in no particular order.
+	 */
+	Collection<String> keys(String pattern);
+
+	void putAll(Map<String, String> entries);
+
+	void clear();
+
+	long size();
+
+	/*
+	 * A read-only store serves entries another node loaded; CpraConfigHashMap then does not read the data set files.
+	 */
+	default boolean isReadOnly() {
+		return false;
+	}
+
+	/*
+	 * The entries are shared with other nodes, which can replace or delete them (see isCurrent()).
+	 */
+	default boolean isShared() {
+		return false;
+	}
+
+	/*
+	 * The load is complete: a shared store makes its entries the ones read-only stores read from now on.
+	 */
+	default void publish() {
+	}
+
+	/*
+	 * No snapshot reads the entries any more; a shared store deletes them once nothing else can read them either.
+	 */
+	default void retire() {
+	}
+
+	/*
+	 * Whether the entries are still there and, for a read-only store, the ones last published; the node loads again
+	 * when they are not.
+	 */
+	default boolean isCurrent() {
+		return true;
+	}
+
+	@Override
+	void close();
+}
@@ -0,0 +1,60 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.net.URI;
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+
+/*
+ * The data stores by name: "heap", "offheap" or a redis:// URI.
+ */
+public final class CpraDataStores {
+
+	public static final String HEAP = "heap";
+	public static final String OFF_HEAP = "offheap";
+
+	public static final String DEFAULT_REDIS_KEY_PREFIX = "cpra:";
+	public static final int DEFAULT_REDIS_POOL_SIZE = 16;
+	public static final int DEFAULT_REDIS_TIMEOUT_MILLIS = 2000;
+
+	private CpraDataStores() {
+	}
+
+	public static Supplier<CpraDataStore> supplier(String store) {
+		return supplier(store, DEFAULT_REDIS_KEY_PREFIX, DEFAULT_REDIS_POOL_SIZE, DEFAULT_REDIS_TIMEOUT_MILLIS, false);
+	}
+
+	/*
+	 * A supplier of empty stores for CpraConfigHashMap, a new one for each load. The Redis stores of all loads share
+	 * one connection pool, each load writing a generation of its own.
+	 */
+	public static Supplier<CpraDataStore> supplier(String store, String redisKeyPrefix, int redisPoolSize,
+			int redisTimeoutMillis, boolean redisReadOnly) {
+		if (store == null || store.isEmpty() || store.equalsIgnoreCase(HEAP)) {
+			return CpraHeapDataStore::new;
+		} else if (store.equalsIgnoreCase(OFF_HEAP)) {
+			return CpraOffHeapDataStore::new;
+		} else if (store.startsWith(CpraRedisDataStore.SCHEME + ":")) {
+			CpraRedisDataStore redis = new CpraRedisDataStore(URI.create(store), redisKeyPrefix, redisPoolSize,
+					redisTimeoutMillis, redisReadOnly);
+			return redis::next;
+		}
+		throw new CpraRuntimeException("Invalid data store '" + store + "'; store can be " + HEAP + ", " + OFF_HEAP
+				+ " or redis://host:port/database");
+	}
+}
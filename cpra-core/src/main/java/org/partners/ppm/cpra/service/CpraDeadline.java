@@ -0,0 +1,64 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.CpraOverloadedException;
+
+/*
+ * The deadline of the calculation running on the current thread. The calculators call check() from their enumeration
+ * loops, so a calculation whose client has given up (deadline passed, or its compute task cancelled and interrupted)
+ * stops instead of finishing work nobody will read. Outside of run() there is no deadline and check() only looks at
+ * the interrupt flag.
+ */
+public final class CpraDeadline {
+
+	private static final ThreadLocal<Long> deadline = new ThreadLocal<>();
+
+	private CpraDeadline() {
+	}
+
+	/*
+	 * Run the calculation with a deadline in System.nanoTime() terms.
+	 */
+	public static <T> T run(long deadlineNanos, Supplier<T> calculation) {
+		Long previous = deadline.get();
+		deadline.set(deadlineNanos);
+		try {
+			return calculation.get();
+		} finally {
+			if (previous != null) {
+				deadline.set(previous);
+			} else {
+				deadline.remove();
+			}
+		}
+	}
+
+	/*
+	 * Abort the calculation with CpraOverloadedException if its deadline has passed or its thread was interrupted.
+	 */
+	public static void check() {
+		if (Thread.currentThread().isInterrupted()) {
+			throw new CpraOverloadedException("The cPRA calculation was cancelled");
+		}
+		Long d = deadline.get();
+		if (d != null && System.nanoTime() - d > 0) {
+			throw new CpraOverloadedException("The cPRA calculation did not complete before its deadline");
+		}
+	}
+}
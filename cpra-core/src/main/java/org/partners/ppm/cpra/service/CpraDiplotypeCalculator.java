@@ -15,16 +15,21 @@
  */
 package org.partners.ppm.cpra.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.partners.ppm.cpra.CpraOverloadedException;
 import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraAlleleCheck;
 import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
 import org.partners.ppm.cpra.web.rest.dto.CpraDataSet;
 import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
@@ -104,10 +109,12 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 		// get all the diplotypes and frequencies for the version
 		List<String> keys = cpraConfigHashMap.keys(TOKEN_KEY_DIPLOTYPE_FREQ+TOKEN_KEY_DELIMITER+version+TOKEN_KEY_DELIMITER+"*");
 		log.debug("Found '{}' keys in config for calculator '{}'",keys.size(),version);
-		for (String key : keys) {
+		List<String> values = cpraConfigHashMap.multiGet(keys);
+		for (int i = 0; i < keys.size(); i++) {
+			String key = keys.get(i);
 
 			// create Diplotype object for our data structure
-			String val = cpraConfigHashMap.get(key);
+			String val = values.get(i);
 			String[] tmp = key.split(":");
 			String diplotype = tmp.length>0?tmp[tmp.length-1]:null;
 			Diplotype d = new Diplotype(diplotype,Double.valueOf(val));
@@ -124,6 +131,36 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 		}
 	}
 	
+	/*
+	 * The calculation walks the diplotype list of every unacceptable antigen.
+	 */
+	@Override
+	public long estimateCost(String version, List<String> antibodyList) {
+		List<String> antibodies = new ArrayList<>(antibodyList);
+		antibodies.replaceAll(String::toUpperCase);
+		long diplotypes = 0;
+		for (String ua : helperUnacceptableAntigenSet(version, antibodies, versionAlleles.get(version))) {
+			diplotypes += helperDiplotypes(version, ua).size();
+		}
+		return diplotypes;
+	}
+
+	@Override
+	public CpraIncrementalEngine newIncrementalEngine(String version) {
+		return new CpraDiplotypeIncrementalEngine(version, this);
+	}
+
+	@Override
+	public String[] reportedEthnicities(String version) {
+		// the diplotype calculator only reports the overall cPRA
+		return new String[0];
+	}
+
+	@Override
+	protected Set<String> helperFrequencyAntigens(String version) {
+		return new TreeSet<>(diplotypeHashMap.get(version).keySet());
+	}
+
 	// This calculator uses a set of diplotype frequencies (A1, A2, B1, B2) from the historical blood bank inventory.
 	// The method is to
 	//   1. Determine unacceptable antigens from the patient antibodies
@@ -195,19 +232,14 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 		//
 		try {
 			Double cpra = calculateOverallCpra(version,unacceptableAntigens);
-			// check for slight overage due to significant digit inaccuracy to prevent > 1 value
-			if (cpra>1.0 && cpra<1.0001) {
-				cpra = 1.0;
-			} else if (cpra>1.0) {
-				dto.addWarning("CPRA is > 1 due to a computational or source data set issue.");
-			} else if (cpra<0.0) {
-				dto.addWarning("CPRA is < 0 due to a computational or source data set issue.");
-			}
-			dto.setCalculatedPRA(cpra);
+			helperSetCalculatedPRA(dto, cpra);
 			if (log.isDebugEnabled()) {
 				log.debug("CPRA = {}",cpra);
 			}
 
+		} catch (CpraOverloadedException ex) {
+			// past the deadline; not an error of the data set
+			throw ex;
 		} catch (Exception ex) {
 			String stackTrace = ExceptionUtils.getStackTrace(ex.getCause());
 			log.error("Caught an exception: {}; {}", ex.getMessage(), stackTrace);
@@ -220,12 +252,33 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 		return dto;
 	}
 	
+	void helperSetCalculatedPRA(CpraDTO dto, Double cpra) {
+		// check for slight overage due to significant digit inaccuracy to prevent > 1 value
+		if (cpra>1.0 && cpra<1.0001) {
+			cpra = 1.0;
+		} else if (cpra>1.0) {
+			dto.addWarning("CPRA is > 1 due to a computational or source data set issue.");
+		} else if (cpra<0.0) {
+			dto.addWarning("CPRA is < 0 due to a computational or source data set issue.");
+		}
+		dto.setCalculatedPRA(cpra);
+	}
+
+	/*
+	 * The diplotypes that include the antigen, or an empty set.
+	 */
+	Set<Diplotype> helperDiplotypes(String version, String antigen) {
+		HashSet<Diplotype> hsd = diplotypeHashMap.get(version).get(antigen);
+		return hsd != null ? hsd : Collections.emptySet();
+	}
+
 	private Double calculateOverallCpra(String version, TreeSet<String> unacceptableAntigens) {
 		// for each unacceptable antigen get its diplotype entries and add to our unique set of matches
 		Set<Diplotype> matches = new HashSet<>();
 		HashMap<String, HashSet<Diplotype>> dhm = diplotypeHashMap.get(version);
 		for (String ua : unacceptableAntigens) {
 			log.trace("Get matching diplotypes; for ua='{}'",ua);
+			CpraDeadline.check();
 			HashSet<Diplotype> hsd = dhm.get(ua);
 			if (hsd!=null) {
 				for (Diplotype d : dhm.get(ua)) {
@@ -290,20 +343,45 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 		if (null != hlaAllelesWithFrequenciesList) {
 			hlaAllelesWithFrequencies = hlaAllelesWithFrequenciesList.split(TOKEN_KEY_SUB_DELIMITER);
 			cpraDataSet.setHlaAllelesWithFrequencies(Arrays.asList(hlaAllelesWithFrequencies));
-			for (String hlaAlleleWithFrequency : hlaAllelesWithFrequencies) {
-				String keyPattern = "haplotypeFrequencies:"+version+":"+hlaAlleleWithFrequency+"*";
-				log.trace("keyPattern = [{}]", keyPattern);
-				List<String> keysList = cpraConfigHashMap.keys(keyPattern);
-				if (log.isDebugEnabled()) {
-					log.debug("keysList = [{}]", keysList);
-				}
+		}
+
+		helperSelfCheckCommon(version, cpraDataSet);
+
+		// the diplotype entries per allele, from the lookup built from the version's hlaDiplotypeFrequencies entries
+		String[] alleles = versionAllelesWithFreqs.get(version);
+		int[] antigens = new int[alleles.length];
+		List<Set<Diplotype>> alleleDiplotypes = new ArrayList<>();
+		for (int i = 0; i < alleles.length; i++) {
+			alleleDiplotypes.add(new HashSet<>());
+		}
+		Set<Diplotype> diplotypes = new HashSet<>();
+		TreeSet<String> unknownAntigens = new TreeSet<>();
+		for (Map.Entry<String, HashSet<Diplotype>> entry : diplotypeHashMap.get(version).entrySet()) {
+			int locus = helperFrequencyLocus(version, entry.getKey());
+			if (locus < 0) {
+				unknownAntigens.add(entry.getKey());
+			} else {
+				antigens[locus]++;
+				alleleDiplotypes.get(locus).addAll(entry.getValue());
 			}
+			diplotypes.addAll(entry.getValue());
 		}
-		
-	
-		// for each allele with frequency data
-			// get count of S1 data
-	
+
+		cpraDataSet.setFrequencyKeys(diplotypes.size());
+		for (int i = 0; i < alleles.length; i++) {
+			cpraDataSet.getAlleleChecks().add(new CpraAlleleCheck(alleles[i], antigens[i], alleleDiplotypes.get(i).size(), null));
+		}
+		double sum = 0.0;
+		for (Diplotype d : diplotypes) {
+			sum += d.getFrequency();
+		}
+		if (Math.abs(sum - 1.0) > SELF_CHECK_SUM_TOLERANCE) {
+			cpraDataSet.addWarning("Diplotype frequencies sum to " + sum + ", not 1");
+		}
+		if (!unknownAntigens.isEmpty()) {
+			cpraDataSet.addWarning("Diplotype frequencies for antigens not on an allele with frequency data: " + unknownAntigens);
+		}
+
 		// for each reportable allele
 	
 			// for each unacceptable antigen equivalence value (the right side value of equivalents)
@@ -311,10 +389,6 @@ public class CpraDiplotypeCalculator extends CpraCalculator {
 	
 				// confirm if there are S1 frequency values
 	
-		// for each frequency entry
-	
-			// confirm the allele prefixes are in the hlaAllelesWithFrequencies
-	
 		// load the list of lab reported alleles from the typing lab (maybe in a csv file, or a service input string?)
 	
 		// for each lab reported allele
@@ -0,0 +1,77 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.partners.ppm.cpra.service.CpraDiplotypeCalculator.Diplotype;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+
+/*
+ * Incremental form of CpraDiplotypeCalculator.calculateOverallCpra().
+ *
+ * The calculator adds up the frequencies of the unique diplotypes that include any unacceptable antigen. This engine
+ * keeps the covered diplotypes with the number of unacceptable antigens covering each one, so an antigen change only
+ * walks the antigen's own diplotype posting list; a diplotype's frequency is added when its count goes from 0 to 1
+ * and subtracted when it drops back to 0.
+ */
+public class CpraDiplotypeIncrementalEngine extends CpraIncrementalEngine {
+
+	private final CpraDiplotypeCalculator diplotypeCalculator;
+	private final Map<Diplotype, Integer> coveredDiplotypes = new IdentityHashMap<>();
+	private double cpra = 0.0;
+
+	CpraDiplotypeIncrementalEngine(String version, CpraDiplotypeCalculator calculator) {
+		super(version, calculator);
+		this.diplotypeCalculator = calculator;
+	}
+
+	@Override
+	protected void antigenAdded(String antigen) {
+		for (Diplotype d : diplotypeCalculator.helperDiplotypes(version, antigen)) {
+			if (coveredDiplotypes.merge(d, 1, Integer::sum) == 1) {
+				cpra += d.getFrequency();
+			}
+		}
+	}
+
+	@Override
+	protected void antigenRemoved(String antigen) {
+		for (Diplotype d : diplotypeCalculator.helperDiplotypes(version, antigen)) {
+			int count = coveredDiplotypes.get(d) - 1;
+			if (count == 0) {
+				coveredDiplotypes.remove(d);
+				cpra -= d.getFrequency();
+			} else {
+				coveredDiplotypes.put(d, count);
+			}
+		}
+	}
+
+	@Override
+	protected double calculatedPRA() {
+		CpraDTO dto = new CpraDTO();
+		fillResult(dto);
+		return dto.getCalculatedPRA();
+	}
+
+	@Override
+	protected void fillResult(CpraDTO dto) {
+		// an empty cover is exactly zero, whatever rounding the removals left behind
+		diplotypeCalculator.helperSetCalculatedPRA(dto, coveredDiplotypes.isEmpty() ? 0.0 : cpra);
+	}
+}
@@ -0,0 +1,131 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.ArrayOfCpraSelfCheckDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraVersionsDTO;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Plain Java entry point to the cPRA calculators, for batch jobs, simulations and other services embedding cpra-core
+ * without Spring:
+ *
+ *   CpraEngine engine = CpraEngine.load("classpath*:/*.csv");
+ *   double cpra = engine.calculate("current", "A1;A2;B7").getCalculatedPRA();
+ *
+ * The engine holds one immutable CpraEngineSnapshot and is thread safe; load a new engine to pick up changed data
+ * sets. Ethnic weights, caching and admission control are left to the service.
+ */
+public final class CpraEngine {
+
+	private final CpraEngineSnapshot snapshot;
+
+	private CpraEngine(CpraEngineSnapshot snapshot) {
+		this.snapshot = snapshot;
+	}
+
+	public static CpraEngine load(String configPath) {
+		return load(configPath, 0);
+	}
+
+	/*
+	 * Load the data sets and precompute the profiles of up to precomputeMaxProfileSize unacceptable antigens
+	 * (0 precomputes none).
+	 */
+	public static CpraEngine load(String configPath, int precomputeMaxProfileSize) {
+		return load(configPath, precomputeMaxProfileSize, new CpraClasspathResourceResolver());
+	}
+
+	public static CpraEngine load(String configPath, int precomputeMaxProfileSize, CpraResourceResolver resourceResolver) {
+		return load(configPath, precomputeMaxProfileSize, resourceResolver, CpraHeapDataStore::new);
+	}
+
+	/*
+	 * As above, keeping the data sets in a store from the supplier, e.g. CpraDataStores.supplier("offheap").
+	 */
+	public static CpraEngine load(String configPath, int precomputeMaxProfileSize, CpraResourceResolver resourceResolver,
+			Supplier<CpraDataStore> storeSupplier) {
+		return new CpraEngine(CpraEngineSnapshot.load(new CpraConfigHashMap(resourceResolver, storeSupplier), configPath,
+				precomputeMaxProfileSize, new ObjectMapper()));
+	}
+
+	public CpraEngineSnapshot getSnapshot() {
+		return snapshot;
+	}
+
+	public List<String> getVersionList() {
+		return snapshot.getVersionList();
+	}
+
+	public String resolveVersion(String requestedVersion) {
+		return snapshot.resolveVersion(requestedVersion);
+	}
+
+	public CpraVersionsDTO versions() {
+		return snapshot.versions();
+	}
+
+	public String getChecksum(String version) {
+		return snapshot.getChecksum(snapshot.resolveVersion(version));
+	}
+
+	public CpraDTO calculate(String version, String antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.addAntibodies(antibodyList);
+		return calculate(request);
+	}
+
+	public CpraDTO calculate(CpraRequest request) {
+		if (request.getWeights() != null) {
+			throw new CpraRuntimeException("Invalid request for Cpra calculator; ethnic weights are only available from the cPRA service");
+		}
+		String version = snapshot.resolveVersion(request.getVersion());
+		request.setVersion(version);
+
+		CpraDTO dto = snapshot.calculate(version, request);
+		if (request.isContributions()) {
+			dto.setContributions(CpraContributionAnalyzer.analyze(snapshot.calculatorFor(version), version,
+					request.getAntibodies()));
+		}
+		return dto;
+	}
+
+	/*
+	 * Estimated cost of calculating the request, in the calculator's frequency lookups; 0 if the request is invalid.
+	 */
+	public long estimateCost(CpraRequest request) {
+		return snapshot.estimateCost(request);
+	}
+
+	/*
+	 * A new incremental engine for an antibody profile that changes one antibody at a time.
+	 */
+	public CpraIncrementalEngine newIncrementalEngine(String requestedVersion) {
+		String version = snapshot.resolveVersion(requestedVersion);
+		return snapshot.calculatorFor(version).newIncrementalEngine(version);
+	}
+
+	public ArrayOfCpraSelfCheckDTO selfCheck() {
+		return snapshot.getSelfCheck();
+	}
+}
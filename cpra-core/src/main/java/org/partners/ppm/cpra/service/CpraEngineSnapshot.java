@@ -0,0 +1,415 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.ArrayOfCpraSelfCheckDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDataSet;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraVersionsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Everything a calculation reads about the loaded data sets: the version list, each version's calculator, precomputed
+ * table, data set checksum and load time, the self-check report and the configuration map they were built from. A
+ * version's self-check is computed while its table is built, and the report is kept serialized, since load balancers
+ * request it all the time. A snapshot is built completely by load() and never changed afterwards, so CpraService
+ * publishes it through a single reference and each request reads one consistent snapshot without locking; a reload
+ * builds and publishes a new one.
+ */
+public final class CpraEngineSnapshot {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraEngineSnapshot.class);
+
+	// calculators
+	static final String CPRA_CALCULATOR_HAPLOTYPE = "haplotype";
+	static final String CPRA_CALCULATOR_DIPLOTYPE = "diplotype";
+
+	private static final List<String> calculatorList = Arrays.asList(CPRA_CALCULATOR_HAPLOTYPE, CPRA_CALCULATOR_DIPLOTYPE);
+
+	// token for the default version, configured by the first version in the configuration version list
+	static final String CPRA_VERSION_CURRENT = "current";
+
+	private final CpraConfigHashMap cpraConfigHashMap;
+	private final List<String> versionList;
+	private final String defaultVersion;
+	private final Map<String, String> versionCalculatorType;
+	private final Map<String, String> versionDescription;
+	private final Map<String, CpraConfigHashMap> versionConfigHashMap;
+	private final Map<String, CpraCalculator> versionCalculator;
+	private final Map<String, CpraPrecomputedTable> versionPrecomputedTable;
+	private final Map<String, String> versionChecksum;
+	private final Map<String, Long> versionLoadMillis;
+	private final ArrayOfCpraSelfCheckDTO selfCheck;
+	private final byte[] selfCheckJson;
+	private final long loadedAt;
+
+	private CpraEngineSnapshot(CpraConfigHashMap cpraConfigHashMap, List<String> versionList, String defaultVersion,
+			Map<String, String> versionCalculatorType, Map<String, String> versionDescription,
+			Map<String, CpraConfigHashMap> versionConfigHashMap, Map<String, CpraCalculator> versionCalculator,
+			Map<String, CpraPrecomputedTable> versionPrecomputedTable, Map<String, String> versionChecksum,
+			Map<String, Long> versionLoadMillis, ArrayOfCpraSelfCheckDTO selfCheck, ObjectMapper objectMapper) {
+		this.cpraConfigHashMap = cpraConfigHashMap;
+		this.versionList = Collections.unmodifiableList(versionList);
+		this.defaultVersion = defaultVersion;
+		this.versionCalculatorType = Collections.unmodifiableMap(versionCalculatorType);
+		this.versionDescription = Collections.unmodifiableMap(versionDescription);
+		this.versionConfigHashMap = Collections.unmodifiableMap(versionConfigHashMap);
+		this.versionCalculator = Collections.unmodifiableMap(versionCalculator);
+		this.versionPrecomputedTable = Collections.unmodifiableMap(versionPrecomputedTable);
+		this.versionChecksum = Collections.unmodifiableMap(versionChecksum);
+		this.versionLoadMillis = Collections.unmodifiableMap(versionLoadMillis);
+		this.selfCheck = selfCheck;
+		try {
+			this.selfCheckJson = objectMapper.writeValueAsBytes(selfCheck);
+		} catch (JsonProcessingException e) {
+			throw new CpraRuntimeException("Failed to serialize the self-check report; " + e.getMessage());
+		}
+		this.loadedAt = System.currentTimeMillis();
+	}
+
+	/*
+	 * Load the data sets under configPath into the (empty) configuration map and build the versions' calculators, and
+	 * their precomputed tables of up to maxProfileSize antigens (0 builds none) and the self-check report, serialized with
+	 * the object mapper.
+	 */
+	static CpraEngineSnapshot load(CpraConfigHashMap cpraConfigHashMap, String configPath, int maxProfileSize,
+			ObjectMapper objectMapper) {
+		return load(cpraConfigHashMap, configPath, maxProfileSize, objectMapper, null);
+	}
+
+	/*
+	 * As load() above, reporting progress to the listener: the configured versions once the data set files are read,
+	 * then, version by version in configuration order, a snapshot of the versions loaded so far. Each version gets its
+	 * own calculator, so a published snapshot is never changed by loading the next version. Without a listener the
+	 * first version that fails to load fails the load; with one, the failure is reported and the other versions load.
+	 */
+	static CpraEngineSnapshot load(CpraConfigHashMap cpraConfigHashMap, String configPath, int maxProfileSize,
+			ObjectMapper objectMapper, CpraLoadListener listener) {
+		return load(cpraConfigHashMap, configPath, maxProfileSize, objectMapper, listener, null);
+	}
+
+	/*
+	 * As load() above for a reload: a version that fails to load but is in the previous snapshot keeps the previous
+	 * snapshot's calculator, table, checksum and self-check, and is reported to the listener as kept rather than failed.
+	 * A load that completes publishes the map; a load that fails retires it.
+	 */
+	static CpraEngineSnapshot load(CpraConfigHashMap cpraConfigHashMap, String configPath, int maxProfileSize,
+			ObjectMapper objectMapper, CpraLoadListener listener, CpraEngineSnapshot previous) {
+		CpraEngineSnapshot snapshot;
+		try {
+			snapshot = loadVersions(cpraConfigHashMap, configPath, maxProfileSize, objectMapper, listener, previous);
+		} catch (RuntimeException e) {
+			cpraConfigHashMap.retire();
+			throw e;
+		}
+		cpraConfigHashMap.publish();
+		return snapshot;
+	}
+
+	private static CpraEngineSnapshot loadVersions(CpraConfigHashMap cpraConfigHashMap, String configPath,
+			int maxProfileSize, ObjectMapper objectMapper, CpraLoadListener listener, CpraEngineSnapshot previous) {
+		cpraConfigHashMap.loadConfiguration(configPath);
+
+		// set version list
+		String versionListString = cpraConfigHashMap.get("hlaCpraVersions");
+		if (versionListString==null) {
+			log.error("ERROR: hlaCpraVersions not specified in configuration '{}'; this is a required value",configPath);
+			throw configurationException("ERROR: hlaCpraVersions not specified in configuration; this is a required value");
+		}
+		List<String> configuredVersions = Arrays.asList(versionListString.split(";"));
+		if (listener != null) {
+			listener.versionsListed(configuredVersions);
+		}
+
+		List<String> versionList = new ArrayList<>();
+		Map<String, String> versionCalculatorType = new HashMap<>();
+		Map<String, String> versionDescription = new HashMap<>();
+		Map<String, CpraConfigHashMap> versionConfigHashMap = new HashMap<>();
+		Map<String, CpraCalculator> versionCalculator = new HashMap<>();
+		Map<String, CpraPrecomputedTable> versionPrecomputedTable = new HashMap<>();
+		Map<String, String> versionChecksum = new HashMap<>();
+		Map<String, Long> versionLoadMillis = new HashMap<>();
+		ArrayOfCpraSelfCheckDTO selfCheck = new ArrayOfCpraSelfCheckDTO();
+		CpraEngineSnapshot snapshot = null;
+		for (String v : configuredVersions) {
+			long start = System.currentTimeMillis();
+			String calculatorType;
+			CpraCalculator calculator;
+			CpraDataSet dataSet;
+			CpraPrecomputedTable table = null;
+			String checksum;
+			String description;
+			CpraConfigHashMap configHashMap = cpraConfigHashMap;
+			Long loadMillis;
+			RuntimeException keptFailure = null;
+			try {
+				log.debug("set version info for '{}'",v);
+				// calculator type for the version
+				calculatorType = cpraConfigHashMap.get("hlaCpraCalculatorType",v);
+				log.debug("setVersionCalculators(): {}, {}",v,calculatorType);
+				CpraCalculator loaded = newCalculator(cpraConfigHashMap, calculatorType, v);
+				loaded.initialize();
+				loaded.initializeVersion(v);
+
+				// the self-check report, alongside the precompute
+				CompletableFuture<CpraDataSet> selfCheckFuture = CompletableFuture.supplyAsync(() -> loaded.selfCheck(v));
+
+				// materialize cPRA for the small antibody profiles of the version
+				if (maxProfileSize > 0) {
+					table = CpraPrecomputedTable.build(v, loaded, maxProfileSize);
+				}
+				dataSet = selfCheckFuture.join();
+				calculator = loaded;
+				checksum = cpraConfigHashMap.checksum(v);
+				description = cpraConfigHashMap.get("hlaCpraCalculatorDescription:" + v);
+				loadMillis = System.currentTimeMillis() - start;
+			} catch (RuntimeException e) {
+				RuntimeException cause = e instanceof CompletionException && e.getCause() instanceof RuntimeException
+						? (RuntimeException) e.getCause() : e;
+				if (listener == null) {
+					throw cause;
+				}
+				if (previous == null || previous.calculatorFor(v) == null) {
+					log.error("Version '{}' failed to load; {}", v, cause.getMessage());
+					listener.versionFailed(v, cause);
+					continue;
+				}
+				log.error("Version '{}' failed to reload; keeping its previous data set; {}", v, cause.getMessage());
+				keptFailure = cause;
+				calculatorType = previous.getCalculatorType(v);
+				calculator = previous.calculatorFor(v);
+				table = previous.getPrecomputedTable(v);
+				dataSet = previous.selfCheckOf(v);
+				checksum = previous.getChecksum(v);
+				description = previous.versionDescription.get(v);
+				configHashMap = previous.versionConfigHashMap.get(v);
+				loadMillis = previous.getLoadMillis(v);
+			}
+			if (dataSet != null && dataSet.getWarnings() != null) {
+				log.warn("Self check of version '{}': {}", dataSet.getVersion(), dataSet.getWarnings());
+			}
+
+			versionList.add(v);
+			versionCalculatorType.put(v, calculatorType);
+			versionConfigHashMap.put(v, configHashMap);
+			versionCalculator.put(v, calculator);
+			if (table != null) {
+				versionPrecomputedTable.put(v, table);
+			}
+			versionChecksum.put(v, checksum);
+			if (description != null) {
+				versionDescription.put(v, description);
+			}
+			versionLoadMillis.put(v, loadMillis);
+			if (dataSet != null) {
+				selfCheck.getCpraDataSet().add(dataSet);
+			}
+
+			// published snapshots are never changed, so the next version builds on copies
+			snapshot = new CpraEngineSnapshot(cpraConfigHashMap, new ArrayList<>(versionList), configuredVersions.get(0),
+					new HashMap<>(versionCalculatorType), new HashMap<>(versionDescription),
+					new HashMap<>(versionConfigHashMap), new HashMap<>(versionCalculator), new HashMap<>(versionPrecomputedTable),
+					new HashMap<>(versionChecksum), new HashMap<>(versionLoadMillis), copy(selfCheck), objectMapper);
+			if (listener != null && keptFailure != null) {
+				listener.versionKept(v, snapshot, keptFailure);
+			} else if (listener != null) {
+				listener.versionLoaded(v, snapshot);
+			}
+		}
+		if (snapshot == null) {
+			throw configurationException("No Cpra version could be loaded from configuration '" + configPath + "'");
+		}
+		return snapshot;
+	}
+
+	private static CpraCalculator newCalculator(CpraConfigHashMap cpraConfigHashMap, String calculator, String version) {
+		if (calculator != null && calculator.equalsIgnoreCase(CPRA_CALCULATOR_DIPLOTYPE)) {
+			return new CpraDiplotypeCalculator(cpraConfigHashMap);
+		} else if (calculator != null && calculator.equalsIgnoreCase(CPRA_CALCULATOR_HAPLOTYPE)) {
+			return new CpraHaplotypeCalculator(cpraConfigHashMap);
+		}
+		log.error("Invalid calculator '{}' for version '{}'",calculator,version);
+		throw badCalculatorException(calculator,version);
+	}
+
+	private static ArrayOfCpraSelfCheckDTO copy(ArrayOfCpraSelfCheckDTO selfCheck) {
+		ArrayOfCpraSelfCheckDTO copy = new ArrayOfCpraSelfCheckDTO();
+		copy.getCpraDataSet().addAll(selfCheck.getCpraDataSet());
+		return copy;
+	}
+
+	CpraConfigHashMap getConfigHashMap() {
+		return cpraConfigHashMap;
+	}
+
+	/*
+	 * The maps the snapshot reads: the one it was loaded into, and those of versions kept from earlier loads.
+	 */
+	Set<CpraConfigHashMap> getConfigHashMaps() {
+		Set<CpraConfigHashMap> maps = Collections.newSetFromMap(new IdentityHashMap<>());
+		maps.add(cpraConfigHashMap);
+		maps.addAll(versionConfigHashMap.values());
+		return maps;
+	}
+
+	public List<String> getVersionList() {
+		return versionList;
+	}
+
+	/*
+	 * The version a request names; "current" is the first version of the configuration version list, also when it
+	 * failed to load.
+	 */
+	public String resolveVersion(String requestedVersion) {
+		if (!this.versionList.contains(requestedVersion) && !requestedVersion.equalsIgnoreCase(CPRA_VERSION_CURRENT)) {
+			throw new CpraRuntimeException("Invalid version for Cpra calculator; version can be 'current' or "+versionList.toString());
+		}
+		// if user requests "current" calculator version, then use first from the list in configuration version list
+		if (requestedVersion.equalsIgnoreCase(CPRA_VERSION_CURRENT)) {
+			if (!versionList.contains(defaultVersion)) {
+				throw new CpraRuntimeException("Cpra version '" + defaultVersion + "', the current version, failed to load");
+			}
+			log.debug("using current version '{}'",defaultVersion);
+			return defaultVersion;
+		}
+		return requestedVersion;
+	}
+
+	CpraCalculator calculatorFor(String version) {
+		return versionCalculator.get(version);
+	}
+
+	/*
+	 * The calculator type configured for the version, haplotype or diplotype.
+	 */
+	public String getCalculatorType(String version) {
+		return versionCalculatorType.get(version);
+	}
+
+	CpraPrecomputedTable getPrecomputedTable(String version) {
+		return versionPrecomputedTable.get(version);
+	}
+
+	/*
+	 * The request's result from the precomputed table when available, otherwise from the version's calculator.
+	 */
+	CpraDTO calculate(String version, CpraRequest request) {
+		CpraPrecomputedTable table = getPrecomputedTable(version);
+		CpraDTO dto = table != null ? table.lookup(request) : null;
+		return dto != null ? dto : calculatorFor(version).calculate(request);
+	}
+
+	/*
+	 * Estimated cost of calculating the request, in the calculator's frequency lookups; a profile with contributions is
+	 * enumerated again, an antibody at a time, for the leave-one-out terms. Returns 0 if the request is invalid, so the
+	 * calculation reports the error.
+	 */
+	public long estimateCost(CpraRequest request) {
+		try {
+			String version = resolveVersion(request.getVersion());
+			long cost = calculatorFor(version).estimateCost(version, request.getAntibodies());
+			return request.isContributions() && cost < Long.MAX_VALUE / 2 ? 2 * cost : cost;
+		} catch (CpraRuntimeException e) {
+			return 0;
+		}
+	}
+
+	/*
+	 * The loaded versions, with their load time and precompute statistics; the first configured version is the default,
+	 * and is missing if it failed to load.
+	 */
+	public CpraVersionsDTO versions() {
+		CpraVersionsDTO dto = new CpraVersionsDTO();
+		for (String name : versionList) {
+			Boolean isDefault = name.equals(defaultVersion);
+			String description = versionDescription.get(name);
+			String calculator = getCalculatorType(name);
+			CpraPrecomputedTable table = getPrecomputedTable(name);
+			if (table != null) {
+				dto.addVersion(name, isDefault, description, calculator,
+						table.getMaterializedProfiles(), table.getBuildMillis(), table.getEstimatedBytes());
+			} else {
+				dto.addVersion(name, isDefault, description, calculator);
+			}
+			dto.setLoad(name, CpraVersionsDTO.STATE_LOADED, versionLoadMillis.get(name), null);
+		}
+		return dto;
+	}
+
+	public String getChecksum(String version) {
+		return versionChecksum.get(version);
+	}
+
+	Map<String, String> getChecksums() {
+		return versionChecksum;
+	}
+
+	Long getLoadMillis(String version) {
+		return versionLoadMillis.get(version);
+	}
+
+	private CpraDataSet selfCheckOf(String version) {
+		for (CpraDataSet dataSet : selfCheck.getCpraDataSet()) {
+			if (version.equals(dataSet.getVersion())) {
+				return dataSet;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * The self-check report of the load; shared, so callers must not change it.
+	 */
+	public ArrayOfCpraSelfCheckDTO getSelfCheck() {
+		return selfCheck;
+	}
+
+	/*
+	 * The self-check report as JSON.
+	 */
+	public byte[] getSelfCheckJson() {
+		return selfCheckJson.clone();
+	}
+
+	public long getLoadedAt() {
+		return loadedAt;
+	}
+
+	private static CpraRuntimeException badCalculatorException(String calculator, String version) {
+		return new CpraRuntimeException("Invalid calculator '"+calculator+"' for Cpra version '"+version+"'; calculator can be "+String.join(",",calculatorList));
+	}
+
+	private static CpraRuntimeException configurationException(String message) {
+		return new CpraRuntimeException("Invalid configuration; "+message);
+	}
+}
@@ -15,14 +15,18 @@
  */
 package org.partners.ppm.cpra.service;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.partners.ppm.cpra.CpraOverloadedException;
 import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraAlleleCheck;
 import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
 import org.partners.ppm.cpra.web.rest.dto.CpraDataSet;
 import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
@@ -117,6 +121,10 @@ public class CpraHaplotypeCalculator extends CpraCalculator {
 			CpraHaplotypeCalculatorHelper calculator = new CpraHaplotypeCalculatorHelper(alleleSetWithHlaFreqs, unacceptableAntigens, dto, version, cpraConfigHashMap);
 			ethnicFreqs = calculator.getResult();
 		}
+		catch(CpraOverloadedException ex) {
+			// past the deadline; not an error of the data set
+			throw ex;
+		}
 		catch(Exception ex) {
 			log.error("Caught an exception: {}; {}", ex.getMessage(), ex.getStackTrace());
 			throw new CpraRuntimeException("Caught an unexpected error retrieving HLA Frequencies.");
@@ -171,7 +179,65 @@ public class CpraHaplotypeCalculator extends CpraCalculator {
 		return dto;
 	}
 
-	private double calculateOverallCpra(String version, double[] ethnicCpra) {
+	/*
+	 * CpraHaplotypeCalculatorHelper looks up every combination of one unacceptable antigen per locus, for every subset
+	 * of the loci with frequency data: the sum over the subsets of the product of their antigen counts, which is the
+	 * product of (1 + antigen count) over the loci, less the empty subset.
+	 */
+	@Override
+	public long estimateCost(String version, List<String> antibodyList) {
+		List<String> antibodies = new ArrayList<>(antibodyList);
+		antibodies.replaceAll(String::toUpperCase);
+		TreeMap<String, TreeSet<String>> unacceptableAntigens = helperUnacceptableAntigenMap(version, antibodies,
+				versionAlleles.get(version));
+		long combinations = 1;
+		for (String allele : versionAllelesWithFreqs.get(version)) {
+			TreeSet<String> antigens = unacceptableAntigens.get(allele);
+			int n = antigens != null ? antigens.size() : 0;
+			combinations = combinations > Long.MAX_VALUE / (1 + n) ? Long.MAX_VALUE : combinations * (1 + n);
+		}
+		return combinations - 1;
+	}
+
+	@Override
+	public CpraIncrementalEngine newIncrementalEngine(String version) {
+		return new CpraHaplotypeIncrementalEngine(version, this);
+	}
+
+	@Override
+	protected Set<String> helperFrequencyAntigens(String version) {
+		// single allele (S1) haplotype frequencies
+		Set<String> antigens = new TreeSet<>();
+		String prefix = TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES + TOKEN_KEY_DELIMITER + version + TOKEN_KEY_DELIMITER;
+		for (String key : cpraConfigHashMap.keys(prefix + "*")) {
+			String haplotype = key.substring(prefix.length());
+			if (!haplotype.contains(TOKEN_KEY_SUB_DELIMITER)) {
+				antigens.add(haplotype);
+			}
+		}
+		return antigens;
+	}
+
+	/*
+	 * The ethnic frequencies of a haplotype frequency entry, or null unless there is a number for each ethnicity.
+	 */
+	private static double[] parseFrequencies(String freqList, int ethnicities) {
+		String[] f = freqList.split(TOKEN_KEY_SUB_DELIMITER);
+		if (f.length != ethnicities) {
+			return null;
+		}
+		double[] frequencies = new double[ethnicities];
+		try {
+			for (int e = 0; e < ethnicities; e++) {
+				frequencies[e] = Double.valueOf(f[e]);
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		return frequencies;
+	}
+
+	double calculateOverallCpra(String version, double[] ethnicCpra) {
 		double cpra = 0.0;
 		try {
 			log.trace("About to calculate overall cPRA for version [{}].", version);
@@ -204,7 +270,7 @@ public class CpraHaplotypeCalculator extends CpraCalculator {
 		return cpra;
 	}
 
-	private double[] calculateEthnicCpras(double[][] ethnicFreqs) {
+	double[] calculateEthnicCpras(double[][] ethnicFreqs) {
 
 		double[] ethnicCpra = new double[UNOS_ETHNICITIES];
 		try {
@@ -306,19 +372,64 @@ public class CpraHaplotypeCalculator extends CpraCalculator {
 		if (null != hlaAllelesWithFrequenciesList) {
 			hlaAllelesWithFrequencies = hlaAllelesWithFrequenciesList.split(TOKEN_KEY_SUB_DELIMITER);
 			cpraDataSet.setHlaAllelesWithFrequencies(Arrays.asList(hlaAllelesWithFrequencies));
-			for (String hlaAlleleWithFrequency : hlaAllelesWithFrequencies) {
-				String keyPattern = TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES + TOKEN_KEY_DELIMITER + version
-						+ TOKEN_KEY_DELIMITER + hlaAlleleWithFrequency + "*";
-				log.trace("keyPattern = [{}]", keyPattern);
-				List<String> keysList = cpraConfigHashMap.keys(keyPattern);
-				if (log.isTraceEnabled()) {
-					log.trace("keysList = [{}]", keysList);
+		}
+
+		helperSelfCheckCommon(version, cpraDataSet);
+
+		// one pass over the version's haplotype frequencies: the entries and S1 frequency sums per allele, entries on
+		// alleles without frequency data and entries without a number for each ethnicity
+		String[] ethnicities = helperEthnicityValues(version);
+		String[] alleles = versionAllelesWithFreqs.get(version);
+		String prefix = TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES + TOKEN_KEY_DELIMITER + version + TOKEN_KEY_DELIMITER;
+		List<String> keys = cpraConfigHashMap.keys(prefix + "*");
+		long[] alleleKeys = new long[alleles.length];
+		int[] s1Antigens = new int[alleles.length];
+		double[][] s1Sums = new double[alleles.length][ethnicities.length];
+		TreeSet<String> unknownAntigens = new TreeSet<>();
+		long invalidFrequencies = 0;
+		List<String> values = cpraConfigHashMap.multiGet(keys);
+		for (int i = 0; i < keys.size(); i++) {
+			String key = keys.get(i);
+			String[] antigens = key.substring(prefix.length()).split(TOKEN_KEY_SUB_DELIMITER);
+			int locus = -1;
+			for (String antigen : antigens) {
+				locus = helperFrequencyLocus(version, antigen);
+				if (locus < 0) {
+					unknownAntigens.add(antigen);
+				} else {
+					alleleKeys[locus]++;
+				}
+			}
+			double[] frequencies = parseFrequencies(values.get(i), ethnicities.length);
+			if (frequencies == null) {
+				invalidFrequencies++;
+			} else if (antigens.length == 1 && locus >= 0) {
+				s1Antigens[locus]++;
+				for (int e = 0; e < ethnicities.length; e++) {
+					s1Sums[locus][e] += frequencies[e];
 				}
 			}
 		}
 
-		// for each allele with frequency data
-		// get count of S1 data
+		cpraDataSet.setFrequencyKeys(keys.size());
+		for (int i = 0; i < alleles.length; i++) {
+			List<Double> sums = new ArrayList<>();
+			for (int e = 0; e < ethnicities.length; e++) {
+				sums.add(s1Sums[i][e]);
+				if (Math.abs(s1Sums[i][e] - 1.0) > SELF_CHECK_SUM_TOLERANCE) {
+					cpraDataSet.addWarning("S1 haplotype frequencies of HLA-" + alleles[i] + " sum to " + s1Sums[i][e]
+							+ " for " + ethnicities[e] + ", not 1");
+				}
+			}
+			cpraDataSet.getAlleleChecks().add(new CpraAlleleCheck(alleles[i], s1Antigens[i], alleleKeys[i], sums));
+		}
+		if (!unknownAntigens.isEmpty()) {
+			cpraDataSet.addWarning("Haplotype frequencies for antigens not on an allele with frequency data: " + unknownAntigens);
+		}
+		if (invalidFrequencies > 0) {
+			cpraDataSet.addWarning(invalidFrequencies + " haplotype frequency entries do not have a number for each of the "
+					+ ethnicities.length + " ethnicities");
+		}
 
 		// for each reportable allele
 
@@ -329,10 +440,6 @@ public class CpraHaplotypeCalculator extends CpraCalculator {
 
 		// confirm if there are S1 frequency values
 
-		// for each frequency entry
-
-		// confirm the allele prefixes are in the hlaAllelesWithFrequencies
-
 		// load the list of lab reported alleles from the typing lab (maybe in a csv
 		// file, or a service input string?)
 
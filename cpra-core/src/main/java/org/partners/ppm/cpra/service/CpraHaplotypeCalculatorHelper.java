@@ -34,6 +34,9 @@ public class CpraHaplotypeCalculatorHelper {
 	private static final Integer UNOS_ETHNICITIES = 4;
 	private static final String TOKEN_KEY_SUB_DELIMITER = ";";
 	private static final String TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES = "hlaHaplotypeFrequencies";
+	private static final String TOKEN_KEY_DELIMITER = ":";
+	// a level's haplotype frequencies are fetched with one multiGet of up to this many keys
+	static final int PREFETCH_KEYS = 16384;
 
 	String[] alleles;
 	double[][] ethnicFreqs;
@@ -42,6 +45,7 @@ public class CpraHaplotypeCalculatorHelper {
 	CpraDTO dto;
 	String version;
 	CpraConfigHashMap cpraConfigHashMap;
+	List<String> prefetchCombinations = new ArrayList<>();
 
 	CpraHaplotypeCalculatorHelper(String[] alleles, TreeMap<String, TreeSet<String>> unacceptableAntigens, CpraDTO dto, String version,
 			CpraConfigHashMap cpraConfigHashMap) {
@@ -135,10 +139,13 @@ public class CpraHaplotypeCalculatorHelper {
 		// for each set level (S1, S2, .. S5) calculate the ethnic frequencies
 		// for each of the combinations of all allele versions present in unacceptableAntigens
 		//     e.g. if there are two B allele versions (B4, B57) and 3 C
+		//     the level's combinations are collected and their frequencies fetched in one batch, so a remote data store
+		//     costs a round trip per level rather than per combination
 		for (Integer s=1; s<=alleles.length; s++) {
 			for (BitSet combo : levelSets.get(s)) {
 				calculateCombo(s, combo, allelesInUse);
 			}
+			addFrequencies(s);
 		}
 	}
 	
@@ -152,12 +159,35 @@ public class CpraHaplotypeCalculatorHelper {
 		    lists.add(unacceptableAlleleVersions.get(allelesInUse.get(i)));
 		}
 		
-		// generate and loop through the allele combinations, adding up the ethnic frequencies
+		// generate the allele combinations, whose ethnic frequencies are added up by addFrequencies()
 		List<String> result = new ArrayList<>();
 		for (String combination : createAlleleCombinations(lists, result, 0, "")) {
-			log.trace("GET frequencies for {}",combination);
-			log.trace("GET haplotypeFrequencies:{}:{}", version, combination);
-			String freqList = cpraConfigHashMap.get(TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES, version, combination);
+			CpraDeadline.check();
+			prefetchCombinations.add(combination);
+			if (prefetchCombinations.size() >= PREFETCH_KEYS) {
+				addFrequencies(s);
+			}
+		}
+	}
+
+	/*
+	 * Fetch the haplotype frequencies of the collected combinations with one multiGet and add them to the level's
+	 * ethnic frequencies, in the order the combinations were generated.
+	 */
+	private void addFrequencies(Integer s) {
+		if (prefetchCombinations.isEmpty()) {
+			return;
+		}
+		String prefix = TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES + TOKEN_KEY_DELIMITER + version + TOKEN_KEY_DELIMITER;
+		List<String> keys = new ArrayList<>(prefetchCombinations.size());
+		for (String combination : prefetchCombinations) {
+			keys.add(prefix + combination);
+		}
+		log.trace("GET {} haplotypeFrequencies:{} for S{}", keys.size(), version, s);
+		List<String> freqLists = cpraConfigHashMap.multiGet(keys);
+		for (int i = 0; i < keys.size(); i++) {
+			String combination = prefetchCombinations.get(i);
+			String freqList = freqLists.get(i);
 			if (freqList != null) {
 				log.trace("FOUND hlaHaplotypeFrequencies:{}:{} = (freqList = {})", version, combination, freqList);
 				String[] f = freqList.split(TOKEN_KEY_SUB_DELIMITER);
@@ -169,6 +199,7 @@ public class CpraHaplotypeCalculatorHelper {
 				dto.addWarning("No S1 haplotype frequencies found for HLA-" + combination);
 			}
 		}
+		prefetchCombinations.clear();
 	}
 
 	List<String> createAlleleCombinations(LinkedList<List<String>> lists, List<String> result, int depth, String current)
@@ -181,6 +212,7 @@ public class CpraHaplotypeCalculatorHelper {
 
 	    for(int i = 0; i < lists.get(depth).size(); ++i)
 	    {
+	        CpraDeadline.check();
 	        createAlleleCombinations(lists, result, depth + 1, current + (current.length()==0?"":TOKEN_KEY_SUB_DELIMITER) + lists.get(depth).get(i));
 	    }
 	    return result;
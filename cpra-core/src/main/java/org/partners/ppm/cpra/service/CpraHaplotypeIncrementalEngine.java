@@ -0,0 +1,222 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Incremental form of CpraHaplotypeCalculatorHelper.calculateLevels().
+ *
+ * The helper sums the haplotype frequencies of every combination of unacceptable antigens for each subset of the loci
+ * with frequency data. This engine keeps those sums per subset (levelSums[mask][ethnicity], bit i of mask is
+ * alleles[i]), so adding an antigen at locus l only enumerates the combinations that contain it: for every subset
+ * containing l, the antigen crossed with the current antigens of the other loci in the subset. Removing an antigen
+ * subtracts the same combinations. S1..S5 are the subset sums grouped by the number of loci.
+ */
+public class CpraHaplotypeIncrementalEngine extends CpraIncrementalEngine {
+
+	private final Logger log = LoggerFactory.getLogger(CpraHaplotypeIncrementalEngine.class);
+
+	private static final String TOKEN_KEY_SUB_DELIMITER = ";";
+	private static final String TOKEN_KEY_DELIMITER = ":";
+
+	private final CpraHaplotypeCalculator haplotypeCalculator;
+	private final String[] alleles;                 // alleles with frequencies, in haplotype key order
+	private final List<TreeSet<String>> lociAntigens;
+	private final double[][] levelSums;
+	private final TreeSet<String> missingS1Frequencies = new TreeSet<>();
+	private final String keyPrefix;                 // of the version's haplotype frequency keys
+
+	CpraHaplotypeIncrementalEngine(String version, CpraHaplotypeCalculator calculator) {
+		super(version, calculator);
+		this.haplotypeCalculator = calculator;
+		this.alleles = calculator.versionAllelesWithFreqs.get(version);
+		this.lociAntigens = new ArrayList<>();
+		for (int i = 0; i < alleles.length; i++) {
+			lociAntigens.add(new TreeSet<>());
+		}
+		this.levelSums = new double[1 << alleles.length][CpraCalculator.UNOS_ETHNICITIES];
+		this.keyPrefix = CpraHaplotypeCalculator.TOKEN_KEY_HLA_HAPLOTYPE_FREQUENCIES + TOKEN_KEY_DELIMITER + version
+				+ TOKEN_KEY_DELIMITER;
+	}
+
+	@Override
+	protected void antigenAdded(String antigen) {
+		int locus = locusOf(antigen);
+		if (locus < 0) {
+			return;
+		}
+		updateLevelSums(locus, antigen, 1.0);
+		lociAntigens.get(locus).add(antigen);
+	}
+
+	@Override
+	protected void antigenRemoved(String antigen) {
+		int locus = locusOf(antigen);
+		if (locus < 0) {
+			return;
+		}
+		lociAntigens.get(locus).remove(antigen);
+		updateLevelSums(locus, antigen, -1.0);
+		missingS1Frequencies.remove(antigen);
+
+		// an empty profile is exactly zero, whatever rounding the removals left behind
+		if (lociAntigens.stream().allMatch(TreeSet::isEmpty)) {
+			for (double[] sums : levelSums) {
+				Arrays.fill(sums, 0.0);
+			}
+		}
+	}
+
+	/*
+	 * Index of the antigen's allele in the alleles with frequencies, or -1 if the allele has no frequency data.
+	 */
+	private int locusOf(String antigen) {
+		String[] allele = calculator.helperParseAllele(calculator.versionAlleles.get(version), antigen);
+		if (allele.length == 0) {
+			return -1;
+		}
+		for (int i = 0; i < alleles.length; i++) {
+			if (alleles[i].equals(allele[0])) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/*
+	 * Enumerate the combinations containing the antigen for every subset of the loci, then fetch their frequencies
+	 * with a multiGet per PREFETCH_KEYS combinations and add (sign 1) or subtract (sign -1) them.
+	 */
+	private void updateLevelSums(int locus, String antigen, double sign) {
+		List<Integer> masks = new ArrayList<>();
+		List<String> keys = new ArrayList<>();
+		for (int mask = 1; mask < levelSums.length; mask++) {
+			if ((mask & (1 << locus)) == 0 || !otherLociInUse(mask, locus)) {
+				continue;
+			}
+			updateCombinations(mask, locus, antigen, sign, 0, new StringBuilder(), masks, keys);
+		}
+		addLevelSums(locus, antigen, sign, masks, keys);
+	}
+
+	/*
+	 * Fetch the frequencies of the collected combinations with one multiGet, add them and clear the collected lists.
+	 */
+	private void addLevelSums(int locus, String antigen, double sign, List<Integer> masks, List<String> keys) {
+		if (keys.isEmpty()) {
+			return;
+		}
+		List<String> freqLists = calculator.cpraConfigHashMap.multiGet(keys);
+		for (int i = 0; i < keys.size(); i++) {
+			int mask = masks.get(i);
+			String freqList = freqLists.get(i);
+			if (freqList != null) {
+				String[] f = freqList.split(TOKEN_KEY_SUB_DELIMITER);
+				for (int e = 0; e < f.length; e++) {
+					levelSums[mask][e] += sign * Float.valueOf(f[e]);
+				}
+			} else if (mask == (1 << locus) && sign > 0) {
+				missingS1Frequencies.add(antigen);
+			}
+		}
+		masks.clear();
+		keys.clear();
+	}
+
+	private boolean otherLociInUse(int mask, int locus) {
+		for (int i = 0; i < alleles.length; i++) {
+			if (i != locus && (mask & (1 << i)) != 0 && lociAntigens.get(i).isEmpty()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void updateCombinations(int mask, int locus, String antigen, double sign, int depth, StringBuilder key,
+			List<Integer> masks, List<String> keys) {
+		if (depth == alleles.length) {
+			masks.add(mask);
+			keys.add(keyPrefix + key);
+			if (keys.size() >= CpraHaplotypeCalculatorHelper.PREFETCH_KEYS) {
+				addLevelSums(locus, antigen, sign, masks, keys);
+			}
+			return;
+		}
+		if ((mask & (1 << depth)) == 0) {
+			updateCombinations(mask, locus, antigen, sign, depth + 1, key, masks, keys);
+			return;
+		}
+		int length = key.length();
+		Iterable<String> values = depth == locus ? Arrays.asList(antigen) : lociAntigens.get(depth);
+		for (String value : values) {
+			if (length > 0) {
+				key.append(TOKEN_KEY_SUB_DELIMITER);
+			}
+			key.append(value);
+			updateCombinations(mask, locus, antigen, sign, depth + 1, key, masks, keys);
+			key.setLength(length);
+		}
+	}
+
+	/*
+	 * The S1..Sn level sums in the layout CpraHaplotypeCalculatorHelper.getResult() returns.
+	 */
+	double[][] getEthnicFreqs() {
+		double[][] ethnicFreqs = new double[alleles.length][CpraCalculator.UNOS_ETHNICITIES];
+		for (int mask = 1; mask < levelSums.length; mask++) {
+			int level = Integer.bitCount(mask) - 1;
+			for (int e = 0; e < CpraCalculator.UNOS_ETHNICITIES; e++) {
+				ethnicFreqs[level][e] += levelSums[mask][e];
+			}
+		}
+		return ethnicFreqs;
+	}
+
+	@Override
+	protected double calculatedPRA() {
+		return haplotypeCalculator.calculateOverallCpra(version, haplotypeCalculator.calculateEthnicCpras(getEthnicFreqs()));
+	}
+
+	@Override
+	protected void fillResult(CpraDTO dto) {
+		// warnings in the order the helper reports them: by allele, then antigen
+		for (TreeSet<String> antigens : lociAntigens) {
+			for (String antigen : antigens) {
+				if (missingS1Frequencies.contains(antigen)) {
+					dto.addWarning("No S1 haplotype frequencies found for HLA-" + antigen);
+				}
+			}
+		}
+
+		double[] ethnicCpra = haplotypeCalculator.calculateEthnicCpras(getEthnicFreqs());
+		String[] ethnicities = haplotypeCalculator.reportedEthnicities(version);
+		for (int i = 0; i < ethnicities.length; i++) {
+			dto.addEthnicCalculatedPRA(ethnicities[i], ethnicCpra[i]);
+		}
+		dto.setCalculatedPRA(haplotypeCalculator.calculateOverallCpra(version, ethnicCpra));
+		if (log.isDebugEnabled()) {
+			log.debug("Incremental cPRA for {}; cpra = {}", getAntibodies(), dto.getCalculatedPRA());
+		}
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/*
+ * The entries in a HashMap; the fastest store, and the default.
+ */
+public class CpraHeapDataStore implements CpraDataStore {
+
+	private final HashMap<String, String> entries = new HashMap<>();
+
+	@Override
+	public String get(String key) {
+		return entries.get(key);
+	}
+
+	@Override
+	public List<String> multiGet(List<String> keys) {
+		List<String> values = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			values.add(entries.get(key));
+		}
+		return values;
+	}
+
+	@Override
+	public Collection<String> keys(String pattern) {
+		Pattern regex = globPattern(pattern);
+		List<String> keys = new ArrayList<>();
+		for (String key : entries.keySet()) {
+			if (regex.matcher(key).matches()) {
+				keys.add(key);
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public void putAll(Map<String, String> entries) {
+		this.entries.putAll(entries);
+	}
+
+	@Override
+	public void clear() {
+		entries.clear();
+	}
+
+	@Override
+	public long size() {
+		return entries.size();
+	}
+
+	@Override
+	public void close() {
+		// nothing to release
+	}
+
+	@Override
+	public String toString() {
+		return "heap";
+	}
+
+	/*
+	 * The regular expression of a glob pattern in which * matches any characters.
+	 */
+	static Pattern globPattern(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		int start = 0;
+		for (int star = pattern.indexOf('*'); star >= 0; star = pattern.indexOf('*', start)) {
+			if (star > start) {
+				regex.append(Pattern.quote(pattern.substring(start, star)));
+			}
+			regex.append(".*");
+			start = star + 1;
+		}
+		if (start < pattern.length()) {
+			regex.append(Pattern.quote(pattern.substring(start)));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+}
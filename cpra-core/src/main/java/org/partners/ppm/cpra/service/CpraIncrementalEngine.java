@@ -0,0 +1,130 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+
+/*
+ * Keeps a calculator's intermediate state for one antibody profile so the profile can be changed one antibody at a
+ * time. Each antibody is expanded to its unacceptable antigens and the antigens are reference counted, because
+ * several antibodies can share an equivalent; the calculator specific state is only updated when an antigen becomes
+ * unacceptable (antigenAdded) or stops being unacceptable (antigenRemoved).
+ *
+ * An engine is not thread safe; callers sharing one must synchronize on it.
+ */
+public abstract class CpraIncrementalEngine {
+
+	private static final String TOKEN_KEY_SUB_DELIMITER = ";";
+
+	protected final String version;
+	protected final CpraCalculator calculator;
+
+	private final List<String> antibodies = new ArrayList<>();
+	private final Map<String, List<String>> antibodyAntigens = new HashMap<>();
+	private final TreeMap<String, Integer> antigenReferences = new TreeMap<>();  // sorted like the calculators' lists
+
+	protected CpraIncrementalEngine(String version, CpraCalculator calculator) {
+		this.version = version;
+		this.calculator = calculator;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public List<String> getAntibodies() {
+		return Collections.unmodifiableList(antibodies);
+	}
+
+	/*
+	 * Add an antibody to the profile; returns false if it is already present.
+	 */
+	public boolean addAntibody(String antibody) {
+		String ab = antibody.toUpperCase();
+		if (antibodyAntigens.containsKey(ab)) {
+			return false;
+		}
+		List<String> antigens = calculator.helperExpandAntibody(version, ab);
+		antibodies.add(ab);
+		antibodyAntigens.put(ab, antigens);
+		for (String antigen : antigens) {
+			if (antigenReferences.merge(antigen, 1, Integer::sum) == 1) {
+				antigenAdded(antigen);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * Remove an antibody from the profile; returns false if it is not present.
+	 */
+	public boolean removeAntibody(String antibody) {
+		String ab = antibody.toUpperCase();
+		List<String> antigens = antibodyAntigens.remove(ab);
+		if (antigens == null) {
+			return false;
+		}
+		antibodies.remove(ab);
+		for (String antigen : antigens) {
+			int references = antigenReferences.get(antigen) - 1;
+			if (references == 0) {
+				antigenReferences.remove(antigen);
+				antigenRemoved(antigen);
+			} else {
+				antigenReferences.put(antigen, references);
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * The response the calculator would give for the current profile.
+	 */
+	public CpraDTO getResult() {
+		CpraDTO dto = new CpraDTO();
+		dto.setVersion(version);
+		dto.setAntibodyList(new ArrayList<>(antibodies));
+		if (antibodies.isEmpty()) {
+			dto.setCalculatedPRA(0.0);
+			return dto;
+		}
+		dto.setUnacceptableAntigenList(String.join(TOKEN_KEY_SUB_DELIMITER, antigenReferences.keySet()));
+		fillResult(dto);
+		return dto;
+	}
+
+	/*
+	 * Only the overall cPRA of the current profile, for callers that evaluate many candidate profiles.
+	 */
+	public double getCalculatedPRA() {
+		return antibodies.isEmpty() ? 0.0 : calculatedPRA();
+	}
+
+	protected abstract double calculatedPRA();
+
+	protected abstract void antigenAdded(String antigen);
+
+	protected abstract void antigenRemoved(String antigen);
+
+	protected abstract void fillResult(CpraDTO dto);
+}
@@ -0,0 +1,34 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.List;
+
+/*
+ * Progress of a data set load: the configured versions once the data set files are read, then each version as it is
+ * loaded, with a snapshot of every version loaded so far, or as it fails. A version that fails to reload and keeps its
+ * previous data set is reported as kept instead. Called on the loading thread.
+ */
+public interface CpraLoadListener {
+
+	void versionsListed(List<String> versions);
+
+	void versionLoaded(String version, CpraEngineSnapshot snapshot);
+
+	void versionFailed(String version, RuntimeException e);
+
+	void versionKept(String version, CpraEngineSnapshot snapshot, RuntimeException e);
+}
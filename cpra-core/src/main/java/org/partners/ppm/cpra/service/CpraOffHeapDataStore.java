@@ -0,0 +1,230 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+
+/*
+ * The entries in direct memory, so a large data set adds almost nothing to the heap the garbage collector scans. Each
+ * entry is appended to the data buffer as key length, value length, UTF-8 key and UTF-8 value; an open addressing
+ * index of (hash, offset) slots, at most half full, finds it. A replaced value is appended again and the old entry is
+ * left unused until clear().
+ *
+ * Writes must not overlap; reads only use absolute positions, so any number of threads may read once the entries are
+ * written.
+ */
+public class CpraOffHeapDataStore implements CpraDataStore {
+
+	private static final int INITIAL_SLOTS = 1 << 12;
+	private static final int INITIAL_DATA_BYTES = 1 << 20;
+	private static final int SLOT_BYTES = 8;   // hash, offset + 1 (0 for an empty slot)
+	private static final int HEADER_BYTES = 8; // key length, value length
+
+	private ByteBuffer index;
+	private ByteBuffer data;
+	private int slots;
+	private int dataEnd;
+	private int count;
+
+	public CpraOffHeapDataStore() {
+		clear();
+	}
+
+	@Override
+	public String get(String key) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		int slot = find(keyBytes, hash(keyBytes));
+		int offset = index.getInt(slot * SLOT_BYTES + 4) - 1;
+		return offset < 0 ? null : value(offset);
+	}
+
+	@Override
+	public List<String> multiGet(List<String> keys) {
+		List<String> values = new ArrayList<>(keys.size());
+		for (String key : keys) {
+			values.add(get(key));
+		}
+		return values;
+	}
+
+	@Override
+	public Collection<String> keys(String pattern) {
+		Pattern regex = CpraHeapDataStore.globPattern(pattern);
+		List<String> keys = new ArrayList<>();
+		for (int slot = 0; slot < slots; slot++) {
+			int offset = index.getInt(slot * SLOT_BYTES + 4) - 1;
+			if (offset >= 0) {
+				String key = string(offset + HEADER_BYTES, data.getInt(offset));
+				if (regex.matcher(key).matches()) {
+					keys.add(key);
+				}
+			}
+		}
+		return keys;
+	}
+
+	@Override
+	public synchronized void putAll(Map<String, String> entries) {
+		for (Map.Entry<String, String> entry : entries.entrySet()) {
+			put(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void put(String key, String value) {
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+		long needed = (long) dataEnd + HEADER_BYTES + keyBytes.length + valueBytes.length;
+		if (needed > Integer.MAX_VALUE - 1) {
+			throw new CpraRuntimeException("The off-heap data store is full at " + dataEnd + " bytes");
+		}
+		if (needed > data.capacity()) {
+			growData((int) Math.min(Integer.MAX_VALUE - 1, Math.max(needed, 2L * data.capacity())));
+		}
+		int offset = dataEnd;
+		data.putInt(offset, keyBytes.length);
+		data.putInt(offset + 4, valueBytes.length);
+		ByteBuffer target = data.duplicate();
+		target.position(offset + HEADER_BYTES);
+		target.put(keyBytes);
+		target.put(valueBytes);
+		dataEnd = (int) needed;
+
+		int hash = hash(keyBytes);
+		int slot = find(keyBytes, hash);
+		if (index.getInt(slot * SLOT_BYTES + 4) == 0) {
+			count++;
+		}
+		index.putInt(slot * SLOT_BYTES, hash);
+		index.putInt(slot * SLOT_BYTES + 4, offset + 1);
+		if (2 * count > slots) {
+			growIndex();
+		}
+	}
+
+	/*
+	 * The slot of the key, or the empty slot where it would go.
+	 */
+	private int find(byte[] keyBytes, int hash) {
+		int mask = slots - 1;
+		for (int slot = hash & mask;; slot = (slot + 1) & mask) {
+			int offset = index.getInt(slot * SLOT_BYTES + 4) - 1;
+			if (offset < 0 || (index.getInt(slot * SLOT_BYTES) == hash && keyEquals(offset, keyBytes))) {
+				return slot;
+			}
+		}
+	}
+
+	private boolean keyEquals(int offset, byte[] keyBytes) {
+		if (data.getInt(offset) != keyBytes.length) {
+			return false;
+		}
+		int start = offset + HEADER_BYTES;
+		for (int i = 0; i < keyBytes.length; i++) {
+			if (data.get(start + i) != keyBytes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private String value(int offset) {
+		int keyLength = data.getInt(offset);
+		return string(offset + HEADER_BYTES + keyLength, data.getInt(offset + 4));
+	}
+
+	private String string(int position, int length) {
+		byte[] bytes = new byte[length];
+		ByteBuffer source = data.duplicate();
+		source.position(position);
+		source.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private void growData(int capacity) {
+		ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+		ByteBuffer source = data.duplicate();
+		source.position(0).limit(dataEnd);
+		grown.put(source);
+		data = grown;
+	}
+
+	private void growIndex() {
+		ByteBuffer old = index;
+		int oldSlots = slots;
+		slots = 2 * oldSlots;
+		index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+		int mask = slots - 1;
+		for (int i = 0; i < oldSlots; i++) {
+			int offset = old.getInt(i * SLOT_BYTES + 4);
+			if (offset != 0) {
+				int hash = old.getInt(i * SLOT_BYTES);
+				int slot = hash & mask;
+				while (index.getInt(slot * SLOT_BYTES + 4) != 0) {
+					slot = (slot + 1) & mask;
+				}
+				index.putInt(slot * SLOT_BYTES, hash);
+				index.putInt(slot * SLOT_BYTES + 4, offset);
+			}
+		}
+	}
+
+	private static int hash(byte[] bytes) {
+		int h = 0x811c9dc5;  // FNV-1a
+		for (byte b : bytes) {
+			h = (h ^ (b & 0xff)) * 0x01000193;
+		}
+		return h ^ (h >>> 16);
+	}
+
+	@Override
+	public synchronized void clear() {
+		slots = INITIAL_SLOTS;
+		index = ByteBuffer.allocateDirect(slots * SLOT_BYTES);
+		data = ByteBuffer.allocateDirect(INITIAL_DATA_BYTES);
+		dataEnd = 0;
+		count = 0;
+	}
+
+	@Override
+	public long size() {
+		return count;
+	}
+
+	/*
+	 * Direct memory held by the entries and the index.
+	 */
+	public long getOffHeapBytes() {
+		return (long) data.capacity() + index.capacity();
+	}
+
+	@Override
+	public void close() {
+		// direct buffers are released with the store
+	}
+
+	@Override
+	public String toString() {
+		return "off-heap (" + count + " entries in " + getOffHeapBytes() + " bytes)";
+	}
+}
@@ -0,0 +1,299 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.LongStream;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Materialized cPRA results for every antibody profile of 1 to maxProfileSize antigens from a version's antigen universe.
+ *
+ * The profiles of each size k are stored in one flat double[] in combinatorial number system order: the sorted
+ * antigen indexes c1 < c2 < .. < ck have rank C(c1,1) + C(c2,2) + .. + C(ck,k). Each rank owns a slot holding the
+ * overall cPRA followed by the reported ethnic cPRAs, and a reference into a shared pool of distinct warning lists
+ * (most profiles share the warnings of their single antigens). Profiles whose calculation failed are stored as NaN so
+ * the request falls through to the calculator and gets its error.
+ */
+public class CpraPrecomputedTable {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraPrecomputedTable.class);
+
+	private static final String TOKEN_KEY_SUB_DELIMITER = ";";
+
+	private final String version;
+	private final String[] ethnicities;
+	private final int slotWidth;
+	private final int maxProfileSize;
+	private final Map<String, Integer> antigenIndex;
+	private final String[] antigens;
+	private final String[][] unacceptableAntigens;  // expanded unacceptable antigens of each single antigen, sorted
+	private final long[][] binomial;
+	private final double[][] values;                // values[k-1] holds the profiles with k antigens
+	private final int[][] warningRefs;              // warningRefs[k-1][rank] indexes warningLists
+	private final List<List<String>> warningLists = new ArrayList<>();
+	private final Map<List<String>, Integer> warningListIndex = new HashMap<>();
+
+	private long materializedProfiles;
+	private long buildMillis;
+
+	private CpraPrecomputedTable(String version, String[] ethnicities, List<String> antigens, int maxProfileSize) {
+		this.version = version;
+		this.ethnicities = ethnicities;
+		this.slotWidth = 1 + ethnicities.length;
+		this.antigens = antigens.toArray(new String[0]);
+		this.antigenIndex = new HashMap<>();
+		for (int i = 0; i < this.antigens.length; i++) {
+			this.antigenIndex.put(this.antigens[i], i);
+		}
+		this.unacceptableAntigens = new String[this.antigens.length][];
+		this.binomial = binomialTable(this.antigens.length, maxProfileSize);
+
+		// limit the profile size to what fits in a single array
+		int k = 1;
+		while (k <= maxProfileSize
+				&& binomial[this.antigens.length][k] * slotWidth < Integer.MAX_VALUE - 8) {
+			k++;
+		}
+		if (k - 1 < maxProfileSize) {
+			log.warn("Precompute for version '{}' limited to profiles of {} antigens; {} antigens do not fit a table of size {}",
+					version, k - 1, this.antigens.length, maxProfileSize);
+		}
+		this.maxProfileSize = k - 1;
+		this.values = new double[this.maxProfileSize][];
+		this.warningRefs = new int[this.maxProfileSize][];
+		internWarnings(Collections.emptyList());
+	}
+
+	/*
+	 * Evaluate every profile of 1 to maxProfileSize antigens for the version with the version's calculator, in parallel
+	 * across the available cores.
+	 */
+	public static CpraPrecomputedTable build(String version, CpraCalculator calculator, int maxProfileSize) {
+		long start = System.currentTimeMillis();
+		CpraPrecomputedTable table = new CpraPrecomputedTable(version, calculator.reportedEthnicities(version),
+				calculator.antigenUniverse(version), maxProfileSize);
+		AtomicLong materialized = new AtomicLong();
+
+		for (int k = 1; k <= table.maxProfileSize; k++) {
+			final int size = k;
+			long profiles = table.binomial[table.antigens.length][size];
+			double[] v = new double[(int) (profiles * table.slotWidth)];
+			int[] w = new int[(int) profiles];
+			table.values[size - 1] = v;
+			table.warningRefs[size - 1] = w;
+			log.info("Precomputing {} profiles of {} antigens for version '{}'", profiles, size, version);
+			LongStream.range(0, profiles).parallel().forEach(rank -> {
+				if (table.evaluate(calculator, size, rank, v, w)) {
+					materialized.incrementAndGet();
+				}
+			});
+		}
+
+		table.materializedProfiles = materialized.get();
+		table.buildMillis = System.currentTimeMillis() - start;
+		log.info("Precomputed {} profiles (max {} antigens, {} antigens) for version '{}' in {} ms using {} bytes",
+				table.materializedProfiles, table.maxProfileSize, table.antigens.length, version, table.buildMillis,
+				table.getEstimatedBytes());
+		return table;
+	}
+
+	private boolean evaluate(CpraCalculator calculator, int size, long rank, double[] v, int[] w) {
+		int[] idx = unrank(rank, size);
+		int base = (int) rank * slotWidth;
+		CpraRequest request = new CpraRequest(version);
+		for (int i : idx) {
+			request.getAntibodies().add(antigens[i]);
+		}
+		CpraDTO dto;
+		try {
+			dto = calculator.calculate(request);
+		} catch (RuntimeException e) {
+			log.debug("Precompute for version '{}' skipped profile {}; {}", version, request.getAntibodies(), e.getMessage());
+			Arrays.fill(v, base, base + slotWidth, Double.NaN);
+			return false;
+		}
+		if (size == 1) {
+			String list = dto.getUnacceptableAntigenList();
+			unacceptableAntigens[idx[0]] = list == null || list.isEmpty() ? new String[0] : list.split(TOKEN_KEY_SUB_DELIMITER);
+		}
+		if (dto.getEthnicCalculatedPRA().size() != ethnicities.length) {
+			Arrays.fill(v, base, base + slotWidth, Double.NaN);
+			return false;
+		}
+		w[(int) rank] = internWarnings(dto.getWarnings());
+		v[base] = dto.getCalculatedPRA();
+		for (int e = 0; e < ethnicities.length; e++) {
+			v[base + 1 + e] = dto.getEthnicCalculatedPRA().get(e).getCalculatedPRA();
+		}
+		return true;
+	}
+
+	private synchronized int internWarnings(List<String> warnings) {
+		return warningListIndex.computeIfAbsent(warnings, it -> {
+			warningLists.add(Collections.unmodifiableList(new ArrayList<>(it)));
+			return warningLists.size() - 1;
+		});
+	}
+
+	/*
+	 * Answer the request from the table, or return null if the profile is not materialized.
+	 */
+	public CpraDTO lookup(CpraRequest request) {
+		List<String> antibodyList = request.getAntibodies();
+		if (antibodyList.isEmpty()) {
+			return null;
+		}
+
+		// canonical profile: the sorted, distinct antigen indexes
+		int[] idx = new int[maxProfileSize];
+		int k = 0;
+		for (String antibody : antibodyList) {
+			Integer i = antigenIndex.get(antibody.toUpperCase());
+			if (i == null) {
+				return null;
+			}
+			boolean duplicate = false;
+			for (int j = 0; j < k; j++) {
+				duplicate |= idx[j] == i;
+			}
+			if (!duplicate) {
+				if (k == maxProfileSize) {
+					return null;
+				}
+				idx[k++] = i;
+			}
+		}
+		Arrays.sort(idx, 0, k);
+		long rank = 0;
+		for (int i = 0; i < k; i++) {
+			rank += binomial[idx[i]][i + 1];
+		}
+		double[] v = values[k - 1];
+		int base = (int) rank * slotWidth;
+		if (Double.isNaN(v[base])) {
+			return null;
+		}
+
+		TreeSet<String> unacceptable = new TreeSet<>();
+		for (int i = 0; i < k; i++) {
+			if (unacceptableAntigens[idx[i]] == null) {
+				return null;
+			}
+			unacceptable.addAll(Arrays.asList(unacceptableAntigens[idx[i]]));
+		}
+
+		// build the same response the calculator would
+		antibodyList.replaceAll(String::toUpperCase);
+		CpraDTO dto = new CpraDTO();
+		dto.setVersion(version);
+		dto.setAntibodyList(antibodyList);
+		dto.setUnacceptableAntigenList(String.join(TOKEN_KEY_SUB_DELIMITER, unacceptable));
+		for (String warning : warningLists.get(warningRefs[k - 1][(int) rank])) {
+			dto.addWarning(warning);
+		}
+		for (int e = 0; e < ethnicities.length; e++) {
+			dto.addEthnicCalculatedPRA(ethnicities[e], v[base + 1 + e]);
+		}
+		dto.setCalculatedPRA(v[base]);
+		return dto;
+	}
+
+	private int[] unrank(long rank, int size) {
+		int[] idx = new int[size];
+		int c = antigens.length - 1;
+		long r = rank;
+		for (int i = size; i >= 1; i--) {
+			while (binomial[c][i] > r) {
+				c--;
+			}
+			idx[i - 1] = c;
+			r -= binomial[c][i];
+			c--;
+		}
+		return idx;
+	}
+
+	private static long[][] binomialTable(int n, int k) {
+		long[][] c = new long[n + 1][k + 1];
+		for (int i = 0; i <= n; i++) {
+			c[i][0] = 1;
+			for (int j = 1; j <= Math.min(i, k); j++) {
+				c[i][j] = c[i - 1][j - 1] + (j < i ? c[i - 1][j] : 0);
+			}
+		}
+		return c;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public int getMaxProfileSize() {
+		return maxProfileSize;
+	}
+
+	public int getAntigenCount() {
+		return antigens.length;
+	}
+
+	public long getMaterializedProfiles() {
+		return materializedProfiles;
+	}
+
+	public long getBuildMillis() {
+		return buildMillis;
+	}
+
+	/*
+	 * Approximate heap used by the table: the value arrays plus the antigen index and single antigen expansions.
+	 */
+	public long getEstimatedBytes() {
+		long bytes = 0;
+		for (double[] v : values) {
+			bytes += 16L + 8L * v.length;
+		}
+		for (int[] w : warningRefs) {
+			bytes += 16L + 4L * w.length;
+		}
+		for (List<String> warnings : warningLists) {
+			for (String warning : warnings) {
+				bytes += 48L + 2L * warning.length();
+			}
+		}
+		for (int i = 0; i < antigens.length; i++) {
+			bytes += 64L + 2L * antigens[i].length();  // antigen string and index entry
+			if (unacceptableAntigens[i] != null) {
+				for (String ua : unacceptableAntigens[i]) {
+					bytes += 48L + 2L * ua.length();
+				}
+			}
+		}
+		bytes += 8L * binomial.length * binomial[0].length;
+		return bytes;
+	}
+}
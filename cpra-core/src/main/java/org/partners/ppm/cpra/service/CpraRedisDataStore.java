@@ -0,0 +1,702 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/*
+ * The entries in a Redis server (or anything speaking its protocol, RESP), so many stateless nodes can share one data
+ * set instead of each holding it: redis://[:password@]host[:port][/database]. Keys are stored under the key prefix,
+ * so several data sets can share a server.
+ *
+ * Each load writes into a generation of its own, <prefix><generation>:<key>, numbered by INCR <prefix>generation, and
+ * publish() makes it current by setting <prefix>current once the load is complete. A read-only store reads the
+ * generation current when it is first read and stays on it, so a snapshot never sees entries of two loads; the node
+ * loads again to follow the pointer (isCurrent()).
+ *
+ * Every node holds a lease, <prefix>lease:<generation>:<node>, on each generation it reads, which expires after
+ * LEASE_MILLIS unless the node renews it. publish() deletes the generations nobody holds a lease on, except the one
+ * current until then, which a node may have just started to read; retire() and close() give a node's leases up.
+ * A generation has a marker, <prefix><generation>:live, written before its entries and deleted before them, which
+ * every read fetches last: a store whose generation was deleted anyway, e.g. after its node failed to renew the lease,
+ * throws rather than calculate with missing frequencies, and isCurrent() tells the node to load again.
+ *
+ * multiGet() sends MGETs of up to BATCH_KEYS keys back to back and then reads the replies, one round trip however
+ * many keys; putAll() does the same with MSET. Connections are pooled, up to poolSize, shared by the stores of all
+ * loads (next()) and dropped after an I/O error.
+ */
+public class CpraRedisDataStore implements CpraDataStore {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraRedisDataStore.class);
+
+	public static final String SCHEME = "redis";
+	private static final int DEFAULT_PORT = 6379;
+	static final int BATCH_KEYS = 1000;
+	private static final byte[] CRLF = { '\r', '\n' };
+	static final String CURRENT_KEY = "current";
+	static final String GENERATION_KEY = "generation";
+	static final String LEASE_KEY = "lease:";
+	static final String LIVE_KEY = "live";
+	static final long LEASE_MILLIS = 60000;
+
+	private final Pool pool;
+	private final boolean readOnly;
+	private volatile String generation;
+	private boolean retired;
+
+	public CpraRedisDataStore(URI uri, String keyPrefix, int poolSize, int timeoutMillis, boolean readOnly) {
+		this(new Pool(uri, keyPrefix, poolSize, timeoutMillis), readOnly);
+	}
+
+	private CpraRedisDataStore(Pool pool, boolean readOnly) {
+		this.pool = pool;
+		this.readOnly = readOnly;
+	}
+
+	/*
+	 * The store of the next load, on the same connections: a new generation, or for a read-only store the one current
+	 * when it is first read.
+	 */
+	public CpraRedisDataStore next() {
+		return new CpraRedisDataStore(pool, readOnly);
+	}
+
+	@Override
+	public String get(String key) {
+		String prefix = prefix();
+		return pool.execute(c -> {
+			c.send(Arrays.asList("GET", prefix + key));
+			c.send(Arrays.asList("GET", prefix + LIVE_KEY));
+			c.flush();
+			String value = string((byte[]) c.reply());
+			checkLive(c.reply());
+			return value;
+		});
+	}
+
+	@Override
+	public List<String> multiGet(List<String> keys) {
+		if (keys.isEmpty()) {
+			return new ArrayList<>();
+		}
+		String prefix = prefix();
+		return pool.execute(c -> {
+			for (int start = 0; start < keys.size(); start += BATCH_KEYS) {
+				List<String> command = new ArrayList<>();
+				command.add("MGET");
+				for (String key : keys.subList(start, Math.min(keys.size(), start + BATCH_KEYS))) {
+					command.add(prefix + key);
+				}
+				c.send(command);
+			}
+			// the marker last: if it is still there, so were the entries the MGETs before it read
+			c.send(Arrays.asList("GET", prefix + LIVE_KEY));
+			c.flush();
+			List<String> values = new ArrayList<>(keys.size());
+			for (int start = 0; start < keys.size(); start += BATCH_KEYS) {
+				for (Object value : (List<?>) c.reply()) {
+					values.add(string((byte[]) value));
+				}
+			}
+			checkLive(c.reply());
+			return values;
+		});
+	}
+
+	@Override
+	public Collection<String> keys(String pattern) {
+		String prefix = prefix();
+		Set<String> keys = new HashSet<>();
+		for (String key : pool.scan(escapeGlob(prefix) + escapeGlob(pattern).replace("\\*", "*"))) {
+			keys.add(key.substring(prefix.length()));
+		}
+		keys.remove(LIVE_KEY);
+		checkLive(pool.execute(c -> c.call("GET", prefix + LIVE_KEY)));
+		return keys;
+	}
+
+	@Override
+	public void putAll(Map<String, String> entries) {
+		if (readOnly || entries.isEmpty()) {
+			return;
+		}
+		String prefix = prefix();
+		pool.execute(c -> {
+			List<String> command = new ArrayList<>();
+			int batches = 0;
+			for (Map.Entry<String, String> entry : entries.entrySet()) {
+				if (command.isEmpty()) {
+					command.add("MSET");
+				}
+				command.add(prefix + entry.getKey());
+				command.add(entry.getValue());
+				if (command.size() > 2 * BATCH_KEYS) {
+					c.send(command);
+					command.clear();
+					batches++;
+				}
+			}
+			if (!command.isEmpty()) {
+				c.send(command);
+				batches++;
+			}
+			c.flush();
+			for (int i = 0; i < batches; i++) {
+				c.reply();
+			}
+			return null;
+		});
+	}
+
+	@Override
+	public void clear() {
+		if (readOnly) {
+			return;
+		}
+		String prefix = prefix();
+		List<String> keys = pool.scan(escapeGlob(prefix) + "*");
+		keys.remove(prefix + LIVE_KEY);
+		pool.delete(keys);
+	}
+
+	@Override
+	public long size() {
+		return keys("*").size();
+	}
+
+	@Override
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	@Override
+	public boolean isShared() {
+		return true;
+	}
+
+	/*
+	 * Make this store's generation current, then delete the generations that no node holds a lease on and that were
+	 * not current until now; their markers first, so a store still reading one throws instead of missing entries.
+	 */
+	@Override
+	public void publish() {
+		if (readOnly) {
+			return;
+		}
+		String published = generation();
+		String previous = pool.published();
+		pool.execute(c -> c.call("SET", pool.keyPrefix + CURRENT_KEY, published));
+		Set<String> kept = pool.leased();
+		kept.addAll(pool.live.keySet());
+		kept.add(published);
+		if (previous != null) {
+			kept.add(previous);
+		}
+		List<String> markers = new ArrayList<>();
+		List<String> stale = new ArrayList<>();
+		for (String key : pool.scan(escapeGlob(pool.keyPrefix) + "*")) {
+			String g = generationOf(key);
+			if (g != null && !kept.contains(g)) {
+				(key.equals(pool.keyPrefix + g + ":" + LIVE_KEY) ? markers : stale).add(key);
+			}
+		}
+		pool.delete(markers);
+		pool.delete(stale);
+		log.info("Published generation {} to the Redis data store {}; deleted {} entries of {} earlier generations",
+				published, this, stale.size(), markers.size());
+	}
+
+	/*
+	 * Give up this store's lease on its generation, unless other stores of this node read it too.
+	 */
+	@Override
+	public synchronized void retire() {
+		if (generation != null && !retired) {
+			retired = true;
+			pool.release(generation);
+		}
+	}
+
+	/*
+	 * False once the generation was deleted, and for a read-only store once another generation was published.
+	 */
+	@Override
+	public boolean isCurrent() {
+		String g = generation;
+		if (g == null) {
+			return true;
+		}
+		if (pool.execute(c -> c.call("GET", pool.keyPrefix + g + ":" + LIVE_KEY)) == null) {
+			return false;
+		}
+		return !readOnly || g.equals(pool.published());
+	}
+
+	/*
+	 * Closes the connections of the stores of all loads.
+	 */
+	@Override
+	public void close() {
+		pool.close();
+	}
+
+	@Override
+	public String toString() {
+		String g = generation;
+		return "Redis " + pool.uri.getHost() + ":" + pool.port() + pool.database() + " under '" + pool.keyPrefix + "'"
+				+ (g != null ? " generation " + g : "") + (readOnly ? " (read-only)" : "");
+	}
+
+	/*
+	 * The key prefix of this store's generation.
+	 */
+	String prefix() {
+		return pool.keyPrefix + generation() + ":";
+	}
+
+	/*
+	 * This store's generation, taken and leased on first use: the next generation number, with its marker, or for a
+	 * read-only store the current generation.
+	 */
+	private String generation() {
+		String g = generation;
+		if (g != null) {
+			return g;
+		}
+		synchronized (this) {
+			if (generation == null) {
+				if (readOnly) {
+					g = pool.published();
+					if (g == null) {
+						throw new CpraRuntimeException("No data sets have been published to the Redis data store " + this);
+					}
+				} else {
+					Object next = pool.execute(c -> c.call("INCR", pool.keyPrefix + GENERATION_KEY));
+					g = String.valueOf(next);
+				}
+				pool.acquire(g);
+				if (!readOnly) {
+					String marker = pool.keyPrefix + g + ":" + LIVE_KEY;
+					pool.execute(c -> c.call("SET", marker, "1"));
+				}
+				generation = g;
+			}
+			return generation;
+		}
+	}
+
+	private void checkLive(Object marker) {
+		if (marker == null) {
+			throw new CpraRuntimeException("Generation " + generation + " of the Redis data store " + pool
+					+ " has been deleted; its data sets have to be loaded again");
+		}
+	}
+
+	/*
+	 * The generation of a key under the key prefix, or null for the pointer, the counter and keys of other layouts.
+	 */
+	private String generationOf(String key) {
+		int start = pool.keyPrefix.length();
+		int end = key.indexOf(':', start);
+		if (end <= start) {
+			return null;
+		}
+		for (int i = start; i < end; i++) {
+			if (!Character.isDigit(key.charAt(i))) {
+				return null;
+			}
+		}
+		return key.substring(start, end);
+	}
+
+	private static String string(byte[] bytes) {
+		return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+	}
+
+	private static String escapeGlob(String s) {
+		StringBuilder sb = new StringBuilder();
+		for (char ch : s.toCharArray()) {
+			if (ch == '*' || ch == '?' || ch == '[' || ch == ']' || ch == '\\') {
+				sb.append('\\');
+			}
+			sb.append(ch);
+		}
+		return sb.toString();
+	}
+
+	private interface Call<T> {
+		T apply(Connection connection) throws IOException;
+	}
+
+	/*
+	 * The connections to the server and the leases of this node, shared by the stores of all loads.
+	 */
+	private static final class Pool {
+
+		private final URI uri;
+		private final String keyPrefix;
+		private final int timeoutMillis;
+		private final BlockingQueue<Connection> idle;
+		private final Semaphore permits;
+		private final String node = UUID.randomUUID().toString();
+		private final Map<String, Integer> live = new ConcurrentHashMap<>();  // stores reading each leased generation
+		private final ScheduledExecutorService renewer;
+		private volatile boolean closed;
+
+		Pool(URI uri, String keyPrefix, int poolSize, int timeoutMillis) {
+			if (!SCHEME.equals(uri.getScheme()) || uri.getHost() == null) {
+				throw new CpraRuntimeException("Invalid Redis data store '" + uri + "'; expected redis://host:port/database");
+			}
+			this.uri = uri;
+			this.keyPrefix = keyPrefix != null ? keyPrefix : "";
+			this.timeoutMillis = timeoutMillis;
+			this.idle = new ArrayBlockingQueue<>(poolSize);
+			this.permits = new Semaphore(poolSize);
+			this.renewer = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("cpra-redis-lease").setDaemon(true).build());
+			renewer.scheduleWithFixedDelay(this::renew, LEASE_MILLIS / 3, LEASE_MILLIS / 3, TimeUnit.MILLISECONDS);
+		}
+
+		String published() {
+			return string((byte[]) execute(c -> c.call("GET", keyPrefix + CURRENT_KEY)));
+		}
+
+		void acquire(String generation) {
+			live.merge(generation, 1, Integer::sum);
+			lease(generation);
+		}
+
+		void release(String generation) {
+			if (live.computeIfPresent(generation, (g, stores) -> stores > 1 ? stores - 1 : null) == null) {
+				try {
+					execute(c -> c.call("DEL", leaseKey(generation)));
+				} catch (CpraRuntimeException e) {
+					log.warn("Giving up the lease on generation {} of {} failed, it expires by itself; {}", generation,
+							this, e.getMessage());
+				}
+			}
+		}
+
+		/*
+		 * The generations any node holds a lease on.
+		 */
+		Set<String> leased() {
+			String leases = keyPrefix + LEASE_KEY;
+			Set<String> generations = new HashSet<>();
+			for (String key : scan(escapeGlob(leases) + "*")) {
+				int end = key.indexOf(':', leases.length());
+				if (end > leases.length()) {
+					generations.add(key.substring(leases.length(), end));
+				}
+			}
+			return generations;
+		}
+
+		private void lease(String generation) {
+			execute(c -> c.call("SET", leaseKey(generation), node, "PX", String.valueOf(LEASE_MILLIS)));
+		}
+
+		private void renew() {
+			for (String generation : live.keySet()) {
+				try {
+					lease(generation);
+				} catch (RuntimeException e) {
+					log.warn("Renewing the lease on generation {} of {} failed; {}", generation, this, e.getMessage());
+				}
+			}
+		}
+
+		private String leaseKey(String generation) {
+			return keyPrefix + LEASE_KEY + generation + ":" + node;
+		}
+
+		/*
+		 * The keys matching a SCAN MATCH pattern, prefix included.
+		 */
+		List<String> scan(String match) {
+			return execute(c -> {
+				// SCAN instead of KEYS, which would block the server while it goes through every key
+				Set<String> keys = new HashSet<>();
+				String cursor = "0";
+				do {
+					List<?> reply = (List<?>) c.call("SCAN", cursor, "MATCH", match, "COUNT", String.valueOf(BATCH_KEYS));
+					cursor = string((byte[]) reply.get(0));
+					for (Object key : (List<?>) reply.get(1)) {
+						keys.add(string((byte[]) key));
+					}
+				} while (!"0".equals(cursor));
+				return new ArrayList<>(keys);
+			});
+		}
+
+		void delete(List<String> keys) {
+			if (keys.isEmpty()) {
+				return;
+			}
+			execute(c -> {
+				int batches = 0;
+				for (int start = 0; start < keys.size(); start += BATCH_KEYS) {
+					List<String> command = new ArrayList<>();
+					command.add("DEL");
+					command.addAll(keys.subList(start, Math.min(keys.size(), start + BATCH_KEYS)));
+					c.send(command);
+					batches++;
+				}
+				c.flush();
+				for (int i = 0; i < batches; i++) {
+					c.reply();
+				}
+				return null;
+			});
+		}
+
+		/*
+		 * Give up this node's leases, so the next publish can delete what only this node read, e.g. after a batch run.
+		 */
+		void close() {
+			renewer.shutdownNow();
+			if (!closed && !live.isEmpty()) {
+				List<String> leases = new ArrayList<>();
+				for (String generation : live.keySet()) {
+					leases.add(leaseKey(generation));
+				}
+				live.clear();
+				try {
+					delete(leases);
+				} catch (CpraRuntimeException e) {
+					log.warn("Giving up the leases of {} failed, they expire by themselves; {}", this, e.getMessage());
+				}
+			}
+			closed = true;
+			Connection c;
+			while ((c = idle.poll()) != null) {
+				c.close();
+			}
+		}
+
+		/*
+		 * Run the call on a pooled connection. A connection that failed, or got an error reply, may still have replies
+		 * pending, so it is closed rather than returned to the pool.
+		 */
+		<T> T execute(Call<T> call) {
+			if (closed) {
+				throw new CpraRuntimeException("The Redis data store " + this + " is closed");
+			}
+			try {
+				if (!permits.tryAcquire(timeoutMillis, TimeUnit.MILLISECONDS)) {
+					throw new CpraRuntimeException("No connection to the Redis data store " + this + " within " + timeoutMillis + " ms");
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new CpraRuntimeException("Interrupted waiting for a connection to the Redis data store " + this);
+			}
+			Connection c = idle.poll();
+			boolean reusable = false;
+			try {
+				if (c == null) {
+					c = connect();
+				}
+				T result = call.apply(c);
+				reusable = true;
+				return result;
+			} catch (IOException e) {
+				log.warn("Redis data store {} failed; {}", this, e.getMessage());
+				throw new CpraRuntimeException("Redis data store " + this + " failed; " + e.getMessage());
+			} finally {
+				if (c != null && !(reusable && idle.offer(c))) {
+					c.close();
+				}
+				permits.release();
+			}
+		}
+
+		private Connection connect() throws IOException {
+			Socket socket = new Socket();
+			socket.connect(new InetSocketAddress(uri.getHost(), port()), timeoutMillis);
+			socket.setSoTimeout(timeoutMillis);
+			socket.setTcpNoDelay(true);
+			Connection c = new Connection(socket);
+			try {
+				String userInfo = uri.getUserInfo();
+				if (userInfo != null && !userInfo.isEmpty()) {
+					c.call("AUTH", userInfo.substring(userInfo.indexOf(':') + 1));
+				}
+				if (!database().isEmpty()) {
+					c.call("SELECT", database().substring(1));
+				}
+			} catch (IOException | RuntimeException e) {
+				c.close();
+				throw e;
+			}
+			log.debug("Connected to the Redis data store {}", this);
+			return c;
+		}
+
+		private int port() {
+			return uri.getPort() > 0 ? uri.getPort() : DEFAULT_PORT;
+		}
+
+		private String database() {
+			String path = uri.getPath();
+			return path != null && path.length() > 1 ? path : "";
+		}
+
+		@Override
+		public String toString() {
+			return "Redis " + uri.getHost() + ":" + port() + database() + " under '" + keyPrefix + "'";
+		}
+	}
+
+	/*
+	 * One RESP connection: commands go out as arrays of bulk strings; replies are a String (simple string), a Long, a
+	 * byte[] (bulk string, null if missing) or a List of these. An error reply throws CpraRuntimeException.
+	 */
+	private static final class Connection {
+
+		private final Socket socket;
+		private final OutputStream out;
+		private final InputStream in;
+
+		Connection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.out = new BufferedOutputStream(socket.getOutputStream(), 1 << 16);
+			this.in = new BufferedInputStream(socket.getInputStream(), 1 << 16);
+		}
+
+		Object call(String... command) throws IOException {
+			List<String> list = new ArrayList<>();
+			for (String part : command) {
+				list.add(part);
+			}
+			send(list);
+			flush();
+			return reply();
+		}
+
+		void send(List<String> command) throws IOException {
+			out.write('*');
+			out.write(Integer.toString(command.size()).getBytes(StandardCharsets.US_ASCII));
+			out.write(CRLF);
+			for (String part : command) {
+				byte[] bytes = part.getBytes(StandardCharsets.UTF_8);
+				out.write('$');
+				out.write(Integer.toString(bytes.length).getBytes(StandardCharsets.US_ASCII));
+				out.write(CRLF);
+				out.write(bytes);
+				out.write(CRLF);
+			}
+		}
+
+		void flush() throws IOException {
+			out.flush();
+		}
+
+		Object reply() throws IOException {
+			int type = in.read();
+			switch (type) {
+			case '+':
+				return line();
+			case '-':
+				throw new CpraRuntimeException("Redis data store error; " + line());
+			case ':':
+				return Long.parseLong(line());
+			case '$': {
+				int length = Integer.parseInt(line());
+				if (length < 0) {
+					return null;
+				}
+				byte[] bytes = new byte[length];
+				int read = 0;
+				while (read < length) {
+					int n = in.read(bytes, read, length - read);
+					if (n < 0) {
+						throw new EOFException("Connection closed by the Redis server");
+					}
+					read += n;
+				}
+				in.read();
+				in.read();
+				return bytes;
+			}
+			case '*': {
+				int length = Integer.parseInt(line());
+				if (length < 0) {
+					return null;
+				}
+				List<Object> list = new ArrayList<>(length);
+				for (int i = 0; i < length; i++) {
+					list.add(reply());
+				}
+				return list;
+			}
+			case -1:
+				throw new EOFException("Connection closed by the Redis server");
+			default:
+				throw new IOException("Unexpected reply type '" + (char) type + "' from the Redis server");
+			}
+		}
+
+		private String line() throws IOException {
+			StringBuilder sb = new StringBuilder();
+			for (int ch = in.read(); ch != '\r'; ch = in.read()) {
+				if (ch < 0) {
+					throw new EOFException("Connection closed by the Redis server");
+				}
+				sb.append((char) ch);
+			}
+			in.read();
+			return sb.toString();
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException e) {
+				// already broken
+			}
+		}
+	}
+}
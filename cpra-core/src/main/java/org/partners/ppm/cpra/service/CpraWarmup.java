@@ -0,0 +1,251 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Runs the calculators on synthetic antibody profiles until the JIT has compiled their hot paths, so the first real
+ * requests are not served by the interpreter. The profiles are drawn from each version's own antigen universe, and
+ * each goes through every calculator path: the cost estimate, the precomputed table or the calculator, the calculator
+ * directly, the incremental engine and, every few profiles, the contribution breakdown.
+ *
+ * Throughput is measured over consecutive windows; warm-up stops once it has changed by no more than the tolerance for
+ * STABLE_WINDOWS windows in a row, or when the time budget is used up. Throughput also levels off while the methods
+ * run as C1 code, waiting for C2 to compile them after around ten thousand invocations, so windows only count once
+ * every profile has been calculated MIN_ROUNDS times.
+ */
+public final class CpraWarmup {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraWarmup.class);
+
+	public static final long DEFAULT_WINDOW_MILLIS = 500;
+	public static final double DEFAULT_TOLERANCE = 0.10;
+	public static final int DEFAULT_MAX_PROFILE_SIZE = 10;
+
+	static final int STABLE_WINDOWS = 3;
+	static final int MIN_ROUNDS = 20;
+	static final long MAX_PROFILE_COST = 100000;
+	static final int PROFILES_PER_VERSION = 256;
+	private static final int CONTRIBUTIONS_EVERY = 8;
+	private static final long SEED = 20160101L;
+
+	private final CpraEngineSnapshot snapshot;
+	private final long timeBudgetMillis;
+	private final long windowMillis;
+	private final double tolerance;
+	private final int threads;
+	private final int maxProfileSize;
+
+	private final AtomicLong profiles = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private volatile boolean stopped;
+
+	/*
+	 * Warm up the snapshot's versions on the given number of threads (0 = one per core) with profiles of 1 to
+	 * maxProfileSize antibodies.
+	 */
+	public CpraWarmup(CpraEngineSnapshot snapshot, long timeBudgetMillis, long windowMillis, double tolerance,
+			int threads, int maxProfileSize) {
+		this.snapshot = snapshot;
+		this.timeBudgetMillis = timeBudgetMillis;
+		this.windowMillis = windowMillis;
+		this.tolerance = tolerance;
+		this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+		this.maxProfileSize = Math.max(1, maxProfileSize);
+	}
+
+	/*
+	 * Run the warm-up; returns when throughput is stable or the budget is used up, or when interrupted.
+	 */
+	public Result run() {
+		long start = System.currentTimeMillis();
+		List<CpraRequest> profileSet = profileSet();
+		log.info("Warming up the calculators of {} with {} profiles on {} threads (budget {} ms)",
+				snapshot.getVersionList(), profileSet.size(), threads, timeBudgetMillis);
+
+		long minProfiles = (long) MIN_ROUNDS * profileSet.size();
+		List<Thread> workers = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			int offset = i * profileSet.size() / threads;
+			Thread worker = new Thread(() -> work(profileSet, offset), "cpra-warmup-" + (i + 1));
+			worker.setDaemon(true);
+			workers.add(worker);
+			worker.start();
+		}
+
+		double throughput = 0.0;
+		int stableWindows = 0;
+		int windows = 0;
+		try {
+			long deadline = start + timeBudgetMillis;
+			long windowStart = System.nanoTime();
+			long windowProfiles = profiles.get();
+			while (stableWindows < STABLE_WINDOWS) {
+				long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					break;
+				}
+				Thread.sleep(Math.min(windowMillis, remaining));
+				long now = System.nanoTime();
+				long count = profiles.get();
+				double windowThroughput = (count - windowProfiles) * 1e9 / Math.max(1, now - windowStart);
+				if (count >= minProfiles && windows > 0
+						&& Math.abs(windowThroughput - throughput) <= tolerance * throughput) {
+					stableWindows++;
+				} else {
+					stableWindows = 0;
+				}
+				log.debug("Warm-up window {}: {} profiles/s", windows, Math.round(windowThroughput));
+				throughput = windowThroughput;
+				windowStart = now;
+				windowProfiles = count;
+				windows++;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			stopped = true;
+			for (Thread worker : workers) {
+				try {
+					worker.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}
+		Result result = new Result(System.currentTimeMillis() - start, profiles.get(), failures.get(), throughput,
+				stableWindows >= STABLE_WINDOWS);
+		log.info("Warmed up the calculators with {} profiles in {} ms; {} profiles/s, {}", result.getProfiles(),
+				result.getDurationMillis(), Math.round(result.getThroughput()),
+				result.isStable() ? "stable" : "not yet stable when the budget ran out");
+		return result;
+	}
+
+	/*
+	 * PROFILES_PER_VERSION profiles of each version, of 1 to maxProfileSize antibodies drawn from the version's antigen
+	 * universe, leaving out those estimated above MAX_PROFILE_COST. The workers go round the same set, so the work of a
+	 * window does not change and its throughput only changes as the code gets faster.
+	 */
+	private List<CpraRequest> profileSet() {
+		Random random = new Random(SEED);
+		List<CpraRequest> profileSet = new ArrayList<>();
+		for (String version : snapshot.getVersionList()) {
+			CpraCalculator calculator = snapshot.calculatorFor(version);
+			List<String> universe = calculator.antigenUniverse(version);
+			for (int n = 0; n < PROFILES_PER_VERSION && !universe.isEmpty(); n++) {
+				List<String> antibodies = new ArrayList<>();
+				int size = 1 + random.nextInt(maxProfileSize);
+				for (int i = 0; i < size; i++) {
+					antibodies.add(universe.get(random.nextInt(universe.size())));
+				}
+				if (calculator.estimateCost(version, antibodies) <= MAX_PROFILE_COST) {
+					profileSet.add(request(version, antibodies));
+				}
+			}
+		}
+		return profileSet;
+	}
+
+	private void work(List<CpraRequest> profileSet, int offset) {
+		for (long n = offset; !stopped && !profileSet.isEmpty(); n++) {
+			CpraRequest profile = profileSet.get((int) (n % profileSet.size()));
+			try {
+				profile(profile.getVersion(), profile.getAntibodies(), n % CONTRIBUTIONS_EVERY == 0);
+				profiles.incrementAndGet();
+			} catch (RuntimeException e) {
+				// any failing profile is counted, so one bad profile does not stop the worker
+				failures.incrementAndGet();
+			}
+		}
+	}
+
+	/*
+	 * Calculate the profile every way a request can.
+	 */
+	private void profile(String version, List<String> antibodies, boolean contributions) {
+		CpraCalculator calculator = snapshot.calculatorFor(version);
+		calculator.estimateCost(version, antibodies);
+		snapshot.calculate(version, request(version, antibodies));
+		calculator.calculate(request(version, antibodies));
+
+		CpraIncrementalEngine engine = calculator.newIncrementalEngine(version);
+		for (String antibody : antibodies) {
+			engine.addAntibody(antibody);
+		}
+		engine.getCalculatedPRA();
+		engine.removeAntibody(antibodies.get(0));
+		engine.getResult();
+
+		if (contributions) {
+			CpraContributionAnalyzer.analyze(calculator, version, antibodies);
+		}
+	}
+
+	private static CpraRequest request(String version, List<String> antibodies) {
+		CpraRequest request = new CpraRequest(version);
+		request.getAntibodies().addAll(antibodies);
+		return request;
+	}
+
+	/*
+	 * How long the warm-up took, how many profiles it calculated and the throughput of its last window, in profiles a
+	 * second; stable unless the budget ran out first.
+	 */
+	public static final class Result {
+
+		private final long durationMillis;
+		private final long profiles;
+		private final long failures;
+		private final double throughput;
+		private final boolean stable;
+
+		Result(long durationMillis, long profiles, long failures, double throughput, boolean stable) {
+			this.durationMillis = durationMillis;
+			this.profiles = profiles;
+			this.failures = failures;
+			this.throughput = throughput;
+			this.stable = stable;
+		}
+
+		public long getDurationMillis() {
+			return durationMillis;
+		}
+
+		public long getProfiles() {
+			return profiles;
+		}
+
+		public long getFailures() {
+			return failures;
+		}
+
+		public double getThroughput() {
+			return throughput;
+		}
+
+		public boolean isStable() {
+			return stable;
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.google.common.base.MoreObjects;
+
+/*
+ * Self-check figures of one allele with frequency data:
+ *   antigens       - antigens of the allele with frequency data of their own (S1 haplotypes, or diplotype members)
+ *   frequencyKeys  - frequency entries that include an antigen of the allele
+ *   frequencySums  - per ethnicity, the sum of the allele's S1 haplotype frequencies, about 1 for a complete data set
+ *                    (haplotype calculator only)
+ */
+public class CpraAlleleCheck {
+
+	private String allele;
+	private int antigens;
+	private long frequencyKeys;
+	private List<Double> frequencySums;
+
+	@JsonCreator
+	public CpraAlleleCheck() {
+		// empty constructor for annotation
+	}
+
+	public CpraAlleleCheck(String allele, int antigens, long frequencyKeys, List<Double> frequencySums) {
+		this.allele = allele;
+		this.antigens = antigens;
+		this.frequencyKeys = frequencyKeys;
+		this.frequencySums = frequencySums;
+	}
+
+	public String getAllele() {
+		return allele;
+	}
+
+	public void setAllele(String allele) {
+		this.allele = allele;
+	}
+
+	public int getAntigens() {
+		return antigens;
+	}
+
+	public void setAntigens(int antigens) {
+		this.antigens = antigens;
+	}
+
+	public long getFrequencyKeys() {
+		return frequencyKeys;
+	}
+
+	public void setFrequencyKeys(long frequencyKeys) {
+		this.frequencyKeys = frequencyKeys;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public List<Double> getFrequencySums() {
+		return frequencySums;
+	}
+
+	public void setFrequencySums(List<Double> frequencySums) {
+		this.frequencySums = frequencySums;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("allele", String.valueOf(allele))
+				.add("antigens", String.valueOf(antigens))
+				.add("frequencyKeys", String.valueOf(frequencyKeys))
+				.add("frequencySums", String.valueOf(frequencySums))
+			.toString();
+	}
+}
@@ -0,0 +1,123 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.common.base.MoreObjects;
+
+/*
+ * How much one antibody drives the patient's cPRA:
+ *   marginalPRA    - the cPRA of the antibody on its own
+ *   leaveOneOutPRA - how much the patient's cPRA drops when only this antibody is removed
+ */
+public class CpraContributionDTO {
+
+	public static class EthnicContribution {
+		private String ethnicity;
+		private double marginalPRA;
+		private double leaveOneOutPRA;
+		public String getEthnicity() {
+			return ethnicity;
+		}
+		public void setEthnicity(String ethnicity) {
+			this.ethnicity = ethnicity;
+		}
+		public double getMarginalPRA() {
+			return marginalPRA;
+		}
+		public void setMarginalPRA(double marginalPRA) {
+			this.marginalPRA = marginalPRA;
+		}
+		public double getLeaveOneOutPRA() {
+			return leaveOneOutPRA;
+		}
+		public void setLeaveOneOutPRA(double leaveOneOutPRA) {
+			this.leaveOneOutPRA = leaveOneOutPRA;
+		}
+
+		@JsonCreator
+		public EthnicContribution() {
+			// empty constructor for annotation
+		}
+
+		public String toString() {
+			return MoreObjects.toStringHelper(this)
+					.add("ethnicity", String.valueOf(ethnicity))
+					.add("marginalPRA", String.valueOf(marginalPRA))
+					.add("leaveOneOutPRA", String.valueOf(leaveOneOutPRA))
+				.toString();
+		}
+	}
+
+	private String antibody;
+	private double marginalPRA;
+	private double leaveOneOutPRA;
+	private List<EthnicContribution> ethnicContributions = new ArrayList<>();
+
+	@JsonCreator
+	public CpraContributionDTO() {
+		// empty constructor for annotation
+	}
+
+	public String getAntibody() {
+		return antibody;
+	}
+
+	public void setAntibody(String antibody) {
+		this.antibody = antibody;
+	}
+
+	public double getMarginalPRA() {
+		return marginalPRA;
+	}
+
+	public void setMarginalPRA(double marginalPRA) {
+		this.marginalPRA = marginalPRA;
+	}
+
+	public double getLeaveOneOutPRA() {
+		return leaveOneOutPRA;
+	}
+
+	public void setLeaveOneOutPRA(double leaveOneOutPRA) {
+		this.leaveOneOutPRA = leaveOneOutPRA;
+	}
+
+	public List<EthnicContribution> getEthnicContributions() {
+		return ethnicContributions;
+	}
+
+	public void addEthnicContribution(String ethnicity, double marginalPRA, double leaveOneOutPRA) {
+		EthnicContribution ec = new EthnicContribution();
+		ec.ethnicity = ethnicity;
+		ec.marginalPRA = marginalPRA;
+		ec.leaveOneOutPRA = leaveOneOutPRA;
+		ethnicContributions.add(ec);
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("antibody", String.valueOf(antibody))
+				.add("marginalPRA", String.valueOf(marginalPRA))
+				.add("leaveOneOutPRA", String.valueOf(leaveOneOutPRA))
+				.add("ethnicContributions", ethnicContributions.toString())
+			.toString();
+	}
+}
@@ -19,11 +19,18 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.base.MoreObjects;
 
+/*
+ * Written by CpraDTOSerializer; a new property has to be added there too.
+ */
+@JsonSerialize(using = CpraDTOSerializer.class)
 public class CpraDTO {
 
-	class EthnicCpra {
+	public static class EthnicCpra {
 		private String ethnicity;
 		private double calculatedPRA;
 		public String getEthnicity() {
@@ -58,6 +65,9 @@ public class CpraDTO {
 	private String unacceptableAntigenList;
 	private List<EthnicCpra> ethnicCalculatedPRA = new ArrayList<>();
 	private List<String> warnings = new ArrayList<>();
+	private List<CpraContributionDTO> contributions;
+	private List<Double> ethnicWeights;
+	private Long estimatedCost;
 
 	@JsonCreator
 	public CpraDTO() {
@@ -118,6 +128,36 @@ public class CpraDTO {
 		ethnicCalculatedPRA.add(ec);
 	}
 
+	@JsonInclude(Include.NON_NULL)
+	public List<CpraContributionDTO> getContributions() {
+		return contributions;
+	}
+
+	public void setContributions(List<CpraContributionDTO> contributions) {
+		this.contributions = contributions;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public List<Double> getEthnicWeights() {
+		return ethnicWeights;
+	}
+
+	public void setEthnicWeights(List<Double> ethnicWeights) {
+		this.ethnicWeights = ethnicWeights;
+	}
+
+	/*
+	 * The cost estimate the request was admitted with, in frequency lookups.
+	 */
+	@JsonInclude(Include.NON_NULL)
+	public Long getEstimatedCost() {
+		return estimatedCost;
+	}
+
+	public void setEstimatedCost(Long estimatedCost) {
+		this.estimatedCost = estimatedCost;
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this)
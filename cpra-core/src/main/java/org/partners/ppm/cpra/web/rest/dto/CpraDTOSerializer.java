@@ -0,0 +1,169 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyFilter;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/*
+ * Streaming serializer of CpraDTO, writing the same document as bean serialization without its per property
+ * reflection. Field names, version names and ethnicities are SerializedStrings, which keep their encoded bytes, so
+ * these constant fragments are encoded once for the life of the service whether the output is JSON, Smile or CBOR.
+ * A CpraFieldProjection in the writer's filters limits the output to the projected fields.
+ */
+public class CpraDTOSerializer extends StdSerializer<CpraDTO> {
+
+	private static final long serialVersionUID = 1L;
+
+	// the properties of CpraDTO in output order
+	static final String[] FIELDS = { "version", "calculatedPRA", "antibodyList", "unacceptableAntigenList",
+			"ethnicCalculatedPRA", "warnings", "contributions", "ethnicWeights", "estimatedCost" };
+	static final int VERSION = 0;
+	static final int CALCULATED_PRA = 1;
+	static final int ANTIBODY_LIST = 2;
+	static final int UNACCEPTABLE_ANTIGEN_LIST = 3;
+	static final int ETHNIC_CALCULATED_PRA = 4;
+	static final int WARNINGS = 5;
+	static final int CONTRIBUTIONS = 6;
+	static final int ETHNIC_WEIGHTS = 7;
+	static final int ESTIMATED_COST = 8;
+
+	private static final SerializedString[] NAMES = new SerializedString[FIELDS.length];
+	static {
+		for (int i = 0; i < FIELDS.length; i++) {
+			NAMES[i] = new SerializedString(FIELDS[i]);
+		}
+	}
+	private static final SerializedString ETHNICITY = new SerializedString("ethnicity");
+
+	// version names and ethnicities; a handful per data set
+	private static final int MAX_CONSTANTS = 1024;
+	private static final ConcurrentMap<String, SerializedString> constants = new ConcurrentHashMap<>();
+
+	public CpraDTOSerializer() {
+		super(CpraDTO.class);
+	}
+
+	@Override
+	public void serialize(CpraDTO dto, JsonGenerator gen, SerializerProvider provider) throws IOException {
+		CpraFieldProjection projection = projection(provider, dto);
+		gen.writeStartObject(dto);
+		if (includes(projection, VERSION)) {
+			gen.writeFieldName(NAMES[VERSION]);
+			writeConstant(gen, dto.getVersion());
+		}
+		if (includes(projection, CALCULATED_PRA)) {
+			gen.writeFieldName(NAMES[CALCULATED_PRA]);
+			gen.writeNumber(dto.getCalculatedPRA());
+		}
+		if (includes(projection, ANTIBODY_LIST)) {
+			gen.writeFieldName(NAMES[ANTIBODY_LIST]);
+			writeStrings(gen, dto.getAntibodyList());
+		}
+		if (includes(projection, UNACCEPTABLE_ANTIGEN_LIST)) {
+			gen.writeFieldName(NAMES[UNACCEPTABLE_ANTIGEN_LIST]);
+			gen.writeString(dto.getUnacceptableAntigenList());
+		}
+		if (includes(projection, ETHNIC_CALCULATED_PRA)) {
+			gen.writeFieldName(NAMES[ETHNIC_CALCULATED_PRA]);
+			gen.writeStartArray();
+			for (CpraDTO.EthnicCpra ec : dto.getEthnicCalculatedPRA()) {
+				gen.writeStartObject();
+				gen.writeFieldName(ETHNICITY);
+				writeConstant(gen, ec.getEthnicity());
+				gen.writeFieldName(NAMES[CALCULATED_PRA]);
+				gen.writeNumber(ec.getCalculatedPRA());
+				gen.writeEndObject();
+			}
+			gen.writeEndArray();
+		}
+		if (includes(projection, WARNINGS)) {
+			gen.writeFieldName(NAMES[WARNINGS]);
+			writeStrings(gen, dto.getWarnings());
+		}
+		if (dto.getContributions() != null && includes(projection, CONTRIBUTIONS)) {
+			gen.writeFieldName(NAMES[CONTRIBUTIONS]);
+			provider.defaultSerializeValue(dto.getContributions(), gen);
+		}
+		if (dto.getEthnicWeights() != null && includes(projection, ETHNIC_WEIGHTS)) {
+			gen.writeFieldName(NAMES[ETHNIC_WEIGHTS]);
+			gen.writeStartArray();
+			for (Double weight : dto.getEthnicWeights()) {
+				if (weight == null) {
+					gen.writeNull();
+				} else {
+					gen.writeNumber(weight);
+				}
+			}
+			gen.writeEndArray();
+		}
+		if (dto.getEstimatedCost() != null && includes(projection, ESTIMATED_COST)) {
+			gen.writeFieldName(NAMES[ESTIMATED_COST]);
+			gen.writeNumber(dto.getEstimatedCost());
+		}
+		gen.writeEndObject();
+	}
+
+	private static CpraFieldProjection projection(SerializerProvider provider, CpraDTO dto) {
+		FilterProvider filters = provider.getFilterProvider();
+		if (filters == null) {
+			return null;
+		}
+		PropertyFilter filter = filters.findPropertyFilter(CpraFieldProjection.FILTER_ID, dto);
+		return filter instanceof CpraFieldProjection ? (CpraFieldProjection) filter : null;
+	}
+
+	private static boolean includes(CpraFieldProjection projection, int field) {
+		return projection == null || projection.includes(field);
+	}
+
+	private static void writeStrings(JsonGenerator gen, List<String> values) throws IOException {
+		if (values == null) {
+			gen.writeNull();
+			return;
+		}
+		gen.writeStartArray();
+		for (String value : values) {
+			gen.writeString(value);
+		}
+		gen.writeEndArray();
+	}
+
+	private static void writeConstant(JsonGenerator gen, String value) throws IOException {
+		if (value == null) {
+			gen.writeNull();
+			return;
+		}
+		SerializedString constant = constants.get(value);
+		if (constant == null) {
+			if (constants.size() >= MAX_CONSTANTS) {
+				gen.writeString(value);
+				return;
+			}
+			constant = constants.computeIfAbsent(value, SerializedString::new);
+		}
+		gen.writeString(constant);
+	}
+}
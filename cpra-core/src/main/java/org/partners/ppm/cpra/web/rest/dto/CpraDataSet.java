@@ -29,6 +29,8 @@ public class CpraDataSet {
 	protected List<String> ethnicFrequencies;
 	protected List<String> hlaAlleles;
 	protected List<String> hlaAllelesWithFrequencies;
+	protected long frequencyKeys;
+	protected List<CpraAlleleCheck> alleleChecks = new ArrayList<>();
 	protected List<String> warnings;
 
 	/**
@@ -129,6 +131,34 @@ public class CpraDataSet {
 		this.hlaAllelesWithFrequencies = hlaAllelesWithFrequencies;
 	}
 
+	/**
+	 * @return the number of frequency entries of the data set
+	 */
+	public long getFrequencyKeys() {
+		return frequencyKeys;
+	}
+
+	/**
+	 * @param frequencyKeys the number of frequency entries to set
+	 */
+	public void setFrequencyKeys(long frequencyKeys) {
+		this.frequencyKeys = frequencyKeys;
+	}
+
+	/**
+	 * @return the per allele checks, for the alleles with frequency data
+	 */
+	public List<CpraAlleleCheck> getAlleleChecks() {
+		return alleleChecks;
+	}
+
+	/**
+	 * @param alleleChecks the per allele checks to set
+	 */
+	public void setAlleleChecks(List<CpraAlleleCheck> alleleChecks) {
+		this.alleleChecks = alleleChecks;
+	}
+
 	/**
 	 * @return the warnings
 	 */
@@ -162,6 +192,8 @@ public class CpraDataSet {
 				.add("ethnicFrequencies", ethnicFrequencies.toString())
 				.add("hlaAlleles", hlaAlleles.toString())
 				.add("hlaAllelesWithFrequencies", hlaAllelesWithFrequencies.toString())
+				.add("frequencyKeys", frequencyKeys)
+				.add("alleleChecks", String.valueOf(alleleChecks))
 				.add("warnings", warnings.toString())
 				.toString();
 	}
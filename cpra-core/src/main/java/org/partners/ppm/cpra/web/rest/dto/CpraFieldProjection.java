@@ -0,0 +1,102 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import org.partners.ppm.cpra.CpraBadRequestException;
+
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.FilterProvider;
+import com.fasterxml.jackson.databind.ser.PropertyWriter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+
+/*
+ * The CpraDTO fields a caller asked for with fields=, e.g. "calculatedPRA" or "calculatedPRA;ethnicCalculatedPRA".
+ * CpraDTOSerializer finds it in the writer's filters under FILTER_ID.
+ */
+public class CpraFieldProjection extends SimpleBeanPropertyFilter {
+
+	public static final String FILTER_ID = "cpraFieldProjection";
+
+	private static final String FIELD_DELIMITER = "[;,]";
+
+	private final int mask;  // bit i is CpraDTOSerializer.FIELDS[i]
+
+	private CpraFieldProjection(int mask) {
+		this.mask = mask;
+	}
+
+	/*
+	 * Parse a ';' or ',' separated list of CpraDTO field names; throws CpraBadRequestException for an unknown field,
+	 * and for a list without any field, which would project the response to nothing.
+	 */
+	public static CpraFieldProjection parse(String fields) {
+		int mask = 0;
+		for (String field : fields.split(FIELD_DELIMITER)) {
+			String name = field.trim();
+			if (name.isEmpty()) {
+				continue;
+			}
+			int i = indexOf(name);
+			if (i < 0) {
+				throw new CpraBadRequestException("Invalid field '" + name + "' for Cpra calculator");
+			}
+			mask |= 1 << i;
+		}
+		if (mask == 0) {
+			throw new CpraBadRequestException("No fields in '" + fields + "' for Cpra calculator");
+		}
+		return new CpraFieldProjection(mask);
+	}
+
+	private static int indexOf(String name) {
+		for (int i = 0; i < CpraDTOSerializer.FIELDS.length; i++) {
+			if (CpraDTOSerializer.FIELDS[i].equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	boolean includes(int field) {
+		return (mask & (1 << field)) != 0;
+	}
+
+	/*
+	 * Identifies the projection, e.g. for entity tags of projected responses.
+	 */
+	public String getTag() {
+		return Integer.toHexString(mask);
+	}
+
+	/*
+	 * Filters for MappingJacksonValue.setFilters() or ObjectWriter.with() that apply this projection.
+	 */
+	public FilterProvider asFilters() {
+		return new SimpleFilterProvider().addFilter(FILTER_ID, this).setFailOnUnknownId(false);
+	}
+
+	@Override
+	protected boolean include(BeanPropertyWriter writer) {
+		return include((PropertyWriter) writer);
+	}
+
+	@Override
+	protected boolean include(PropertyWriter writer) {
+		int i = indexOf(writer.getName());
+		return i < 0 || includes(i);
+	}
+}
@@ -30,6 +30,7 @@ import com.google.common.base.MoreObjects;
 public class CpraRequest {
 	
 	public static final String SPLIT_ALPHA_NUMERIC = "[^A-Z0-9]+|(?<=[A-Z])(?=[0-9])|(?<=[0-9])(?=[A-Z])";
+	public static final String ANTIBODY_PATTERN = "^[a-zA-Z]+[0-9\\-*:]+$";
 	
 	@NotNull
 	@Size(min = 1)
@@ -37,8 +38,14 @@ public class CpraRequest {
 	
 	// use validator-collection - https://github.com/jirutka/validator-collection
 	// @EachPattern(regexp="^[a-zA-Z]+[0-9\\-*:]+$", message = "${validatedValue} is not a valid antibody")
-	private List<@Pattern(regexp="^[a-zA-Z]+[0-9\\-*:]+$", message = "${validatedValue} is not a valid antibody") String> antibodies;
+	private List<@Pattern(regexp=ANTIBODY_PATTERN, message = "${validatedValue} is not a valid antibody") String> antibodies;
 	
+	// also report each antibody's contribution to the cPRA
+	private boolean contributions;
+
+	// weight the ethnic cPRAs by these population frequencies instead of the version's hlaEthnicFrequencies
+	private List<Double> weights;
+
 	public CpraRequest(String version) {
 		this.version = version;
 		this.antibodies = new ArrayList<>();
@@ -60,6 +67,22 @@ public class CpraRequest {
 		this.antibodies = antibodies;
 	}	
 	
+	public boolean isContributions() {
+		return contributions;
+	}
+
+	public void setContributions(boolean contributions) {
+		this.contributions = contributions;
+	}
+
+	public List<Double> getWeights() {
+		return weights;
+	}
+
+	public void setWeights(List<Double> weights) {
+		this.weights = weights;
+	}
+
 	public void addAntibodies(String antibodies) {
 		if (StringUtils.isNotBlank(antibodies)) {
 			this.setAntibodies(Arrays.asList(antibodies.split(";")));
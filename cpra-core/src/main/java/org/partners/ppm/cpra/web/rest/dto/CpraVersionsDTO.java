@@ -16,18 +16,32 @@
 package org.partners.ppm.cpra.web.rest.dto;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
 import com.google.common.base.MoreObjects;
 
 public class CpraVersionsDTO {
 
+	// load states of a version
+	public static final String STATE_LOADING = "loading";
+	public static final String STATE_LOADED = "loaded";
+	public static final String STATE_FAILED = "failed";
+
 	class Version {
 		private String name;
 		private Boolean isDefault;
 		private String description;
 		private String calculator;
+		private Long precomputedProfiles;
+		private Long precomputeMillis;
+		private Long precomputeBytes;
+		private String state;
+		private Long loadMillis;
+		private String error;
 		public String getName() {
 			return name;
 		}
@@ -52,12 +66,37 @@ public class CpraVersionsDTO {
 		public void setCalculator(String calculator) {
 			this.calculator = calculator;
 		}
+		@JsonInclude(Include.NON_NULL)
+		public Long getPrecomputedProfiles() {
+			return precomputedProfiles;
+		}
+		@JsonInclude(Include.NON_NULL)
+		public Long getPrecomputeMillis() {
+			return precomputeMillis;
+		}
+		@JsonInclude(Include.NON_NULL)
+		public Long getPrecomputeBytes() {
+			return precomputeBytes;
+		}
+		@JsonInclude(Include.NON_NULL)
+		public String getState() {
+			return state;
+		}
+		@JsonInclude(Include.NON_NULL)
+		public Long getLoadMillis() {
+			return loadMillis;
+		}
+		@JsonInclude(Include.NON_NULL)
+		public String getError() {
+			return error;
+		}
 		public String toString() {
 			return MoreObjects.toStringHelper(this)
 					.add("name", String.valueOf(name))
 					.add("isDefault", String.valueOf(isDefault))
 					.add("description", String.valueOf(description))
 					.add("calculator", String.valueOf(calculator))
+					.add("state", String.valueOf(state))
 				.toString();
 		}
 	}
@@ -90,6 +129,35 @@ public class CpraVersionsDTO {
 		versions.add(v);
 	}
 
+	public void addVersion(String name, Boolean isDefault, String description, String calculator,
+			long precomputedProfiles, long precomputeMillis, long precomputeBytes) {
+		addVersion(name, isDefault, description, calculator);
+		Version v = versions.get(versions.size() - 1);
+		v.precomputedProfiles = precomputedProfiles;
+		v.precomputeMillis = precomputeMillis;
+		v.precomputeBytes = precomputeBytes;
+	}
+
+	/*
+	 * Set the load state of the named version: loading, loaded (with the time it took) or failed (with the error).
+	 */
+	public void setLoad(String name, String state, Long loadMillis, String error) {
+		for (Version v : versions) {
+			if (v.name.equals(name)) {
+				v.state = state;
+				v.loadMillis = loadMillis;
+				v.error = error;
+			}
+		}
+	}
+
+	/*
+	 * Order the versions as in the list; versions not in it go last.
+	 */
+	public void orderBy(List<String> names) {
+		versions.sort(Comparator.comparingInt(v -> names.contains(v.name) ? names.indexOf(v.name) : names.size()));
+	}
+
 	@Override
 	public String toString() {
 		return MoreObjects.toStringHelper(this)
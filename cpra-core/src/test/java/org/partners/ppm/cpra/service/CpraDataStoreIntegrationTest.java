@@ -0,0 +1,387 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertThat;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.hamcrest.Matcher;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDataSet;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CpraDataStoreIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraDataStoreIntegrationTest.class);
+
+	private static final String CONFIG_PATH = "classpath*:/*.csv";
+	private static final String SMALL_VERSION = "bwh_2017";
+
+	@ClassRule
+	public static TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private static CpraRespStandIn redis;
+	private static CpraEngine heapEngine;
+	private static String smallConfigPath;  // the smaller version only, for the tests that load it many times
+
+	@BeforeClass
+	public static void start() throws Exception {
+		redis = new CpraRespStandIn();
+		heapEngine = CpraEngine.load(CONFIG_PATH);
+		Path small = temporaryFolder.newFolder("small").toPath();
+		for (String file : Arrays.asList("main.csv", SMALL_VERSION + "_freq.csv", SMALL_VERSION + "_meta.csv")) {
+			try (InputStream in = CpraDataStoreIntegrationTest.class.getResourceAsStream("/" + file)) {
+				Files.copy(in, small.resolve(file));
+			}
+		}
+		Path main = small.resolve("main.csv");
+		String versions = new String(Files.readAllBytes(main), StandardCharsets.UTF_8)
+				.replace("\"optn_2015;" + SMALL_VERSION + "\"", "\"" + SMALL_VERSION + "\"");
+		Files.write(main, versions.getBytes(StandardCharsets.UTF_8));
+		smallConfigPath = small + "/*.csv";
+	}
+
+	@AfterClass
+	public static void stop() throws Exception {
+		redis.close();
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	/*
+	 * The exception the call throws, or null.
+	 */
+	private static RuntimeException failure(Supplier<?> call) {
+		try {
+			call.get();
+			return null;
+		} catch (RuntimeException e) {
+			return e;
+		}
+	}
+
+	private static CpraRequest request(String version, String antibodyList, boolean contributions) {
+		CpraRequest request = new CpraRequest(version);
+		request.addAntibodies(antibodyList);
+		request.setContributions(contributions);
+		return request;
+	}
+
+	private void assertEngineMatchesHeap(CpraEngine engine) {
+		for (String version : heapEngine.getVersionList()) {
+			assertThatWrapper("\nExpected value for engine.getChecksum(version) is <{}>.\nResult is {}", engine.getChecksum(version), equalTo(heapEngine.getChecksum(version)));
+		}
+		for (CpraRequest request : Arrays.asList(request("optn_2015", "A9", false),
+				request("optn_2015", "A1;B8;DR17;DQ2;C7", true), request("bwh_2017", "A2;B44", true))) {
+			CpraDTO expected = heapEngine.calculate(request(request.getVersion(),
+					String.join(";", request.getAntibodies()), request.isContributions()));
+			CpraDTO actual = engine.calculate(request);
+			log.info("{} = {}", request, actual);
+			// the diplotype calculator adds its frequencies in hash set order, which may differ in the last bits
+			assertThatWrapper("\nExpected value for actual.getCalculatedPRA() is <{}>.\nResult is {}", actual.getCalculatedPRA(), closeTo(expected.getCalculatedPRA(), 1e-12));
+			assertThatWrapper("\nExpected value for actual.getUnacceptableAntigenList() is <{}>.\nResult is {}", actual.getUnacceptableAntigenList(), equalTo(expected.getUnacceptableAntigenList()));
+			assertThatWrapper("\nExpected value for actual.getWarnings() is <{}>.\nResult is {}", actual.getWarnings(), equalTo(expected.getWarnings()));
+			if (expected.getEthnicCalculatedPRA() == null) {
+				assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA(), nullValue());
+			} else {
+				assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA().size() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA().size(), equalTo(expected.getEthnicCalculatedPRA().size()));
+				for (int i = 0; i < expected.getEthnicCalculatedPRA().size(); i++) {
+					assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA().get(i).getEthnicity() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA().get(i).getEthnicity(), equalTo(expected.getEthnicCalculatedPRA().get(i).getEthnicity()));
+					assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA().get(i).getCalculatedPRA() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA().get(i).getCalculatedPRA(), closeTo(expected.getEthnicCalculatedPRA().get(i).getCalculatedPRA(), 1e-12));
+				}
+			}
+			assertThatWrapper("\nExpected value for actual.getContributions() == null ? 0 : actual.getContributions().size() is <{}>.\nResult is {}", actual.getContributions() == null ? 0 : actual.getContributions().size(), equalTo(expected.getContributions() == null ? 0 : expected.getContributions().size()));
+		}
+		List<CpraDataSet> expectedSelfCheck = heapEngine.selfCheck().getCpraDataSet();
+		List<CpraDataSet> actualSelfCheck = engine.selfCheck().getCpraDataSet();
+		assertThatWrapper("\nExpected value for actualSelfCheck.size() is <{}>.\nResult is {}", actualSelfCheck.size(), equalTo(expectedSelfCheck.size()));
+		for (int i = 0; i < expectedSelfCheck.size(); i++) {
+			assertThatWrapper("\nExpected value for actualSelfCheck.get(i).getVersion() is <{}>.\nResult is {}", actualSelfCheck.get(i).getVersion(), equalTo(expectedSelfCheck.get(i).getVersion()));
+			assertThatWrapper("\nExpected value for actualSelfCheck.get(i).getFrequencyKeys() is <{}>.\nResult is {}", actualSelfCheck.get(i).getFrequencyKeys(), equalTo(expectedSelfCheck.get(i).getFrequencyKeys()));
+			assertThatWrapper("\nExpected value for actualSelfCheck.get(i).getWarnings() is <{}>.\nResult is {}", actualSelfCheck.get(i).getWarnings(), equalTo(expectedSelfCheck.get(i).getWarnings()));
+		}
+	}
+
+	@Test
+	public void testOffHeapStoreMatchesHeap() throws Exception {
+		log.info("Test Case Name: testOffHeapStoreMatchesHeap");
+		CpraEngine engine = CpraEngine.load(CONFIG_PATH, 0, new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(CpraDataStores.OFF_HEAP));
+		log.info("Data sets in {}", engine.getSnapshot().getConfigHashMap().getStore());
+		assertEngineMatchesHeap(engine);
+	}
+
+	@Test
+	public void testRedisStoreMatchesHeap() throws Exception {
+		log.info("Test Case Name: testRedisStoreMatchesHeap");
+		CpraEngine engine = CpraEngine.load(CONFIG_PATH, 0, new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri()));
+		assertThatWrapper("\nExpected value for engine.getSnapshot().getConfigHashMap().getStore().size() is <{}>.\nResult is {}", engine.getSnapshot().getConfigHashMap().getStore().size(), equalTo(heapEngine.getSnapshot().getConfigHashMap().getStore().size()));
+		assertEngineMatchesHeap(engine);
+
+		// a stateless node reads the data sets another node loaded, without the data set files
+		CpraEngine reader = CpraEngine.load("classpath*:/nothing/*.csv", 0, new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri(), CpraDataStores.DEFAULT_REDIS_KEY_PREFIX, 2, 2000, true));
+		assertEngineMatchesHeap(reader);
+	}
+
+	@Test
+	public void testRedisReloadsAreGenerations() throws Exception {
+		log.info("Test Case Name: testRedisReloadsAreGenerations");
+		ObjectMapper objectMapper = new ObjectMapper();
+		Supplier<CpraDataStore> loader = CpraDataStores.supplier(redis.getUri(), "reload:", 2, 2000, false);
+		Supplier<CpraDataStore> reader = CpraDataStores.supplier(redis.getUri(), "reload:", 2, 2000, true);
+		CpraRequest request = request(SMALL_VERSION, "A2;B44", false);
+		double cpra = heapEngine.calculate(request).getCalculatedPRA();
+
+		CpraConfigHashMap first = new CpraConfigHashMap(new CpraClasspathResourceResolver(), loader);
+		CpraEngineSnapshot loaded = CpraEngineSnapshot.load(first, smallConfigPath, 0, objectMapper);
+		String firstPrefix = ((CpraRedisDataStore) first.getStore()).prefix();
+		CpraConfigHashMap readerMap = new CpraConfigHashMap(new CpraClasspathResourceResolver(), reader);
+		CpraEngineSnapshot read = CpraEngineSnapshot.load(readerMap, "classpath*:/nothing/*.csv", 0, objectMapper);
+		assertThatWrapper("\nExpected value for the reader's prefix is <{}>.\nResult is {}",
+				((CpraRedisDataStore) readerMap.getStore()).prefix(), equalTo(firstPrefix));
+
+		// a reload writes a generation of its own; the previous snapshot and the reading node keep reading theirs
+		CpraConfigHashMap second = first.fresh();
+		CpraEngineSnapshot reloaded = CpraEngineSnapshot.load(second, smallConfigPath, 0, objectMapper);
+		first.retire();
+		String secondPrefix = ((CpraRedisDataStore) second.getStore()).prefix();
+		assertThatWrapper("\nExpected value for secondPrefix.equals(firstPrefix) is <{}>.\nResult is {}",
+				secondPrefix.equals(firstPrefix), equalTo(false));
+		assertThatWrapper("\nExpected value for redis.size(firstPrefix) is <{}>.\nResult is {}",
+				redis.size(firstPrefix), equalTo(redis.size(secondPrefix)));
+		assertThatWrapper("\nExpected value for loaded cPRA is <{}>.\nResult is {}",
+				loaded.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+		assertThatWrapper("\nExpected value for read cPRA is <{}>.\nResult is {}",
+				read.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+		assertThatWrapper("\nExpected value for read.getChecksum() is <{}>.\nResult is {}",
+				read.getChecksum(SMALL_VERSION), equalTo(reloaded.getChecksum(SMALL_VERSION)));
+
+		// the reading node sees it is behind, and its next load reads the published generation
+		assertThatWrapper("\nExpected value for readerMap.getStore().isCurrent() is <{}>.\nResult is {}",
+				readerMap.getStore().isCurrent(), equalTo(false));
+		CpraConfigHashMap readerNext = readerMap.fresh();
+		CpraEngineSnapshot.load(readerNext, "classpath*:/nothing/*.csv", 0, objectMapper);
+		assertThatWrapper("\nExpected value for the reader's next prefix is <{}>.\nResult is {}",
+				((CpraRedisDataStore) readerNext.getStore()).prefix(), equalTo(secondPrefix));
+		assertThatWrapper("\nExpected value for readerNext.getStore().isCurrent() is <{}>.\nResult is {}",
+				readerNext.getStore().isCurrent(), equalTo(true));
+
+		// two publishes later, the reader's lease still keeps the first generation, which it goes on reading
+		CpraConfigHashMap third = second.fresh();
+		CpraEngineSnapshot.load(third, smallConfigPath, 0, objectMapper);
+		second.retire();
+		CpraConfigHashMap fourth = third.fresh();
+		CpraEngineSnapshot.load(fourth, smallConfigPath, 0, objectMapper);
+		third.retire();
+		assertThatWrapper("\nExpected value for redis.size(firstPrefix) is <{}>.\nResult is {}",
+				redis.size(firstPrefix), equalTo(redis.size(((CpraRedisDataStore) fourth.getStore()).prefix())));
+		assertThatWrapper("\nExpected value for redis.size(secondPrefix) is <{}>.\nResult is {}",
+				redis.size(secondPrefix), equalTo(redis.size(firstPrefix)));
+		assertThatWrapper("\nExpected value for read cPRA is <{}>.\nResult is {}",
+				read.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+		assertThatWrapper("\nExpected value for readerMap.get(\"hlaCpraVersions\") is <{}>.\nResult is {}",
+				readerMap.get("hlaCpraVersions"), equalTo(SMALL_VERSION));
+
+		// once nobody holds a lease on them, the next publish deletes the retired generations
+		readerMap.retire();
+		readerNext.retire();
+		CpraEngineSnapshot.load(fourth.fresh(), smallConfigPath, 0, objectMapper);
+		fourth.retire();
+		assertThatWrapper("\nExpected value for redis.size(firstPrefix) is <{}>.\nResult is {}",
+				redis.size(firstPrefix), equalTo(0));
+		assertThatWrapper("\nExpected value for redis.size(secondPrefix) is <{}>.\nResult is {}",
+				redis.size(secondPrefix), equalTo(0));
+
+		// a store whose generation is gone throws rather than return missing entries, and asks to be loaded again
+		assertThatWrapper("\nExpected value for readerMap.getStore().isCurrent() is <{}>.\nResult is {}",
+				readerMap.getStore().isCurrent(), equalTo(false));
+		assertThatWrapper("\nExpected value for failure of readerMap.get() is <{}>.\nResult is {}",
+				failure(() -> readerMap.get("hlaCpraVersions")), instanceOf(CpraRuntimeException.class));
+		assertThatWrapper("\nExpected value for failure of readerMap.multiGet() is <{}>.\nResult is {}",
+				failure(() -> readerMap.multiGet(Arrays.asList("hlaCpraVersions"))), instanceOf(CpraRuntimeException.class));
+		first.close();
+		readerMap.close();
+	}
+
+	@Test
+	public void testRedisWritersShareOnePrefix() throws Exception {
+		log.info("Test Case Name: testRedisWritersShareOnePrefix");
+		ObjectMapper objectMapper = new ObjectMapper();
+		CpraRequest request = request(SMALL_VERSION, "A2;B44", false);
+		double cpra = heapEngine.calculate(request).getCalculatedPRA();
+
+		// two replicas that both load, and a batch run that loads, publishes and ends, each a node of its own
+		CpraConfigHashMap a = new CpraConfigHashMap(new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri(), "shared:", 2, 2000, false));
+		CpraEngineSnapshot aLoaded = CpraEngineSnapshot.load(a, smallConfigPath, 0, objectMapper);
+		CpraConfigHashMap b = new CpraConfigHashMap(new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri(), "shared:", 2, 2000, false));
+		CpraEngineSnapshot bLoaded = CpraEngineSnapshot.load(b, smallConfigPath, 0, objectMapper);
+		CpraConfigHashMap batch = new CpraConfigHashMap(new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri(), "shared:", 2, 2000, false));
+		CpraEngineSnapshot.load(batch, smallConfigPath, 0, objectMapper);
+		String aPrefix = ((CpraRedisDataStore) a.getStore()).prefix();
+		String batchPrefix = ((CpraRedisDataStore) batch.getStore()).prefix();
+		batch.close();
+
+		// the publishes of the others keep the generations the replicas read
+		for (CpraConfigHashMap map : Arrays.asList(a, b)) {
+			assertThatWrapper("\nExpected value for map.getStore().isCurrent() is <{}>.\nResult is {}",
+					map.getStore().isCurrent(), equalTo(true));
+			assertThatWrapper("\nExpected value for map.get(\"hlaCpraVersions\") is <{}>.\nResult is {}",
+					map.get("hlaCpraVersions"), equalTo(SMALL_VERSION));
+		}
+		assertThatWrapper("\nExpected value for a's cPRA is <{}>.\nResult is {}",
+				aLoaded.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+		assertThatWrapper("\nExpected value for b's cPRA is <{}>.\nResult is {}",
+				bLoaded.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+
+		// when both replicas have reloaded, the generations nobody reads are gone, the batch run's with them
+		CpraConfigHashMap aNext = a.fresh();
+		CpraEngineSnapshot.load(aNext, smallConfigPath, 0, objectMapper);
+		a.retire();
+		CpraConfigHashMap bNext = b.fresh();
+		CpraEngineSnapshot bReloaded = CpraEngineSnapshot.load(bNext, smallConfigPath, 0, objectMapper);
+		b.retire();
+		assertThatWrapper("\nExpected value for redis.size(aPrefix) is <{}>.\nResult is {}",
+				redis.size(aPrefix), equalTo(0));
+		assertThatWrapper("\nExpected value for redis.size(batchPrefix) is <{}>.\nResult is {}",
+				redis.size(batchPrefix), equalTo(0));
+		assertThatWrapper("\nExpected value for aNext.get(\"hlaCpraVersions\") is <{}>.\nResult is {}",
+				aNext.get("hlaCpraVersions"), equalTo(SMALL_VERSION));
+		assertThatWrapper("\nExpected value for b's cPRA is <{}>.\nResult is {}",
+				bReloaded.calculate(SMALL_VERSION, request).getCalculatedPRA(), closeTo(cpra, 1e-12));
+
+		// a replica whose generation was deleted anyway, e.g. after its lease expired, fails and asks to load again
+		redis.delete(((CpraRedisDataStore) bNext.getStore()).prefix());
+		assertThatWrapper("\nExpected value for bNext.getStore().isCurrent() is <{}>.\nResult is {}",
+				bNext.getStore().isCurrent(), equalTo(false));
+		assertThatWrapper("\nExpected value for failure of bNext.multiGet() is <{}>.\nResult is {}",
+				failure(() -> bNext.multiGet(Arrays.asList("hlaCpraVersions"))), instanceOf(CpraRuntimeException.class));
+		aNext.close();
+		bNext.close();
+	}
+
+	@Test
+	public void testHaplotypeLevelsArePrefetched() throws Exception {
+		log.info("Test Case Name: testHaplotypeLevelsArePrefetched");
+		CpraEngine engine = CpraEngine.load(CONFIG_PATH, 0, new CpraClasspathResourceResolver(),
+				CpraDataStores.supplier(redis.getUri()));
+		redis.resetCounts();
+		// three loci in use: the S1, S2 and S3 frequencies take one MGET each
+		engine.calculate("optn_2015", "A1;B8;DR17");
+		assertThatWrapper("\nExpected value for redis.count(\"MGET\") is <{}>.\nResult is {}", redis.count("MGET"), equalTo(3L));
+	}
+
+	@Test
+	public void testIncrementalEngineFetchesInChunks() throws Exception {
+		log.info("Test Case Name: testIncrementalEngineFetchesInChunks");
+		AtomicInteger largestMultiGet = new AtomicInteger();
+		CpraEngine engine = CpraEngine.load(CONFIG_PATH, 0, new CpraClasspathResourceResolver(), () -> new CpraHeapDataStore() {
+			@Override
+			public List<String> multiGet(List<String> keys) {
+				largestMultiGet.accumulateAndGet(keys.size(), Math::max);
+				return super.multiGet(keys);
+			}
+		});
+		List<String> antibodies = new ArrayList<>();
+		antibodies.addAll(Arrays.asList("B7", "B8", "B13", "B14", "B15", "B18", "B27", "B35", "B37", "B38", "B39", "B40",
+				"B41", "B42", "B44", "B45", "B46", "B47", "B48", "B49"));
+		antibodies.addAll(Arrays.asList("C01", "C02", "C03", "C04", "C05", "C06", "C07", "C08", "C09", "C10", "C12", "C14"));
+		antibodies.addAll(Arrays.asList("DQ1", "DQ2", "DQ3", "DQ4", "DQ5", "DQ6", "DQ7", "DQ8", "DQ9"));
+		antibodies.addAll(Arrays.asList("DR1", "DR3", "DR4", "DR7", "DR8", "DR9", "DR10", "DR11", "DR12", "DR13", "DR14",
+				"DR15"));
+		// the last antigen combines with well over PREFETCH_KEYS combinations of the other loci
+		antibodies.add("A1");
+		CpraIncrementalEngine incremental = engine.newIncrementalEngine("optn_2015");
+		// the load read the whole data set with one multiGet, for its checksum
+		largestMultiGet.set(0);
+		for (String antibody : antibodies) {
+			incremental.addAntibody(antibody);
+		}
+		assertThatWrapper("\nExpected value for largestMultiGet.get() is <{}>.\nResult is {}", largestMultiGet.get(), equalTo(CpraHaplotypeCalculatorHelper.PREFETCH_KEYS));
+		assertThatWrapper("\nExpected value for incremental.getCalculatedPRA() is <{}>.\nResult is {}", incremental.getCalculatedPRA(), closeTo(engine.calculate("optn_2015", String.join(";", antibodies)).getCalculatedPRA(), 1e-9));
+	}
+
+	@Test
+	public void testMultiGetAndKeys() throws Exception {
+		log.info("Test Case Name: testMultiGetAndKeys");
+		Map<String, String> entries = new LinkedHashMap<>();
+		entries.put("freq:v1.0:A1", "0.1");
+		entries.put("freq:v1.0:A2", "0.2");
+		entries.put("freq:v1x0:A3", "0.3");
+		entries.put("freq:v1?[x]:A4", "0.4");
+		// a key prefix with glob characters, and another one it would match if they were not escaped
+		CpraRedisDataStore other = new CpraRedisDataStore(URI.create(redis.getUri()), "test[x?]:", 2, 2000, false);
+		other.putAll(Collections.singletonMap("freq:v1.0:A9", "0.9"));
+		for (CpraDataStore store : Arrays.asList(new CpraHeapDataStore(), new CpraOffHeapDataStore(),
+				new CpraRedisDataStore(URI.create(redis.getUri()), "test[*?]:", 2, 2000, false))) {
+			store.clear();
+			store.putAll(entries);
+			store.putAll(Collections.singletonMap("freq:v1.0:A2", "0.25"));
+			assertThatWrapper("\nExpected value for store.size() of " + store.toString() + " is <{}>.\nResult is {}", store.size(), equalTo(4L));
+			assertThatWrapper("\nExpected value for store.get(\"freq:v1.0:A2\") of " + store.toString() + " is <{}>.\nResult is {}", store.get("freq:v1.0:A2"), equalTo("0.25"));
+			assertThatWrapper("\nExpected value for store.get(\"freq:v1.0:B7\") of " + store.toString() + " is <{}>.\nResult is {}", store.get("freq:v1.0:B7"), nullValue());
+			assertThatWrapper("\nExpected value for store.multiGet(Arrays.asList(\"freq:v1.0:B7\", \"freq:v1x0:A3\", \"freq:v1.0:A1\")) of " + store.toString() + " is <{}>.\nResult is {}", store.multiGet(Arrays.asList("freq:v1.0:B7", "freq:v1x0:A3", "freq:v1.0:A1")), equalTo(Arrays.asList(null, "0.3", "0.1")));
+			// the dot is not a wildcard
+			assertThatWrapper("\nExpected value for store.keys(\"freq:v1.0:*\") of " + store.toString() + " is <{}>.\nResult is {}", store.keys("freq:v1.0:*"), containsInAnyOrder("freq:v1.0:A1", "freq:v1.0:A2"));
+			// and neither are ? and [
+			assertThatWrapper("\nExpected value for store.keys(\"freq:v1?[x]:*\") of " + store.toString() + " is <{}>.\nResult is {}", store.keys("freq:v1?[x]:*"), containsInAnyOrder("freq:v1?[x]:A4"));
+			assertThatWrapper("\nExpected value for store.keys(\"freq:v1?[?]:*\").isEmpty() of " + store.toString() + " is <{}>.\nResult is {}", store.keys("freq:v1?[?]:*").isEmpty(), equalTo(true));
+			store.clear();
+			assertThatWrapper("\nExpected value for store.size() of " + store.toString() + " is <{}>.\nResult is {}", store.size(), equalTo(0L));
+			store.close();
+		}
+		assertThatWrapper("\nExpected value for other.keys(\"*\") is <{}>.\nResult is {}", other.keys("*"), containsInAnyOrder("freq:v1.0:A9"));
+		other.close();
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.endsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+import org.hamcrest.Matcher;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+public class CpraEngineIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraEngineIntegrationTest.class);
+
+	private static CpraEngine engine;
+
+	@BeforeClass
+	public static void loadEngine() {
+		engine = CpraEngine.load("classpath*:/*.csv", 1);
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testCalculateWithoutSpring() throws Exception {
+		log.info("Test Case Name: testCalculateWithoutSpring");
+		Exception exception = null;
+		try {
+			Class.forName("org.springframework.core.io.Resource");
+		} catch (ClassNotFoundException e) {
+			exception = e;
+		}
+		// cpra-core must not pull in Spring
+		assertThatWrapper("\nExpected value for exception is <{}>.\nResult is {}", exception, instanceOf(ClassNotFoundException.class));
+
+		assertThatWrapper("\nExpected value for engine.getVersionList() is <{}>.\nResult is {}", engine.getVersionList(), contains("optn_2015", "bwh_2017"));
+		assertThatWrapper("\nExpected value for engine.calculate(\"optn_2015\", \"A9\").getCalculatedPRA() is <{}>.\nResult is {}", engine.calculate("optn_2015", "A9").getCalculatedPRA(), equalTo(0.23667027217061132));
+		CpraDTO dto = engine.calculate("current", "A1;B8;DR17");
+		assertThatWrapper("\nExpected value for dto.getVersion() is <{}>.\nResult is {}", dto.getVersion(), equalTo("optn_2015"));
+		assertThatWrapper("\nExpected value for engine.getChecksum(\"current\") is <{}>.\nResult is {}", engine.getChecksum("current"), notNullValue());
+	}
+
+	@Test
+	public void testRootPatternSkipsLibraryJars() throws Exception {
+		log.info("Test Case Name: testRootPatternSkipsLibraryJars");
+		File jar = File.createTempFile("cpra-library", ".jar");
+		jar.deleteOnExit();
+		try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jar))) {
+			for (String name : Arrays.asList("library.csv", "data/library.csv")) {
+				out.putNextEntry(new ZipEntry(name));
+				out.write("Antibody\n".getBytes("UTF-8"));
+				out.closeEntry();
+			}
+		}
+		try (URLClassLoader loader = new URLClassLoader(new URL[] { jar.toURI().toURL() },
+				CpraEngineIntegrationTest.class.getClassLoader())) {
+			CpraClasspathResourceResolver resolver = new CpraClasspathResourceResolver(loader);
+			// a root pattern only looks into directories and the application jar, not every library jar
+			for (URL url : resolver.resolve("classpath*:/*.csv")) {
+				assertThatWrapper("\nExpected value for url.toString().contains(jar.getName()) is <{}>.\nResult is {}", url.toString().contains(jar.getName()), equalTo(false));
+			}
+			List<URL> urls = resolver.resolve("classpath*:/data/*.csv");
+			assertThatWrapper("\nExpected value for urls is <{}>.\nResult is {}", urls, hasSize(1));
+			assertThatWrapper("\nExpected value for urls.get(0).toString() is <{}>.\nResult is {}", urls.get(0).toString(), endsWith(jar.getName() + "!/data/library.csv"));
+		}
+	}
+
+	@Test
+	public void testIncrementalEngineMatchesCalculate() throws Exception {
+		log.info("Test Case Name: testIncrementalEngineMatchesCalculate");
+		CpraIncrementalEngine incremental = engine.newIncrementalEngine("optn_2015");
+		for (String antibody : Arrays.asList("A1", "B8", "DR17")) {
+			incremental.addAntibody(antibody);
+		}
+		assertThatWrapper("\nExpected value for incremental.getCalculatedPRA() is <{}>.\nResult is {}", incremental.getCalculatedPRA(), equalTo(engine.calculate("optn_2015", "A1;B8;DR17").getCalculatedPRA()));
+	}
+
+	@Test
+	public void testWeightsAreLeftToTheService() throws Exception {
+		log.info("Test Case Name: testWeightsAreLeftToTheService");
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9");
+		request.setWeights(Arrays.asList(0.25, 0.25, 0.25, 0.25));
+		Exception exception = null;
+		try {
+			engine.calculate(request);
+		} catch (CpraRuntimeException e) {
+			exception = e;
+		}
+		assertThatWrapper("\nExpected value for exception is <{}>.\nResult is {}", exception, instanceOf(CpraRuntimeException.class));
+	}
+
+	@Test
+	public void testWarmupStopsWithinBudget() throws Exception {
+		log.info("Test Case Name: testWarmupStopsWithinBudget");
+		CpraWarmup.Result result = new CpraWarmup(engine.getSnapshot(), 3000, 100, 0.10, 2, 8).run();
+		log.info("Warm-up: {} profiles in {} ms, {} profiles/s, stable {}", result.getProfiles(),
+				result.getDurationMillis(), result.getThroughput(), result.isStable());
+		assertThatWrapper("\nExpected value for result.getProfiles() is <{}>.\nResult is {}", result.getProfiles(), greaterThan(0L));
+		assertThatWrapper("\nExpected value for result.getFailures() is <{}>.\nResult is {}", result.getFailures(), equalTo(0L));
+		assertThatWrapper("\nExpected value for result.getThroughput() is <{}>.\nResult is {}", result.getThroughput(), greaterThan(0.0));
+		assertThatWrapper("\nExpected value for result.getDurationMillis() is <{}>.\nResult is {}", result.getDurationMillis(), lessThan(3000L + 1000L));
+	}
+
+	@JsonSerialize(using = JsonSerializer.None.class)
+	private interface BeanSerialized {
+	}
+
+	@Test
+	public void testSerializerMatchesBeanSerialization() throws Exception {
+		log.info("Test Case Name: testSerializerMatchesBeanSerialization");
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A1;B8;DR17");
+		request.setContributions(true);
+		CpraDTO dto = engine.calculate(request);
+		dto.setEthnicWeights(Arrays.asList(0.6, 0.15, 0.15, 0.1));
+		dto.setEstimatedCost(42L);
+
+		// every property of CpraDTO, a new one included, must be written by CpraDTOSerializer too
+		ObjectMapper mapper = new ObjectMapper();
+		ObjectMapper beanMapper = new ObjectMapper().addMixIn(CpraDTO.class, BeanSerialized.class);
+		JsonNode expected = mapper.readTree(beanMapper.writeValueAsBytes(dto));
+		JsonNode actual = mapper.readTree(mapper.writeValueAsBytes(dto));
+		log.info("Bean serialization {}", expected);
+		assertThatWrapper("\nExpected value for expected.has(\"contributions\") is <{}>.\nResult is {}", expected.has("contributions"), equalTo(true));
+		assertThatWrapper("\nExpected value for actual is <{}>.\nResult is {}", actual, equalTo(expected));
+	}
+}
@@ -0,0 +1,92 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import org.hamcrest.Matcher;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class CpraPrecomputedTableIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraPrecomputedTableIntegrationTest.class);
+
+	private static CpraConfigHashMap cpraConfigHashMap;
+
+	@BeforeClass
+	public static void loadConfiguration() {
+		cpraConfigHashMap = new CpraConfigHashMap();
+		cpraConfigHashMap.loadConfiguration("classpath*:/*.csv");
+	}
+
+	private CpraRequest request(String version, String antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.addAntibodies(antibodyList);
+		return request;
+	}
+
+	private void assertLookupMatchesCalculator(CpraPrecomputedTable table, CpraCalculator calculator, String antibodyList) {
+		CpraDTO expected = calculator.calculate(request(table.getVersion(), antibodyList));
+		CpraDTO actual = table.lookup(request(table.getVersion(), antibodyList));
+		log.info("Precomputed {} = {}; calculated = {}", antibodyList, actual, expected);
+		assertThatWrapper("\nExpected value for actual.toString() is <{}>.\nResult is {}", actual.toString(), equalTo(expected.toString()));
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testHaplotypeSingleAntigens() throws Exception {
+		log.info("Test Case Name: testHaplotypeSingleAntigens");
+		CpraHaplotypeCalculator calculator = new CpraHaplotypeCalculator(cpraConfigHashMap);
+		calculator.initialize();
+		calculator.initializeVersion("optn_2015");
+		CpraPrecomputedTable table = CpraPrecomputedTable.build("optn_2015", calculator, 1);
+
+		assertLookupMatchesCalculator(table, calculator, "A9");
+		assertLookupMatchesCalculator(table, calculator, "b57");
+		assertLookupMatchesCalculator(table, calculator, "DR52;DR52");
+		assertThatWrapper("\nExpected value for table.lookup(request(\"optn_2015\", \"A9\")).getCalculatedPRA() is <{}>.\nResult is {}", table.lookup(request("optn_2015", "A9")).getCalculatedPRA(), equalTo(0.23667027217061132));
+		// larger profiles are left to the calculator
+		assertThatWrapper("\nExpected value for table.lookup(request(\"optn_2015\", \"A9;B57\")) is <{}>.\nResult is {}", table.lookup(request("optn_2015", "A9;B57")), nullValue());
+	}
+
+	@Test
+	public void testDiplotypeAntigenPairs() throws Exception {
+		log.info("Test Case Name: testDiplotypeAntigenPairs");
+		CpraDiplotypeCalculator calculator = new CpraDiplotypeCalculator(cpraConfigHashMap);
+		calculator.initialize();
+		calculator.initializeVersion("bwh_2017");
+		CpraPrecomputedTable table = CpraPrecomputedTable.build("bwh_2017", calculator, 2);
+
+		assertLookupMatchesCalculator(table, calculator, "A2");
+		assertLookupMatchesCalculator(table, calculator, "A2;B44");
+		assertLookupMatchesCalculator(table, calculator, "B44;A2");
+		assertThatWrapper("\nExpected value for table.lookup(request(\"bwh_2017\", \"A2;B44;B7\")) is <{}>.\nResult is {}", table.lookup(request("bwh_2017", "A2;B44;B7")), nullValue());
+	}
+}
@@ -0,0 +1,326 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/*
+ * An in-process stand-in for a Redis server, for the tests of CpraRedisDataStore: the RESP commands the store uses
+ * (GET, SET with PX, MGET, MSET, INCR, DEL, SCAN with MATCH and COUNT, AUTH, SELECT, PING) on one keyspace, one
+ * thread per connection; a key past its expiry is dropped before the next command.
+ * Counts the commands it served by name, so tests can check how many round trips a calculation took.
+ */
+class CpraRespStandIn implements Closeable {
+
+	private final ServerSocket serverSocket;
+	private final ConcurrentSkipListMap<String, byte[]> entries = new ConcurrentSkipListMap<>();
+	private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+	private final Map<String, AtomicLong> commands = new ConcurrentHashMap<>();
+
+	CpraRespStandIn() throws IOException {
+		serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		Thread acceptor = new Thread(this::accept, "resp-stand-in");
+		acceptor.setDaemon(true);
+		acceptor.start();
+	}
+
+	String getUri() {
+		return "redis://localhost:" + serverSocket.getLocalPort() + "/0";
+	}
+
+	long count(String command) {
+		AtomicLong count = commands.get(command);
+		return count != null ? count.get() : 0;
+	}
+
+	void resetCounts() {
+		commands.clear();
+	}
+
+	int size() {
+		return entries.size();
+	}
+
+	/*
+	 * The number of keys starting with the prefix.
+	 */
+	int size(String prefix) {
+		return entries.subMap(prefix, prefix + Character.MAX_VALUE).size();
+	}
+
+	/*
+	 * Delete the keys starting with the prefix, as another node would.
+	 */
+	void delete(String prefix) {
+		entries.subMap(prefix, prefix + Character.MAX_VALUE).clear();
+	}
+
+	@Override
+	public void close() throws IOException {
+		serverSocket.close();
+	}
+
+	private void accept() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				Thread connection = new Thread(() -> serve(socket), "resp-stand-in-connection");
+				connection.setDaemon(true);
+				connection.start();
+			} catch (IOException e) {
+				// closed
+			}
+		}
+	}
+
+	private void serve(Socket socket) {
+		try (Socket s = socket) {
+			InputStream in = new BufferedInputStream(s.getInputStream());
+			OutputStream out = new BufferedOutputStream(s.getOutputStream());
+			List<byte[]> command;
+			while ((command = read(in)) != null) {
+				execute(command, out);
+				// replies of pipelined commands go out together
+				if (in.available() == 0) {
+					out.flush();
+				}
+			}
+		} catch (IOException e) {
+			// connection closed
+		}
+	}
+
+	private void execute(List<byte[]> command, OutputStream out) throws IOException {
+		String name = string(command.get(0)).toUpperCase();
+		commands.computeIfAbsent(name, it -> new AtomicLong()).incrementAndGet();
+		long now = System.currentTimeMillis();
+		expiries.entrySet().removeIf(expiry -> {
+			if (expiry.getValue() > now) {
+				return false;
+			}
+			entries.remove(expiry.getKey());
+			return true;
+		});
+		switch (name) {
+		case "PING":
+		case "AUTH":
+		case "SELECT":
+			simple(out, "OK");
+			break;
+		case "GET":
+			bulk(out, entries.get(string(command.get(1))));
+			break;
+		case "SET":
+			entries.put(string(command.get(1)), command.get(2));
+			if (command.size() > 4 && string(command.get(3)).equalsIgnoreCase("PX")) {
+				expiries.put(string(command.get(1)), now + Long.parseLong(string(command.get(4))));
+			} else {
+				expiries.remove(string(command.get(1)));
+			}
+			simple(out, "OK");
+			break;
+		case "INCR":
+			byte[] value = entries.compute(string(command.get(1)), (key, old) -> String.valueOf(
+					(old != null ? Long.parseLong(string(old)) : 0) + 1).getBytes(StandardCharsets.UTF_8));
+			integer(out, Long.parseLong(string(value)));
+			break;
+		case "MGET":
+			array(out, command.size() - 1);
+			for (int i = 1; i < command.size(); i++) {
+				bulk(out, entries.get(string(command.get(i))));
+			}
+			break;
+		case "MSET":
+			for (int i = 1; i + 1 < command.size(); i += 2) {
+				entries.put(string(command.get(i)), command.get(i + 1));
+			}
+			simple(out, "OK");
+			break;
+		case "DEL":
+			long deleted = 0;
+			for (int i = 1; i < command.size(); i++) {
+				deleted += entries.remove(string(command.get(i))) != null ? 1 : 0;
+			}
+			integer(out, deleted);
+			break;
+		case "SCAN":
+			scan(command, out);
+			break;
+		default:
+			error(out, "ERR unknown command '" + name + "'");
+		}
+	}
+
+	/*
+	 * SCAN cursor [MATCH pattern] [COUNT count]; the cursor is the key to continue after, 0 to start and finish.
+	 */
+	private void scan(List<byte[]> command, OutputStream out) throws IOException {
+		String cursor = string(command.get(1));
+		String match = "*";
+		int count = 10;
+		for (int i = 2; i + 1 < command.size(); i += 2) {
+			String option = string(command.get(i)).toUpperCase();
+			if (option.equals("MATCH")) {
+				match = string(command.get(i + 1));
+			} else if (option.equals("COUNT")) {
+				count = Integer.parseInt(string(command.get(i + 1)));
+			}
+		}
+		Pattern pattern = globPattern(match);
+		Map<String, byte[]> page = cursor.equals("0") ? entries : entries.tailMap(cursor, false);
+		List<String> keys = new ArrayList<>();
+		String next = "0";
+		int scanned = 0;
+		for (String key : page.keySet()) {
+			if (scanned++ == count) {
+				next = key;
+				break;
+			}
+			if (pattern.matcher(key).matches()) {
+				keys.add(key);
+			}
+		}
+		if (!next.equals("0")) {
+			// continue with the last key scanned
+			next = entries.lowerKey(next);
+		}
+		array(out, 2);
+		bulk(out, next.getBytes(StandardCharsets.UTF_8));
+		array(out, keys.size());
+		for (String key : keys) {
+			bulk(out, key.getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	/*
+	 * The regular expression of a Redis glob pattern: * and ? wildcards, [...] classes (with ^ and ranges) and
+	 * backslash escapes, which make the next character literal.
+	 */
+	static Pattern globPattern(String glob) {
+		StringBuilder regex = new StringBuilder();
+		for (int i = 0; i < glob.length(); i++) {
+			char ch = glob.charAt(i);
+			if (ch == '\\' && i + 1 < glob.length()) {
+				regex.append(literal(glob.charAt(++i)));
+			} else if (ch == '*') {
+				regex.append(".*");
+			} else if (ch == '?') {
+				regex.append('.');
+			} else if (ch == '[') {
+				regex.append('[');
+				if (i + 1 < glob.length() && glob.charAt(i + 1) == '^') {
+					regex.append('^');
+					i++;
+				}
+				for (i++; i < glob.length() && glob.charAt(i) != ']'; i++) {
+					char c = glob.charAt(i);
+					if (c == '\\' && i + 1 < glob.length()) {
+						regex.append(literal(glob.charAt(++i)));
+					} else {
+						regex.append(c == '-' ? "-" : literal(c));
+					}
+				}
+				regex.append(']');
+			} else {
+				regex.append(literal(ch));
+			}
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL);
+	}
+
+	private static String literal(char ch) {
+		return Character.isLetterOrDigit(ch) ? String.valueOf(ch) : "\\" + ch;
+	}
+
+	private static List<byte[]> read(InputStream in) throws IOException {
+		int type = in.read();
+		if (type < 0) {
+			return null;
+		}
+		if (type != '*') {
+			throw new IOException("Expected an array of bulk strings");
+		}
+		int n = Integer.parseInt(line(in));
+		List<byte[]> command = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			in.read();  // $
+			byte[] bytes = new byte[Integer.parseInt(line(in))];
+			int read = 0;
+			while (read < bytes.length) {
+				read += in.read(bytes, read, bytes.length - read);
+			}
+			in.read();
+			in.read();
+			command.add(bytes);
+		}
+		return command;
+	}
+
+	private static String line(InputStream in) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int ch = in.read(); ch != '\r'; ch = in.read()) {
+			sb.append((char) ch);
+		}
+		in.read();
+		return sb.toString();
+	}
+
+	private static String string(byte[] bytes) {
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void simple(OutputStream out, String s) throws IOException {
+		out.write(('+' + s + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void error(OutputStream out, String s) throws IOException {
+		out.write(('-' + s + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void integer(OutputStream out, long n) throws IOException {
+		out.write((":" + n + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void array(OutputStream out, int n) throws IOException {
+		out.write(("*" + n + "\r\n").getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void bulk(OutputStream out, byte[] bytes) throws IOException {
+		if (bytes == null) {
+			out.write("$-1\r\n".getBytes(StandardCharsets.UTF_8));
+			return;
+		}
+		out.write(("$" + bytes.length + "\r\n").getBytes(StandardCharsets.UTF_8));
+		out.write(bytes);
+		out.write("\r\n".getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,181 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.server;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.service.CpraClasspathResourceResolver;
+import org.partners.ppm.cpra.service.CpraDataStores;
+import org.partners.ppm.cpra.service.CpraEngine;
+import org.partners.ppm.cpra.service.CpraWarmup;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraFieldProjection;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/*
+ * The calculate, versions and self-check endpoints of the cPRA service on the JDK's HTTP server, for pods that serve
+ * nothing else and should not pay for Spring MVC, Swagger and AOP at startup and in memory:
+ *
+ *   java -Dsun.net.httpserver.nodelay=true -jar cpra-server.jar [--port=8080] [--threads=0] [--config-path=classpath*:/*.csv] [--precompute-max-profile-size=0]
+ *       [--warmup-time-budget-millis=0] [--store=heap|offheap|redis://host:port/database]
+ *
+ * The JSON is the service's. Calculations run directly on the server's threads, one per core unless --threads says
+ * otherwise. With a warm-up time budget the calculators are warmed up (CpraWarmup) on as many threads before the port
+ * is opened, so the first requests a load balancer sends are not run in the interpreter. The data set entries are kept
+ * in the --store (CpraDataStores), the heap by default. Result caching, entity tags, Smile/CBOR, ethnic weights and
+ * admission control are left to the service.
+ *
+ * The JDK's server writes the headers and body of a response separately, so without TCP_NODELAY each response may wait
+ * for a delayed ACK. The server reads that option from a JVM-wide system property once, and setting it here would
+ * change it for every other JDK HTTP server in the process; launch with -Dsun.net.httpserver.nodelay=true instead.
+ */
+public class CpraHttpServer {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraHttpServer.class);
+
+	private static final String DEFAULT_CONFIG_PATH = "classpath*:/*.csv";
+	private static final String ANTIBODY_DELIMITER = ";";
+
+	private final CpraEngine engine;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private final ObjectWriter writer = objectMapper.writer();
+	private HttpServer server;
+	private ExecutorService executor;
+
+	public CpraHttpServer(CpraEngine engine) {
+		this.engine = engine;
+	}
+
+	public static void main(String[] args) {
+		Map<String, String> options = parseOptions(args);
+		try {
+			long start = System.currentTimeMillis();
+			CpraEngine engine = CpraEngine.load(options.getOrDefault("config-path", DEFAULT_CONFIG_PATH),
+					Integer.parseInt(options.getOrDefault("precompute-max-profile-size", "0")),
+					new CpraClasspathResourceResolver(),
+					CpraDataStores.supplier(options.getOrDefault("store", CpraDataStores.HEAP)));
+			int threads = Integer.parseInt(options.getOrDefault("threads", "0"));
+			long warmupTimeBudgetMillis = Long.parseLong(options.getOrDefault("warmup-time-budget-millis", "0"));
+			if (warmupTimeBudgetMillis > 0) {
+				new CpraWarmup(engine.getSnapshot(), warmupTimeBudgetMillis, CpraWarmup.DEFAULT_WINDOW_MILLIS,
+						CpraWarmup.DEFAULT_TOLERANCE, threads, CpraWarmup.DEFAULT_MAX_PROFILE_SIZE).run();
+			}
+			CpraHttpServer server = new CpraHttpServer(engine);
+			server.start(Integer.parseInt(options.getOrDefault("port", "8080")), threads);
+			Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "cpra-http-shutdown"));
+			log.info("Started CpraHttpServer on port {} with versions {} in {} ms (JVM running for {} ms)",
+					server.getPort(), engine.getVersionList(), System.currentTimeMillis() - start,
+					ManagementFactory.getRuntimeMXBean().getUptime());
+		} catch (Exception e) {
+			log.error("CpraHttpServer failed to start; {}", e.getMessage(), e);
+			System.exit(3);
+		}
+	}
+
+	public void start(int port, int threads) throws IOException {
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/", new CpraRouter()
+				.get("/api/cpra/versions", this::versions)
+				.get("/api/cpra/self-check", this::selfCheck)
+				.get("/api/cpra/{version}/calculate", this::calculate));
+		executor = Executors.newFixedThreadPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+				namedThreads("cpra-http-"));
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	public void stop() {
+		if (server != null) {
+			server.stop(0);
+			executor.shutdownNow();
+		}
+	}
+
+	private void calculate(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		if (parameters.containsKey("weights")) {
+			throw new CpraRuntimeException("Invalid request for Cpra calculator; ethnic weights are only available from the cPRA service");
+		}
+		CpraRequest request = new CpraRequest(parameters.get("version"));
+		request.setContributions(Boolean.parseBoolean(parameters.get("contributions")));
+		String antibodyList = parameters.get("antibodyList");
+		if (antibodyList != null) {
+			for (String antibody : antibodyList.split(ANTIBODY_DELIMITER)) {
+				if (antibody.trim().length() > 0) {
+					request.getAntibodies().add(antibody);
+				}
+			}
+		}
+		String fields = parameters.get("fields");
+		CpraFieldProjection projection = fields != null ? CpraFieldProjection.parse(fields) : null;
+
+		long cost = engine.estimateCost(request);
+		CpraDTO dto = engine.calculate(request);
+		dto.setEstimatedCost(cost);
+		ObjectWriter w = projection != null ? objectMapper.writer(projection.asFilters()) : writer;
+		CpraRouter.send(exchange, 200, CpraRouter.APPLICATION_JSON_UTF8, w.writeValueAsBytes(dto));
+	}
+
+	private void versions(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		CpraRouter.send(exchange, 200, CpraRouter.APPLICATION_JSON_UTF8, writer.writeValueAsBytes(engine.versions()));
+	}
+
+	private void selfCheck(HttpExchange exchange, Map<String, String> parameters) throws IOException {
+		CpraRouter.send(exchange, 200, CpraRouter.APPLICATION_JSON_UTF8, engine.getSnapshot().getSelfCheckJson());
+	}
+
+	private static ThreadFactory namedThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return r -> {
+			return new Thread(r, prefix + count.incrementAndGet());
+		};
+	}
+
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument '" + arg + "'");
+			}
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				options.put(arg.substring(2), "true");
+			} else {
+				options.put(arg.substring(2, equals), arg.substring(equals + 1));
+			}
+		}
+		return options;
+	}
+}
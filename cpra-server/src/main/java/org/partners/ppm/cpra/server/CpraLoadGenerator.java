@@ -0,0 +1,149 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.server;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/*
+ * Closed loop load generator for the calculate endpoint of either launcher, used by benchmark.sh:
+ *
+ *   java -cp cpra-server.jar org.partners.ppm.cpra.server.CpraLoadGenerator --url=http://localhost:8080
+ *       [--version=current] [--threads=8] [--requests=20000] [--warmup-requests=2000] [--profiles=profiles.txt]
+ *
+ * Each thread sends its next request as soon as the previous one is answered, cycling through the antibody profiles
+ * (one antibody list per line of --profiles, or a fixed set of small and mid-sized profiles). The warm-up requests are
+ * not measured. Prints one line: requests, errors, throughput and latency percentiles.
+ */
+public class CpraLoadGenerator {
+
+	private static final List<String> DEFAULT_PROFILES = Arrays.asList(
+			"A1", "A2;B44", "A9;B57;DR52", "A1;B8;DR17", "A2;A3;B7;B44", "A1;A2;B7;B8;DR4;DR17",
+			"A24;B35;C4;DR11;DQ7", "A2;A11;B51;B62;DR15;DR13;DQ6");
+
+	public static void main(String[] args) throws Exception {
+		Map<String, String> options = CpraHttpServer.parseOptions(args);
+		if (!options.containsKey("url")) {
+			System.err.println("Usage: CpraLoadGenerator --url=<http://host:port> [--version=current] [--threads=8]"
+					+ " [--requests=20000] [--warmup-requests=2000] [--profiles=<file>]");
+			System.exit(2);
+		}
+		List<String> profiles = options.containsKey("profiles")
+				? Files.readAllLines(Paths.get(options.get("profiles"))).stream()
+						.map(String::trim).filter(line -> !line.isEmpty()).collect(Collectors.toList())
+				: DEFAULT_PROFILES;
+		String base = options.get("url") + "/api/cpra/" + options.getOrDefault("version", "current") + "/calculate?antibodyList=";
+		List<URL> urls = new ArrayList<>();
+		for (String profile : profiles) {
+			urls.add(new URL(base + URLEncoder.encode(profile, StandardCharsets.UTF_8.name())));
+		}
+		int threads = Integer.parseInt(options.getOrDefault("threads", "8"));
+
+		run(urls, threads, Integer.parseInt(options.getOrDefault("warmup-requests", "2000")));
+		long start = System.nanoTime();
+		Result result = run(urls, threads, Integer.parseInt(options.getOrDefault("requests", "20000")));
+		System.out.println(result.summary(System.nanoTime() - start));
+	}
+
+	private static final class Result {
+		private final long[] latencies;
+		private final long errors;
+
+		private Result(long[] latencies, long errors) {
+			this.latencies = latencies;
+			this.errors = errors;
+		}
+
+		private String summary(long elapsedNanos) {
+			Arrays.sort(latencies);
+			return String.format("requests %d errors %d throughput %.0f/s latency p50 %.2f ms p90 %.2f ms p99 %.2f ms max %.2f ms",
+					latencies.length, errors, latencies.length * 1e9 / elapsedNanos,
+					percentile(0.50), percentile(0.90), percentile(0.99), percentile(1.0));
+		}
+
+		private double percentile(double p) {
+			if (latencies.length == 0) {
+				return 0;
+			}
+			int i = (int) Math.ceil(p * latencies.length) - 1;
+			return latencies[Math.max(0, i)] / 1e6;
+		}
+	}
+
+	private static Result run(List<URL> urls, int threads, int requests) throws Exception {
+		long[] latencies = new long[requests];
+		AtomicLong next = new AtomicLong();
+		AtomicLong errors = new AtomicLong();
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> workers = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				workers.add(executor.submit(() -> {
+					byte[] buffer = new byte[8192];
+					for (long i = next.getAndIncrement(); i < requests; i = next.getAndIncrement()) {
+						long start = System.nanoTime();
+						if (!get(urls.get((int) (i % urls.size())), buffer)) {
+							errors.incrementAndGet();
+						}
+						latencies[(int) i] = System.nanoTime() - start;
+					}
+				}));
+			}
+			for (Future<?> worker : workers) {
+				worker.get();
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return new Result(latencies, errors.get());
+	}
+
+	/*
+	 * Send one request on a kept-alive connection and read the whole response; false unless it is a 200.
+	 */
+	private static boolean get(URL url, byte[] buffer) {
+		try {
+			HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+			int status = connection.getResponseCode();
+			InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+			if (in != null) {
+				try (InputStream body = in) {
+					while (body.read(buffer) >= 0) {
+						// drain, so the connection is reused
+					}
+				}
+			}
+			return status == 200;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+}
@@ -0,0 +1,174 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.partners.ppm.cpra.CpraBadRequestException;
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/*
+ * Small request router for the JDK HTTP server. Routes are GET paths whose {name} segments become parameters, e.g.
+ * "/api/cpra/{version}/calculate", and are matched in the order they were added; the query parameters are added to
+ * the same map. Unknown paths get 404, other methods 405 and exceptions the error body of the Spring Boot service,
+ * 503 for CpraOverloadedException, 400 for CpraBadRequestException and 500 otherwise.
+ */
+public class CpraRouter implements HttpHandler {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraRouter.class);
+
+	public static final String APPLICATION_JSON_UTF8 = "application/json;charset=UTF-8";
+
+	private static final JsonFactory jsonFactory = new JsonFactory();
+
+	@FunctionalInterface
+	public interface Route {
+		void handle(HttpExchange exchange, Map<String, String> parameters) throws IOException;
+	}
+
+	private static final class Entry {
+		private final String[] segments;
+		private final Route route;
+
+		private Entry(String pattern, Route route) {
+			this.segments = pattern.split("/");
+			this.route = route;
+		}
+	}
+
+	private final List<Entry> routes = new ArrayList<>();
+
+	public CpraRouter get(String pattern, Route route) {
+		routes.add(new Entry(pattern, route));
+		return this;
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException {
+		String path = exchange.getRequestURI().getPath();
+		try {
+			Map<String, String> parameters = new HashMap<>();
+			Route route = match(path, parameters);
+			if (route == null) {
+				sendError(exchange, 404, "Not Found", "No message available");
+			} else if (!"GET".equals(exchange.getRequestMethod())) {
+				sendError(exchange, 405, "Method Not Allowed",
+						"Request method '" + exchange.getRequestMethod() + "' not supported");
+			} else {
+				parseQuery(exchange.getRequestURI().getRawQuery(), parameters);
+				route.handle(exchange, parameters);
+			}
+		} catch (CpraOverloadedException e) {
+			sendError(exchange, 503, "Service Unavailable", e.getMessage());
+		} catch (CpraBadRequestException e) {
+			sendError(exchange, 400, "Bad Request", e.getMessage());
+		} catch (RuntimeException e) {
+			log.debug("{} failed; {}", path, e.getMessage(), e);
+			sendError(exchange, 500, "Internal Server Error", e.getMessage());
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private Route match(String path, Map<String, String> parameters) {
+		String[] segments = path.split("/");
+		for (Entry entry : routes) {
+			if (entry.segments.length != segments.length) {
+				continue;
+			}
+			Map<String, String> variables = new HashMap<>();
+			boolean matches = true;
+			for (int i = 0; i < segments.length && matches; i++) {
+				String pattern = entry.segments[i];
+				if (pattern.startsWith("{") && pattern.endsWith("}")) {
+					variables.put(pattern.substring(1, pattern.length() - 1), segments[i]);
+				} else {
+					matches = pattern.equals(segments[i]);
+				}
+			}
+			if (matches) {
+				parameters.putAll(variables);
+				return entry.route;
+			}
+		}
+		return null;
+	}
+
+	/*
+	 * Add the query parameters to the map; the first value of a repeated parameter wins and a path variable is never
+	 * replaced.
+	 */
+	static void parseQuery(String rawQuery, Map<String, String> parameters) {
+		if (rawQuery == null || rawQuery.isEmpty()) {
+			return;
+		}
+		for (String pair : rawQuery.split("&")) {
+			int equals = pair.indexOf('=');
+			String name = decode(equals < 0 ? pair : pair.substring(0, equals));
+			String value = equals < 0 ? "" : decode(pair.substring(equals + 1));
+			parameters.putIfAbsent(name, value);
+		}
+	}
+
+	private static String decode(String s) {
+		try {
+			return URLDecoder.decode(s, StandardCharsets.UTF_8.name());
+		} catch (UnsupportedEncodingException e) {
+			return s;
+		}
+	}
+
+	public static void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(status, body.length > 0 ? body.length : -1);
+		if (body.length > 0) {
+			try (OutputStream out = exchange.getResponseBody()) {
+				out.write(body);
+			}
+		}
+	}
+
+	private static void sendError(HttpExchange exchange, int status, String error, String message) throws IOException {
+		ByteArrayOutputStream body = new ByteArrayOutputStream(256);
+		try (JsonGenerator json = jsonFactory.createGenerator(body)) {
+			json.writeStartObject();
+			json.writeStringField("timestamp", Instant.now().toString());
+			json.writeNumberField("status", status);
+			json.writeStringField("error", error);
+			json.writeStringField("message", message);
+			json.writeStringField("path", exchange.getRequestURI().getPath());
+			json.writeEndObject();
+		}
+		send(exchange, status, APPLICATION_JSON_UTF8, body.toByteArray());
+	}
+}
@@ -0,0 +1,147 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.server;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.hamcrest.Matcher;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.partners.ppm.cpra.service.CpraEngine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class CpraHttpServerIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraHttpServerIntegrationTest.class);
+
+	private static CpraHttpServer server;
+	private static CpraEngine engine;
+	private final ObjectMapper objectMapper = new ObjectMapper();
+
+	@BeforeClass
+	public static void startServer() throws IOException {
+		engine = CpraEngine.load("classpath*:/*.csv");
+		server = new CpraHttpServer(engine);
+		server.start(0, 2);
+	}
+
+	@AfterClass
+	public static void stopServer() {
+		server.stop();
+	}
+
+	private static final class Response {
+		private int status;
+		private String contentType;
+		private String body;
+	}
+
+	private Response get(String path) throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + server.getPort() + path).openConnection();
+		Response response = new Response();
+		response.status = connection.getResponseCode();
+		response.contentType = connection.getContentType();
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		try (InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[8192];
+			for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+				body.write(buffer, 0, n);
+			}
+		}
+		response.body = body.toString("UTF-8");
+		log.info("GET {} = {} {}", path, response.status, response.body);
+		return response;
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testCalculate() throws Exception {
+		log.info("Test Case Name: testCalculate");
+		Response response = get("/api/cpra/optn_2015/calculate?antibodyList=A9");
+		assertThatWrapper("\nExpected value for response.status is <{}>.\nResult is {}", response.status, equalTo(200));
+		assertThatWrapper("\nExpected value for response.contentType is <{}>.\nResult is {}", response.contentType, startsWith("application/json"));
+		JsonNode json = objectMapper.readTree(response.body);
+		assertThatWrapper("\nExpected value for json.get(\"calculatedPRA\").asDouble() is <{}>.\nResult is {}", json.get("calculatedPRA").asDouble(), equalTo(0.23667027217061132));
+		assertThatWrapper("\nExpected value for json.get(\"unacceptableAntigenList\").asText() is <{}>.\nResult is {}", json.get("unacceptableAntigenList").asText(), equalTo("A23;A24;A2402;A2403;A9"));
+		assertThatWrapper("\nExpected value for json.get(\"estimatedCost\").asLong() > 0 is <{}>.\nResult is {}", json.get("estimatedCost").asLong() > 0, equalTo(true));
+
+		// the same JSON as the engine's result
+		assertThatWrapper("\nExpected value for json.get(\"ethnicCalculatedPRA\") is <{}>.\nResult is {}", json.get("ethnicCalculatedPRA"), equalTo(objectMapper.valueToTree(engine.calculate("optn_2015", "A9")).get("ethnicCalculatedPRA")));
+	}
+
+	@Test
+	public void testCalculateFields() throws Exception {
+		log.info("Test Case Name: testCalculateFields");
+		Response response = get("/api/cpra/current/calculate?antibodyList=A9%3BB57&fields=calculatedPRA");
+		assertThatWrapper("\nExpected value for response.status is <{}>.\nResult is {}", response.status, equalTo(200));
+		List<String> names = new ArrayList<>();
+		for (Iterator<String> i = objectMapper.readTree(response.body).fieldNames(); i.hasNext();) {
+			names.add(i.next());
+		}
+		assertThatWrapper("\nExpected value for names is <{}>.\nResult is {}", names, contains("calculatedPRA"));
+	}
+
+	@Test
+	public void testVersionsAndSelfCheck() throws Exception {
+		log.info("Test Case Name: testVersionsAndSelfCheck");
+		Response versions = get("/api/cpra/versions");
+		assertThatWrapper("\nExpected value for versions.status is <{}>.\nResult is {}", versions.status, equalTo(200));
+		assertThatWrapper("\nExpected value for objectMapper.readTree(versions.body).get(\"versions\").get(0).get(\"name\").asText() is <{}>.\nResult is {}", objectMapper.readTree(versions.body).get("versions").get(0).get("name").asText(), equalTo("optn_2015"));
+
+		Response selfCheck = get("/api/cpra/self-check");
+		assertThatWrapper("\nExpected value for selfCheck.status is <{}>.\nResult is {}", selfCheck.status, equalTo(200));
+		assertThatWrapper("\nExpected value for selfCheck.body is <{}>.\nResult is {}", selfCheck.body, equalTo(new String(engine.getSnapshot().getSelfCheckJson(), "UTF-8")));
+	}
+
+	@Test
+	public void testErrors() throws Exception {
+		log.info("Test Case Name: testErrors");
+		Response invalid = get("/api/cpra/optn_2015/calculate?antibodyList=XX");
+		assertThatWrapper("\nExpected value for invalid.status is <{}>.\nResult is {}", invalid.status, equalTo(500));
+		JsonNode error = objectMapper.readTree(invalid.body);
+		assertThatWrapper("\nExpected value for error.get(\"status\").asInt() is <{}>.\nResult is {}", error.get("status").asInt(), equalTo(500));
+		assertThatWrapper("\nExpected value for error.get(\"path\").asText() is <{}>.\nResult is {}", error.get("path").asText(), equalTo("/api/cpra/optn_2015/calculate"));
+
+		assertThatWrapper("\nExpected value for the status of /api/cpra/optn_2015/calculate?antibodyList=A9&weights=1;0;0;0 is <{}>.\nResult is {}", get("/api/cpra/optn_2015/calculate?antibodyList=A9&weights=1;0;0;0").status, equalTo(500));
+		assertThatWrapper("\nExpected value for the status of /api/cpra/optn_2015/calculate?antibodyList=A9&fields=cpra is <{}>.\nResult is {}", get("/api/cpra/optn_2015/calculate?antibodyList=A9&fields=cpra").status, equalTo(400));
+		assertThatWrapper("\nExpected value for the status of /api/cpra/optn_2015/calculate?antibodyList=A9&fields=%3B is <{}>.\nResult is {}", get("/api/cpra/optn_2015/calculate?antibodyList=A9&fields=%3B").status, equalTo(400));
+		assertThatWrapper("\nExpected value for the status of /api/cpra/nothing is <{}>.\nResult is {}", get("/api/cpra/nothing").status, equalTo(404));
+	}
+}
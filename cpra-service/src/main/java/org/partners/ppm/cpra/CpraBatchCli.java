@@ -0,0 +1,113 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.service.CpraBatchFileProcessor;
+import org.partners.ppm.cpra.service.CpraBatchProcessor;
+import org.partners.ppm.cpra.service.CpraComputeExecutor;
+import org.partners.ppm.cpra.service.CpraService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/*
+ * Offline batch calculation, e.g. recomputing the whole registry after a data set change, without the web tier:
+ *
+ *   java -cp cpra.jar -Dloader.main=org.partners.ppm.cpra.CpraBatchCli org.springframework.boot.loader.PropertiesLauncher \
+ *       --input=patients.csv --output=results.ndjson [--version=current] [--threads=0] [--resume]
+ *       [--checkpoint=results.ndjson.checkpoint] [--checkpoint-records=10000] [--config-path=classpath*:/*.csv]
+ *
+ * The data sets are loaded and the calculators run directly, on one thread per core unless --threads says otherwise.
+ * An interrupted run continues where its last checkpoint left off when started again with --resume.
+ */
+public class CpraBatchCli {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraBatchCli.class);
+
+	private static final String DEFAULT_CONFIG_PATH = "classpath*:/*.csv";
+	private static final String DEFAULT_VERSION = "current";
+	private static final String CHECKPOINT_SUFFIX = ".checkpoint";
+
+	public static void main(String[] args) {
+		Map<String, String> options = parseOptions(args);
+		if (!options.containsKey("input") || !options.containsKey("output")) {
+			System.err.println("Usage: CpraBatchCli --input=<file.csv|file.ndjson> --output=<file.ndjson> [--version=current]"
+					+ " [--threads=0] [--resume] [--checkpoint=<file>] [--checkpoint-records=10000] [--config-path=classpath*:/*.csv]");
+			System.exit(2);
+		}
+
+		// without Spring Boot's environment, keep the calculators' debug logging quiet
+		LoggingSystem loggingSystem = LoggingSystem.get(CpraBatchCli.class.getClassLoader());
+		loggingSystem.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+		loggingSystem.setLogLevel(CpraBatchCli.class.getName(), LogLevel.INFO);
+		loggingSystem.setLogLevel(CpraBatchFileProcessor.class.getName(), LogLevel.INFO);
+
+		try {
+			CpraConfiguration cpraConfig = new CpraConfiguration();
+			cpraConfig.setConfigPath(options.getOrDefault("config-path", DEFAULT_CONFIG_PATH));
+			// no interactive requests here, so the batch lane gets every compute thread
+			cpraConfig.setComputeThreads(Integer.parseInt(options.getOrDefault("threads", "0")));
+			cpraConfig.setBatchThreads(cpraConfig.getComputeThreads());
+			cpraConfig.setComputeInteractiveReservedThreads(0);
+			long start = System.currentTimeMillis();
+			CpraService cpraService = CpraService.standalone(cpraConfig);
+			log.info("Loaded cPRA versions {} in {} ms", cpraService.getVersionList(), System.currentTimeMillis() - start);
+
+			CpraComputeExecutor computeExecutor = new CpraComputeExecutor(cpraConfig, new SimpleMeterRegistry());
+			CpraBatchProcessor batchProcessor = new CpraBatchProcessor(cpraService, computeExecutor, cpraConfig,
+					new ObjectMapper());
+			CpraBatchFileProcessor fileProcessor = new CpraBatchFileProcessor(batchProcessor, new ObjectMapper());
+			fileProcessor.setCheckpointRecords(Long.parseLong(options.getOrDefault("checkpoint-records", "10000")));
+			Path output = Paths.get(options.get("output"));
+			Path checkpoint = Paths.get(options.getOrDefault("checkpoint", output + CHECKPOINT_SUFFIX));
+			CpraBatchFileProcessor.Summary summary = fileProcessor.process(Paths.get(options.get("input")), output,
+					options.getOrDefault("version", DEFAULT_VERSION), checkpoint, options.containsKey("resume"));
+			computeExecutor.shutdown();
+			log.info("Done: {}", summary);
+			System.exit(0);
+		} catch (Exception e) {
+			log.error("Batch calculation failed; {}", e.getMessage(), e);
+			System.exit(3);
+		}
+	}
+
+	static Map<String, String> parseOptions(String[] args) {
+		Map<String, String> options = new HashMap<>();
+		for (String arg : args) {
+			if (!arg.startsWith("--")) {
+				throw new IllegalArgumentException("Unexpected argument '" + arg + "'");
+			}
+			int equals = arg.indexOf('=');
+			if (equals < 0) {
+				options.put(arg.substring(2), "true");
+			} else {
+				options.put(arg.substring(2, equals), arg.substring(equals + 1));
+			}
+		}
+		return options;
+	}
+}
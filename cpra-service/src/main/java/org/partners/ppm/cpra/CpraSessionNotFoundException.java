@@ -13,22 +13,17 @@
  *
  * Copyright (C) 2016-2018 Persistent Systems, Inc.
  */
-package org.partners.ppm.cpra.config;
+package org.partners.ppm.cpra;
 
-import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.stereotype.Component;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
 
-@Component
-@ConfigurationProperties(prefix = "cpra")
-public class CpraConfiguration {
+@ResponseStatus(HttpStatus.NOT_FOUND)
+public class CpraSessionNotFoundException extends CpraRuntimeException {
 
-	private String configPath;
+	private static final long serialVersionUID = 1L;
 
-	public String getConfigPath() {
-		return this.configPath;
+	public CpraSessionNotFoundException(String sessionId) {
+		super("Unknown or expired cPRA session '" + sessionId + "'");
 	}
-	
-	public void setConfigPath(String configPath) {
-		this.configPath = configPath;
-	}
-}
\ No newline at end of file
+}
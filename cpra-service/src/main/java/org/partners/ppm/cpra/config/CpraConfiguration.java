@@ -0,0 +1,430 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Component
+@ConfigurationProperties(prefix = "cpra")
+public class CpraConfiguration {
+
+	private String configPath;
+	private int precomputeMaxProfileSize = 0;  // 0 disables the precomputed cPRA table
+	private String store = "heap";  // heap, offheap or redis://host:port/database
+	private String storeRedisKeyPrefix = "cpra:";
+	private int storeRedisPoolSize = 16;
+	private int storeRedisTimeoutMillis = 2000;
+	private boolean storeRedisReadOnly = true;
+	private long storeRedisFollowSeconds = 10;
+	private boolean loadInBackground = true;
+	private long loadRetryAfterSeconds = 5;
+	private long sessionTtlSeconds = 1800;
+	private int sessionMaxSessions = 10000;
+	private long optimizeMaxTimeBudgetMillis = 10000;
+	private int resultCacheMaxProfiles = 10000;
+	private String resultStorePath = "";  // empty disables the persistent result store
+	private long httpCacheMaxAgeSeconds = 60;
+	private boolean prewarmEnabled = false;
+	private String prewarmFile = "prewarm/recent-profiles.tsv";
+	private int prewarmMaxProfiles = 1000;
+	private long prewarmSaveIntervalSeconds = 60;
+	private long prewarmTimeBudgetMillis = 30000;
+	private int prewarmThreads = 0;  // 0 uses one thread per core
+	private boolean warmupEnabled = true;
+	private long warmupTimeBudgetMillis = 30000;
+	private long warmupWindowMillis = 500;
+	private double warmupTolerance = 0.10;
+	private int warmupThreads = 0;  // 0 uses one thread per core
+	private int warmupMaxProfileSize = 10;
+	private int computeThreads = 0;  // 0 uses one thread per core
+	private int computeQueueCapacity = 256;
+	private long computeTimeoutMillis = 30000;  // 0 disables the time limit
+	private int computeInteractiveReservedThreads = 1;
+	private long computeCostBudget = 20000000;  // 0 disables cost based admission
+	private long computeMaxRequestCost = 10000000;  // 0 uses the cost budget
+	private int batchThreads = 0;  // 0 uses half of the compute threads
+	private int batchMaxInFlight = 256;
+	private long asyncRequestTimeoutMillis = 3600000;
+	private boolean watchEnabled = false;
+	private String watchInputDir = "watch/in";
+	private String watchOutputDir = "watch/out";
+	private String watchProcessedDir = "watch/processed";
+	private String watchFailedDir = "watch/failed";
+	private String watchVersion = "current";
+	private long watchSettleMillis = 1000;
+	private int watchQueueCapacity = 100;
+
+	public String getConfigPath() {
+		return this.configPath;
+	}
+	
+	public void setConfigPath(String configPath) {
+		this.configPath = configPath;
+	}
+
+	public int getPrecomputeMaxProfileSize() {
+		return this.precomputeMaxProfileSize;
+	}
+
+	public void setPrecomputeMaxProfileSize(int precomputeMaxProfileSize) {
+		this.precomputeMaxProfileSize = precomputeMaxProfileSize;
+	}
+
+	public String getStore() {
+		return this.store;
+	}
+
+	public void setStore(String store) {
+		this.store = store;
+	}
+
+	public String getStoreRedisKeyPrefix() {
+		return this.storeRedisKeyPrefix;
+	}
+
+	public void setStoreRedisKeyPrefix(String storeRedisKeyPrefix) {
+		this.storeRedisKeyPrefix = storeRedisKeyPrefix;
+	}
+
+	public int getStoreRedisPoolSize() {
+		return this.storeRedisPoolSize;
+	}
+
+	public void setStoreRedisPoolSize(int storeRedisPoolSize) {
+		this.storeRedisPoolSize = storeRedisPoolSize;
+	}
+
+	public int getStoreRedisTimeoutMillis() {
+		return this.storeRedisTimeoutMillis;
+	}
+
+	public void setStoreRedisTimeoutMillis(int storeRedisTimeoutMillis) {
+		this.storeRedisTimeoutMillis = storeRedisTimeoutMillis;
+	}
+
+	public boolean isStoreRedisReadOnly() {
+		return this.storeRedisReadOnly;
+	}
+
+	public void setStoreRedisReadOnly(boolean storeRedisReadOnly) {
+		this.storeRedisReadOnly = storeRedisReadOnly;
+	}
+
+	public long getStoreRedisFollowSeconds() {
+		return this.storeRedisFollowSeconds;
+	}
+
+	public void setStoreRedisFollowSeconds(long storeRedisFollowSeconds) {
+		this.storeRedisFollowSeconds = storeRedisFollowSeconds;
+	}
+
+	public boolean isLoadInBackground() {
+		return this.loadInBackground;
+	}
+
+	public void setLoadInBackground(boolean loadInBackground) {
+		this.loadInBackground = loadInBackground;
+	}
+
+	public long getLoadRetryAfterSeconds() {
+		return this.loadRetryAfterSeconds;
+	}
+
+	public void setLoadRetryAfterSeconds(long loadRetryAfterSeconds) {
+		this.loadRetryAfterSeconds = loadRetryAfterSeconds;
+	}
+
+	public long getSessionTtlSeconds() {
+		return this.sessionTtlSeconds;
+	}
+
+	public void setSessionTtlSeconds(long sessionTtlSeconds) {
+		this.sessionTtlSeconds = sessionTtlSeconds;
+	}
+
+	public int getSessionMaxSessions() {
+		return this.sessionMaxSessions;
+	}
+
+	public void setSessionMaxSessions(int sessionMaxSessions) {
+		this.sessionMaxSessions = sessionMaxSessions;
+	}
+
+	public long getOptimizeMaxTimeBudgetMillis() {
+		return this.optimizeMaxTimeBudgetMillis;
+	}
+
+	public void setOptimizeMaxTimeBudgetMillis(long optimizeMaxTimeBudgetMillis) {
+		this.optimizeMaxTimeBudgetMillis = optimizeMaxTimeBudgetMillis;
+	}
+
+	public int getResultCacheMaxProfiles() {
+		return this.resultCacheMaxProfiles;
+	}
+
+	public void setResultCacheMaxProfiles(int resultCacheMaxProfiles) {
+		this.resultCacheMaxProfiles = resultCacheMaxProfiles;
+	}
+
+	public int getBatchThreads() {
+		return this.batchThreads;
+	}
+
+	public void setBatchThreads(int batchThreads) {
+		this.batchThreads = batchThreads;
+	}
+
+	public int getBatchMaxInFlight() {
+		return this.batchMaxInFlight;
+	}
+
+	public void setBatchMaxInFlight(int batchMaxInFlight) {
+		this.batchMaxInFlight = batchMaxInFlight;
+	}
+
+	public long getAsyncRequestTimeoutMillis() {
+		return this.asyncRequestTimeoutMillis;
+	}
+
+	public void setAsyncRequestTimeoutMillis(long asyncRequestTimeoutMillis) {
+		this.asyncRequestTimeoutMillis = asyncRequestTimeoutMillis;
+	}
+
+	public boolean isWatchEnabled() {
+		return this.watchEnabled;
+	}
+
+	public void setWatchEnabled(boolean watchEnabled) {
+		this.watchEnabled = watchEnabled;
+	}
+
+	public String getWatchInputDir() {
+		return this.watchInputDir;
+	}
+
+	public void setWatchInputDir(String watchInputDir) {
+		this.watchInputDir = watchInputDir;
+	}
+
+	public String getWatchOutputDir() {
+		return this.watchOutputDir;
+	}
+
+	public void setWatchOutputDir(String watchOutputDir) {
+		this.watchOutputDir = watchOutputDir;
+	}
+
+	public String getWatchProcessedDir() {
+		return this.watchProcessedDir;
+	}
+
+	public void setWatchProcessedDir(String watchProcessedDir) {
+		this.watchProcessedDir = watchProcessedDir;
+	}
+
+	public String getWatchFailedDir() {
+		return this.watchFailedDir;
+	}
+
+	public void setWatchFailedDir(String watchFailedDir) {
+		this.watchFailedDir = watchFailedDir;
+	}
+
+	public String getWatchVersion() {
+		return this.watchVersion;
+	}
+
+	public void setWatchVersion(String watchVersion) {
+		this.watchVersion = watchVersion;
+	}
+
+	public long getWatchSettleMillis() {
+		return this.watchSettleMillis;
+	}
+
+	public void setWatchSettleMillis(long watchSettleMillis) {
+		this.watchSettleMillis = watchSettleMillis;
+	}
+
+	public int getWatchQueueCapacity() {
+		return this.watchQueueCapacity;
+	}
+
+	public void setWatchQueueCapacity(int watchQueueCapacity) {
+		this.watchQueueCapacity = watchQueueCapacity;
+	}
+
+	public String getResultStorePath() {
+		return this.resultStorePath;
+	}
+
+	public void setResultStorePath(String resultStorePath) {
+		this.resultStorePath = resultStorePath;
+	}
+
+	public long getHttpCacheMaxAgeSeconds() {
+		return this.httpCacheMaxAgeSeconds;
+	}
+
+	public void setHttpCacheMaxAgeSeconds(long httpCacheMaxAgeSeconds) {
+		this.httpCacheMaxAgeSeconds = httpCacheMaxAgeSeconds;
+	}
+
+	public boolean isPrewarmEnabled() {
+		return this.prewarmEnabled;
+	}
+
+	public void setPrewarmEnabled(boolean prewarmEnabled) {
+		this.prewarmEnabled = prewarmEnabled;
+	}
+
+	public String getPrewarmFile() {
+		return this.prewarmFile;
+	}
+
+	public void setPrewarmFile(String prewarmFile) {
+		this.prewarmFile = prewarmFile;
+	}
+
+	public int getPrewarmMaxProfiles() {
+		return this.prewarmMaxProfiles;
+	}
+
+	public void setPrewarmMaxProfiles(int prewarmMaxProfiles) {
+		this.prewarmMaxProfiles = prewarmMaxProfiles;
+	}
+
+	public long getPrewarmSaveIntervalSeconds() {
+		return this.prewarmSaveIntervalSeconds;
+	}
+
+	public void setPrewarmSaveIntervalSeconds(long prewarmSaveIntervalSeconds) {
+		this.prewarmSaveIntervalSeconds = prewarmSaveIntervalSeconds;
+	}
+
+	public long getPrewarmTimeBudgetMillis() {
+		return this.prewarmTimeBudgetMillis;
+	}
+
+	public void setPrewarmTimeBudgetMillis(long prewarmTimeBudgetMillis) {
+		this.prewarmTimeBudgetMillis = prewarmTimeBudgetMillis;
+	}
+
+	public int getPrewarmThreads() {
+		return this.prewarmThreads;
+	}
+
+	public void setPrewarmThreads(int prewarmThreads) {
+		this.prewarmThreads = prewarmThreads;
+	}
+
+	public boolean isWarmupEnabled() {
+		return this.warmupEnabled;
+	}
+
+	public void setWarmupEnabled(boolean warmupEnabled) {
+		this.warmupEnabled = warmupEnabled;
+	}
+
+	public long getWarmupTimeBudgetMillis() {
+		return this.warmupTimeBudgetMillis;
+	}
+
+	public void setWarmupTimeBudgetMillis(long warmupTimeBudgetMillis) {
+		this.warmupTimeBudgetMillis = warmupTimeBudgetMillis;
+	}
+
+	public long getWarmupWindowMillis() {
+		return this.warmupWindowMillis;
+	}
+
+	public void setWarmupWindowMillis(long warmupWindowMillis) {
+		this.warmupWindowMillis = warmupWindowMillis;
+	}
+
+	public double getWarmupTolerance() {
+		return this.warmupTolerance;
+	}
+
+	public void setWarmupTolerance(double warmupTolerance) {
+		this.warmupTolerance = warmupTolerance;
+	}
+
+	public int getWarmupThreads() {
+		return this.warmupThreads;
+	}
+
+	public void setWarmupThreads(int warmupThreads) {
+		this.warmupThreads = warmupThreads;
+	}
+
+	public int getWarmupMaxProfileSize() {
+		return this.warmupMaxProfileSize;
+	}
+
+	public void setWarmupMaxProfileSize(int warmupMaxProfileSize) {
+		this.warmupMaxProfileSize = warmupMaxProfileSize;
+	}
+
+	public int getComputeThreads() {
+		return this.computeThreads;
+	}
+
+	public void setComputeThreads(int computeThreads) {
+		this.computeThreads = computeThreads;
+	}
+
+	public int getComputeQueueCapacity() {
+		return this.computeQueueCapacity;
+	}
+
+	public void setComputeQueueCapacity(int computeQueueCapacity) {
+		this.computeQueueCapacity = computeQueueCapacity;
+	}
+
+	public long getComputeTimeoutMillis() {
+		return this.computeTimeoutMillis;
+	}
+
+	public void setComputeTimeoutMillis(long computeTimeoutMillis) {
+		this.computeTimeoutMillis = computeTimeoutMillis;
+	}
+
+	public int getComputeInteractiveReservedThreads() {
+		return this.computeInteractiveReservedThreads;
+	}
+
+	public void setComputeInteractiveReservedThreads(int computeInteractiveReservedThreads) {
+		this.computeInteractiveReservedThreads = computeInteractiveReservedThreads;
+	}
+
+	public long getComputeCostBudget() {
+		return this.computeCostBudget;
+	}
+
+	public void setComputeCostBudget(long computeCostBudget) {
+		this.computeCostBudget = computeCostBudget;
+	}
+
+	public long getComputeMaxRequestCost() {
+		return this.computeMaxRequestCost;
+	}
+
+	public void setComputeMaxRequestCost(long computeMaxRequestCost) {
+		this.computeMaxRequestCost = computeMaxRequestCost;
+	}
+}
@@ -0,0 +1,45 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.config;
+
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.service.CpraConfigHashMap;
+import org.partners.ppm.cpra.service.CpraDataStore;
+import org.partners.ppm.cpra.service.CpraDataStores;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/*
+ * Beans for the cpra-core classes, which do not depend on Spring.
+ */
+@Configuration
+public class CpraCoreConfiguration {
+
+	/*
+	 * The data stores of cpra.store and its Redis settings.
+	 */
+	public static Supplier<CpraDataStore> dataStore(CpraConfiguration cpraConfig) {
+		return CpraDataStores.supplier(cpraConfig.getStore(), cpraConfig.getStoreRedisKeyPrefix(),
+				cpraConfig.getStoreRedisPoolSize(), cpraConfig.getStoreRedisTimeoutMillis(),
+				cpraConfig.isStoreRedisReadOnly());
+	}
+
+	@Bean
+	public CpraConfigHashMap cpraConfigHashMap(CpraConfiguration cpraConfig) {
+		return new CpraConfigHashMap(new SpringResourceResolver(), dataStore(cpraConfig));
+	}
+}
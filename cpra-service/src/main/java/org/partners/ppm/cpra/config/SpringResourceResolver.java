@@ -0,0 +1,46 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.config;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.partners.ppm.cpra.service.CpraResourceResolver;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePatternResolver;
+
+/*
+ * Resolves the data set locations with Spring's resource patterns, which also find the data sets inside the nested
+ * jars of the executable service jar.
+ */
+public class SpringResourceResolver implements CpraResourceResolver {
+
+	private final ResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+	@Override
+	public List<URL> resolve(String location) throws IOException {
+		List<URL> urls = new ArrayList<>();
+		for (Resource resource : resolver.getResources(location)) {
+			if (resource.exists()) {
+				urls.add(resource.getURL());
+			}
+		}
+		return urls;
+	}
+}
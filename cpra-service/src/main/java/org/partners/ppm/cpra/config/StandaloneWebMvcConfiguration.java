@@ -15,8 +15,10 @@
  */
 package org.partners.ppm.cpra.config;
 
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
@@ -26,6 +28,15 @@ import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 @ComponentScan
 @EnableWebMvc
 public class StandaloneWebMvcConfiguration implements WebMvcConfigurer {
+
+	@Autowired
+	private CpraConfiguration cpraConfig;
+
+	@Override
+	public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+		// streamed batch responses run for as long as the batch does
+		configurer.setDefaultTimeout(cpraConfig.getAsyncRequestTimeoutMillis());
+	}
 	
 	@Override
 	public void addViewControllers(ViewControllerRegistry registry) {
@@ -0,0 +1,304 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraBatchRecord;
+import org.partners.ppm.cpra.web.rest.dto.CpraBatchResultDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+
+/*
+ * Calculates a file of patient records into a file of NDJSON results, in input order. Input is CSV with a header row
+ * (columns id, antibodyList and optionally version) when the file name ends in .csv, otherwise NDJSON; both are read a
+ * line at a time, so a bad line only fails its own record.
+ *
+ * The reader submits records to the batch processor's worker pool and queues their futures; a writer thread takes
+ * the futures in order and copies the results through a buffer into a FileChannel. The queue holds at most
+ * cpra.batch-max-in-flight records, so a slow disk holds back the reader. Every checkpointRecords records the output
+ * is forced to disk and the number of records done and the output size are saved to the checkpoint file; a run
+ * started with resume cuts the output back to the checkpointed size and skips the records already done.
+ */
+public class CpraBatchFileProcessor {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraBatchFileProcessor.class);
+
+	private static final String CHECKPOINT_RECORDS = "records";
+	private static final String CHECKPOINT_OUTPUT_BYTES = "outputBytes";
+	private static final String CHECKPOINT_INPUT = "input";
+	private static final int OUTPUT_BUFFER_BYTES = 1 << 16;
+	private static final byte NEWLINE = '\n';
+
+	public static class Summary {
+		private final long records;
+		private final long skipped;
+		private final long errors;
+		private final long elapsedMillis;
+
+		Summary(long records, long skipped, long errors, long elapsedMillis) {
+			this.records = records;
+			this.skipped = skipped;
+			this.errors = errors;
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		// records calculated by this run
+		public long getRecords() {
+			return records;
+		}
+
+		// records done by an earlier run
+		public long getSkipped() {
+			return skipped;
+		}
+
+		public long getErrors() {
+			return errors;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public double getRecordsPerSecond() {
+			return elapsedMillis == 0 ? records : records * 1000.0 / elapsedMillis;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d records (%d skipped, %d errors) in %d ms; %.1f records/s", records, skipped, errors,
+					elapsedMillis, getRecordsPerSecond());
+		}
+	}
+
+	private final CpraBatchProcessor batchProcessor;
+	private final ObjectMapper objectMapper;
+	private final CsvMapper csvMapper = new CsvMapper();
+	private long checkpointRecords = 10000;
+	private long progressMillis = 5000;
+
+	public CpraBatchFileProcessor(CpraBatchProcessor batchProcessor, ObjectMapper objectMapper) {
+		this.batchProcessor = batchProcessor;
+		this.objectMapper = objectMapper;
+	}
+
+	public void setCheckpointRecords(long checkpointRecords) {
+		this.checkpointRecords = checkpointRecords;
+	}
+
+	public void setProgressMillis(long progressMillis) {
+		this.progressMillis = progressMillis;
+	}
+
+	/*
+	 * Calculate input into output. The checkpoint may be null for runs that cannot be resumed; it is deleted when the
+	 * run completes.
+	 */
+	public Summary process(Path input, Path output, String defaultVersion, Path checkpoint, boolean resume) throws IOException {
+		long start = System.currentTimeMillis();
+		long skip = 0;
+		long outputBytes = 0;
+		if (resume && checkpoint != null && Files.exists(checkpoint)) {
+			Properties saved = new Properties();
+			try (InputStream in = Files.newInputStream(checkpoint)) {
+				saved.load(in);
+			}
+			if (!input.toAbsolutePath().toString().equals(saved.getProperty(CHECKPOINT_INPUT))) {
+				throw new CpraRuntimeException("Checkpoint '" + checkpoint + "' is for input '" + saved.getProperty(CHECKPOINT_INPUT) + "'");
+			}
+			skip = Long.parseLong(saved.getProperty(CHECKPOINT_RECORDS));
+			outputBytes = Long.parseLong(saved.getProperty(CHECKPOINT_OUTPUT_BYTES));
+			log.info("Resuming '{}' after {} records at output byte {}", input, skip, outputBytes);
+		}
+
+		BlockingQueue<CompletableFuture<CpraBatchResultDTO>> pending = new ArrayBlockingQueue<>(batchProcessor.getMaxInFlight());
+		CompletableFuture<CpraBatchResultDTO> endOfInput = CompletableFuture.completedFuture(null);
+		AtomicReference<Exception> writerFailure = new AtomicReference<>();
+		long[] written = new long[2];  // records, errors; read after the writer has finished
+
+		try (FileChannel channel = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			channel.truncate(outputBytes);
+			channel.position(outputBytes);
+			final long skipped = skip;
+
+			Thread writer = new Thread(() -> {
+				ByteBuffer buffer = ByteBuffer.allocate(OUTPUT_BUFFER_BYTES);
+				long lastProgress = System.currentTimeMillis();
+				try {
+					while (true) {
+						CpraBatchResultDTO result = pending.take().join();
+						if (result == null) {
+							break;
+						}
+						byte[] line = objectMapper.writeValueAsBytes(result);
+						if (buffer.remaining() < line.length + 1) {
+							drain(buffer, channel);
+							if (buffer.capacity() < line.length + 1) {
+								buffer = ByteBuffer.allocate(line.length + 1);
+							}
+						}
+						buffer.put(line).put(NEWLINE);
+						written[0]++;
+						if (result.getError() != null) {
+							written[1]++;
+						}
+						if (checkpoint != null && written[0] % checkpointRecords == 0) {
+							drain(buffer, channel);
+							channel.force(false);
+							saveCheckpoint(checkpoint, input, skipped + written[0], channel.position());
+						}
+						long now = System.currentTimeMillis();
+						if (now - lastProgress >= progressMillis) {
+							lastProgress = now;
+							log.info("Progress '{}': {} records, {} errors; {} records/s", input, skipped + written[0], written[1],
+									String.format("%.1f", written[0] * 1000.0 / Math.max(1, now - start)));
+						}
+					}
+					drain(buffer, channel);
+					channel.force(false);
+				} catch (IOException | RuntimeException e) {
+					writerFailure.set(e);
+					pending.clear();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}, "cpra-batch-writer");
+			writer.start();
+
+			try {
+				long index = 0;
+				RecordReader reader = openReader(input);
+				try {
+					String line;
+					while ((line = reader.lines.readLine()) != null && writerFailure.get() == null) {
+						if (line.trim().isEmpty()) {
+							continue;
+						}
+						long recordIndex = index++;
+						if (recordIndex < skipped) {
+							continue;
+						}
+						CompletableFuture<CpraBatchResultDTO> future;
+						try {
+							future = batchProcessor.submit(recordIndex, reader.records.readValue(line), defaultVersion);
+						} catch (IOException e) {
+							CpraBatchResultDTO result = new CpraBatchResultDTO(recordIndex, null);
+							result.setError("Malformed batch record: " + e.getMessage());
+							future = CompletableFuture.completedFuture(result);
+						}
+						while (!pending.offer(future, 1, TimeUnit.SECONDS)) {
+							if (writerFailure.get() != null) {
+								break;
+							}
+						}
+					}
+				} finally {
+					reader.lines.close();
+				}
+				while (writerFailure.get() == null && !pending.offer(endOfInput, 1, TimeUnit.SECONDS)) {
+					// the writer is draining a full queue
+				}
+				writer.join();
+			} catch (InterruptedException e) {
+				writer.interrupt();
+				Thread.currentThread().interrupt();
+				throw new CpraRuntimeException("Interrupted while calculating batch file '" + input + "'");
+			}
+		}
+
+		if (writerFailure.get() != null) {
+			throw new IOException("Failed writing batch output '" + output + "'", writerFailure.get());
+		}
+		if (checkpoint != null) {
+			Files.deleteIfExists(checkpoint);
+		}
+		Summary summary = new Summary(written[0], skip, written[1], System.currentTimeMillis() - start);
+		log.info("Calculated '{}' into '{}': {}", input, output, summary);
+		return summary;
+	}
+
+	private static class RecordReader {
+		private final BufferedReader lines;
+		private final ObjectReader records;
+
+		RecordReader(BufferedReader lines, ObjectReader records) {
+			this.lines = lines;
+			this.records = records;
+		}
+	}
+
+	private RecordReader openReader(Path input) throws IOException {
+		BufferedReader lines = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+		if (!input.getFileName().toString().toLowerCase().endsWith(".csv")) {
+			return new RecordReader(lines, objectMapper.readerFor(CpraBatchRecord.class));
+		}
+		// the header names the columns of the data lines
+		String header = lines.readLine();
+		CsvSchema.Builder schema = CsvSchema.builder();
+		if (header != null) {
+			for (String column : header.split(",")) {
+				schema.addColumn(column.trim().replace("\"", ""));
+			}
+		}
+		return new RecordReader(lines, csvMapper.readerFor(CpraBatchRecord.class).with(schema.build()));
+	}
+
+	private static void drain(ByteBuffer buffer, FileChannel channel) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+
+	/*
+	 * Replace the checkpoint atomically, so an interrupted run never leaves half a checkpoint behind.
+	 */
+	private static void saveCheckpoint(Path checkpoint, Path input, long records, long outputBytes) throws IOException {
+		Properties saved = new Properties();
+		saved.setProperty(CHECKPOINT_INPUT, input.toAbsolutePath().toString());
+		saved.setProperty(CHECKPOINT_RECORDS, Long.toString(records));
+		saved.setProperty(CHECKPOINT_OUTPUT_BYTES, Long.toString(outputBytes));
+		Path temp = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+		try (OutputStream out = Files.newOutputStream(temp)) {
+			saved.store(out, "cPRA batch checkpoint");
+		}
+		Files.move(temp, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+}
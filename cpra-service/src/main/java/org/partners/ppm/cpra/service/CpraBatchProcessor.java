@@ -0,0 +1,206 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.service.CpraComputeExecutor.Lane;
+import org.partners.ppm.cpra.web.rest.dto.CpraBatchRecord;
+import org.partners.ppm.cpra.web.rest.dto.CpraBatchResultDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Calculates a stream of patient records (NDJSON, or a JSON array of records) with Jackson's streaming parser, so only
+ * the records in flight are held in memory. Records are calculated in the batch lane of the compute pool, so they only
+ * use cpra.batch-threads workers while interactive requests are waiting;
+ * at most cpra.batch-max-in-flight records of one batch are parsed ahead of their results, so a slow consumer holds
+ * back the reader rather than letting results pile up. Results go to the sink as they complete, from the worker
+ * threads, so the sink must be thread safe. A failing record is reported in its result and the batch goes on; a
+ * malformed document ends the batch with an error result, since the parser cannot resynchronize.
+ */
+@Service
+public class CpraBatchProcessor {
+
+	private final Logger log = LoggerFactory.getLogger(CpraBatchProcessor.class);
+
+	private final int maxInFlight;
+
+	private CpraService cpraService;
+	private CpraComputeExecutor computeExecutor;
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	public CpraBatchProcessor(CpraService cpraService, CpraComputeExecutor computeExecutor, CpraConfiguration cpraConfig,
+			ObjectMapper objectMapper) {
+		this.cpraService = cpraService;
+		this.computeExecutor = computeExecutor;
+		this.objectMapper = objectMapper;
+		this.maxInFlight = Math.max(1, cpraConfig.getBatchMaxInFlight());
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	/*
+	 * Calculate every record of the input and hand each result to the sink; returns the number of records read.
+	 * Stops reading early when the sink throws, e.g. because the client went away, and rethrows that failure.
+	 */
+	public long process(String defaultVersion, InputStream in, Consumer<CpraBatchResultDTO> sink) throws IOException {
+		long start = System.currentTimeMillis();
+		Semaphore inFlight = new Semaphore(maxInFlight);
+		AtomicReference<RuntimeException> sinkFailure = new AtomicReference<>();
+		AtomicLong errors = new AtomicLong();
+		long index = 0;
+
+		try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+			boolean first = true;
+			while (sinkFailure.get() == null) {
+				CpraBatchRecord record;
+				try {
+					JsonToken token = parser.nextToken();
+					if (first && token == JsonToken.START_ARRAY) {
+						token = parser.nextToken();
+					}
+					first = false;
+					if (token == null || token == JsonToken.END_ARRAY) {
+						break;
+					}
+					record = parser.readValueAs(CpraBatchRecord.class);
+				} catch (JsonProcessingException e) {
+					CpraBatchResultDTO result = new CpraBatchResultDTO(index, null);
+					result.setError("Malformed batch record: " + e.getOriginalMessage());
+					awaitAll(inFlight);
+					sink.accept(result);
+					errors.incrementAndGet();
+					index++;
+					break;
+				}
+
+				acquire(inFlight, 1);
+				final long recordIndex = index++;
+				submit(recordIndex, record, defaultVersion).whenComplete((calculated, failure) -> {
+					try {
+						CpraBatchResultDTO result = calculated;
+						if (failure != null) {
+							result = new CpraBatchResultDTO(recordIndex, record.getId());
+							result.setError(failure.getMessage());
+						}
+						if (result.getError() != null) {
+							errors.incrementAndGet();
+						}
+						if (sinkFailure.get() == null) {
+							sink.accept(result);
+						}
+					} catch (RuntimeException e) {
+						sinkFailure.compareAndSet(null, e);
+					} finally {
+						inFlight.release();
+					}
+				});
+			}
+		} finally {
+			awaitAll(inFlight);
+		}
+
+		if (sinkFailure.get() != null) {
+			throw sinkFailure.get();
+		}
+		log.debug("Batch of {} records for version '{}' with {} errors in {} ms", index, defaultVersion, errors.get(),
+				System.currentTimeMillis() - start);
+		return index;
+	}
+
+	/*
+	 * Wait until the service's data sets are loaded.
+	 */
+	void awaitLoaded() {
+		cpraService.awaitLoaded();
+	}
+
+	/*
+	 * Calculate one record in the batch lane of the compute pool, admitted by its estimated cost.
+	 */
+	public CompletableFuture<CpraBatchResultDTO> submit(long index, CpraBatchRecord record, String defaultVersion) {
+		long cost = cpraService.estimateCost(request(record, defaultVersion));
+		return computeExecutor.submit(Lane.BATCH, cost, () -> calculate(index, record, defaultVersion));
+	}
+
+	/*
+	 * Calculate one record; failures are reported in the result.
+	 */
+	public CpraBatchResultDTO calculate(long index, CpraBatchRecord record, String defaultVersion) {
+		CpraBatchResultDTO result = new CpraBatchResultDTO(index, record.getId());
+		try {
+			result.setCpra(cpraService.calculate(request(record, defaultVersion)));
+		} catch (RuntimeException e) {
+			log.debug("Batch record {} ({}) failed; {}", index, record.getId(), e.getMessage());
+			result.setError(e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+		}
+		return result;
+	}
+
+	private static CpraRequest request(CpraBatchRecord record, String defaultVersion) {
+		CpraRequest request = new CpraRequest(record.getVersion() != null ? record.getVersion() : defaultVersion);
+		if (record.getAntibodies() != null) {
+			for (String antibody : record.getAntibodies()) {
+				if (antibody != null && antibody.trim().length() > 0) {
+					request.getAntibodies().add(antibody.trim());
+				}
+			}
+		}
+		if (record.getAntibodyList() != null) {
+			for (String antibody : record.getAntibodyList().split(";")) {
+				if (antibody.trim().length() > 0) {
+					request.getAntibodies().add(antibody.trim());
+				}
+			}
+		}
+		request.setWeights(record.getWeights());
+		return request;
+	}
+
+	private void awaitAll(Semaphore inFlight) {
+		acquire(inFlight, maxInFlight);
+		inFlight.release(maxInFlight);
+	}
+
+	private static void acquire(Semaphore semaphore, int permits) {
+		try {
+			semaphore.acquire(permits);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new CpraRuntimeException("Interrupted while waiting for batch records");
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.LongSupplier;
+
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.service.CpraComputeExecutor.Lane;
+import org.partners.ppm.cpra.web.rest.dto.CpraCompareDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/*
+ * Calculates one antibody profile with several versions at once. The antibodies are split, trimmed, upper cased and
+ * validated once; each version then runs as its own interactive task on the compute pool, admitted by its estimated
+ * cost like a calculate request, so the response takes about as long as the slowest version. If the pool rejects a
+ * version as overloaded, the whole comparison gets 503; other failures are reported per version. Equivalents are
+ * still expanded per version, since each version has its own equivalence table.
+ */
+@Service
+public class CpraCompareService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraCompareService.class);
+
+	public static final String ALL_VERSIONS = "all";
+
+	private CpraService cpraService;
+	private CpraComputeExecutor computeExecutor;
+
+	@Autowired
+	public CpraCompareService(CpraService cpraService, CpraComputeExecutor computeExecutor) {
+		this.cpraService = cpraService;
+		this.computeExecutor = computeExecutor;
+	}
+
+	public CpraCompareDTO compare(List<String> antibodies, List<String> versions) {
+		long start = System.currentTimeMillis();
+
+		// normalize once for all versions
+		List<String> antibodyList = new ArrayList<>();
+		for (String antibody : antibodies) {
+			String ab = antibody.trim().toUpperCase();
+			if (!ab.matches(CpraRequest.ANTIBODY_PATTERN)) {
+				throw new CpraRuntimeException("Invalid antibody '" + antibody + "' for Cpra calculator");
+			}
+			antibodyList.add(ab);
+		}
+		Set<String> versionSet = new LinkedHashSet<>();
+		for (String version : versions) {
+			if (version.trim().equalsIgnoreCase(ALL_VERSIONS)) {
+				versionSet.addAll(cpraService.getVersionList());
+			} else if (!version.trim().isEmpty()) {
+				versionSet.add(version.trim());
+			}
+		}
+		if (versionSet.isEmpty()) {
+			throw new CpraRuntimeException("Invalid request for Cpra compare; no versions requested");
+		}
+
+		List<CompletableFuture<CpraCompareDTO.VersionResult>> futures = new ArrayList<>();
+		for (String version : versionSet) {
+			futures.add(submit(version, antibodyList));
+		}
+		CpraCompareDTO dto = new CpraCompareDTO();
+		dto.setAntibodyList(antibodyList);
+		for (CompletableFuture<CpraCompareDTO.VersionResult> future : futures) {
+			try {
+				dto.getResults().add(future.join());
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof CpraOverloadedException) {
+					throw (CpraOverloadedException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		dto.setElapsedMillis(System.currentTimeMillis() - start);
+		log.debug("Compared {} across {} in {} ms", antibodyList, versionSet, dto.getElapsedMillis());
+		return dto;
+	}
+
+	/*
+	 * The version's calculation on the compute pool; a version the pool rejects for anything but overload, e.g. as too
+	 * expensive, is reported as that version's error.
+	 */
+	private CompletableFuture<CpraCompareDTO.VersionResult> submit(String version, List<String> antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.getAntibodies().addAll(antibodyList);
+		LongSupplier cost = () -> {
+			try {
+				return cpraService.isPrecalculated(request) ? 0 : cpraService.estimateCost(request);
+			} catch (RuntimeException e) {
+				return 0;  // e.g. an unknown version, reported by the calculation itself
+			}
+		};
+		return computeExecutor.submit(Lane.INTERACTIVE, cost, () -> calculate(version, request)).exceptionally(e -> {
+			Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+			if (cause instanceof CpraOverloadedException) {
+				throw (CpraOverloadedException) cause;
+			}
+			log.debug("Compare for version '{}' rejected; {}", version, cause.getMessage());
+			CpraCompareDTO.VersionResult result = new CpraCompareDTO.VersionResult();
+			result.setVersion(version);
+			result.setError(cause.getMessage());
+			return result;
+		});
+	}
+
+	private CpraCompareDTO.VersionResult calculate(String version, CpraRequest request) {
+		long start = System.currentTimeMillis();
+		CpraCompareDTO.VersionResult result = new CpraCompareDTO.VersionResult();
+		result.setVersion(version);
+		try {
+			result.setCpra(cpraService.calculate(request));
+			result.setVersion(result.getCpra().getVersion());
+		} catch (RuntimeException e) {
+			// one version failing, e.g. on an antibody it does not know, does not fail the others
+			log.debug("Compare for version '{}' failed; {}", version, e.getMessage());
+			result.setError(e.getMessage());
+		}
+		result.setElapsedMillis(System.currentTimeMillis() - start);
+		return result;
+	}
+}
@@ -0,0 +1,412 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.annotation.PreDestroy;
+
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.partners.ppm.cpra.CpraTooExpensiveException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Runs calculations off the servlet container's request threads on cpra.compute-threads (0 = one per core), in two
+ * lanes: INTERACTIVE for clinician requests and BATCH for bulk recomputation (batch api, offline batch, watched
+ * directory). Workers always take interactive work first. Batch work runs on at most cpra.batch-threads workers (0 =
+ * half of them) while interactive work is queued or running; when the interactive lane is idle, batch work steals the
+ * other workers too, except cpra.compute-interactive-reserved-threads that are kept free for the next interactive
+ * request. A running calculation is never preempted, so an interactive request waits at most for a worker to finish.
+ *
+ * The interactive lane holds at most cpra.compute-queue-capacity requests; beyond that a request is rejected with
+ * CpraOverloadedException (503), as is one without a result within cpra.compute-timeout-millis, which is then
+ * cancelled. The calculation sees the same limit as its CpraDeadline, so it stops at its next deadline check instead
+ * of running to the end. The batch lane is not bounded here, its producers bound their records in flight.
+ *
+ * Tasks carry an estimated cost (CpraCalculator.estimateCost()), or a function that estimates it, which the first idle
+ * worker runs before the task is admitted, so the request thread does not expand the profile; the task then goes back
+ * to the head of its lane. An interactive task more expensive than
+ * cpra.compute-max-request-cost is rejected outright with CpraTooExpensiveException (422), since retrying it cannot
+ * succeed; the others are admitted while the cost of the running tasks
+ * stays within cpra.compute-cost-budget, and wait in their queue otherwise. A worker never skips the head of the
+ * interactive lane for cheaper work, so an expensive request is not starved, and a task runs on its own if nothing
+ * else is running, whatever its cost.
+ *
+ * Per lane, the queue wait (cpra.compute.queue.wait), queued and active tasks (cpra.compute.queued,
+ * cpra.compute.active) and the estimated cost of the admitted tasks (cpra.compute.cost) are published as metrics
+ * tagged lane=interactive|batch, with the cost of the running tasks (cpra.compute.cost.running), the rejections by
+ * reason (cpra.compute.rejected, reason=queue-full|too-expensive) and cpra.compute.timeouts.
+ */
+@Service
+public class CpraComputeExecutor {
+
+	private final Logger log = LoggerFactory.getLogger(CpraComputeExecutor.class);
+
+	static final String METRICS_NAME = "cpra.compute";
+
+	public enum Lane {
+		INTERACTIVE, BATCH;
+
+		String tag() {
+			return name().toLowerCase();
+		}
+	}
+
+	private static class Task {
+		private final Lane lane;
+		private long cost;
+		private LongSupplier estimate;  // until a worker has estimated the cost
+		private final FutureTask<Void> work;
+		private final CompletableFuture<?> result;
+		private final long queuedAt = System.nanoTime();
+
+		private Task(Lane lane, long cost, LongSupplier estimate, FutureTask<Void> work, CompletableFuture<?> result) {
+			this.lane = lane;
+			this.cost = cost;
+			this.estimate = estimate;
+			this.work = work;
+			this.result = result;
+		}
+	}
+
+	static final String REJECTED_QUEUE_FULL = "queue-full";
+	static final String REJECTED_TOO_EXPENSIVE = "too-expensive";
+
+	private final int threads;
+	private final int batchShare;
+	private final int batchStealLimit;
+	private final int queueCapacity;
+	private final long timeoutMillis;
+	private final long costBudget;
+	private final long maxRequestCost;
+
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition workAvailable = lock.newCondition();
+	private final Map<Lane, Deque<Task>> queues = new EnumMap<>(Lane.class);
+	private final Map<Lane, Integer> active = new EnumMap<>(Lane.class);
+	private final Map<Lane, Timer> queueWait = new EnumMap<>(Lane.class);
+	private final Map<Lane, DistributionSummary> admittedCost = new EnumMap<>(Lane.class);
+	private long runningCost;
+	private final Thread[] workers;
+	private final ScheduledThreadPoolExecutor timer;
+	private final Counter rejectedQueueFull;
+	private final Counter rejectedTooExpensive;
+	private final Counter timeouts;
+	private volatile boolean running = true;
+
+	@Autowired
+	public CpraComputeExecutor(CpraConfiguration cpraConfig, MeterRegistry meterRegistry) {
+		this.threads = cpraConfig.getComputeThreads() > 0 ? cpraConfig.getComputeThreads()
+				: Runtime.getRuntime().availableProcessors();
+		this.batchShare = Math.min(threads,
+				cpraConfig.getBatchThreads() > 0 ? cpraConfig.getBatchThreads() : Math.max(1, threads / 2));
+		this.batchStealLimit = Math.max(batchShare, threads - Math.max(0, cpraConfig.getComputeInteractiveReservedThreads()));
+		this.queueCapacity = Math.max(1, cpraConfig.getComputeQueueCapacity());
+		this.timeoutMillis = cpraConfig.getComputeTimeoutMillis();
+		this.costBudget = cpraConfig.getComputeCostBudget() > 0 ? cpraConfig.getComputeCostBudget() : Long.MAX_VALUE;
+		this.maxRequestCost = cpraConfig.getComputeMaxRequestCost() > 0 ? cpraConfig.getComputeMaxRequestCost()
+				: costBudget;
+
+		for (Lane lane : Lane.values()) {
+			queues.put(lane, new ArrayDeque<>());
+			active.put(lane, 0);
+			queueWait.put(lane, meterRegistry.timer(METRICS_NAME + ".queue.wait", "lane", lane.tag()));
+			admittedCost.put(lane, meterRegistry.summary(METRICS_NAME + ".cost", "lane", lane.tag()));
+			Gauge.builder(METRICS_NAME + ".queued", this, it -> it.getQueued(lane)).tag("lane", lane.tag())
+					.register(meterRegistry);
+			Gauge.builder(METRICS_NAME + ".active", this, it -> it.getActive(lane)).tag("lane", lane.tag())
+					.register(meterRegistry);
+		}
+		Gauge.builder(METRICS_NAME + ".cost.running", this, CpraComputeExecutor::getRunningCost).register(meterRegistry);
+		this.rejectedQueueFull = meterRegistry.counter(METRICS_NAME + ".rejected", "lane", Lane.INTERACTIVE.tag(),
+				"reason", REJECTED_QUEUE_FULL);
+		this.rejectedTooExpensive = meterRegistry.counter(METRICS_NAME + ".rejected", "lane", Lane.INTERACTIVE.tag(),
+				"reason", REJECTED_TOO_EXPENSIVE);
+		this.timeouts = meterRegistry.counter(METRICS_NAME + ".timeouts", "lane", Lane.INTERACTIVE.tag());
+
+		this.timer = new ScheduledThreadPoolExecutor(1,
+				new ThreadFactoryBuilder().setNameFormat("cpra-compute-timer").setDaemon(true).build());
+		this.timer.setRemoveOnCancelPolicy(true);  // completed requests do not leave their timeouts behind
+		this.workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(this::work, "cpra-compute-" + i);
+			workers[i].setDaemon(true);
+			workers[i].start();
+		}
+		log.debug("Compute pool of {} threads; batch lane {} threads, {} when the interactive lane is idle", threads,
+				batchShare, batchStealLimit);
+	}
+
+	/*
+	 * Run an interactive calculation on the compute pool.
+	 */
+	public <T> CompletableFuture<T> submit(Supplier<T> calculation) {
+		return submit(Lane.INTERACTIVE, 0, calculation);
+	}
+
+	public <T> CompletableFuture<T> submit(Lane lane, Supplier<T> calculation) {
+		return submit(lane, 0, calculation);
+	}
+
+	/*
+	 * Run the calculation of the estimated cost in the lane. The future fails with the calculation's own exception, or
+	 * for an interactive calculation with CpraTooExpensiveException if it is too expensive, and with
+	 * CpraOverloadedException if the lane is full or the time limit passes first.
+	 */
+	public <T> CompletableFuture<T> submit(Lane lane, long cost, Supplier<T> calculation) {
+		return submit(lane, cost, null, calculation);
+	}
+
+	/*
+	 * Run the calculation in the lane, admitted by the cost the estimate returns, which a worker estimates.
+	 */
+	public <T> CompletableFuture<T> submit(Lane lane, LongSupplier estimate, Supplier<T> calculation) {
+		return submit(lane, 0, estimate, calculation);
+	}
+
+	private <T> CompletableFuture<T> submit(Lane lane, long cost, LongSupplier estimate, Supplier<T> calculation) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		boolean timed = lane == Lane.INTERACTIVE && timeoutMillis > 0;
+		long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+		FutureTask<Void> work = new FutureTask<>(() -> {
+			if (!result.isDone()) {  // not timed out while queued
+				try {
+					result.complete(timed ? CpraDeadline.run(deadline, calculation) : calculation.get());
+				} catch (RuntimeException | Error e) {
+					result.completeExceptionally(e);
+				}
+			}
+		}, null);
+
+		if (estimate == null && rejectTooExpensive(lane, cost, result)) {
+			return result;
+		}
+
+		lock.lock();
+		try {
+			Queue<Task> queue = queues.get(lane);
+			if (!running || (lane == Lane.INTERACTIVE && queue.size() >= queueCapacity)) {
+				rejectedQueueFull.increment();
+				log.debug("Compute lane {} full; {} queued, {} active", lane, queue.size(), active.get(lane));
+				result.completeExceptionally(new CpraOverloadedException("The cPRA service is busy; retry later"));
+				return result;
+			}
+			queue.add(new Task(lane, Math.max(0, cost), estimate, work, result));
+			workAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+
+		if (timed) {
+			ScheduledFuture<?> timeout = timer.schedule(() -> {
+				if (result.completeExceptionally(new CpraOverloadedException(
+						"The cPRA calculation did not complete within " + timeoutMillis + " ms"))) {
+					timeouts.increment();
+					work.cancel(true);
+				}
+			}, timeoutMillis, TimeUnit.MILLISECONDS);
+			result.whenComplete((value, e) -> timeout.cancel(false));
+		}
+		return result;
+	}
+
+	/*
+	 * Fail an interactive task more expensive than cpra.compute-max-request-cost with CpraTooExpensiveException.
+	 */
+	private boolean rejectTooExpensive(Lane lane, long cost, CompletableFuture<?> result) {
+		if (lane != Lane.INTERACTIVE || cost <= maxRequestCost) {
+			return false;
+		}
+		rejectedTooExpensive.increment();
+		log.debug("Compute request of estimated cost {} rejected; limit {}", cost, maxRequestCost);
+		result.completeExceptionally(new CpraTooExpensiveException("The antibody profile is too expensive to calculate; "
+				+ "estimated cost " + cost + ", limit " + maxRequestCost));
+		return true;
+	}
+
+	/*
+	 * Estimate the task's cost, outside the lock, and put it back at the head of its lane to be admitted by it.
+	 */
+	private void estimate(Task task) {
+		long cost;
+		try {
+			cost = task.estimate.getAsLong();
+		} catch (RuntimeException | Error e) {
+			task.result.completeExceptionally(e);
+			return;
+		}
+		if (rejectTooExpensive(task.lane, cost, task.result)) {
+			return;
+		}
+		lock.lock();
+		try {
+			task.cost = Math.max(0, cost);
+			task.estimate = null;
+			queues.get(task.lane).addFirst(task);
+			workAvailable.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void work() {
+		while (running) {
+			Task task;
+			lock.lock();
+			try {
+				while ((task = next()) == null) {
+					workAvailable.await();
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				lock.unlock();
+			}
+			if (task.estimate != null) {
+				estimate(task);
+				continue;
+			}
+
+			queueWait.get(task.lane).record(System.nanoTime() - task.queuedAt, TimeUnit.NANOSECONDS);
+			try {
+				task.work.run();
+			} finally {
+				Thread.interrupted();  // clear a cancellation's interrupt before taking the next task
+				lock.lock();
+				try {
+					active.merge(task.lane, -1, Integer::sum);
+					runningCost -= task.cost;
+					workAvailable.signalAll();
+				} finally {
+					lock.unlock();
+				}
+			}
+		}
+	}
+
+	/*
+	 * The next task for an idle worker, or null if it must wait; called with the lock held.
+	 */
+	private Task next() {
+		for (Queue<Task> queue : queues.values()) {
+			while (!queue.isEmpty() && queue.peek().result.isDone()) {
+				queue.poll();  // timed out while queued
+			}
+			if (!queue.isEmpty() && queue.peek().estimate != null) {
+				return queue.poll();  // estimated before it is admitted; takes no share of the lane or the budget
+			}
+		}
+		Task task = queues.get(Lane.INTERACTIVE).peek();
+		if (task != null) {
+			if (!withinBudget(task)) {
+				return null;  // the head waits for running work to finish; nothing overtakes it
+			}
+			queues.get(Lane.INTERACTIVE).poll();
+		} else if (!queues.get(Lane.BATCH).isEmpty()) {
+			boolean interactiveIdle = active.get(Lane.INTERACTIVE) == 0;
+			if (active.get(Lane.BATCH) < (interactiveIdle ? batchStealLimit : batchShare)
+					&& withinBudget(queues.get(Lane.BATCH).peek())) {
+				task = queues.get(Lane.BATCH).poll();
+			}
+		}
+		if (task != null) {
+			active.merge(task.lane, 1, Integer::sum);
+			runningCost += task.cost;
+			admittedCost.get(task.lane).record(task.cost);
+		}
+		return task;
+	}
+
+	private boolean withinBudget(Task task) {
+		return runningCost == 0 || task.cost <= costBudget - runningCost;
+	}
+
+	public int getQueued(Lane lane) {
+		lock.lock();
+		try {
+			return queues.get(lane).size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getActive(Lane lane) {
+		lock.lock();
+		try {
+			return active.get(lane);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/*
+	 * The estimated cost of the running tasks.
+	 */
+	public long getRunningCost() {
+		lock.lock();
+		try {
+			return runningCost;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	@PreDestroy
+	public void shutdown() {
+		running = false;
+		timer.shutdownNow();
+		for (Thread worker : workers) {
+			worker.interrupt();
+		}
+		lock.lock();
+		try {
+			for (Queue<Task> queue : queues.values()) {
+				for (Task task : queue) {
+					task.work.cancel(false);
+					task.result.completeExceptionally(new CpraOverloadedException("The cPRA service is shutting down"));
+				}
+				queue.clear();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+}
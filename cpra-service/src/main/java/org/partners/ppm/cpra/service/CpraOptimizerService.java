@@ -0,0 +1,298 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/*
+ * Searches for the lowest weight set of antibodies whose removal brings a profile's cPRA below a target. Candidate
+ * profiles are evaluated on one incremental engine by removing and re-adding antibodies, so a step only recomputes
+ * the terms of the antigens involved.
+ *
+ * greedy           : repeatedly remove the antibody with the largest cPRA drop per unit of weight.
+ * branch-and-bound : depth first search over remove/keep decisions, starting from the greedy solution as the bound.
+ *                    A branch is cut when it cannot beat the best weight, or when removing every antibody still
+ *                    undecided does not reach the target (cPRA never rises when an antibody is removed). The result
+ *                    is optimal when the search finishes within the time budget.
+ */
+@Service
+public class CpraOptimizerService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraOptimizerService.class);
+
+	private static final double DEFAULT_WEIGHT = 1.0;
+
+	private CpraService cpraService;
+	private CpraConfiguration cpraConfig;
+
+	@Autowired
+	public CpraOptimizerService(CpraService cpraService, CpraConfiguration cpraConfig) {
+		this.cpraService = cpraService;
+		this.cpraConfig = cpraConfig;
+	}
+
+	/*
+	 * State of one optimization run.
+	 */
+	private static class Search {
+		private final CpraIncrementalEngine engine;
+		private final double target;
+		private final long deadline;
+		private final List<String> candidates = new ArrayList<>();
+		private final Map<String, Double> weights = new HashMap<>();
+		private final List<String> removed = new ArrayList<>();
+		private double removedWeight;
+		private List<String> best;
+		private double bestWeight = Double.POSITIVE_INFINITY;
+		private long evaluations;
+		private long nodes;
+		private boolean timedOut;
+
+		Search(CpraIncrementalEngine engine, double target, long deadline) {
+			this.engine = engine;
+			this.target = target;
+			this.deadline = deadline;
+		}
+
+		double evaluate() {
+			evaluations++;
+			return engine.getCalculatedPRA();
+		}
+
+		boolean outOfTime() {
+			if (!timedOut && System.currentTimeMillis() > deadline) {
+				timedOut = true;
+			}
+			return timedOut;
+		}
+
+		void remove(String antibody) {
+			engine.removeAntibody(antibody);
+			removed.add(antibody);
+			removedWeight += weights.get(antibody);
+		}
+
+		void restore(String antibody) {
+			engine.addAntibody(antibody);
+			removed.remove(removed.size() - 1);
+			removedWeight -= weights.get(antibody);
+		}
+
+		void offer() {
+			if (removedWeight < bestWeight) {
+				best = new ArrayList<>(removed);
+				bestWeight = removedWeight;
+			}
+		}
+	}
+
+	public CpraOptimizeDTO optimize(String version, CpraOptimizeRequest request) {
+		String strategy = request.getStrategy() == null ? CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND
+				: request.getStrategy().toLowerCase();
+		if (!strategy.equals(CpraOptimizeRequest.STRATEGY_GREEDY)
+				&& !strategy.equals(CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND)) {
+			throw new CpraRuntimeException("Invalid strategy '" + request.getStrategy() + "' for Cpra optimizer; strategy can be '"
+					+ CpraOptimizeRequest.STRATEGY_GREEDY + "' or '" + CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND + "'");
+		}
+		long start = System.currentTimeMillis();
+		long budget = Math.min(Math.max(request.getTimeBudgetMillis(), 0), cpraConfig.getOptimizeMaxTimeBudgetMillis());
+
+		CpraIncrementalEngine engine = cpraService.newIncrementalEngine(version);
+		Search search = new Search(engine, request.getTargetPRA(), start + budget);
+		Map<String, Double> weights = new HashMap<>();
+		if (request.getWeights() != null) {
+			request.getWeights().forEach((antibody, weight) -> weights.put(antibody.trim().toUpperCase(), weight));
+		}
+		for (String antibody : request.getAntibodies()) {
+			if (antibody == null || !antibody.trim().matches(CpraRequest.ANTIBODY_PATTERN)) {
+				throw new CpraRuntimeException("Invalid antibody '" + antibody + "' for Cpra optimizer");
+			}
+			String ab = antibody.trim().toUpperCase();
+			if (engine.addAntibody(ab)) {
+				Double weight = weights.getOrDefault(ab, DEFAULT_WEIGHT);
+				if (weight == null || weight.isNaN() || weight < 0) {
+					throw new CpraRuntimeException("Invalid weight '" + weight + "' for antibody '" + ab + "' in Cpra optimizer");
+				}
+				search.candidates.add(ab);
+				search.weights.put(ab, weight);
+			}
+		}
+		for (String ab : weights.keySet()) {
+			if (!search.weights.containsKey(ab)) {
+				throw new CpraRuntimeException("Weight for antibody '" + ab + "' which is not in the profile "
+						+ search.candidates + " for Cpra optimizer");
+			}
+		}
+
+		CpraOptimizeDTO dto = new CpraOptimizeDTO();
+		dto.setVersion(engine.getVersion());
+		dto.setStrategy(strategy);
+		dto.setTargetPRA(request.getTargetPRA());
+		double initialPRA = search.evaluate();
+		dto.setInitialPRA(initialPRA);
+
+		if (initialPRA < search.target) {
+			search.offer();
+		} else {
+			greedy(search, initialPRA);
+			if (strategy.equals(CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND) && !search.outOfTime()) {
+				branchAndBound(search);
+			}
+		}
+
+		dto.setTargetReached(search.best != null);
+		dto.setRemovedAntibodies(search.best == null ? new ArrayList<>() : search.best);
+		dto.setRemovedWeight(search.best == null ? 0.0 : search.bestWeight);
+		dto.setAchievedPRA(search.best == null ? initialPRA : recalculate(version, search));
+		dto.setEvaluations(search.evaluations);
+		dto.setNodes(search.nodes);
+		dto.setTimedOut(search.timedOut);
+		dto.setOptimal(initialPRA < search.target
+				|| (strategy.equals(CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND) && !search.timedOut));
+		dto.setElapsedMillis(System.currentTimeMillis() - start);
+		log.debug("Optimized {} for version '{}'; {}", search.candidates, engine.getVersion(), dto);
+		return dto;
+	}
+
+	/*
+	 * cPRA of the solution on a fresh engine, free of the rounding the search's removals and re-adds accumulate.
+	 */
+	private double recalculate(String version, Search search) {
+		CpraIncrementalEngine engine = cpraService.newIncrementalEngine(version);
+		for (String antibody : search.candidates) {
+			if (!search.best.contains(antibody)) {
+				engine.addAntibody(antibody);
+			}
+		}
+		return engine.getCalculatedPRA();
+	}
+
+	/*
+	 * Greedy removal; leaves the engine with its original profile.
+	 */
+	private void greedy(Search search, double initialPRA) {
+		List<String> remaining = new ArrayList<>(search.candidates);
+		double pra = initialPRA;
+		while (pra >= search.target && !remaining.isEmpty() && !search.outOfTime()) {
+			search.nodes++;
+			String pick = null;
+			double pickPRA = pra;
+			double pickScore = -1.0;
+			for (String antibody : remaining) {
+				search.engine.removeAntibody(antibody);
+				double candidatePRA = search.evaluate();
+				search.engine.addAntibody(antibody);
+				double score = score(pra - candidatePRA, search.weights.get(antibody));
+				if (pick == null || score > pickScore) {
+					pick = antibody;
+					pickPRA = candidatePRA;
+					pickScore = score;
+				}
+			}
+			remaining.remove(pick);
+			search.remove(pick);
+			pra = pickPRA;
+		}
+		if (pra < search.target) {
+			search.offer();
+		}
+		for (int i = search.removed.size() - 1; i >= 0; i--) {
+			search.restore(search.removed.get(i));
+		}
+	}
+
+	private static double score(double drop, double weight) {
+		if (weight == 0.0) {
+			return drop > 0 ? Double.POSITIVE_INFINITY : 0.0;
+		}
+		return drop / weight;
+	}
+
+	private void branchAndBound(Search search) {
+		// most effective antibodies first, so good solutions are found early and tighten the bound
+		double pra = search.evaluate();
+		Map<String, Double> scores = new HashMap<>();
+		for (String antibody : search.candidates) {
+			search.engine.removeAntibody(antibody);
+			scores.put(antibody, score(pra - search.evaluate(), search.weights.get(antibody)));
+			search.engine.addAntibody(antibody);
+		}
+		List<String> order = new ArrayList<>(search.candidates);
+		order.sort(Comparator.comparing((String antibody) -> scores.get(antibody)).reversed());
+
+		// minimum weight of the undecided antibodies after each position, for the weight bound
+		double[] minWeightFrom = new double[order.size() + 1];
+		minWeightFrom[order.size()] = Double.POSITIVE_INFINITY;
+		for (int i = order.size() - 1; i >= 0; i--) {
+			minWeightFrom[i] = Math.min(minWeightFrom[i + 1], search.weights.get(order.get(i)));
+		}
+		branch(search, order, minWeightFrom, 0, pra);
+	}
+
+	private void branch(Search search, List<String> order, double[] minWeightFrom, int position, double pra) {
+		if (search.outOfTime()) {
+			return;
+		}
+		search.nodes++;
+		if (pra < search.target) {
+			search.offer();
+			return;
+		}
+		// at least one more antibody must be removed
+		if (position == order.size() || search.removedWeight + minWeightFrom[position] >= search.bestWeight) {
+			return;
+		}
+		if (!reachable(search, order, position)) {
+			return;
+		}
+
+		String antibody = order.get(position);
+		if (search.removedWeight + search.weights.get(antibody) < search.bestWeight) {
+			search.remove(antibody);
+			branch(search, order, minWeightFrom, position + 1, search.evaluate());
+			search.restore(antibody);
+		}
+		branch(search, order, minWeightFrom, position + 1, pra);
+	}
+
+	/*
+	 * Whether removing every undecided antibody reaches the target.
+	 */
+	private boolean reachable(Search search, List<String> order, int position) {
+		for (int i = position; i < order.size(); i++) {
+			search.engine.removeAntibody(order.get(i));
+		}
+		double pra = search.evaluate();
+		for (int i = position; i < order.size(); i++) {
+			search.engine.addAntibody(order.get(i));
+		}
+		return pra < search.target;
+	}
+}
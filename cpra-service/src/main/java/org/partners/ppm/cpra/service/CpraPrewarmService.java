@@ -0,0 +1,238 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Warms the result cache on startup with the profiles the previous run saw most recently. The running service keeps
+ * its cpra.prewarm-max-profiles most recent profiles (CpraService.getRecentProfiles()) and saves them to
+ * cpra.prewarm-file every cpra.prewarm-save-interval-seconds and on shutdown, one "version<TAB>antibodies" line each.
+ *
+ * On startup the file's profiles are recalculated in parallel on cpra.prewarm-threads, holding the "prewarm"
+ * readiness gate until they are done or cpra.prewarm-time-budget-millis has passed; calculations still running then
+ * are cancelled. Progress is published as cpra.prewarm.* metrics.
+ */
+@Service
+@ConditionalOnProperty(name = "cpra.prewarm-enabled", havingValue = "true")
+public class CpraPrewarmService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraPrewarmService.class);
+
+	static final String READINESS_GATE = "prewarm";
+	private static final String FIELD_DELIMITER = "\t";
+	private static final String ANTIBODY_DELIMITER = ";";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final CpraService cpraService;
+	private final CpraReadiness readiness;
+	private final Path file;
+	private final long saveIntervalSeconds;
+	private final long timeBudgetMillis;
+	private final int threads;
+
+	private final AtomicLong profiles = new AtomicLong();
+	private final AtomicLong completed = new AtomicLong();
+	private final Counter warmed;
+	private final Counter failed;
+	private final Counter cancelled;
+	private final Timer duration;
+
+	private ScheduledExecutorService saver;
+
+	@Autowired
+	public CpraPrewarmService(CpraConfiguration cpraConfig, CpraService cpraService, CpraReadiness readiness,
+			MeterRegistry meterRegistry) {
+		this.cpraService = cpraService;
+		this.readiness = readiness;
+		this.file = Paths.get(cpraConfig.getPrewarmFile());
+		this.saveIntervalSeconds = cpraConfig.getPrewarmSaveIntervalSeconds();
+		this.timeBudgetMillis = cpraConfig.getPrewarmTimeBudgetMillis();
+		this.threads = cpraConfig.getPrewarmThreads() > 0 ? cpraConfig.getPrewarmThreads()
+				: Runtime.getRuntime().availableProcessors();
+
+		this.warmed = meterRegistry.counter("cpra.prewarm.profiles", "outcome", "warmed");
+		this.failed = meterRegistry.counter("cpra.prewarm.profiles", "outcome", "failed");
+		this.cancelled = meterRegistry.counter("cpra.prewarm.profiles", "outcome", "cancelled");
+		this.duration = meterRegistry.timer("cpra.prewarm.duration");
+		meterRegistry.gauge("cpra.prewarm.progress", this,
+				it -> it.profiles.get() == 0 ? 1.0 : (double) it.completed.get() / it.profiles.get());
+
+		readiness.close(READINESS_GATE, "warming the result cache from '" + file + "'");
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		Thread thread = new Thread(() -> {
+			try {
+				cpraService.awaitLoaded();
+				prewarm();
+			} finally {
+				readiness.open(READINESS_GATE);
+			}
+		}, "cpra-prewarm");
+		thread.setDaemon(true);
+		thread.start();
+
+		saver = Executors.newSingleThreadScheduledExecutor(
+				new ThreadFactoryBuilder().setNameFormat("cpra-prewarm-save").setDaemon(true).build());
+		saver.scheduleAtFixedRate(this::saveQuietly, saveIntervalSeconds, saveIntervalSeconds, TimeUnit.SECONDS);
+	}
+
+	@PreDestroy
+	public void stop() {
+		if (saver != null) {
+			saver.shutdownNow();
+		}
+		saveQuietly();
+	}
+
+	/*
+	 * Recalculate the saved profiles into the result cache within the time budget; returns the number warmed.
+	 */
+	long prewarm() {
+		long start = System.currentTimeMillis();
+		List<CpraRequest> requests = load();
+		profiles.set(requests.size());
+		completed.set(0);
+		if (requests.isEmpty()) {
+			return 0;
+		}
+		log.info("Warming the result cache with {} profiles on {} threads (budget {} ms)", requests.size(), threads,
+				timeBudgetMillis);
+
+		List<Callable<Object>> tasks = new ArrayList<>();
+		for (CpraRequest request : requests) {
+			tasks.add(() -> cpraService.calculate(request));
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setNameFormat("cpra-prewarm-%d").setDaemon(true).build());
+		long warmedProfiles = 0;
+		try {
+			// invokeAll cancels the calculations that have not completed within the budget
+			for (Future<Object> result : executor.invokeAll(tasks, timeBudgetMillis, TimeUnit.MILLISECONDS)) {
+				try {
+					result.get();
+					warmed.increment();
+					warmedProfiles++;
+				} catch (CancellationException e) {
+					cancelled.increment();
+				} catch (ExecutionException e) {
+					log.debug("Pre-warming a profile failed; {}", e.getCause().getMessage());
+					failed.increment();
+				}
+				completed.incrementAndGet();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			executor.shutdownNow();
+		}
+		long elapsed = System.currentTimeMillis() - start;
+		duration.record(elapsed, TimeUnit.MILLISECONDS);
+		log.info("Warmed {} of {} profiles in {} ms", warmedProfiles, requests.size(), elapsed);
+		return warmedProfiles;
+	}
+
+	private List<CpraRequest> load() {
+		List<CpraRequest> requests = new ArrayList<>();
+		if (!Files.exists(file)) {
+			log.info("No recent profiles in '{}' to warm the result cache with", file);
+			return requests;
+		}
+		try {
+			for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				String[] fields = line.split(FIELD_DELIMITER, -1);
+				if (fields.length != 2 || fields[0].isEmpty()) {
+					continue;
+				}
+				CpraRequest request = new CpraRequest(fields[0]);
+				request.addAntibodies(fields[1]);
+				requests.add(request);
+			}
+		} catch (IOException e) {
+			log.warn("Unable to read recent profiles from '{}'; {}", file, e.getMessage());
+		}
+		// most recent first, so they are warmed within the budget
+		Collections.reverse(requests);
+		return requests;
+	}
+
+	/*
+	 * Save the service's recent profiles, least recently used first, replacing the file atomically.
+	 */
+	void save() throws IOException {
+		List<CpraRequest> recent = cpraService.getRecentProfiles();
+		if (file.getParent() != null) {
+			Files.createDirectories(file.getParent());
+		}
+		Path temp = file.resolveSibling(file.getFileName() + TEMP_SUFFIX);
+		try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+			for (CpraRequest request : recent) {
+				writer.write(request.getVersion());
+				writer.write(FIELD_DELIMITER);
+				writer.write(String.join(ANTIBODY_DELIMITER, request.getAntibodies()));
+				writer.newLine();
+			}
+		}
+		Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		log.debug("Saved {} recent profiles to '{}'", recent.size(), file);
+	}
+
+	private void saveQuietly() {
+		try {
+			save();
+		} catch (IOException | RuntimeException e) {
+			log.warn("Unable to save recent profiles to '{}'; {}", file, e.getMessage());
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Readiness of the service to take traffic, as named gates that startup phases (e.g. cache pre-warming) close while
+ * they run and open when done. The service is ready when every gate is open; until then the cpraReadiness health
+ * contributor reports OUT_OF_SERVICE, which turns /actuator/health to 503 for load balancers and orchestrators.
+ */
+@Component
+public class CpraReadiness implements HealthIndicator {
+
+	private final Logger log = LoggerFactory.getLogger(CpraReadiness.class);
+
+	private final Map<String, String> closedGates = new ConcurrentHashMap<>();
+
+	/*
+	 * Hold readiness until the gate is opened; the detail says what the gate is waiting for.
+	 */
+	public void close(String gate, String detail) {
+		closedGates.put(gate, detail);
+		log.info("Readiness gate '{}' closed; {}", gate, detail);
+	}
+
+	public void open(String gate) {
+		if (closedGates.remove(gate) != null) {
+			log.info("Readiness gate '{}' opened{}", gate, closedGates.isEmpty() ? "; service is ready" : "");
+		}
+	}
+
+	public boolean isReady() {
+		return closedGates.isEmpty();
+	}
+
+	@Override
+	public Health health() {
+		if (closedGates.isEmpty()) {
+			return Health.up().build();
+		}
+		return Health.outOfService().withDetail("waitingFor", new TreeMap<>(closedGates)).build();
+	}
+}
@@ -0,0 +1,276 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/*
+ * Results of recently calculated antibody profiles. A result only depends on the version's data set and the profile's
+ * unacceptable antigens, so entries are keyed by version, data set checksum and the sorted, distinct, equivalence
+ * expanded unacceptable antigens; different spellings of a profile (case, order, duplicates, antibodies already
+ * implied by an equivalent) share one entry. The cache is bounded to maxEntries with Caffeine's W-TinyLFU eviction;
+ * with 0 nothing is kept.
+ *
+ * An entry keeps the per-ethnicity cPRA, so a request with its own ethnic weights is answered from the same entry.
+ *
+ * Concurrent misses on the same key share one calculation (single flight): the first request calculates, the others
+ * wait for its result. The in-flight calculation is only held until it completes, whether or not the cache keeps the
+ * entry. This is done here rather than with Caffeine's atomic get, which may also block other keys of the same hash
+ * bin for the length of a calculation.
+ */
+class CpraResultCache implements MeterBinder {
+
+	static final String CACHE_NAME = "cpra.results";
+
+	private static final String TOKEN_KEY_DELIMITER = ":";
+	private static final String TOKEN_KEY_SUB_DELIMITER = ";";
+
+	static class Entry {
+		private final String unacceptableAntigenList;
+		private final List<String> warnings;
+		private final List<String> ethnicities = new ArrayList<>();
+		private final double[] ethnicCpra;
+		private final double cpra;
+
+		Entry(CpraDTO dto) {
+			this.unacceptableAntigenList = dto.getUnacceptableAntigenList();
+			this.warnings = Collections.unmodifiableList(new ArrayList<>(dto.getWarnings()));
+			this.ethnicCpra = new double[dto.getEthnicCalculatedPRA().size()];
+			for (int i = 0; i < ethnicCpra.length; i++) {
+				ethnicities.add(dto.getEthnicCalculatedPRA().get(i).getEthnicity());
+				ethnicCpra[i] = dto.getEthnicCalculatedPRA().get(i).getCalculatedPRA();
+			}
+			this.cpra = dto.getCalculatedPRA();
+		}
+
+		private Entry(String unacceptableAntigenList, List<String> warnings, double[] ethnicCpra, double cpra) {
+			this.unacceptableAntigenList = unacceptableAntigenList;
+			this.warnings = Collections.unmodifiableList(warnings);
+			this.ethnicCpra = ethnicCpra;
+			this.cpra = cpra;
+		}
+
+		/*
+		 * Binary form for the persistent result store.
+		 */
+		void writeTo(DataOutput out) throws IOException {
+			out.writeBoolean(unacceptableAntigenList != null);
+			if (unacceptableAntigenList != null) {
+				out.writeUTF(unacceptableAntigenList);
+			}
+			out.writeInt(warnings.size());
+			for (String warning : warnings) {
+				out.writeUTF(warning);
+			}
+			out.writeInt(ethnicCpra.length);
+			for (int i = 0; i < ethnicCpra.length; i++) {
+				out.writeUTF(ethnicities.get(i));
+				out.writeDouble(ethnicCpra[i]);
+			}
+			out.writeDouble(cpra);
+		}
+
+		static Entry readFrom(DataInput in) throws IOException {
+			String unacceptableAntigenList = in.readBoolean() ? in.readUTF() : null;
+			List<String> warnings = new ArrayList<>();
+			for (int i = in.readInt(); i > 0; i--) {
+				warnings.add(in.readUTF());
+			}
+			int size = in.readInt();
+			List<String> ethnicities = new ArrayList<>();
+			double[] ethnicCpra = new double[size];
+			for (int i = 0; i < size; i++) {
+				ethnicities.add(in.readUTF());
+				ethnicCpra[i] = in.readDouble();
+			}
+			Entry entry = new Entry(unacceptableAntigenList, warnings, ethnicCpra, in.readDouble());
+			entry.ethnicities.addAll(ethnicities);
+			return entry;
+		}
+
+		int size() {
+			return ethnicCpra.length;
+		}
+
+		/*
+		 * The response the calculator gives for the profile.
+		 */
+		CpraDTO result(String version, List<String> antibodyList) {
+			CpraDTO dto = newResult(version, antibodyList);
+			for (int i = 0; i < ethnicCpra.length; i++) {
+				dto.addEthnicCalculatedPRA(ethnicities.get(i), ethnicCpra[i]);
+			}
+			dto.setCalculatedPRA(cpra);
+			return dto;
+		}
+
+		/*
+		 * The response for the profile with its cPRA weighted by the given ethnic weights.
+		 */
+		CpraDTO weighted(String version, List<String> antibodyList, List<Double> weights) {
+			CpraDTO dto = newResult(version, antibodyList);
+			double weightedCpra = 0.0;
+			for (int i = 0; i < ethnicCpra.length; i++) {
+				dto.addEthnicCalculatedPRA(ethnicities.get(i), ethnicCpra[i]);
+				weightedCpra += ethnicCpra[i] * weights.get(i);
+			}
+			dto.setCalculatedPRA(weightedCpra);
+			dto.setEthnicWeights(weights);
+			return dto;
+		}
+
+		private CpraDTO newResult(String version, List<String> antibodyList) {
+			CpraDTO dto = new CpraDTO();
+			dto.setVersion(version);
+			dto.setAntibodyList(antibodyList);
+			dto.setUnacceptableAntigenList(unacceptableAntigenList);
+			for (String warning : warnings) {
+				dto.addWarning(warning);
+			}
+			return dto;
+		}
+	}
+
+	private final Cache<String, Entry> entries;
+	private final boolean enabled;
+	private final ConcurrentMap<String, CompletableFuture<Entry>> inFlight = new ConcurrentHashMap<>();
+	private final AtomicLong coalesced = new AtomicLong();
+
+	CpraResultCache(int maxEntries) {
+		this.entries = Caffeine.newBuilder().maximumSize(maxEntries).recordStats().build();
+		// Caffeine evicts beyond the maximum asynchronously, so a cache of size 0 would still answer some hits
+		this.enabled = maxEntries > 0;
+	}
+
+	/*
+	 * The cache key of a profile given its expanded unacceptable antigens, already sorted and distinct.
+	 */
+	static String key(String version, String checksum, Iterable<String> unacceptableAntigens) {
+		return version + TOKEN_KEY_DELIMITER + checksum + TOKEN_KEY_DELIMITER
+				+ String.join(TOKEN_KEY_SUB_DELIMITER, unacceptableAntigens);
+	}
+
+	/*
+	 * The cached entry for the key, or the entry the calculate supplier returns. Concurrent misses on the same key wait
+	 * for one calculation; a calculation that throws, an Error included, fails all of them and leaves nothing in the
+	 * cache.
+	 */
+	Entry get(String key, Supplier<Entry> calculate) {
+		Entry entry = entries.getIfPresent(key);
+		if (entry != null) {
+			return entry;
+		}
+
+		CompletableFuture<Entry> calculation = new CompletableFuture<>();
+		CompletableFuture<Entry> running = inFlight.putIfAbsent(key, calculation);
+		if (running != null) {
+			coalesced.incrementAndGet();
+			try {
+				return running.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				if (e.getCause() instanceof Error) {
+					throw (Error) e.getCause();
+				}
+				throw e;
+			}
+		}
+
+		try {
+			entry = calculate.get();
+			if (enabled) {
+				entries.put(key, entry);
+			}
+			calculation.complete(entry);
+			return entry;
+		} catch (RuntimeException | Error e) {
+			// the waiters are failed too, even by an OutOfMemoryError, rather than left waiting forever
+			calculation.completeExceptionally(e);
+			throw e;
+		} finally {
+			inFlight.remove(key, calculation);
+		}
+	}
+
+	/*
+	 * Whether the key is cached, without counting a hit or miss.
+	 */
+	boolean contains(String key) {
+		return entries.asMap().containsKey(key);
+	}
+
+	/*
+	 * Drop the entries of a version, e.g. when its data set changed.
+	 */
+	void invalidateVersion(String version) {
+		String prefix = version + TOKEN_KEY_DELIMITER;
+		entries.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+	}
+
+	long size() {
+		return entries.estimatedSize();
+	}
+
+	CacheStats stats() {
+		return entries.stats();
+	}
+
+	/*
+	 * Number of requests that waited for another request's calculation instead of calculating.
+	 */
+	long coalescedCount() {
+		return coalesced.get();
+	}
+
+	int inFlightCount() {
+		return inFlight.size();
+	}
+
+	/*
+	 * Hits, misses, evictions and size under the cache.* meters tagged cache=cpra.results, and the coalesced requests.
+	 */
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		CaffeineCacheMetrics.monitor(registry, entries, CACHE_NAME);
+		FunctionCounter.builder(CACHE_NAME + ".coalesced", coalesced, AtomicLong::get)
+				.description("Requests that shared another request's in-flight calculation")
+				.register(registry);
+	}
+}
@@ -0,0 +1,452 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Calculated results kept on disk across restarts, as an append-only log memory mapped into the process with an index
+ * of the record offsets in memory. Keys are the result cache keys (version:checksum:profile).
+ *
+ * Each record is [int body length][int CRC32 of body][body: key, CpraResultCache.Entry]. The mapped file is grown by
+ * doubling and its unused tail is zero, so opening the store scans records until a zero length; a torn record at the
+ * end fails its CRC and is overwritten by the next append.
+ *
+ * Appends are queued and written by a single writer thread, which forces each batch to disk with one fsync (group
+ * commit) before publishing it in the index. The same thread compacts the log into a new file, copying only the
+ * indexed records, once dead records outweigh live ones. Records of a version whose data set checksum is not the
+ * current one are dropped from the index when the checksums are set.
+ */
+public class CpraResultStore implements Closeable {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraResultStore.class);
+
+	static final String LOG_FILE = "results.log";
+	private static final String COMPACT_FILE = "results.log.compact";
+	private static final String TOKEN_KEY_DELIMITER = ":";
+	private static final int HEADER_BYTES = 8;
+	private static final int INITIAL_CAPACITY = 1 << 20;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE & ~(INITIAL_CAPACITY - 1);
+	private static final int MAX_BATCH = 1024;
+	private static final int MAX_PENDING = 10000;
+	private static final long MIN_COMPACT_BYTES = 1 << 20;
+
+	private final Path directory;
+	private final BlockingQueue<byte[]> pending = new LinkedBlockingQueue<>(MAX_PENDING);
+	private final ReadWriteLock mappingLock = new ReentrantReadWriteLock();
+	private final Thread writer;
+
+	// the mapping, its index and the append position are replaced together under the mapping write lock
+	private FileChannel channel;
+	private MappedByteBuffer mapped;
+	private Map<String, Integer> index = new ConcurrentHashMap<>();
+	private int position;
+	private long deadBytes;
+	private volatile Map<String, String> versionChecksum = new HashMap<>();
+
+	private volatile boolean closed;
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong written = new AtomicLong();
+	private long commits;
+	private long compactions;
+
+	private CpraResultStore(Path directory) {
+		this.directory = directory;
+		this.writer = new Thread(this::writeLoop, "cpra-result-store");
+		this.writer.setDaemon(true);
+	}
+
+	/*
+	 * Open (or create) the store in the directory and recover the records of its log.
+	 */
+	public static CpraResultStore open(Path directory) {
+		CpraResultStore store = new CpraResultStore(directory);
+		try {
+			Files.createDirectories(directory);
+			Files.deleteIfExists(directory.resolve(COMPACT_FILE));
+			store.recover(directory.resolve(LOG_FILE));
+		} catch (IOException e) {
+			throw new CpraRuntimeException("Unable to open the result store in '" + directory + "'; " + e.getMessage());
+		}
+		store.writer.start();
+		return store;
+	}
+
+	private void recover(Path file) throws IOException {
+		channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		long size = channel.size();
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < size && capacity < MAX_CAPACITY) {
+			capacity = Math.min(capacity * 2, MAX_CAPACITY);
+		}
+		mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+
+		int offset = 0;
+		int records = 0;
+		while (true) {
+			Record record = readRecord(mapped, offset);
+			if (record == null) {
+				break;
+			}
+			Integer previous = index.put(record.key, offset);
+			if (previous != null) {
+				deadBytes += recordBytes(mapped, previous);
+			}
+			offset += HEADER_BYTES + record.length;
+			records++;
+		}
+		position = offset;
+		log.info("Opened result store '{}' with {} results in {} bytes ({} records, {} dead bytes)", file, index.size(),
+				position, records, deadBytes);
+	}
+
+	/*
+	 * The stored entry for the key, or null.
+	 */
+	public CpraResultCache.Entry get(String key) {
+		mappingLock.readLock().lock();
+		try {
+			Integer offset = index.get(key);
+			if (offset == null) {
+				return null;
+			}
+			Record record = readRecord(mapped, offset);
+			if (record == null || !record.key.equals(key)) {
+				log.warn("Result store record at {} does not match key '{}'", offset, key);
+				return null;
+			}
+			return record.entry;
+		} finally {
+			mappingLock.readLock().unlock();
+		}
+	}
+
+	/*
+	 * Queue an entry for the writer; it is readable once its batch is committed. Entries are dropped when the writer
+	 * falls behind, since the store is only a cache of the calculator.
+	 */
+	public void put(String key, CpraResultCache.Entry entry) {
+		if (closed || !isCurrent(key)) {
+			return;
+		}
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+			DataOutputStream body = new DataOutputStream(bytes);
+			body.writeUTF(key);
+			entry.writeTo(body);
+			body.flush();
+			if (pending.offer(bytes.toByteArray())) {
+				queued.incrementAndGet();
+			} else {
+				log.debug("Result store queue is full; '{}' not stored", key);
+			}
+		} catch (IOException e) {
+			log.warn("Unable to serialize result '{}'; {}", key, e.getMessage());
+		}
+	}
+
+	/*
+	 * Set the current data set checksum of each version; stored results of other checksums and versions are dropped.
+	 */
+	public synchronized void retainChecksums(Map<String, String> checksums) {
+		this.versionChecksum = new HashMap<>(checksums);
+		mappingLock.readLock().lock();
+		try {
+			List<String> superseded = new ArrayList<>();
+			for (String key : index.keySet()) {
+				if (!isCurrent(key)) {
+					superseded.add(key);
+				}
+			}
+			for (String key : superseded) {
+				Integer offset = index.remove(key);
+				if (offset != null) {
+					deadBytes += recordBytes(mapped, offset);
+				}
+			}
+			if (!superseded.isEmpty()) {
+				log.info("Dropped {} stored results of superseded data sets", superseded.size());
+			}
+		} finally {
+			mappingLock.readLock().unlock();
+		}
+	}
+
+	private boolean isCurrent(String key) {
+		int end = key.indexOf(TOKEN_KEY_DELIMITER);
+		int checksumEnd = end < 0 ? -1 : key.indexOf(TOKEN_KEY_DELIMITER, end + 1);
+		if (checksumEnd < 0) {
+			return false;
+		}
+		String checksum = versionChecksum.get(key.substring(0, end));
+		return checksum != null && checksum.equals(key.substring(end + 1, checksumEnd));
+	}
+
+	private void writeLoop() {
+		List<byte[]> batch = new ArrayList<>();
+		while (!closed || !pending.isEmpty()) {
+			try {
+				byte[] first = pending.poll(100, TimeUnit.MILLISECONDS);
+				if (first != null) {
+					batch.add(first);
+					pending.drainTo(batch, MAX_BATCH - 1);
+					try {
+						commit(batch);
+					} finally {
+						written.addAndGet(batch.size());
+						batch.clear();
+					}
+				}
+				compactIfNeeded();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			} catch (IOException | RuntimeException e) {
+				log.error("Result store write failed; {}", e.getMessage(), e);
+			}
+		}
+	}
+
+	/*
+	 * Append a batch of records, force them to disk and only then publish them in the index.
+	 */
+	private synchronized void commit(List<byte[]> batch) throws IOException {
+		Map<String, Integer> offsets = new HashMap<>();
+		int offset = position;
+		for (byte[] body : batch) {
+			String key = new DataInputStream(new ByteArrayInputStream(body)).readUTF();
+			if (!isCurrent(key) || index.containsKey(key) || offsets.containsKey(key)) {
+				continue;
+			}
+			if (!ensureCapacity(offset + HEADER_BYTES + body.length)) {
+				log.warn("Result store '{}' is full; results are no longer stored", directory);
+				break;
+			}
+			CRC32 crc = new CRC32();
+			crc.update(body);
+			ByteBuffer buffer = mapped.duplicate();
+			buffer.position(offset);
+			buffer.putInt(body.length).putInt((int) crc.getValue()).put(body);
+			offsets.put(key, offset);
+			offset += HEADER_BYTES + body.length;
+		}
+		if (offsets.isEmpty()) {
+			return;
+		}
+		mapped.force();
+		position = offset;
+		index.putAll(offsets);
+		commits++;
+		log.trace("Result store committed {} results; position {}", offsets.size(), position);
+	}
+
+	private boolean ensureCapacity(long required) throws IOException {
+		if (required <= mapped.capacity()) {
+			return true;
+		}
+		if (required > MAX_CAPACITY) {
+			return false;
+		}
+		int capacity = mapped.capacity();
+		while (capacity < required) {
+			capacity = Math.min(capacity * 2, MAX_CAPACITY);
+		}
+		mappingLock.writeLock().lock();
+		try {
+			mapped.force();
+			mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+		return true;
+	}
+
+	private synchronized void compactIfNeeded() throws IOException {
+		if (deadBytes > MIN_COMPACT_BYTES && deadBytes > position - deadBytes) {
+			compact();
+		}
+	}
+
+	/*
+	 * Copy the indexed records into a new log and switch to it. Readers keep using the old mapping until the switch.
+	 */
+	synchronized void compact() throws IOException {
+		long start = System.currentTimeMillis();
+		long live = position - deadBytes;
+		int capacity = INITIAL_CAPACITY;
+		while (capacity < live && capacity < MAX_CAPACITY) {
+			capacity = Math.min(capacity * 2, MAX_CAPACITY);
+		}
+		Path compactFile = directory.resolve(COMPACT_FILE);
+		FileChannel compactChannel = FileChannel.open(compactFile, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		MappedByteBuffer compactMapped = compactChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+		Map<String, Integer> compactIndex = new ConcurrentHashMap<>();
+		int offset = 0;
+		for (Map.Entry<String, Integer> entry : index.entrySet()) {
+			int bytes = recordBytes(mapped, entry.getValue());
+			ByteBuffer record = mapped.duplicate();
+			record.position(entry.getValue()).limit(entry.getValue() + bytes);
+			compactMapped.position(offset);
+			compactMapped.put(record);
+			compactIndex.put(entry.getKey(), offset);
+			offset += bytes;
+		}
+		compactMapped.force();
+
+		mappingLock.writeLock().lock();
+		long before = position;
+		try {
+			Files.move(compactFile, directory.resolve(LOG_FILE), StandardCopyOption.REPLACE_EXISTING,
+					StandardCopyOption.ATOMIC_MOVE);
+			channel.close();
+			channel = compactChannel;
+			mapped = compactMapped;
+			index = compactIndex;
+			position = offset;
+			deadBytes = 0;
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+		compactions++;
+		log.info("Compacted result store '{}' from {} to {} bytes ({} results) in {} ms", directory, before, offset,
+				compactIndex.size(), System.currentTimeMillis() - start);
+	}
+
+	/*
+	 * Write the queued results and stop the writer.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+		try {
+			writer.join(TimeUnit.SECONDS.toMillis(30));
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		mappingLock.writeLock().lock();
+		try {
+			mapped.force();
+			channel.close();
+		} catch (IOException e) {
+			log.warn("Unable to close the result store '{}'; {}", directory, e.getMessage());
+		} finally {
+			mappingLock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * Wait until the queued results are committed, e.g. before a test reads them back.
+	 */
+	void flush() throws InterruptedException {
+		long target = queued.get();
+		while (written.get() < target && writer.isAlive()) {
+			Thread.sleep(10);
+		}
+	}
+
+	public int size() {
+		return index.size();
+	}
+
+	public long getLogBytes() {
+		return position;
+	}
+
+	public long getDeadBytes() {
+		return deadBytes;
+	}
+
+	public long getCommits() {
+		return commits;
+	}
+
+	public long getCompactions() {
+		return compactions;
+	}
+
+	private static class Record {
+		private final int length;
+		private final String key;
+		private final CpraResultCache.Entry entry;
+
+		private Record(int length, String key, CpraResultCache.Entry entry) {
+			this.length = length;
+			this.key = key;
+			this.entry = entry;
+		}
+	}
+
+	private static int recordBytes(ByteBuffer buffer, int offset) {
+		return HEADER_BYTES + buffer.getInt(offset);
+	}
+
+	/*
+	 * The record at the offset, or null at the end of the log or at a torn record.
+	 */
+	private static Record readRecord(ByteBuffer buffer, int offset) {
+		if (offset + HEADER_BYTES > buffer.capacity()) {
+			return null;
+		}
+		int length = buffer.getInt(offset);
+		if (length <= 0 || length > buffer.capacity() - offset - HEADER_BYTES) {
+			return null;
+		}
+		byte[] body = new byte[length];
+		ByteBuffer b = buffer.duplicate();
+		b.position(offset + HEADER_BYTES);
+		b.get(body);
+		CRC32 crc = new CRC32();
+		crc.update(body);
+		if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+			return null;
+		}
+		try {
+			DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+			return new Record(length, in.readUTF(), CpraResultCache.Entry.readFrom(in));
+		} catch (IOException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,690 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.validation.Valid;
+
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.config.CpraCoreConfiguration;
+import org.partners.ppm.cpra.config.SpringResourceResolver;
+import org.partners.ppm.cpra.web.rest.dto.ArrayOfCpraSelfCheckDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraVersionsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.validation.annotation.Validated;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.MeterRegistry;
+
+@Service
+@Validated
+public class CpraService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraService.class);
+
+	// versions, calculators and indexes of the loaded data sets; replaced as a whole, never changed
+	private final AtomicReference<CpraEngineSnapshot> snapshot = new AtomicReference<>();
+	private final CpraResultCache resultCache;
+	private CpraResultStore resultStore;
+	private final Map<String, CpraRequest> recentProfiles;  // by result cache key, least recently used first
+	
+	// ethnic weights that do not add up to 1 within this tolerance get a warning
+	private static final double WEIGHT_SUM_TOLERANCE = 1e-6;
+
+	// load state of each configured version, in configuration order; empty until the data set files are read
+	private volatile List<String> configuredVersions = Collections.emptyList();
+	private final Map<String, VersionLoad> versionLoads = new ConcurrentHashMap<>();
+	private volatile CompletableFuture<Void> loading = CompletableFuture.completedFuture(null);
+	private ScheduledExecutorService follower;  // loads again when a shared store's data sets were replaced or deleted
+
+	// readiness gates held while the data set files are read, and while each version loads
+	static final String READINESS_GATE = "datasets";
+	static final String READINESS_GATE_PREFIX = "dataset:";
+
+	private CpraConfiguration cpraConfig;
+	private CpraConfigHashMap cpraConfigHashMap;
+	private CpraReadiness readiness;
+	private ObjectMapper objectMapper = new ObjectMapper();  // the web tier's, so the self-check JSON matches its output
+	
+	@Autowired
+	public CpraService(CpraConfiguration cpraConfig, CpraConfigHashMap cpraConfigHashMap) {
+		this.cpraConfig = cpraConfig;
+		this.cpraConfigHashMap = cpraConfigHashMap;
+		this.resultCache = new CpraResultCache(cpraConfig.getResultCacheMaxProfiles());
+		this.recentProfiles = cpraConfig.isPrewarmEnabled() ? recentProfilesMap(cpraConfig.getPrewarmMaxProfiles()) : null;
+	}
+
+	private static Map<String, CpraRequest> recentProfilesMap(int maxProfiles) {
+		return Collections.synchronizedMap(new LinkedHashMap<String, CpraRequest>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, CpraRequest> eldest) {
+				return size() > maxProfiles;
+			}
+		});
+	}
+
+	@Autowired(required = false)
+	public void setMeterRegistry(MeterRegistry meterRegistry) {
+		resultCache.bindTo(meterRegistry);
+	}
+
+	@Autowired(required = false)
+	public void setReadiness(CpraReadiness readiness) {
+		this.readiness = readiness;
+	}
+
+	@Autowired(required = false)
+	public void setObjectMapper(ObjectMapper objectMapper) {
+		this.objectMapper = objectMapper;
+	}
+	
+	/*
+	 * A service outside of the Spring context, e.g. for the offline batch command line, with its data sets loaded.
+	 */
+	public static CpraService standalone(CpraConfiguration cpraConfig) {
+		CpraService service = new CpraService(cpraConfig, new CpraConfigHashMap(new SpringResourceResolver(),
+				CpraCoreConfiguration.dataStore(cpraConfig)));
+		service.initService();
+		return service;
+	}
+
+	/*
+	 * Spring starts the service here: the data sets load in the background with cpra.load-in-background, so the web
+	 * tier comes up right away, and before the web tier accepts requests otherwise.
+	 */
+	@PostConstruct
+	public void start() {
+		if (cpraConfig.isLoadInBackground()) {
+			loadInBackground();
+		} else {
+			initService();
+		}
+		long followSeconds = cpraConfig.getStoreRedisFollowSeconds();
+		if (cpraConfigHashMap.getStore().isShared() && followSeconds > 0) {
+			follower = Executors.newSingleThreadScheduledExecutor(
+					new ThreadFactoryBuilder().setNameFormat("cpra-store-follow").setDaemon(true).build());
+			follower.scheduleWithFixedDelay(this::followStore, followSeconds, followSeconds, TimeUnit.SECONDS);
+		}
+	}
+
+	/*
+	 * Load again if the shared store's data sets are gone, or for a read-only store no longer the ones published, e.g.
+	 * after another node reloaded.
+	 */
+	void followStore() {
+		if (!loading.isDone()) {
+			return;
+		}
+		try {
+			CpraEngineSnapshot s = snapshot.get();
+			if (!(s != null ? s.getConfigHashMap() : cpraConfigHashMap).getStore().isCurrent()) {
+				log.info("The data sets in the data store were replaced or deleted; loading them again");
+				initService();
+			}
+		} catch (RuntimeException e) {
+			log.warn("Following the data store failed; {}", e.getMessage());
+		}
+	}
+
+	/*
+	 * Load the data sets on a background thread. Each version is published as soon as it is loaded; meanwhile requests
+	 * for it get 503 with Retry-After and its readiness gate stays closed. The future completes when the load is done.
+	 */
+	public CompletableFuture<Void> loadInBackground() {
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		loading = future;
+		if (readiness != null) {
+			readiness.close(READINESS_GATE, "reading the data set files '" + cpraConfig.getConfigPath() + "'");
+		}
+		Thread thread = new Thread(() -> {
+			try {
+				initService();
+				future.complete(null);
+			} catch (Throwable e) {
+				// an Error too, e.g. OutOfMemoryError, or the load would never be done and awaitLoaded() never return
+				log.error("Loading the cPRA data sets failed; {}", e.getMessage(), e);
+				if (readiness != null) {
+					readiness.close(READINESS_GATE, "failed: " + e.getMessage());
+				}
+				future.completeExceptionally(e);
+				if (e instanceof Error) {
+					throw (Error) e;
+				}
+			}
+		}, "cpra-load");
+		thread.setDaemon(true);
+		thread.start();
+		return future;
+	}
+
+	/*
+	 * Wait until a background load is done, whatever its outcome; returns right away if none is running.
+	 */
+	public void awaitLoaded() {
+		loading.exceptionally(e -> null).join();
+	}
+
+	/*
+	 * Load the data sets and publish them as the service's snapshot; calling it again reloads. The first load publishes
+	 * each version as soon as it is loaded and fills the injected configuration map. A reload builds into a fresh map
+	 * and publishes all versions at once, so requests still reading the previous snapshot keep reading its data; a
+	 * version that fails to reload keeps being served from its previous data set.
+	 */
+	public synchronized void initService()
+	{
+		log.debug("CpraService.initService(); load configuration: {} ", cpraConfig.getConfigPath());
+		CpraEngineSnapshot previous = snapshot.get();
+		CpraEngineSnapshot next = CpraEngineSnapshot.load(previous == null ? cpraConfigHashMap
+				: cpraConfigHashMap.fresh(),
+				cpraConfig.getConfigPath(), cpraConfig.getPrecomputeMaxProfileSize(), objectMapper,
+				new LoadListener(previous == null), previous);
+
+		// cached results of a version whose data set changed are dropped
+		if (previous != null) {
+			for (String v : next.getVersionList()) {
+				String checksum = previous.getChecksum(v);
+				if (checksum != null && !checksum.equals(next.getChecksum(v))) {
+					log.info("Data set of version '{}' changed; dropping its cached results", v);
+					this.resultCache.invalidateVersion(v);
+				}
+			}
+		}
+
+		// results stored by earlier runs, for the current data sets only
+		String resultStorePath = cpraConfig.getResultStorePath();
+		if (resultStorePath != null && !resultStorePath.isEmpty()) {
+			if (this.resultStore == null) {
+				this.resultStore = CpraResultStore.open(Paths.get(resultStorePath));
+			}
+			this.resultStore.retainChecksums(next.getChecksums());
+		}
+
+		snapshot.set(next);
+
+		// maps only the previous snapshot read are retired; a shared store deletes them once nothing can read them
+		if (previous != null) {
+			Set<CpraConfigHashMap> retired = previous.getConfigHashMaps();
+			retired.removeAll(next.getConfigHashMaps());
+			for (CpraConfigHashMap map : retired) {
+				map.retire();
+			}
+		}
+	}
+
+	/*
+	 * Keeps the versions' load states and readiness gates, and publishes each version of the first load as it is
+	 * loaded.
+	 */
+	private class LoadListener implements CpraLoadListener {
+
+		private final boolean publishEachVersion;
+		private final long start = System.currentTimeMillis();
+
+		private LoadListener(boolean publishEachVersion) {
+			this.publishEachVersion = publishEachVersion;
+		}
+
+		@Override
+		public void versionsListed(List<String> versions) {
+			versionLoads.keySet().retainAll(versions);
+			for (String v : versions) {
+				// versions of a reload keep being served from the previous snapshot meanwhile
+				if (versionLoads.putIfAbsent(v, new VersionLoad(CpraVersionsDTO.STATE_LOADING, null)) == null
+						&& readiness != null) {
+					readiness.close(READINESS_GATE_PREFIX + v, CpraVersionsDTO.STATE_LOADING);
+				}
+			}
+			configuredVersions = Collections.unmodifiableList(new ArrayList<>(versions));
+			if (readiness != null) {
+				readiness.open(READINESS_GATE);
+			}
+		}
+
+		@Override
+		public void versionLoaded(String version, CpraEngineSnapshot s) {
+			if (publishEachVersion) {
+				snapshot.set(s);
+			}
+			versionLoads.put(version, new VersionLoad(CpraVersionsDTO.STATE_LOADED, null));
+			log.info("Version '{}' loaded {} ms after the load started", version, System.currentTimeMillis() - start);
+			if (readiness != null) {
+				readiness.open(READINESS_GATE_PREFIX + version);
+			}
+		}
+
+		@Override
+		public void versionFailed(String version, RuntimeException e) {
+			versionLoads.put(version, new VersionLoad(CpraVersionsDTO.STATE_FAILED, e.getMessage()));
+			if (readiness != null) {
+				readiness.close(READINESS_GATE_PREFIX + version, "failed: " + e.getMessage());
+			}
+		}
+
+		@Override
+		public void versionKept(String version, CpraEngineSnapshot s, RuntimeException e) {
+			// still served from the previous data set, so its readiness gate stays open; the versions report the error
+			versionLoads.put(version, new VersionLoad(CpraVersionsDTO.STATE_LOADED,
+					"reload failed, serving the previous data set; " + e.getMessage()));
+		}
+	}
+
+	private static final class VersionLoad {
+		private final String state;
+		private final String error;
+
+		private VersionLoad(String state, String error) {
+			this.state = state;
+			this.error = error;
+		}
+	}
+
+	/*
+	 * Throw CpraOverloadedException, answered with 503 and Retry-After, while the requested version is still loading,
+	 * and CpraRuntimeException if it failed to load. Unknown versions are left to the snapshot to report.
+	 */
+	public void checkAvailable(String requestedVersion) {
+		List<String> versions = configuredVersions;
+		if (versions.isEmpty()) {
+			// the data set files are still being read
+			snapshot();
+			return;
+		}
+		String version = CpraEngineSnapshot.CPRA_VERSION_CURRENT.equalsIgnoreCase(requestedVersion) ? versions.get(0)
+				: requestedVersion;
+		VersionLoad load = version != null ? versionLoads.get(version) : null;
+		if (load == null) {
+			return;
+		}
+		if (CpraVersionsDTO.STATE_LOADING.equals(load.state)) {
+			throw new CpraOverloadedException("Cpra version '" + version + "' is still loading; retry later",
+					cpraConfig.getLoadRetryAfterSeconds());
+		}
+		if (CpraVersionsDTO.STATE_FAILED.equals(load.state)) {
+			throw new CpraRuntimeException("Cpra version '" + version + "' failed to load; " + load.error);
+		}
+	}
+
+	/*
+	 * The published snapshot, or null if none is.
+	 */
+	CpraEngineSnapshot currentSnapshot() {
+		return snapshot.get();
+	}
+
+	/*
+	 * The current snapshot; a request reads it once and uses it throughout.
+	 */
+	private CpraEngineSnapshot snapshot() {
+		CpraEngineSnapshot s = snapshot.get();
+		if (s == null) {
+			if (!loading.isDone()) {
+				throw new CpraOverloadedException("The cPRA data sets are still loading; retry later",
+						cpraConfig.getLoadRetryAfterSeconds());
+			}
+			throw new CpraRuntimeException("The cPRA database has not been initiated properly. Please contact a system administrator");
+		}
+		return s;
+	}
+	
+	@PreDestroy
+	public void close() {
+		if (follower != null) {
+			follower.shutdownNow();
+		}
+		if (resultStore != null) {
+			resultStore.close();
+		}
+		cpraConfigHashMap.close();
+	}
+
+	/*
+	 * The configured versions, the first being the default: the published ones with their load time, the others as
+	 * still loading or failed.
+	 */
+	public CpraVersionsDTO versions() {
+		CpraEngineSnapshot s = snapshot.get();
+		List<String> versions = configuredVersions;
+		if (s == null && versions.isEmpty()) {
+			snapshot();
+		}
+		CpraVersionsDTO dto = s != null ? s.versions() : new CpraVersionsDTO();
+		for (String v : versions) {
+			VersionLoad load = versionLoads.get(v);
+			if (load != null && (s == null || !s.getVersionList().contains(v))) {
+				dto.addVersion(v, v.equals(versions.get(0)), null, null);
+				dto.setLoad(v, load.state, null, load.error);
+			} else if (load != null && load.error != null) {
+				dto.setLoad(v, load.state, s.getLoadMillis(v), load.error);
+			}
+		}
+		dto.orderBy(versions);
+		return dto;
+	}
+	
+	public List<String> getVersionList() {
+		return snapshot().getVersionList();
+	}
+
+	/*
+	 * Hit, miss and eviction counts of the result cache.
+	 */
+	public CacheStats getResultCacheStats() {
+		return resultCache.stats();
+	}
+
+	CpraResultStore getResultStore() {
+		return resultStore;
+	}
+
+	/*
+	 * Checksum of the version's data set as loaded.
+	 */
+	public String getDatasetChecksum(String version) {
+		return snapshot().getChecksum(version);
+	}
+
+	/*
+	 * Strong entity tag of the calculate response for the request: the canonical profile key (with the data set
+	 * checksum), the antibody list as the response echoes it and the options that shape the response. Returns null if
+	 * the request is invalid, so the calculation reports the error.
+	 */
+	public String calculateEtag(CpraRequest request) {
+		CpraEngineSnapshot s = snapshot();
+		String version;
+		try {
+			version = s.resolveVersion(request.getVersion());
+		} catch (CpraRuntimeException e) {
+			return null;
+		}
+		List<String> antibodyList = new ArrayList<>(request.getAntibodies());
+		String key = profileKey(s, version, antibodyList);
+		if (key == null) {
+			return null;
+		}
+		return etag(key, String.join(";", antibodyList), String.valueOf(request.isContributions()),
+				String.valueOf(request.getWeights()));
+	}
+
+	/*
+	 * Strong entity tag of the versions response; it changes with the data sets, the load states and on every load,
+	 * since the response includes the load's precompute statistics. Null until a version is loaded.
+	 */
+	public String versionsEtag() {
+		CpraEngineSnapshot s = snapshot.get();
+		if (s == null) {
+			return null;
+		}
+		StringBuilder states = new StringBuilder();
+		for (String v : configuredVersions) {
+			VersionLoad load = versionLoads.get(v);
+			states.append(v).append('=').append(load != null ? load.state : null).append(';');
+		}
+		return etag(String.valueOf(s.getLoadedAt()), datasetsTag(s), states.toString());
+	}
+
+	/*
+	 * Strong entity tag of the self-check response, which only depends on the data sets.
+	 */
+	public String selfCheckEtag() {
+		return etag(datasetsTag(snapshot()));
+	}
+
+	private static String datasetsTag(CpraEngineSnapshot s) {
+		StringBuilder sb = new StringBuilder();
+		for (String v : s.getVersionList()) {
+			sb.append(v).append('=').append(s.getChecksum(v)).append(';');
+		}
+		return sb.toString();
+	}
+
+	private static String etag(String... parts) {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new CpraRuntimeException("SHA-256 is not available for entity tags; " + e.getMessage());
+		}
+		for (String part : parts) {
+			digest.update(part.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+		}
+		StringBuilder sb = new StringBuilder();
+		byte[] hash = digest.digest();
+		for (int i = 0; i < 16; i++) {
+			sb.append(String.format("%02x", hash[i]));
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Estimated cost of calculating the request, in the calculator's frequency lookups.
+	 */
+	public long estimateCost(CpraRequest request) {
+		// nothing loaded yet: the calculation reports that
+		CpraEngineSnapshot s = snapshot.get();
+		return s != null ? s.estimateCost(request) : 0;
+	}
+
+	/*
+	 * Whether the request's profile is answered without a calculation, from the precomputed table or the result cache.
+	 */
+	public boolean isPrecalculated(CpraRequest request) {
+		if (request.isContributions()) {
+			return false;
+		}
+		CpraEngineSnapshot s = snapshot();
+		String version;
+		try {
+			version = s.resolveVersion(request.getVersion());
+		} catch (CpraRuntimeException e) {
+			return false;
+		}
+		List<String> antibodyList = new ArrayList<>(request.getAntibodies());
+		CpraPrecomputedTable table = s.getPrecomputedTable(version);
+		if (table != null && table.lookup(canonicalRequest(version, antibodyList)) != null) {
+			return true;
+		}
+		String key = profileKey(s, version, antibodyList);
+		return key != null && resultCache.contains(key);
+	}
+
+	public CpraDTO calculate(@Valid CpraRequest request) {		
+		
+		// one snapshot for the whole request, even if the data sets are reloaded meanwhile
+		checkAvailable(request.getVersion());
+		CpraEngineSnapshot s = snapshot();
+		String impliedVersion = s.resolveVersion(request.getVersion());
+		request.setVersion(impliedVersion);
+		
+		CpraDTO dto;
+		if (request.getWeights() != null) {
+			dto = calculateWeighted(s, impliedVersion, request);
+		} else {
+			dto = calculateProfile(s, impliedVersion, request);
+		}
+
+		if (request.isContributions()) {
+			if (request.getWeights() != null) {
+				throw new CpraRuntimeException("Invalid request for Cpra calculator; contributions are not available with ethnic weights");
+			}
+			dto.setContributions(CpraContributionAnalyzer.analyze(s.calculatorFor(impliedVersion), impliedVersion,
+					request.getAntibodies()));
+		}
+		return dto;
+	}
+
+	private CpraDTO calculateProfile(CpraEngineSnapshot s, String version, CpraRequest request) {
+		// answer small profiles from the precomputed table when available
+		CpraPrecomputedTable table = s.getPrecomputedTable(version);
+		if (table != null) {
+			CpraDTO dto = table.lookup(request);
+			if (dto != null) {
+				return dto;
+			}
+		}
+		return cachedProfile(s, version, request).result(version, request.getAntibodies());
+	}
+
+	/*
+	 * The cached result of the request's profile, calculated on a miss.
+	 */
+	private CpraResultCache.Entry cachedProfile(CpraEngineSnapshot s, String version, CpraRequest request) {
+		String key = profileKey(s, version, request.getAntibodies());
+		if (key == null) {
+			// invalid profiles are not cached; the calculator reports the error
+			return new CpraResultCache.Entry(s.calculate(version, request));
+		}
+		if (recentProfiles != null) {
+			recentProfiles.put(key, canonicalRequest(version, request.getAntibodies()));
+		}
+		return resultCache.get(key, () -> {
+			CpraResultCache.Entry entry = resultStore != null ? resultStore.get(key) : null;
+			if (entry == null) {
+				entry = new CpraResultCache.Entry(s.calculate(version, request));
+				if (resultStore != null) {
+					resultStore.put(key, entry);
+				}
+			}
+			return entry;
+		});
+	}
+
+	/*
+	 * The result cache key of the profile: version, data set checksum and the canonical profile, i.e. the sorted,
+	 * distinct, equivalence expanded unacceptable antigens. Upper cases the antibody list like the calculators do;
+	 * returns null if an antibody is invalid.
+	 */
+	private static String profileKey(CpraEngineSnapshot s, String version, List<String> antibodyList) {
+		antibodyList.replaceAll(String::toUpperCase);
+		CpraCalculator calculator = s.calculatorFor(version);
+		TreeSet<String> unacceptableAntigens = new TreeSet<>();
+		try {
+			for (String antibody : antibodyList) {
+				unacceptableAntigens.addAll(calculator.helperExpandAntibody(version, antibody));
+			}
+		} catch (CpraRuntimeException e) {
+			return null;
+		}
+		return CpraResultCache.key(version, s.getChecksum(version), unacceptableAntigens);
+	}
+
+	private static CpraRequest canonicalRequest(String version, List<String> antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.getAntibodies().addAll(new TreeSet<>(antibodyList));
+		return request;
+	}
+
+	/*
+	 * The profiles most recently requested from the result cache, least recently used first, as requests with sorted
+	 * antibodies; empty unless pre-warming is enabled.
+	 */
+	public List<CpraRequest> getRecentProfiles() {
+		if (recentProfiles == null) {
+			return Collections.emptyList();
+		}
+		synchronized (recentProfiles) {
+			return new ArrayList<>(recentProfiles.values());
+		}
+	}
+
+	/*
+	 * Weight the profile's ethnic cPRAs by the request's ethnic weights instead of the version's ethnic frequencies.
+	 * The ethnic cPRAs come from the result cache when the profile was calculated recently.
+	 */
+	private CpraDTO calculateWeighted(CpraEngineSnapshot s, String version, CpraRequest request) {
+		String[] ethnicities = s.calculatorFor(version).reportedEthnicities(version);
+		List<Double> weights = request.getWeights();
+		if (ethnicities.length == 0) {
+			throw new CpraRuntimeException("Invalid weights for Cpra calculator; version '" + version + "' reports no ethnic cPRAs");
+		}
+		if (weights.size() != ethnicities.length) {
+			throw new CpraRuntimeException("Invalid weights for Cpra calculator; version '" + version + "' needs "
+					+ ethnicities.length + " weights for " + Arrays.toString(ethnicities));
+		}
+		double sum = 0.0;
+		for (Double weight : weights) {
+			if (weight == null || weight.isNaN() || weight.isInfinite() || weight < 0) {
+				throw new CpraRuntimeException("Invalid weights for Cpra calculator; weights must be zero or positive numbers");
+			}
+			sum += weight;
+		}
+
+		CpraDTO dto = cachedProfile(s, version, request).weighted(version, request.getAntibodies(), weights);
+		if (Math.abs(sum - 1.0) > WEIGHT_SUM_TOLERANCE) {
+			dto.addWarning("Ethnic weights sum to " + sum + ", not 1");
+		}
+		return dto;
+	}
+
+	/*
+	 * Create an incremental engine for the requested version, for what-if sessions that change one antibody at a time.
+	 */
+	public CpraIncrementalEngine newIncrementalEngine(String requestedVersion) {
+		checkAvailable(requestedVersion);
+		CpraEngineSnapshot s = snapshot();
+		String version = s.resolveVersion(requestedVersion);
+		return s.calculatorFor(version).newIncrementalEngine(version);
+	}
+
+	/*
+	 * Conduct a self check of the service and the cPRA data sets to determine integrity. The report is built
+	 * when the data sets are loaded; it is shared, so callers must not change it.
+	 */
+	public ArrayOfCpraSelfCheckDTO selfCheck() {
+		return snapshot().getSelfCheck();
+	}
+
+	/*
+	 * The self check report as JSON, ready to be written to a response.
+	 */
+	public byte[] selfCheckJson() {
+		return snapshot().getSelfCheckJson();
+	}
+
+}
+
@@ -0,0 +1,153 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.CpraSessionNotFoundException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraSessionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+/*
+ * Server side "what-if" sessions. Each session keeps an incremental engine for one patient profile, so toggling an
+ * antibody only recomputes the terms that involve its antigens. Sessions expire after cpra.session-ttl-seconds without
+ * use; beyond cpra.session-max-sessions the least recently used session is evicted.
+ */
+@Service
+public class CpraSessionService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraSessionService.class);
+
+	private static class Session {
+		private final CpraIncrementalEngine engine;
+		private volatile long lastAccess;
+
+		Session(CpraIncrementalEngine engine) {
+			this.engine = engine;
+			this.lastAccess = System.currentTimeMillis();
+		}
+	}
+
+	private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+	private CpraService cpraService;
+	private CpraConfiguration cpraConfig;
+
+	@Autowired
+	public CpraSessionService(CpraService cpraService, CpraConfiguration cpraConfig) {
+		this.cpraService = cpraService;
+		this.cpraConfig = cpraConfig;
+	}
+
+	public CpraSessionDTO create(String version, List<String> antibodies) {
+		CpraIncrementalEngine engine = cpraService.newIncrementalEngine(version);
+		for (String antibody : antibodies) {
+			engine.addAntibody(validAntibody(antibody));
+		}
+
+		evictSessions();
+		String sessionId = UUID.randomUUID().toString();
+		Session session = new Session(engine);
+		sessions.put(sessionId, session);
+		log.debug("Created cPRA session '{}' for version '{}'; {} sessions", sessionId, engine.getVersion(), sessions.size());
+		return result(sessionId, session);
+	}
+
+	public CpraSessionDTO get(String sessionId) {
+		Session session = session(sessionId);
+		synchronized (session) {
+			return result(sessionId, session);
+		}
+	}
+
+	public CpraSessionDTO addAntibody(String sessionId, String antibody) {
+		Session session = session(sessionId);
+		synchronized (session) {
+			session.engine.addAntibody(validAntibody(antibody));
+			return result(sessionId, session);
+		}
+	}
+
+	public CpraSessionDTO removeAntibody(String sessionId, String antibody) {
+		Session session = session(sessionId);
+		synchronized (session) {
+			session.engine.removeAntibody(validAntibody(antibody));
+			return result(sessionId, session);
+		}
+	}
+
+	public void delete(String sessionId) {
+		if (sessions.remove(sessionId) == null) {
+			throw new CpraSessionNotFoundException(sessionId);
+		}
+	}
+
+	public int size() {
+		return sessions.size();
+	}
+
+	private Session session(String sessionId) {
+		Session session = sessions.get(sessionId);
+		if (session == null || expired(session, System.currentTimeMillis())) {
+			if (session != null) {
+				sessions.remove(sessionId, session);
+			}
+			throw new CpraSessionNotFoundException(sessionId);
+		}
+		session.lastAccess = System.currentTimeMillis();
+		return session;
+	}
+
+	private CpraSessionDTO result(String sessionId, Session session) {
+		return new CpraSessionDTO(sessionId, cpraConfig.getSessionTtlSeconds(), session.engine.getResult());
+	}
+
+	private boolean expired(Session session, long now) {
+		return now - session.lastAccess > cpraConfig.getSessionTtlSeconds() * 1000;
+	}
+
+	/*
+	 * Drop expired sessions, then the least recently used ones until there is room for a new session.
+	 */
+	private void evictSessions() {
+		long now = System.currentTimeMillis();
+		sessions.entrySet().removeIf(e -> expired(e.getValue(), now));
+		while (!sessions.isEmpty() && sessions.size() >= cpraConfig.getSessionMaxSessions()) {
+			sessions.entrySet().stream()
+				.min((a, b) -> Long.compare(a.getValue().lastAccess, b.getValue().lastAccess))
+				.ifPresent(e -> {
+					log.debug("Evicting least recently used cPRA session '{}'", e.getKey());
+					sessions.remove(e.getKey(), e.getValue());
+				});
+		}
+	}
+
+	private String validAntibody(String antibody) {
+		if (antibody == null || !antibody.trim().matches(CpraRequest.ANTIBODY_PATTERN)) {
+			throw new CpraRuntimeException("Invalid antibody '" + antibody + "' for Cpra session");
+		}
+		return antibody.trim();
+	}
+}
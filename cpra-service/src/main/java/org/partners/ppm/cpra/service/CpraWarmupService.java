@@ -0,0 +1,110 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Warms up the JIT before the service reports ready: once the data sets are loaded, the calculators of every loaded
+ * version run on synthetic profiles (CpraWarmup) until their throughput is stable or cpra.warmup-time-budget-millis
+ * has passed, holding the "warmup" readiness gate until then. Unlike pre-warming, nothing is cached; the result cache
+ * and the recent profiles are left alone. The outcome is published as cpra.warmup.* metrics.
+ */
+@Service
+@ConditionalOnProperty(name = "cpra.warmup-enabled", havingValue = "true")
+public class CpraWarmupService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraWarmupService.class);
+
+	static final String READINESS_GATE = "warmup";
+
+	private final CpraConfiguration cpraConfig;
+	private final CpraService cpraService;
+	private final CpraReadiness readiness;
+
+	private final Timer duration;
+	private final Counter profiles;
+	private volatile CpraWarmup.Result result;
+
+	@Autowired
+	public CpraWarmupService(CpraConfiguration cpraConfig, CpraService cpraService, CpraReadiness readiness,
+			MeterRegistry meterRegistry) {
+		this.cpraConfig = cpraConfig;
+		this.cpraService = cpraService;
+		this.readiness = readiness;
+
+		this.duration = meterRegistry.timer("cpra.warmup.duration");
+		this.profiles = meterRegistry.counter("cpra.warmup.profiles");
+		meterRegistry.gauge("cpra.warmup.throughput", this, it -> it.result != null ? it.result.getThroughput() : 0.0);
+		meterRegistry.gauge("cpra.warmup.stable", this, it -> it.result != null && it.result.isStable() ? 1.0 : 0.0);
+
+		readiness.close(READINESS_GATE, "warming up the calculators for up to "
+				+ cpraConfig.getWarmupTimeBudgetMillis() + " ms");
+	}
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void start() {
+		Thread thread = new Thread(() -> {
+			try {
+				cpraService.awaitLoaded();
+				warmup();
+			} catch (RuntimeException e) {
+				log.warn("Warming up the calculators failed; {}", e.getMessage());
+			} finally {
+				readiness.open(READINESS_GATE);
+			}
+		}, "cpra-warmup");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/*
+	 * Warm up the calculators of the published snapshot; returns null if there is none.
+	 */
+	CpraWarmup.Result warmup() {
+		CpraEngineSnapshot snapshot = cpraService.currentSnapshot();
+		if (snapshot == null) {
+			return null;
+		}
+		CpraWarmup.Result r = new CpraWarmup(snapshot, cpraConfig.getWarmupTimeBudgetMillis(),
+				cpraConfig.getWarmupWindowMillis(), cpraConfig.getWarmupTolerance(), cpraConfig.getWarmupThreads(),
+				cpraConfig.getWarmupMaxProfileSize()).run();
+		duration.record(r.getDurationMillis(), TimeUnit.MILLISECONDS);
+		profiles.increment(r.getProfiles());
+		result = r;
+		return r;
+	}
+
+	/*
+	 * The outcome of the warm-up, or null until it is done.
+	 */
+	public CpraWarmup.Result getResult() {
+		return result;
+	}
+}
@@ -0,0 +1,268 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Watches cpra.watch-input-dir for patient files (.csv or .ndjson, as for the offline batch) and calculates each one
+ * into cpra.watch-output-dir. A file is picked up once its size and modification time have been stable for
+ * cpra.watch-settle-millis, so files still being copied in are left alone. The results are written to a hidden
+ * temporary file and then moved into place atomically, so readers of the output directory only ever see complete
+ * results; the input is then moved to the processed directory, or to the failed directory if it could not be read.
+ *
+ * New files wait in a queue of cpra.watch-queue-capacity; when it is full the watcher blocks and the directory is
+ * rescanned if the file system drops events meanwhile. Files, records and per-file timings are published as
+ * Micrometer metrics (cpra.watch.*).
+ */
+@Service
+@ConditionalOnProperty(name = "cpra.watch-enabled", havingValue = "true")
+public class CpraWatchService {
+
+	private final Logger log = LoggerFactory.getLogger(CpraWatchService.class);
+
+	private static final String TEMP_PREFIX = ".";
+	private static final String TEMP_SUFFIX = ".tmp";
+	private static final String OUTPUT_SUFFIX = ".ndjson";
+
+	private final Path inputDir;
+	private final Path outputDir;
+	private final Path processedDir;
+	private final Path failedDir;
+	private final String version;
+	private final long settleMillis;
+	private final CpraBatchProcessor batchProcessor;
+	private final CpraBatchFileProcessor fileProcessor;
+
+	private final BlockingQueue<Path> queue;
+	private final Set<Path> queued = ConcurrentHashMap.newKeySet();
+	private final AtomicLong lastRecordsPerSecond = new AtomicLong();
+	private final Counter filesProcessed;
+	private final Counter filesFailed;
+	private final Counter records;
+	private final Counter recordErrors;
+	private final Timer fileTimer;
+
+	private WatchService watchService;
+	private Thread watcher;
+	private Thread worker;
+	private volatile boolean running;
+
+	@Autowired
+	public CpraWatchService(CpraConfiguration cpraConfig, CpraBatchProcessor batchProcessor, ObjectMapper objectMapper,
+			MeterRegistry meterRegistry) {
+		this.inputDir = Paths.get(cpraConfig.getWatchInputDir());
+		this.outputDir = Paths.get(cpraConfig.getWatchOutputDir());
+		this.processedDir = Paths.get(cpraConfig.getWatchProcessedDir());
+		this.failedDir = Paths.get(cpraConfig.getWatchFailedDir());
+		this.version = cpraConfig.getWatchVersion();
+		this.settleMillis = cpraConfig.getWatchSettleMillis();
+		this.batchProcessor = batchProcessor;
+		this.fileProcessor = new CpraBatchFileProcessor(batchProcessor, objectMapper);
+		this.queue = new ArrayBlockingQueue<>(Math.max(1, cpraConfig.getWatchQueueCapacity()));
+
+		this.filesProcessed = meterRegistry.counter("cpra.watch.files", "outcome", "processed");
+		this.filesFailed = meterRegistry.counter("cpra.watch.files", "outcome", "failed");
+		this.records = meterRegistry.counter("cpra.watch.records");
+		this.recordErrors = meterRegistry.counter("cpra.watch.record.errors");
+		this.fileTimer = meterRegistry.timer("cpra.watch.file");
+		meterRegistry.gauge("cpra.watch.queue", queue, BlockingQueue::size);
+		meterRegistry.gauge("cpra.watch.records.per.second", lastRecordsPerSecond, AtomicLong::get);
+	}
+
+	@PostConstruct
+	public void start() throws IOException {
+		for (Path dir : new Path[] { inputDir, outputDir, processedDir, failedDir }) {
+			Files.createDirectories(dir);
+		}
+		watchService = FileSystems.getDefault().newWatchService();
+		inputDir.register(watchService, ENTRY_CREATE, ENTRY_MODIFY);
+		running = true;
+
+		watcher = new Thread(this::watch, "cpra-watch");
+		watcher.setDaemon(true);
+		worker = new Thread(this::work, "cpra-watch-worker");
+		worker.setDaemon(true);
+		watcher.start();
+		worker.start();
+		log.info("Watching '{}' for cPRA patient files; results in '{}'", inputDir, outputDir);
+	}
+
+	@PreDestroy
+	public void stop() throws IOException, InterruptedException {
+		running = false;
+		if (watchService != null) {
+			watchService.close();
+		}
+		if (watcher != null) {
+			watcher.interrupt();
+			watcher.join(TimeUnit.SECONDS.toMillis(5));
+		}
+		if (worker != null) {
+			worker.interrupt();
+			worker.join(TimeUnit.SECONDS.toMillis(5));
+		}
+	}
+
+	private void watch() {
+		try {
+			// files dropped while the service was down
+			scan();
+			while (running) {
+				WatchKey key = watchService.take();
+				for (WatchEvent<?> event : key.pollEvents()) {
+					if (event.kind() == OVERFLOW) {
+						scan();
+					} else {
+						enqueue(inputDir.resolve((Path) event.context()));
+					}
+				}
+				key.reset();
+			}
+		} catch (ClosedWatchServiceException | InterruptedException e) {
+			// stopped
+		} catch (IOException e) {
+			log.error("Watching '{}' failed; {}", inputDir, e.getMessage());
+		}
+	}
+
+	private void scan() throws IOException, InterruptedException {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+			for (Path file : files) {
+				enqueue(file);
+			}
+		}
+	}
+
+	private void enqueue(Path file) throws InterruptedException {
+		String name = file.getFileName().toString();
+		if (name.startsWith(TEMP_PREFIX) || !isPatientFile(name) || !queued.add(file)) {
+			return;
+		}
+		// blocks while the worker is behind
+		queue.put(file);
+	}
+
+	private static boolean isPatientFile(String name) {
+		String lower = name.toLowerCase();
+		return lower.endsWith(".csv") || lower.endsWith(".ndjson");
+	}
+
+	private void work() {
+		while (running) {
+			Path file;
+			try {
+				file = queue.take();
+			} catch (InterruptedException e) {
+				return;
+			}
+			try {
+				if (awaitSettled(file)) {
+					// files dropped while the data sets load wait for them, rather than fail record by record
+					batchProcessor.awaitLoaded();
+					process(file);
+				}
+			} catch (InterruptedException e) {
+				return;
+			} finally {
+				queued.remove(file);
+			}
+		}
+	}
+
+	/*
+	 * Wait until the file has stopped changing; false if it went away.
+	 */
+	private boolean awaitSettled(Path file) throws InterruptedException {
+		try {
+			long size = -1;
+			long modified = -1;
+			while (Files.size(file) != size || Files.getLastModifiedTime(file).toMillis() != modified) {
+				size = Files.size(file);
+				modified = Files.getLastModifiedTime(file).toMillis();
+				Thread.sleep(settleMillis);
+			}
+			return true;
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	void process(Path file) {
+		String name = file.getFileName().toString();
+		String base = name.substring(0, name.lastIndexOf('.'));
+		Path temp = outputDir.resolve(TEMP_PREFIX + base + OUTPUT_SUFFIX + TEMP_SUFFIX);
+		Path result = outputDir.resolve(base + OUTPUT_SUFFIX);
+		long start = System.nanoTime();
+		try {
+			CpraBatchFileProcessor.Summary summary = fileProcessor.process(file, temp, version, null, false);
+			Files.move(temp, result, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			Files.move(file, processedDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+			filesProcessed.increment();
+			records.increment(summary.getRecords());
+			recordErrors.increment(summary.getErrors());
+			lastRecordsPerSecond.set(Math.round(summary.getRecordsPerSecond()));
+			log.info("Calculated '{}' into '{}': {}", name, result, summary);
+		} catch (IOException | RuntimeException e) {
+			log.error("Failed to calculate '{}'; moving it to '{}'; {}", name, failedDir, e.getMessage());
+			filesFailed.increment();
+			try {
+				Files.deleteIfExists(temp);
+				Files.move(file, failedDir.resolve(name), StandardCopyOption.REPLACE_EXISTING);
+			} catch (IOException moveFailure) {
+				log.error("Failed to move '{}' to '{}'; {}", name, failedDir, moveFailure.getMessage());
+			}
+		} finally {
+			fileTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+		}
+	}
+}
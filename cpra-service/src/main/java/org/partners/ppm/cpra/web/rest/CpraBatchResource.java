@@ -0,0 +1,88 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.partners.ppm.cpra.service.CpraBatchProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@RestController
+@RequestMapping("/api/cpra")
+public class CpraBatchResource {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraBatchResource.class);
+
+	public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+	private static final byte[] NEWLINE = { '\n' };
+
+	private CpraBatchProcessor cpraBatchProcessor;
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	public CpraBatchResource(CpraBatchProcessor cpraBatchProcessor, ObjectMapper objectMapper) {
+		this.cpraBatchProcessor = cpraBatchProcessor;
+		this.objectMapper = objectMapper;
+	}
+
+	/*
+	 * POST patient records as NDJSON or as a JSON array; one NDJSON result line is returned per record, in the order the
+	 * records complete.
+	 */
+	@PostMapping(value = "/{version}/batch", produces = APPLICATION_NDJSON_VALUE)
+	public ResponseEntity<StreamingResponseBody> batch(@PathVariable String version, HttpServletRequest request) {
+		StreamingResponseBody body = out -> {
+			long records = cpraBatchProcessor.process(version, request.getInputStream(), result -> {
+				try {
+					write(out, objectMapper.writeValueAsBytes(result));
+				} catch (JsonProcessingException e) {
+					throw new UncheckedIOException(e);
+				}
+			});
+			out.flush();
+			log.debug("Streamed {} batch results for version '{}'", records, version);
+		};
+		return ResponseEntity.ok().contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).body(body);
+	}
+
+	private static void write(OutputStream out, byte[] line) {
+		synchronized (out) {
+			try {
+				out.write(line);
+				out.write(NEWLINE);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.partners.ppm.cpra.service.CpraCompareService;
+import org.partners.ppm.cpra.web.rest.dto.CpraCompareDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cpra")
+public class CpraCompareResource {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraCompareResource.class);
+
+	private CpraCompareService cpraCompareService;
+
+	@Autowired
+	public CpraCompareResource(CpraCompareService cpraCompareService) {
+		this.cpraCompareService = cpraCompareService;
+	}
+
+	@GetMapping("/compare")
+	public CpraCompareDTO compare(
+		@RequestParam(required = false, defaultValue = "") String antibodyList,
+		@RequestParam(required = false, defaultValue = CpraCompareService.ALL_VERSIONS) String versions)
+	{
+		List<String> antibodies = new ArrayList<>();
+		for (String antibody : antibodyList.split(CpraResource.ANTIBODY_DELIMITER)) {
+			if (antibody.trim().length() > 0) {
+				antibodies.add(antibody);
+			}
+		}
+		log.debug("Compare antibodies {} across versions '{}'", antibodies, versions);
+		return cpraCompareService.compare(antibodies, Arrays.asList(versions.split(CpraResource.ANTIBODY_DELIMITER)));
+	}
+}
@@ -0,0 +1,53 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletResponse;
+
+import org.partners.ppm.cpra.CpraBadRequestException;
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.partners.ppm.cpra.CpraTooExpensiveException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+/*
+ * HTTP status of the cpra-core exceptions, which do not depend on Spring; other exceptions keep the default 500.
+ */
+@ControllerAdvice
+public class CpraExceptionHandler {
+
+	@ExceptionHandler(CpraOverloadedException.class)
+	public void overloaded(CpraOverloadedException e, HttpServletResponse response) throws IOException {
+		if (e.getRetryAfterSeconds() > 0) {
+			response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+		}
+		response.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), e.getMessage());
+	}
+
+	@ExceptionHandler(CpraTooExpensiveException.class)
+	public void tooExpensive(CpraTooExpensiveException e, HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.UNPROCESSABLE_ENTITY.value(), e.getMessage());
+	}
+
+	@ExceptionHandler(CpraBadRequestException.class)
+	public void badRequest(CpraBadRequestException e, HttpServletResponse response) throws IOException {
+		response.sendError(HttpStatus.BAD_REQUEST.value(), e.getMessage());
+	}
+}
@@ -0,0 +1,48 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import org.partners.ppm.cpra.service.CpraOptimizerService;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cpra")
+public class CpraOptimizerResource {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraOptimizerResource.class);
+
+	private CpraOptimizerService cpraOptimizerService;
+
+	@Autowired
+	public CpraOptimizerResource(CpraOptimizerService cpraOptimizerService) {
+		this.cpraOptimizerService = cpraOptimizerService;
+	}
+
+	@PostMapping("/{version}/optimize")
+	public CpraOptimizeDTO optimize(@PathVariable String version, @RequestBody CpraOptimizeRequest request) {
+		log.debug("Optimize for version '{}'; {}", version, request);
+		return cpraOptimizerService.optimize(version, request);
+	}
+}
@@ -0,0 +1,231 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import javax.validation.ConstraintViolationException;
+
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.service.CpraComputeExecutor;
+import org.partners.ppm.cpra.service.CpraComputeExecutor.Lane;
+import org.partners.ppm.cpra.service.CpraService;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraFieldProjection;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraVersionsDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.ServletWebRequest;
+
+@RestController
+@RequestMapping("/api/cpra")
+public class CpraResource {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraResource.class);
+	
+	// This following setting is particular to this Restful API
+	public static final String ANTIBODY_DELIMITER = ";";
+	public static final String DEFAULT_ANTIBODYLIST = "";
+
+	// the encodings of a negotiated response, in the order of Spring MVC's message converters
+	private static final List<MediaType> ENCODINGS = Arrays.asList(MediaType.APPLICATION_JSON,
+			MediaType.valueOf("application/x-jackson-smile"), MediaType.valueOf("application/cbor"));
+	private static final String[] ENCODING_TAGS = { "", "-smile", "-cbor" };
+	
+	private CpraService cpraService;
+	private CpraComputeExecutor computeExecutor;
+	private CacheControl cacheControl;
+	
+	@Autowired
+	public CpraResource(CpraService cpraService, CpraComputeExecutor computeExecutor, CpraConfiguration cpraConfig) {
+		this.cpraService = cpraService;
+		this.computeExecutor = computeExecutor;
+		this.cacheControl = CacheControl.maxAge(cpraConfig.getHttpCacheMaxAgeSeconds(), TimeUnit.SECONDS)
+				.cachePublic().mustRevalidate();
+	}
+
+	/*
+	 * Calculate the cPRA of the antibody list. The response is JSON, Smile or CBOR as the Accept header asks; fields=
+	 * limits it to the listed fields, e.g. fields=calculatedPRA.
+	 */
+	@GetMapping("/{version}/calculate")
+    public CompletableFuture<MappingJacksonValue> calculateCpra(
+    	@PathVariable String version, 
+    	@RequestParam(required = false, defaultValue = "") String antibodyList,
+    	@RequestParam(required = false, defaultValue = "false") boolean contributions,
+    	@RequestParam(required = false) String weights,
+    	@RequestParam(required = false) String fields,
+    	ServletWebRequest webRequest) 
+	{
+
+		// a version still loading gets 503 with Retry-After right away
+		cpraService.checkAvailable(version);
+
+		// Construct CpraRequest object from input
+    		// NO validation here for version or arrayOfAntibodies
+		CpraRequest request = new CpraRequest(version);
+		request.setContributions(contributions);
+		if (weights != null) {
+			request.setWeights(parseWeights(weights));
+		}
+		if (antibodyList!=null && !antibodyList.isEmpty()) {
+			log.debug("antibodyList: ({})", antibodyList);
+			String[] antibodies = antibodyList.split(ANTIBODY_DELIMITER);
+			for (String antibody : antibodies) {
+				if (antibody.trim().length() > 0) {
+					request.getAntibodies().add(antibody);
+				}
+			}
+		} else {
+			log.debug("No antibodyList sent; version '{}'",version);
+		}
+		CpraFieldProjection projection = fields != null ? CpraFieldProjection.parse(fields) : null;
+
+		// a client holding the current response gets 304 before anything is calculated
+		String etag = cpraService.calculateEtag(request);
+		if (etag != null && projection != null) {
+			etag += "-" + projection.getTag();
+		}
+		if (etag != null) {
+			etag += encodingTag(webRequest.getHeader(HttpHeaders.ACCEPT));
+		}
+		if (notModified(webRequest, etag)) {
+			return null;
+		}
+
+		// admit the calculation by its estimated cost, which a compute worker estimates, so the request thread is
+		// released right away; a cached or precomputed profile costs next to nothing
+		AtomicLong cost = new AtomicLong();
+		LongSupplier admissionCost = () -> {
+			cost.set(cpraService.estimateCost(request));
+			return cpraService.isPrecalculated(request) ? 0 : cost.get();
+		};
+
+		// call service bean to do the actual calculation, on the compute pool
+		return computeExecutor.<CpraDTO>submit(Lane.INTERACTIVE, admissionCost, () -> {
+			try {
+				return cpraService.calculate(request);
+			}
+			catch (ConstraintViolationException e) {
+				throw new CpraRuntimeException("Invalid request for Cpra calculator");
+			}
+		}).thenApply(dto -> {
+			dto.setEstimatedCost(cost.get());
+			MappingJacksonValue value = new MappingJacksonValue(dto);
+			if (projection != null) {
+				value.setFilters(projection.asFilters());
+			}
+			return value;
+		});
+	}
+
+	/*
+	 * Ethnic weights in the order of the version's ethnicities, e.g. "0.6;0.15;0.15;0.1".
+	 */
+	static List<Double> parseWeights(String weights) {
+		List<Double> list = new ArrayList<>();
+		for (String weight : weights.split(ANTIBODY_DELIMITER)) {
+			try {
+				list.add(Double.valueOf(weight.trim()));
+			} catch (NumberFormatException e) {
+				throw new CpraRuntimeException("Invalid weight '" + weight + "' for Cpra calculator");
+			}
+		}
+		return list;
+	}
+
+	/*
+	 * The entity tag suffix of the encoding the Accept header negotiates, so that the JSON, Smile and CBOR bodies of a
+	 * response, which are different bytes, have different strong tags: none for JSON, "-smile" or "-cbor".
+	 */
+	static String encodingTag(String accept) {
+		List<MediaType> accepted;
+		try {
+			accepted = accept == null || accept.trim().isEmpty() ? Arrays.asList(MediaType.ALL)
+					: MediaType.parseMediaTypes(accept);
+		} catch (InvalidMediaTypeException e) {
+			return ENCODING_TAGS[0];
+		}
+		MediaType.sortBySpecificityAndQuality(accepted);
+		for (MediaType type : accepted) {
+			for (int i = 0; i < ENCODINGS.size(); i++) {
+				if (type.isCompatibleWith(ENCODINGS.get(i))) {
+					return ENCODING_TAGS[i];
+				}
+			}
+		}
+		return ENCODING_TAGS[0];
+	}
+
+	/*
+	 * Set the entity tag, Cache-Control and Vary (the encoding follows Accept) of the response and check the request's
+	 * If-None-Match against the tag; a null tag leaves the response uncached.
+	 */
+	private boolean notModified(ServletWebRequest webRequest, String etag) {
+		if (etag == null) {
+			return false;
+		}
+		webRequest.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+		webRequest.getResponse().setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+		return webRequest.checkNotModified("\"" + etag + "\"");
+	}
+
+	@GetMapping("/versions")
+	public CpraVersionsDTO getVersions(ServletWebRequest webRequest) {
+		String etag = cpraService.versionsEtag();
+		if (etag != null) {
+			etag += encodingTag(webRequest.getHeader(HttpHeaders.ACCEPT));
+		}
+		if (notModified(webRequest, etag)) {
+			return null;
+		}
+
+		// call service bean to get versions
+		return cpraService.versions();
+	}
+	
+	/*
+	 * The self-check report, written as the JSON serialized when the data sets were loaded.
+	 */
+	@GetMapping("/self-check")
+	public ResponseEntity<byte[]> selfCheck(ServletWebRequest webRequest) {
+		if (notModified(webRequest, cpraService.selfCheckEtag())) {
+			return null;
+		}
+		
+		return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON_UTF8).body(cpraService.selfCheckJson());
+	}
+}
\ No newline at end of file
@@ -0,0 +1,86 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.partners.ppm.cpra.service.CpraSessionService;
+import org.partners.ppm.cpra.web.rest.dto.CpraSessionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@RequestMapping("/api/cpra")
+public class CpraSessionResource {
+
+	private static final Logger log = LoggerFactory.getLogger(CpraSessionResource.class);
+
+	private CpraSessionService cpraSessionService;
+
+	@Autowired
+	public CpraSessionResource(CpraSessionService cpraSessionService) {
+		this.cpraSessionService = cpraSessionService;
+	}
+
+	@PostMapping("/{version}/sessions")
+	@ResponseStatus(HttpStatus.CREATED)
+	public CpraSessionDTO createSession(
+		@PathVariable String version,
+		@RequestParam(required = false, defaultValue = "") String antibodyList)
+	{
+		List<String> antibodies = new ArrayList<>();
+		for (String antibody : antibodyList.split(CpraResource.ANTIBODY_DELIMITER)) {
+			if (antibody.trim().length() > 0) {
+				antibodies.add(antibody);
+			}
+		}
+		log.debug("Create session for version '{}' with antibodies {}", version, antibodies);
+		return cpraSessionService.create(version, antibodies);
+	}
+
+	@GetMapping("/sessions/{sessionId}")
+	public CpraSessionDTO getSession(@PathVariable String sessionId) {
+		return cpraSessionService.get(sessionId);
+	}
+
+	@PutMapping("/sessions/{sessionId}/antibodies/{antibody}")
+	public CpraSessionDTO addAntibody(@PathVariable String sessionId, @PathVariable String antibody) {
+		return cpraSessionService.addAntibody(sessionId, antibody);
+	}
+
+	@DeleteMapping("/sessions/{sessionId}/antibodies/{antibody}")
+	public CpraSessionDTO removeAntibody(@PathVariable String sessionId, @PathVariable String antibody) {
+		return cpraSessionService.removeAntibody(sessionId, antibody);
+	}
+
+	@DeleteMapping("/sessions/{sessionId}")
+	@ResponseStatus(HttpStatus.NO_CONTENT)
+	public void deleteSession(@PathVariable String sessionId) {
+		cpraSessionService.delete(sessionId);
+	}
+}
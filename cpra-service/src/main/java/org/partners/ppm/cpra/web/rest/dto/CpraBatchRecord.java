@@ -0,0 +1,86 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.google.common.base.MoreObjects;
+
+/*
+ * One patient of a batch: the antibodies either as a list or as a ";" separated antibodyList, and optionally the
+ * version (defaults to the batch's version) and ethnic weights.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class CpraBatchRecord {
+
+	private String id;
+	private String version;
+	private List<String> antibodies;
+	private String antibodyList;
+	private List<Double> weights;
+
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public List<String> getAntibodies() {
+		return antibodies;
+	}
+
+	public void setAntibodies(List<String> antibodies) {
+		this.antibodies = antibodies;
+	}
+
+	public String getAntibodyList() {
+		return antibodyList;
+	}
+
+	public void setAntibodyList(String antibodyList) {
+		this.antibodyList = antibodyList;
+	}
+
+	public List<Double> getWeights() {
+		return weights;
+	}
+
+	public void setWeights(List<Double> weights) {
+		this.weights = weights;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("id", id)
+				.add("version", version)
+				.add("antibodies", String.valueOf(antibodies))
+				.add("antibodyList", antibodyList)
+				.add("weights", String.valueOf(weights))
+			.toString();
+	}
+}
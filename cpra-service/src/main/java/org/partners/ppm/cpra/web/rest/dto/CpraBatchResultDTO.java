@@ -0,0 +1,88 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.google.common.base.MoreObjects;
+
+/*
+ * Result of one batch record; index is the record's position in the input, since results are written as they
+ * complete. Exactly one of cpra and error is set.
+ */
+public class CpraBatchResultDTO {
+
+	private long index;
+	private String id;
+	private CpraDTO cpra;
+	private String error;
+
+	@JsonCreator
+	public CpraBatchResultDTO() {
+		// empty constructor for annotation
+	}
+
+	public CpraBatchResultDTO(long index, String id) {
+		this.index = index;
+		this.id = id;
+	}
+
+	public long getIndex() {
+		return index;
+	}
+
+	public void setIndex(long index) {
+		this.index = index;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public String getId() {
+		return id;
+	}
+
+	public void setId(String id) {
+		this.id = id;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public CpraDTO getCpra() {
+		return cpra;
+	}
+
+	public void setCpra(CpraDTO cpra) {
+		this.cpra = cpra;
+	}
+
+	@JsonInclude(Include.NON_NULL)
+	public String getError() {
+		return error;
+	}
+
+	public void setError(String error) {
+		this.error = error;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("index", index)
+				.add("id", id)
+				.add("cpra", String.valueOf(cpra))
+				.add("error", error)
+			.toString();
+	}
+}
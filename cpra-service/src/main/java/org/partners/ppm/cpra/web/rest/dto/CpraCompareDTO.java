@@ -0,0 +1,125 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.google.common.base.MoreObjects;
+
+public class CpraCompareDTO {
+
+	public static class VersionResult {
+		private String version;
+		private long elapsedMillis;
+		private CpraDTO cpra;
+		private String error;
+
+		@JsonCreator
+		public VersionResult() {
+			// empty constructor for annotation
+		}
+
+		public String getVersion() {
+			return version;
+		}
+
+		public void setVersion(String version) {
+			this.version = version;
+		}
+
+		public long getElapsedMillis() {
+			return elapsedMillis;
+		}
+
+		public void setElapsedMillis(long elapsedMillis) {
+			this.elapsedMillis = elapsedMillis;
+		}
+
+		@JsonInclude(Include.NON_NULL)
+		public CpraDTO getCpra() {
+			return cpra;
+		}
+
+		public void setCpra(CpraDTO cpra) {
+			this.cpra = cpra;
+		}
+
+		@JsonInclude(Include.NON_NULL)
+		public String getError() {
+			return error;
+		}
+
+		public void setError(String error) {
+			this.error = error;
+		}
+
+		@Override
+		public String toString() {
+			return MoreObjects.toStringHelper(this)
+					.add("version", version)
+					.add("elapsedMillis", elapsedMillis)
+					.add("cpra", String.valueOf(cpra))
+					.add("error", error)
+				.toString();
+		}
+	}
+
+	private List<String> antibodyList;
+	private long elapsedMillis;
+	private List<VersionResult> results = new ArrayList<>();
+
+	@JsonCreator
+	public CpraCompareDTO() {
+		// empty constructor for annotation
+	}
+
+	public List<String> getAntibodyList() {
+		return antibodyList;
+	}
+
+	public void setAntibodyList(List<String> antibodyList) {
+		this.antibodyList = antibodyList;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public List<VersionResult> getResults() {
+		return results;
+	}
+
+	public void setResults(List<VersionResult> results) {
+		this.results = results;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("antibodyList", String.valueOf(antibodyList))
+				.add("elapsedMillis", elapsedMillis)
+				.add("results", results)
+			.toString();
+	}
+}
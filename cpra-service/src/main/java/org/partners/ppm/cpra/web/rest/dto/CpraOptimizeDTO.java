@@ -0,0 +1,168 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.common.base.MoreObjects;
+
+public class CpraOptimizeDTO {
+
+	private String version;
+	private String strategy;
+	private double targetPRA;
+	private double initialPRA;
+	private double achievedPRA;
+	private boolean targetReached;
+	private List<String> removedAntibodies = new ArrayList<>();
+	private double removedWeight;
+	// search statistics
+	private long evaluations;
+	private long nodes;
+	private long elapsedMillis;
+	private boolean timedOut;
+	private boolean optimal;
+
+	@JsonCreator
+	public CpraOptimizeDTO() {
+		// empty constructor for annotation
+	}
+
+	public String getVersion() {
+		return version;
+	}
+
+	public void setVersion(String version) {
+		this.version = version;
+	}
+
+	public String getStrategy() {
+		return strategy;
+	}
+
+	public void setStrategy(String strategy) {
+		this.strategy = strategy;
+	}
+
+	public double getTargetPRA() {
+		return targetPRA;
+	}
+
+	public void setTargetPRA(double targetPRA) {
+		this.targetPRA = targetPRA;
+	}
+
+	public double getInitialPRA() {
+		return initialPRA;
+	}
+
+	public void setInitialPRA(double initialPRA) {
+		this.initialPRA = initialPRA;
+	}
+
+	public double getAchievedPRA() {
+		return achievedPRA;
+	}
+
+	public void setAchievedPRA(double achievedPRA) {
+		this.achievedPRA = achievedPRA;
+	}
+
+	public boolean isTargetReached() {
+		return targetReached;
+	}
+
+	public void setTargetReached(boolean targetReached) {
+		this.targetReached = targetReached;
+	}
+
+	public List<String> getRemovedAntibodies() {
+		return removedAntibodies;
+	}
+
+	public void setRemovedAntibodies(List<String> removedAntibodies) {
+		this.removedAntibodies = removedAntibodies;
+	}
+
+	public double getRemovedWeight() {
+		return removedWeight;
+	}
+
+	public void setRemovedWeight(double removedWeight) {
+		this.removedWeight = removedWeight;
+	}
+
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+	public void setEvaluations(long evaluations) {
+		this.evaluations = evaluations;
+	}
+
+	public long getNodes() {
+		return nodes;
+	}
+
+	public void setNodes(long nodes) {
+		this.nodes = nodes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	public boolean isTimedOut() {
+		return timedOut;
+	}
+
+	public void setTimedOut(boolean timedOut) {
+		this.timedOut = timedOut;
+	}
+
+	public boolean isOptimal() {
+		return optimal;
+	}
+
+	public void setOptimal(boolean optimal) {
+		this.optimal = optimal;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("version", version)
+				.add("strategy", strategy)
+				.add("targetPRA", targetPRA)
+				.add("initialPRA", initialPRA)
+				.add("achievedPRA", achievedPRA)
+				.add("targetReached", targetReached)
+				.add("removedAntibodies", removedAntibodies)
+				.add("removedWeight", removedWeight)
+				.add("evaluations", evaluations)
+				.add("nodes", nodes)
+				.add("elapsedMillis", elapsedMillis)
+				.add("timedOut", timedOut)
+				.add("optimal", optimal)
+			.toString();
+	}
+}
@@ -0,0 +1,91 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.base.MoreObjects;
+
+/*
+ * Find the cheapest set of antibodies whose removal brings the cPRA below targetPRA. Each antibody costs its entry
+ * in weights (e.g. MFI or a clinical cost), or 1 if it has none, so by default the smallest set is found. A weight for
+ * an antibody that is not in the profile is rejected.
+ */
+public class CpraOptimizeRequest {
+
+	public static final String STRATEGY_GREEDY = "greedy";
+	public static final String STRATEGY_BRANCH_AND_BOUND = "branch-and-bound";
+
+	private List<String> antibodies = new ArrayList<>();
+	private double targetPRA = 0.98;
+	private Map<String, Double> weights = new HashMap<>();
+	private String strategy = STRATEGY_BRANCH_AND_BOUND;
+	private long timeBudgetMillis = 1000;
+
+	public List<String> getAntibodies() {
+		return antibodies;
+	}
+
+	public void setAntibodies(List<String> antibodies) {
+		this.antibodies = antibodies;
+	}
+
+	public double getTargetPRA() {
+		return targetPRA;
+	}
+
+	public void setTargetPRA(double targetPRA) {
+		this.targetPRA = targetPRA;
+	}
+
+	public Map<String, Double> getWeights() {
+		return weights;
+	}
+
+	public void setWeights(Map<String, Double> weights) {
+		this.weights = weights;
+	}
+
+	public String getStrategy() {
+		return strategy;
+	}
+
+	public void setStrategy(String strategy) {
+		this.strategy = strategy;
+	}
+
+	public long getTimeBudgetMillis() {
+		return timeBudgetMillis;
+	}
+
+	public void setTimeBudgetMillis(long timeBudgetMillis) {
+		this.timeBudgetMillis = timeBudgetMillis;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("antibodies", String.valueOf(antibodies))
+				.add("targetPRA", targetPRA)
+				.add("weights", String.valueOf(weights))
+				.add("strategy", strategy)
+				.add("timeBudgetMillis", timeBudgetMillis)
+			.toString();
+	}
+}
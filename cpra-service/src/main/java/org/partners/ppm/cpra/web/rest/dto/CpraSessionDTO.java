@@ -0,0 +1,70 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.web.rest.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.google.common.base.MoreObjects;
+
+public class CpraSessionDTO {
+
+	private String sessionId;
+	private long ttlSeconds;
+	private CpraDTO cpra;
+
+	@JsonCreator
+	public CpraSessionDTO() {
+		// empty constructor for annotation
+	}
+
+	public CpraSessionDTO(String sessionId, long ttlSeconds, CpraDTO cpra) {
+		this.sessionId = sessionId;
+		this.ttlSeconds = ttlSeconds;
+		this.cpra = cpra;
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public void setSessionId(String sessionId) {
+		this.sessionId = sessionId;
+	}
+
+	public long getTtlSeconds() {
+		return ttlSeconds;
+	}
+
+	public void setTtlSeconds(long ttlSeconds) {
+		this.ttlSeconds = ttlSeconds;
+	}
+
+	public CpraDTO getCpra() {
+		return cpra;
+	}
+
+	public void setCpra(CpraDTO cpra) {
+		this.cpra = cpra;
+	}
+
+	@Override
+	public String toString() {
+		return MoreObjects.toStringHelper(this)
+				.add("sessionId", sessionId)
+				.add("ttlSeconds", ttlSeconds)
+				.add("cpra", String.valueOf(cpra))
+			.toString();
+	}
+}
@@ -0,0 +1,229 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import org.hamcrest.Matcher;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.partners.ppm.cpra.CpraApplication;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.web.rest.CpraBatchResource;
+import org.partners.ppm.cpra.web.rest.dto.CpraBatchResultDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CpraApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test, standalone")
+public class CpraBatchProcessorIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraBatchProcessorIntegrationTest.class);
+
+	@Autowired
+	private CpraService cpraService;
+
+	@Autowired
+	private CpraBatchProcessor cpraBatchProcessor;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+	private List<CpraBatchResultDTO> process(String input) throws Exception {
+		List<CpraBatchResultDTO> results = Collections.synchronizedList(new ArrayList<>());
+		long records = cpraBatchProcessor.process("optn_2015",
+				new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), results::add);
+		assertThatWrapper("\nExpected value for (long) results.size() is <{}>.\nResult is {}", (long) results.size(), equalTo(records));
+		results.sort(Comparator.comparingLong(CpraBatchResultDTO::getIndex));
+		log.info("Batch results: {}", results);
+		return results;
+	}
+
+	private double calculate(String version, String antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.addAntibodies(antibodyList);
+		return cpraService.calculate(request).getCalculatedPRA();
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testNdjsonBatch() throws Exception {
+		log.info("Test Case Name: testNdjsonBatch");
+		StringBuilder input = new StringBuilder();
+		for (int i = 0; i < 50; i++) {
+			input.append("{\"id\":\"p").append(i).append("\",\"antibodyList\":\"A9;B57\"}\n");
+		}
+		input.append("{\"id\":\"bad\",\"antibodies\":[\"A9\",\"??\"]}\n");
+		input.append("{\"id\":\"bwh\",\"version\":\"bwh_2017\",\"antibodies\":[\"A2\",\"B44\"]}\n");
+
+		List<CpraBatchResultDTO> results = process(input.toString());
+		assertThatWrapper("\nExpected value for results.size() is <{}>.\nResult is {}", results.size(), equalTo(52));
+		for (int i = 0; i < 50; i++) {
+			assertThatWrapper("\nExpected value for results.get(i).getId() is <{}>.\nResult is {}", results.get(i).getId(), equalTo("p" + i));
+			assertThatWrapper("\nExpected value for results.get(i).getCpra().getCalculatedPRA() is <{}>.\nResult is {}", results.get(i).getCpra().getCalculatedPRA(), equalTo(0.29206652084852197));
+		}
+		// a failing record does not fail the batch
+		assertThatWrapper("\nExpected value for results.get(50).getCpra() is <{}>.\nResult is {}", results.get(50).getCpra(), nullValue());
+		assertThatWrapper("\nExpected value for results.get(50).getError() is <{}>.\nResult is {}", results.get(50).getError(), notNullValue());
+		assertThatWrapper("\nExpected value for results.get(51).getCpra().getCalculatedPRA() is <{}>.\nResult is {}", results.get(51).getCpra().getCalculatedPRA(), equalTo(calculate("bwh_2017", "A2;B44")));
+	}
+
+	@Test
+	public void testJsonArrayBatch() throws Exception {
+		log.info("Test Case Name: testJsonArrayBatch");
+		List<CpraBatchResultDTO> results = process("[{\"antibodyList\":\"A9\"}, {\"antibodies\":[\"b57\"]}, {\"id\": ]");
+		assertThatWrapper("\nExpected value for results.size() is <{}>.\nResult is {}", results.size(), equalTo(3));
+		assertThatWrapper("\nExpected value for results.get(0).getCpra().getCalculatedPRA() is <{}>.\nResult is {}", results.get(0).getCpra().getCalculatedPRA(), equalTo(0.23667027217061132));
+		assertThatWrapper("\nExpected value for results.get(1).getCpra().getCalculatedPRA() is <{}>.\nResult is {}", results.get(1).getCpra().getCalculatedPRA(), equalTo(calculate("optn_2015", "B57")));
+		// malformed input ends the batch with an error
+		assertThatWrapper("\nExpected value for results.get(2).getError() is <{}>.\nResult is {}", results.get(2).getError(), notNullValue());
+	}
+
+	@Test
+	public void testStreamedBatchEndpoint() throws Exception {
+		log.info("Test Case Name: testStreamedBatchEndpoint");
+		HttpHeaders headers = new HttpHeaders();
+		headers.setContentType(MediaType.parseMediaType(CpraBatchResource.APPLICATION_NDJSON_VALUE));
+		String body = "{\"id\":\"a\",\"antibodyList\":\"A9\"}\n{\"id\":\"b\",\"antibodyList\":\"A9;B57\"}\n";
+		ResponseEntity<String> response = restTemplate.postForEntity("/api/cpra/optn_2015/batch",
+				new HttpEntity<>(body, headers), String.class);
+		log.info("Batch response: {}", response.getBody());
+
+		String[] lines = response.getBody().trim().split("\n");
+		assertThatWrapper("\nExpected value for lines.length is <{}>.\nResult is {}", lines.length, equalTo(2));
+		for (String line : lines) {
+			JsonNode result = objectMapper.readTree(line);
+			double expected = result.get("id").asText().equals("a") ? 0.23667027217061132 : 0.29206652084852197;
+			assertThatWrapper("\nExpected value for result.get(\"cpra\").get(\"calculatedPRA\").asDouble() is <{}>.\nResult is {}", result.get("cpra").get("calculatedPRA").asDouble(), equalTo(expected));
+		}
+	}
+
+	@Test
+	public void testFileBatchResume() throws Exception {
+		log.info("Test Case Name: testFileBatchResume");
+		Path input = temporaryFolder.newFile("patients.csv").toPath();
+		StringBuilder csv = new StringBuilder("id,antibodyList\n");
+		for (int i = 0; i < 25; i++) {
+			csv.append("p").append(i).append(i % 2 == 0 ? ",A9;B57\n" : ",A9\n");
+		}
+		Files.write(input, csv.toString().getBytes(StandardCharsets.UTF_8));
+		Path output = temporaryFolder.getRoot().toPath().resolve("results.ndjson");
+		Path checkpoint = temporaryFolder.getRoot().toPath().resolve("results.checkpoint");
+
+		CpraBatchFileProcessor fileProcessor = new CpraBatchFileProcessor(cpraBatchProcessor, objectMapper);
+		fileProcessor.setCheckpointRecords(10);
+		CpraBatchFileProcessor.Summary summary = fileProcessor.process(input, output, "optn_2015", checkpoint, false);
+		assertThatWrapper("\nExpected value for summary.getRecords() is <{}>.\nResult is {}", summary.getRecords(), equalTo(25L));
+		List<String> expected = Files.readAllLines(output);
+		assertThatWrapper("\nExpected value for expected.size() is <{}>.\nResult is {}", expected.size(), equalTo(25));
+		for (int i = 0; i < 25; i++) {
+			JsonNode result = objectMapper.readTree(expected.get(i));
+			assertThatWrapper("\nExpected value for result.get(\"id\").asText() is <{}>.\nResult is {}", result.get("id").asText(), equalTo("p" + i));
+			assertThatWrapper("\nExpected value for result.get(\"cpra\").get(\"calculatedPRA\").asDouble() is <{}>.\nResult is {}", result.get("cpra").get("calculatedPRA").asDouble(), equalTo(i % 2 == 0 ? 0.29206652084852197 : 0.23667027217061132));
+		}
+
+		// an interrupted run: 10 records checkpointed, then a partly written record
+		byte[] done = String.join("\n", expected.subList(0, 10)).concat("\n").getBytes(StandardCharsets.UTF_8);
+		Files.write(output, done);
+		Files.write(output, "{\"index\":10,".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+		Files.write(checkpoint, ("input=" + input.toAbsolutePath().toString().replace("\\", "\\\\") + "\nrecords=10\noutputBytes=" + done.length + "\n")
+				.getBytes(StandardCharsets.UTF_8));
+		summary = fileProcessor.process(input, output, "optn_2015", checkpoint, true);
+		assertThatWrapper("\nExpected value for summary.getSkipped() is <{}>.\nResult is {}", summary.getSkipped(), equalTo(10L));
+		assertThatWrapper("\nExpected value for summary.getRecords() is <{}>.\nResult is {}", summary.getRecords(), equalTo(15L));
+		assertThatWrapper("\nExpected value for Files.readAllLines(output) is <{}>.\nResult is {}", Files.readAllLines(output), equalTo(expected));
+		assertThatWrapper("\nExpected value for Files.exists(checkpoint) is <{}>.\nResult is {}", Files.exists(checkpoint), equalTo(false));
+	}
+
+	@Test
+	public void testWatchDirectory() throws Exception {
+		log.info("Test Case Name: testWatchDirectory");
+		Path root = temporaryFolder.getRoot().toPath();
+		CpraConfiguration config = new CpraConfiguration();
+		config.setWatchInputDir(root.resolve("in").toString());
+		config.setWatchOutputDir(root.resolve("out").toString());
+		config.setWatchProcessedDir(root.resolve("processed").toString());
+		config.setWatchFailedDir(root.resolve("failed").toString());
+		config.setWatchSettleMillis(100);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CpraWatchService watchService = new CpraWatchService(config, cpraBatchProcessor, objectMapper, meterRegistry);
+		watchService.start();
+		try {
+			// dropped the way a lab system should: written elsewhere, then moved in
+			Path drop = root.resolve("drop.ndjson");
+			Files.write(drop, "{\"id\":\"a\",\"antibodyList\":\"A9\"}\n{\"id\":\"b\",\"antibodyList\":\"A9;B57\"}\n"
+					.getBytes(StandardCharsets.UTF_8));
+			Files.move(drop, root.resolve("in").resolve("patients.ndjson"));
+
+			Path result = root.resolve("out").resolve("patients.ndjson");
+			for (int i = 0; i < 200 && !Files.exists(root.resolve("processed").resolve("patients.ndjson")); i++) {
+				Thread.sleep(100);
+			}
+			List<String> lines = Files.readAllLines(result);
+			assertThatWrapper("\nExpected value for lines.size() is <{}>.\nResult is {}", lines.size(), equalTo(2));
+			assertThatWrapper("\nExpected value for objectMapper.readTree(lines.get(1)).get(\"cpra\").get(\"calculatedPRA\").asDouble() is <{}>.\nResult is {}", objectMapper.readTree(lines.get(1)).get("cpra").get("calculatedPRA").asDouble(), equalTo(0.29206652084852197));
+			assertThatWrapper("\nExpected value for Files.exists(root.resolve(\"in\").resolve(\"patients.ndjson\")) is <{}>.\nResult is {}", Files.exists(root.resolve("in").resolve("patients.ndjson")), equalTo(false));
+			assertThatWrapper("\nExpected value for meterRegistry.counter(\"cpra.watch.records\").count() is <{}>.\nResult is {}", meterRegistry.counter("cpra.watch.records").count(), equalTo(2.0));
+			assertThatWrapper("\nExpected value for meterRegistry.counter(\"cpra.watch.files\", \"outcome\", \"processed\").count() is <{}>.\nResult is {}", meterRegistry.counter("cpra.watch.files", "outcome", "processed").count(), equalTo(1.0));
+		} finally {
+			watchService.stop();
+		}
+	}
+}
@@ -0,0 +1,161 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.hamcrest.Matcher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.partners.ppm.cpra.CpraApplication;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraOptimizeRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CpraApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test, standalone")
+public class CpraOptimizerServiceIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraOptimizerServiceIntegrationTest.class);
+
+	private static final List<String> HAPLOTYPE_PROFILE = Arrays.asList("A2", "A9", "B7", "B44", "B57", "DR4", "DR52", "DQ7");
+	private static final List<String> DIPLOTYPE_PROFILE = Arrays.asList("A1", "A2", "A3", "A32", "B7", "B8", "B27", "B44");
+
+	@Autowired
+	private CpraService cpraService;
+
+	@Autowired
+	private CpraOptimizerService cpraOptimizerService;
+
+	private CpraOptimizeRequest request(List<String> profile, String strategy, double target) {
+		CpraOptimizeRequest request = new CpraOptimizeRequest();
+		request.setAntibodies(new ArrayList<>(profile));
+		request.setStrategy(strategy);
+		request.setTargetPRA(target);
+		request.getWeights().put("A2", 3.0);
+		request.getWeights().put("b44", 2.0);
+		return request;
+	}
+
+	private double calculateWithout(String version, List<String> profile, List<String> removed) {
+		CpraRequest request = new CpraRequest(version);
+		for (String antibody : profile) {
+			if (!removed.contains(antibody)) {
+				request.getAntibodies().add(antibody);
+			}
+		}
+		return request.getAntibodies().isEmpty() ? 0.0 : cpraService.calculate(request).getCalculatedPRA();
+	}
+
+	private double weight(List<String> removed) {
+		double weight = 0.0;
+		for (String antibody : removed) {
+			weight += antibody.equals("A2") ? 3.0 : antibody.equals("B44") ? 2.0 : 1.0;
+		}
+		return weight;
+	}
+
+	/*
+	 * Lowest removal weight reaching the target, by calculating every subset of the profile.
+	 */
+	private double exhaustiveWeight(String version, List<String> profile, double target) {
+		double best = Double.POSITIVE_INFINITY;
+		for (int mask = 0; mask < 1 << profile.size(); mask++) {
+			List<String> removed = new ArrayList<>();
+			for (int i = 0; i < profile.size(); i++) {
+				if ((mask & (1 << i)) != 0) {
+					removed.add(profile.get(i));
+				}
+			}
+			double weight = weight(removed);
+			if (weight < best && calculateWithout(version, profile, removed) < target) {
+				best = weight;
+			}
+		}
+		return best;
+	}
+
+	private void assertOptimal(String version, List<String> profile, double target) {
+		CpraOptimizeDTO greedy = cpraOptimizerService.optimize(version,
+				request(profile, CpraOptimizeRequest.STRATEGY_GREEDY, target));
+		CpraOptimizeDTO optimal = cpraOptimizerService.optimize(version,
+				request(profile, CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND, target));
+		log.info("Greedy = {}; branch-and-bound = {}", greedy, optimal);
+
+		assertThatWrapper("\nExpected value for optimal.isTargetReached() is <{}>.\nResult is {}", optimal.isTargetReached(), equalTo(true));
+		assertThatWrapper("\nExpected value for optimal.isOptimal() is <{}>.\nResult is {}", optimal.isOptimal(), equalTo(true));
+		assertThatWrapper("\nExpected value for optimal.getAchievedPRA() is <{}>.\nResult is {}", optimal.getAchievedPRA(), lessThan(target));
+		assertThatWrapper("\nExpected value for optimal.getAchievedPRA() is <{}>.\nResult is {}", optimal.getAchievedPRA(), closeTo(calculateWithout(version, profile, optimal.getRemovedAntibodies()), 1e-12));
+		assertThatWrapper("\nExpected value for optimal.getRemovedWeight() is <{}>.\nResult is {}", optimal.getRemovedWeight(), equalTo(weight(optimal.getRemovedAntibodies())));
+		assertThatWrapper("\nExpected value for optimal.getRemovedWeight() is <{}>.\nResult is {}", optimal.getRemovedWeight(), equalTo(exhaustiveWeight(version, profile, target)));
+		assertThatWrapper("\nExpected value for greedy.isTargetReached() is <{}>.\nResult is {}", greedy.isTargetReached(), equalTo(true));
+		assertThatWrapper("\nExpected value for optimal.getRemovedWeight() is <{}>.\nResult is {}", optimal.getRemovedWeight(), lessThanOrEqualTo(greedy.getRemovedWeight()));
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testHaplotypeOptimizer() throws Exception {
+		log.info("Test Case Name: testHaplotypeOptimizer");
+		assertOptimal("optn_2015", HAPLOTYPE_PROFILE, 0.5);
+	}
+
+	@Test
+	public void testDiplotypeOptimizer() throws Exception {
+		log.info("Test Case Name: testDiplotypeOptimizer");
+		assertOptimal("bwh_2017", DIPLOTYPE_PROFILE, 0.5);
+	}
+
+	@Test
+	public void testTargetAlreadyMet() throws Exception {
+		log.info("Test Case Name: testTargetAlreadyMet");
+		CpraOptimizeDTO dto = cpraOptimizerService.optimize("optn_2015",
+				request(HAPLOTYPE_PROFILE, CpraOptimizeRequest.STRATEGY_BRANCH_AND_BOUND, 1.0));
+		assertThatWrapper("\nExpected value for dto.isTargetReached() is <{}>.\nResult is {}", dto.isTargetReached(), equalTo(true));
+		assertThatWrapper("\nExpected value for dto.getRemovedAntibodies().isEmpty() is <{}>.\nResult is {}", dto.getRemovedAntibodies().isEmpty(), equalTo(true));
+		assertThatWrapper("\nExpected value for dto.getAchievedPRA() is <{}>.\nResult is {}", dto.getAchievedPRA(), equalTo(dto.getInitialPRA()));
+	}
+
+	@Test(expected = CpraRuntimeException.class)
+	public void testWeightForUnknownAntibody() throws Exception {
+		log.info("Test Case Name: testWeightForUnknownAntibody");
+		CpraOptimizeRequest request = request(HAPLOTYPE_PROFILE, CpraOptimizeRequest.STRATEGY_GREEDY, 0.5);
+		request.getWeights().put("DR17", 5.0);
+		cpraOptimizerService.optimize("optn_2015", request);
+	}
+}
@@ -0,0 +1,1328 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+import java.io.IOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import javax.validation.ConstraintViolationException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.partners.ppm.cpra.CpraApplication;
+import org.partners.ppm.cpra.CpraOverloadedException;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.CpraTooExpensiveException;
+import org.partners.ppm.cpra.config.CpraConfiguration;
+import org.partners.ppm.cpra.config.SpringResourceResolver;
+import org.partners.ppm.cpra.service.CpraComputeExecutor.Lane;
+import org.partners.ppm.cpra.web.rest.dto.ArrayOfCpraSelfCheckDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraAlleleCheck;
+import org.partners.ppm.cpra.web.rest.dto.CpraCompareDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraContributionDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraDataSet;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CpraApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test, standalone")
+public class CpraServiceIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraServiceIntegrationTest.class);
+
+	@Autowired
+	private CpraService cpraService;
+
+	@Autowired
+	private CpraCompareService cpraCompareService;
+
+	@Autowired
+	private TestRestTemplate restTemplate;
+
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	/*
+	 * Wrapper method to the cpraService.calculate where it sets the version.
+	 */
+	private CpraDTO testCurrentWithAntibodyList(String antibodyList) throws Exception {
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies(antibodyList);
+		log.info("Input antibodyList: <{}>", antibodyList);
+		return this.cpraService.calculate(request);
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, org.hamcrest.Matcher<T> matcher) throws Exception {
+		log.info(message, actual.toString(), matcher.toString());
+		assertThat(actual, matcher);
+	}
+	
+	@Test(expected = CpraRuntimeException.class)
+	public void testCpraCalculateUno() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraCalculateUno");
+		CpraRequest request = new CpraRequest("unos");
+		this.cpraService.calculate(request);
+	}
+	
+	@Test
+	public void testCpraCalculateCurrentNoAntibody() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraCalculateCurrentNoAntibody");
+		CpraDTO dto = this.testCurrentWithAntibodyList("");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.0));
+	}
+
+	@Test
+	public void testCpraUseCase3() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraUseCase3");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A9");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.23667027217061132));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A23;A24;A2402;A2403;A9"));
+	}
+
+	@Test
+	public void testCpraUseCase4() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraUseCase4");
+		CpraDTO dto = this.testCurrentWithAntibodyList("B57");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.06705253036669612));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("B57;B5701;B5703"));
+	}
+	
+	@Test
+	public void testCpraUseCase5() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraUseCase5");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A9;B57");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.29206652084852197));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A23;A24;A2402;A2403;A9;B57;B5701;B5703"));
+	}
+
+	@Test
+	public void testCpraUseCase6a() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraUseCase6a");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR52");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.622892362816549));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR11;DR12;DR13;DR14;DR17;DR18;DR3;DR5;DR52;DR6"));
+	}
+
+	// The Typing Lab is not yet using DR52 but will run this test anyway. Rory Oct2017
+	@Test
+	public void testCpraUseCase6b() throws Exception {
+		log.info("Test Case Name: Test Case Name: testCpraUseCase6b");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR5252");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.622892362816549));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR11;DR12;DR13;DR14;DR17;DR18;DR3;DR5;DR52;DR5252;DR6"));
+	}
+
+	// This test is really not going to work just yet mainly because the Typing Lab has not yet transitioned to the DBQ1 notation yet. It is still using DQ
+	// The calculated PRA will not match that from the online OPTN calculator, but that's because there is probably a combination of the DQB1 HLA frequencies that are
+	// not correct - Rory Oct2017
+	@Test
+	public void testCpraUseCase7a() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7a");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3;DQB11;DQB12;DQB13");
+		/* The OPTN calculator results in 100% for this combination.
+		 */
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999640878709916));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DQ1;DQ2;DQ3;DQ5;DQ6;DQ7;DQ8;DQ9;DQB10201;DQB10202;DQB10301;DQB10302;DQB10303;DQB10319;DQB10501;DQB10502;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB11;DQB12;DQB13;DQB15;DQB16;DQB17;DQB18;DQB19;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aA() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aA");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.7622328452544779));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aB() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aB");
+		CpraDTO dto = this.testCurrentWithAntibodyList("B5;B7");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.322709065476639));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("B0702;B5;B51;B5101;B5102;B52;B7"));
+	}
+
+	@Test
+	public void testCpraUseCase7aBW() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aBW");
+		CpraDTO dto = this.testCurrentWithAntibodyList("BW4");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.6128343832886861));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B77;BW4"));
+	}
+
+	@Test
+	public void testCpraUseCase7aC() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aC");
+		CpraDTO dto = this.testCurrentWithAntibodyList("C01;C02;C03");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.4104978915255446));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("C01;C02;C03;C09;C10"));
+	}
+
+	@Test
+	public void testCpraUseCase7aDR() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aDR");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR1;DR2;DR3");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.5940911817764275));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aDQB1() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aDQB1");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQB11;DQB12;DQB13");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.996551056703074));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ1;DQ2;DQ3;DQ5;DQ6;DQ7;DQ8;DQ9;DQB10201;DQB10202;DQB10301;DQB10302;DQB10303;DQB10319;DQB10501;DQB10502;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB11;DQB12;DQB13;DQB15;DQB16;DQB17;DQB18;DQB19"));
+	}
+
+	@Test
+	public void testCpraUseCase7aAB() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aAB");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.8206306786839033));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B5;B51;B5101;B5102;B52;B7"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBW() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBW");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9348775376695679));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBWC() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBWC");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.965786539029409));
+		log.info("Test Case Name: getUnacceptableAntigenList({})", dto.getUnacceptableAntigenList());
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBWCDR() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBWCDR");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9829464884167299));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBWCDRDQB11() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBWCDRDQB11");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3;DQB11");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9931897839539836)); 
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DQ1;DQ5;DQ6;DQB10501;DQB10502;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB11;DQB15;DQB16;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBWCDRDQB12() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBWCDRDQB12");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3;DQB12");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9888441234477681)); 
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DQ2;DQB10201;DQB10202;DQB12;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7aABBWCDRDQB13() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7aABBWCDRDQB13");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3;DQB13");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9934693058608153)); 
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DQ3;DQ7;DQ8;DQ9;DQB10301;DQB10302;DQB10303;DQB10319;DQB13;DQB17;DQB18;DQB19;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraUseCase7b() throws Exception {
+		log.info("Test Case Name: testCpraUseCase7b");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A3;B5;B7;BW4;C01;C02;C03;DR1;DR2;DR3;DQ1;DQ2;DQ3");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999640878709916));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A2;A203;A3;B0702;B0802;B0803;B0804;B13;B1301;B1302;B1513;B1516;B1517;B17;B27;B37;B38;B44;B4402;B4403;B4415;B47;B49;B5;B51;B5101;B5102;B52;B53;B57;B5701;B5703;B58;B59;B63;B7;B77;BW4;C01;C02;C03;C09;C10;DQ1;DQ2;DQ3;DQ5;DQ6;DQ7;DQ8;DQ9;DR0101;DR0102;DR0301;DR0302;DR1;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3"));
+	}
+
+	@Test
+	public void testCpraC1() throws Exception {
+		log.info("Test Case Name: testCpraC1");
+		CpraDTO dto = this.testCurrentWithAntibodyList("C1");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.0));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("C1"));
+	}
+
+	@Test
+	public void testCpraCw1() throws Exception {
+		log.info("Test Case Name: testCpraCw1");
+		CpraDTO dto = this.testCurrentWithAntibodyList("CW1");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.0));
+//		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("C1"));
+	}
+
+	@Test
+	public void testCpraC01() throws Exception {
+		log.info("Test Case Name: testCpraC01");
+		CpraDTO dto = this.testCurrentWithAntibodyList("C01");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.07725089077176983));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("C01"));
+	}
+
+	@Test
+	public void testCpraDQ1() throws Exception {
+		log.info("Test Case Name: testCpraDQ1");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQ1");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.6440740590623333));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ1;DQ5;DQ6"));
+	}
+
+	@Test
+	public void testCpraDQB11() throws Exception {
+		log.info("Test Case Name: testCpraDQB11");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQB11");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.6440740590623333));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ1;DQ5;DQ6;DQB10501;DQB10502;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB11;DQB15;DQB16"));
+	}
+
+	@Test
+	public void testCpraDQ2() throws Exception {
+		log.info("Test Case Name: testCpraDQ2");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQ2");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.36862861847170264));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ2"));
+	}
+
+	@Test
+	public void testCpraDQB12() throws Exception {
+		log.info("Test Case Name: testCpraDQB12");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQB12");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.36862861847170264));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ2;DQB10201;DQB10202;DQB12"));
+	}
+
+	@Test
+	public void testCpraDQ3() throws Exception {
+		log.info("Test Case Name: testCpraDQ3");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQ3");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.5609165635637898));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ3;DQ7;DQ8;DQ9"));
+	}
+
+	@Test
+	public void testCpraDQB13() throws Exception {
+		log.info("Test Case Name: testCpraDQB13");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQB13");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.5609165635637898));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ3;DQ7;DQ8;DQ9;DQB10301;DQB10302;DQB10303;DQB10319;DQB13;DQB17;DQB18;DQB19"));
+	}
+
+	@Test
+	public void testCpraAllOfA() throws Exception {
+		log.info("Test Case Name: testCpraAllOfA");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A2;A0201;A0202;A0203;A0205;A0206;A3;A9;A10;A11;A1101;A1102;A19;A23;A24;A2402;A2403;A25;A26;A28;A29;A2901;A2902;A30;A3001;A3002;A31;A32;A33;A3301;A3303;A34;A3401;A3402;A36;A43;A66;A6601;A6602;A68;A6801;A6802;A69;A74;A80");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999999832353711));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A10;A11;A1101;A1102;A19;A2;A203;A23;A24;A2402;A2403;A25;A26;A28;A29;A2901;A2902;A3;A30;A3001;A3002;A31;A32;A33;A3301;A3303;A34;A3401;A3402;A36;A43;A66;A6601;A6602;A68;A6801;A6802;A69;A74;A80;A9"));
+	}
+
+	@Test
+	public void testCpraAllOfB() throws Exception {
+		log.info("Test Case Name: testCpraAllOfB");
+		CpraDTO dto = this.testCurrentWithAntibodyList("B5;B7;B0702;B8;B0801;B0802;B0803;B0804;B12;B13;B1301;B1302;B14;B1401;B1402;B15;B1501;B1502;B1503;B1510;B1511;B1512;B1513;B1516;B1517;B16;B17;B18;B21;B22;B27;B2705;B2708;B35;B37;B38;B39;B3901;B3902;B3905;B3913;B40;B4001;B4002;B4005;B4006;B41;B42;B44;B4402;B4403;B4415;B45;B46;B47;B48;B49;B50;B51;B5101;B5102;B52;B53;B54;B55;B56;B57;B5701;B5703;B58;B59;B60;B61;B62;B63;B64;B65;B67;B70;B71;B72;B73;B75;B76;B77;B78;B81;B82");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999999303142866));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("B0702;B0801;B0802;B0803;B0804;B12;B13;B1301;B1302;B14;B1401;B1402;B15;B1501;B1502;B1503;B1510;B1511;B1512;B1513;B1516;B1517;B16;B17;B18;B21;B22;B27;B2705;B2708;B35;B37;B38;B39;B3901;B3902;B3905;B3913;B40;B4001;B4002;B4005;B4006;B41;B42;B44;B4402;B4403;B4415;B44415;B45;B46;B47;B48;B49;B5;B50;B51;B5101;B5102;B52;B53;B54;B55;B56;B57;B5701;B5703;B58;B59;B60;B61;B62;B63;B64;B65;B67;B7;B70;B71;B72;B73;B75;B76;B77;B78;B8;B81;B82"));
+	}
+
+	@Test
+	public void testCpraAllOfBW() throws Exception {
+		log.info("Test Case Name: testCpraAllOfBW");
+		CpraDTO dto = this.testCurrentWithAntibodyList("BW4;BW6");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9998507021388408));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("B0702;B0801;B0802;B0803;B0804;B13;B1301;B1302;B14;B1401;B1402;B1501;B1502;B1503;B1510;B1511;B1512;B1513;B1516;B1517;B17;B18;B22;B27;B2708;B35;B37;B38;B39;B3901;B3902;B3905;B3913;B40;B4001;B4002;B4005;B4006;B41;B42;B44;B4402;B4403;B4415;B45;B47;B48;B49;B5;B50;B51;B5101;B5102;B52;B53;B54;B55;B56;B57;B5701;B5703;B58;B59;B60;B61;B62;B63;B64;B65;B67;B7;B70;B71;B72;B75;B76;B77;B78;B8;B81;B82;BW4;BW6"));
+	}
+
+	@Test
+	public void testCpraAllOfC() throws Exception {
+		log.info("Test Case Name: testCpraAllOfC");
+		CpraDTO dto = this.testCurrentWithAntibodyList("C01;C02;C03;C04;C05;C06;C07;C0701;C0702;C08;C09;C10;C12;C14;C15;C16;C17;C18");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.999999983235515));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("C01;C02;C03;C04;C05;C06;C07;C0701;C0702;C08;C09;C10;C12;C14;C15;C16;C17;C18"));
+	}
+
+	@Test
+	public void testCpraAllOfDR() throws Exception {
+		log.info("Test Case Name: testCpraAllOfDR");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR1;DR0101;DR0102;DR103;DR2;DR3;DR0301;DR0302;DR4;DR0401;DR0402;DR0403;DR0404;DR0405;DR0407;DR5;DR6;DR7;DR8;DR9;DR0901;DR0902;DR10;DR11;DR1101;DR1104;DR12;DR1201;DR1202;DR13;DR1301;DR1303;DR14;DR1401;DR1402;DR1403;DR1404;DR1454;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999999832353654));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR0101;DR0102;DR0301;DR0302;DR0401;DR0402;DR0403;DR0404;DR0405;DR0407;DR0901;DR0902;DR1;DR10;DR103;DR11;DR1101;DR1104;DR12;DR1201;DR1202;DR13;DR1301;DR1303;DR14;DR1401;DR1402;DR1403;DR1404;DR1454;DR15;DR1501;DR1502;DR1503;DR16;DR1601;DR1602;DR17;DR18;DR2;DR3;DR4;DR5;DR6;DR7;DR8;DR9"));
+	}
+
+	@Test
+	public void testCpraAllOfDR51() throws Exception {
+		log.info("Test Case Name: testCpraAllOfDR51");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR5151");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.29290555518766864));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR15;DR16;DR2;DR51;DR5151"));
+	}
+
+	@Test
+	public void testCpraAllOfDR52() throws Exception {
+		log.info("Test Case Name: testCpraAllOfDR52");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR5252");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.622892362816549));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR11;DR12;DR13;DR14;DR17;DR18;DR3;DR5;DR52;DR5252;DR6"));
+	}
+
+	@Test
+	public void testCpraAllOfDR53() throws Exception {
+		log.info("Test Case Name: testCpraAllOfDR53");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DR5353");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.5001288721489336));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DR4;DR53;DR5353;DR7;DR9"));
+	}
+
+	@Test
+	public void testCpraAllOfDQB1() throws Exception {
+		log.info("Test Case Name: testCpraAllOfDQB1");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQB11;DQB12;DQB10201;DQB10202;DQB13;DQB10301;DQB10302;DQB10303;DQB10319;DQB14;DQB10401;DQB10402;DQB15;DQB10501;DQB10502;DQB16;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB17;DQB18;DQB19");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9999999832353699));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("DQ1;DQ2;DQ3;DQ4;DQ5;DQ6;DQ7;DQ8;DQ9;DQB10201;DQB10202;DQB10301;DQB10302;DQB10303;DQB10319;DQB10401;DQB10402;DQB10501;DQB10502;DQB10601;DQB10602;DQB10603;DQB10604;DQB10609;DQB11;DQB12;DQB13;DQB14;DQB15;DQB16;DQB17;DQB18;DQB19"));
+	}
+
+	@Test(expected = ConstraintViolationException.class)
+	public void testCpraAntibodyWithSpace() throws Exception {
+		log.info("Test Case Name: testCpraAntibodyWithSpace");
+		this.testCurrentWithAntibodyList(" A1");
+	}
+
+	@Test(expected = ConstraintViolationException.class)
+	public void testCpraAntibodyWithSpecialCharacter() throws Exception {
+		log.info("Test Case Name: testCpraAntibodyWithSpecialCharacter");
+		this.testCurrentWithAntibodyList("A&1");
+	}
+	
+	@Test(expected = CpraRuntimeException.class)
+	public void testCpraAntibodyInvalidLocus() throws Exception {
+		log.info("Test Case Name: testCpraAntibodyInvalidLocus");
+		this.testCurrentWithAntibodyList("XA1");
+	}
+
+	/*
+	 * This test is from real data for a typed patient. It results in a 99.2% cPRA from the app and the OPTN Calculator (99.25%). Make sure it returns the same value
+	 */
+	@Test
+	public void testHighRefractoryA() throws Exception {
+		log.info("Test Case Name: testHighRefractoryA");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A1;A11;A2;A24;A29;A3;A30;A31;A32;A34;A36;A68;A69;A74;A8;B13;B41;B42;B48;B55;B56;B57;B58;B60;B61;B63;B67;B7;B73;B8;B81");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.9924621400849223));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A1;A11;A1101;A1102;A2;A203;A24;A2402;A2403;A29;A2901;A2902;A3;A30;A3001;A3002;A31;A32;A34;A3401;A3402;A36;A68;A6801;A6802;A69;A74;A8;B0702;B0801;B0802;B0803;B0804;B13;B1301;B1302;B1516;B4002;B4006;B41;B42;B48;B55;B56;B57;B5701;B5703;B58;B60;B61;B63;B67;B7;B73;B8;B81"));
+	}
+
+	/*
+	 * This test is from real data for a typed patient. It results in a 84.1% cPRA from the app and the OPTN Calculator (84.12%). Make sure it returns the same value
+	 */
+	@Test
+	public void testHighRefractoryB() throws Exception {
+		log.info("Test Case Name: testHighRefractoryB");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A2;A24;A68;A69;B35;B49;B50;B51;B52;B53;B56;B57;B62;B63;B71;B72;B75");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.8411811326874266));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A0201;A0202;A0203;A0205;A0206;A2;A203;A24;A2402;A2403;A68;A6801;A6802;A69;B1501;B1502;B1503;B1510;B1511;B1516;B35;B4005;B49;B50;B51;B5101;B5102;B52;B53;B56;B57;B5701;B5703;B62;B63;B71;B72;B75"));
+	}
+
+
+
+	/*
+	 * This test is from real data for a typed patient. It results in a 42.2% cPRA from the app and the OPTN Calculator (42.25%). Make sure it returns the same value
+	 */
+	@Test
+	public void testMedRefractory() throws Exception {
+		log.info("Test Case Name: testMedRefractory");
+		CpraDTO dto = this.testCurrentWithAntibodyList("A23;A24;A25;A33;A34;A66;A68;B63");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.4224858052941756));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <\"{}\">.\nResult is <{}>", dto.getUnacceptableAntigenList(), equalTo("A23;A24;A2402;A2403;A25;A33;A3301;A3303;A34;A3401;A3402;A66;A6601;A6602;A68;A6801;A6802;B1516;B63"));
+	}
+
+
+	// This really tests the naming HLA Naming Convention. There should only be alphanumerics and asterisk(s), colon(s), or dash(es)
+	// http://hla.alleles.org/nomenclature/naming.html - except we don't start with the HLA- prefix. So for now, do not include
+	// the dash.
+	@Test
+	public void testCpraAntibodyNamingConvention() throws Exception {
+		log.info("Test Case Name: testCpraAntibodyNamingConvention");
+		CpraDTO dto = this.testCurrentWithAntibodyList("DQA1*01:01");
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.0));
+	}
+	
+
+	/*
+	 * Contributions for A9;B57: A9 on its own is use case 3, and leaving A9 out leaves use case 4 (B57)
+	 */
+	@Test
+	public void testCpraContributions() throws Exception {
+		log.info("Test Case Name: testCpraContributions");
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		request.setContributions(true);
+		CpraDTO dto = this.cpraService.calculate(request);
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(0.29206652084852197));
+		CpraContributionDTO a9 = dto.getContributions().get(0);
+		assertThatWrapper("\nExpected value for a9.getAntibody() is <{}>.\nResult is {}", a9.getAntibody(), equalTo("A9"));
+		assertThatWrapper("\nExpected value for a9.getMarginalPRA() is <{}>.\nResult is {}", a9.getMarginalPRA(), closeTo(0.23667027217061132, 1e-12));
+		assertThatWrapper("\nExpected value for a9.getLeaveOneOutPRA() is <{}>.\nResult is {}", a9.getLeaveOneOutPRA(), closeTo(0.29206652084852197 - 0.06705253036669612, 1e-12));
+		assertThatWrapper("\nExpected value for a9.getEthnicContributions().size() is <{}>.\nResult is {}", a9.getEthnicContributions().size(), equalTo(4));
+		CpraContributionDTO b57 = dto.getContributions().get(1);
+		assertThatWrapper("\nExpected value for b57.getMarginalPRA() is <{}>.\nResult is {}", b57.getMarginalPRA(), closeTo(0.06705253036669612, 1e-12));
+		assertThatWrapper("\nExpected value for b57.getLeaveOneOutPRA() is <{}>.\nResult is {}", b57.getLeaveOneOutPRA(), closeTo(0.29206652084852197 - 0.23667027217061132, 1e-12));
+	}
+
+	@Test
+	public void testCpraEthnicWeights() throws Exception {
+		log.info("Test Case Name: testCpraEthnicWeights");
+		CpraDTO expected = testCurrentWithAntibodyList("A9;B57");
+
+		// the version's own ethnic frequencies give the calculator's result
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		request.setWeights(Arrays.asList((double) Float.valueOf("0.687"), (double) Float.valueOf("0.147"),
+				(double) Float.valueOf("0.143"), (double) Float.valueOf("0.023")));
+		CpraDTO dto = this.cpraService.calculate(request);
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(expected.getCalculatedPRA()));
+		assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <{}>.\nResult is {}", dto.getUnacceptableAntigenList(), equalTo(expected.getUnacceptableAntigenList()));
+
+		// a single population gives its ethnic cPRA, answered from the cached ethnic cPRAs
+		request = new CpraRequest("optn_2015");
+		request.addAntibodies("b57;a9");
+		request.setWeights(Arrays.asList(0.0, 1.0, 0.0, 0.0));
+		dto = this.cpraService.calculate(request);
+		assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(expected.getEthnicCalculatedPRA().get(1).getCalculatedPRA()));
+		assertThatWrapper("\nExpected value for dto.getWarnings() is <{}>.\nResult is {}", dto.getWarnings(), equalTo(expected.getWarnings()));
+	}
+
+	@Test(expected = CpraRuntimeException.class)
+	public void testCpraEthnicWeightsDiplotype() throws Exception {
+		log.info("Test Case Name: testCpraEthnicWeightsDiplotype");
+		CpraRequest request = new CpraRequest("bwh_2017");
+		request.addAntibodies("A2");
+		request.setWeights(Arrays.asList(1.0));
+		this.cpraService.calculate(request);
+	}
+
+	@Test
+	public void testCpraCompare() throws Exception {
+		log.info("Test Case Name: testCpraCompare");
+		CpraCompareDTO dto = this.cpraCompareService.compare(Arrays.asList(" a2", "B44"), Arrays.asList("all"));
+		assertThatWrapper("\nExpected value for dto.getResults().size() is <{}>.\nResult is {}", dto.getResults().size(), equalTo(2));
+		for (CpraCompareDTO.VersionResult result : dto.getResults()) {
+			CpraRequest request = new CpraRequest(result.getVersion());
+			request.addAntibodies("A2;B44");
+			assertThatWrapper("\nExpected value for result.getCpra() is <{}>.\nResult is {}", result.getCpra().toString(), equalTo(this.cpraService.calculate(request).toString()));
+		}
+
+		// the diplotype version has no DR locus; its error does not fail the other version
+		dto = this.cpraCompareService.compare(Arrays.asList("DR4"), Arrays.asList("optn_2015", "bwh_2017"));
+		assertThatWrapper("\nExpected value for optn_2015 cPRA is <{}>.\nResult is {}", dto.getResults().get(0).getCpra() != null, equalTo(true));
+		assertThatWrapper("\nExpected value for bwh_2017 error is <{}>.\nResult is {}", dto.getResults().get(1).getError() != null, equalTo(true));
+
+		// the versions run as interactive tasks on the compute pool; when its lane is full the comparison is rejected
+		CpraConfiguration config = new CpraConfiguration();
+		config.setComputeThreads(1);
+		config.setComputeQueueCapacity(1);
+		CpraComputeExecutor executor = new CpraComputeExecutor(config, new SimpleMeterRegistry());
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			executor.submit(blocking(release, "running"));
+			awaitActive(executor, Lane.INTERACTIVE, 1);
+			CpraCompareService compareService = new CpraCompareService(this.cpraService, executor);
+			Throwable rejected = null;
+			try {
+				compareService.compare(Arrays.asList("A2"), Arrays.asList("optn_2015", "bwh_2017"));
+			} catch (CpraOverloadedException e) {
+				rejected = e;
+			}
+			assertThatWrapper("\nExpected value for rejected is <{}>.\nResult is {}", rejected != null, equalTo(true));
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCpraResultCache() throws Exception {
+		log.info("Test Case Name: testCpraResultCache");
+		CpraDTO expected = testCurrentWithAntibodyList("A9;B57");
+		long hits = this.cpraService.getResultCacheStats().hitCount();
+
+		// A23 and A24 are equivalents of A9; every spelling of the profile is answered from the same entry
+		for (String spelling : Arrays.asList("b57;a9", "A9;B57;A9", "A23;A9;B57;A24")) {
+			CpraDTO dto = testCurrentWithAntibodyList(spelling);
+			assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(expected.getCalculatedPRA()));
+			assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <{}>.\nResult is {}", dto.getUnacceptableAntigenList(), equalTo(expected.getUnacceptableAntigenList()));
+			assertThatWrapper("\nExpected value for dto.getEthnicCalculatedPRA() is <{}>.\nResult is {}", dto.getEthnicCalculatedPRA().toString(), equalTo(expected.getEthnicCalculatedPRA().toString()));
+		}
+		assertThatWrapper("\nExpected value for hits is <{}>.\nResult is {}", this.cpraService.getResultCacheStats().hitCount() - hits, equalTo(3L));
+
+		// the data set checksum is part of the key and differs between versions
+		assertThatWrapper("\nExpected value for checksums differ is <{}>.\nResult is {}", this.cpraService.getDatasetChecksum("optn_2015").equals(this.cpraService.getDatasetChecksum("bwh_2017")), equalTo(false));
+	}
+
+	@Test
+	public void testCpraResultCacheSingleFlight() throws Exception {
+		log.info("Test Case Name: testCpraResultCacheSingleFlight");
+		CpraDTO expected = testCurrentWithAntibodyList("A9;B57");
+
+		// nothing is kept, so every request misses; concurrent requests still share one calculation
+		CpraResultCache cache = new CpraResultCache(0);
+		AtomicInteger calculations = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<CpraResultCache.Entry>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++) {
+				results.add(executor.submit(() -> cache.get("optn_2015:A9;B57", () -> {
+					calculations.incrementAndGet();
+					started.countDown();
+					try {
+						release.await();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return new CpraResultCache.Entry(expected);
+				})));
+				if (i == 0) {
+					started.await();
+				}
+			}
+			while (cache.coalescedCount() < 3) {
+				Thread.sleep(10);
+			}
+			release.countDown();
+			for (Future<CpraResultCache.Entry> result : results) {
+				assertThatWrapper("\nExpected value for cPRA is <{}>.\nResult is {}", result.get().result("optn_2015", expected.getAntibodyList()).toString(), equalTo(expected.toString()));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThatWrapper("\nExpected value for calculations is <{}>.\nResult is {}", calculations.get(), equalTo(1));
+		assertThatWrapper("\nExpected value for in flight is <{}>.\nResult is {}", cache.inFlightCount(), equalTo(0));
+
+		// a later request calculates again rather than hitting an entry Caffeine has not evicted yet
+		cache.get("optn_2015:A9;B57", () -> {
+			calculations.incrementAndGet();
+			return new CpraResultCache.Entry(expected);
+		});
+		assertThatWrapper("\nExpected value for calculations is <{}>.\nResult is {}", calculations.get(), equalTo(2));
+		assertThatWrapper("\nExpected value for size is <{}>.\nResult is {}", cache.size(), equalTo(0L));
+
+		// an Error in the leading calculation fails the waiting requests instead of leaving them waiting
+		CountDownLatch failingStarted = new CountDownLatch(1);
+		CountDownLatch failingRelease = new CountDownLatch(1);
+		executor = Executors.newFixedThreadPool(2);
+		try {
+			Future<CpraResultCache.Entry> leader = executor.submit(() -> cache.get("optn_2015:A1", () -> {
+				failingStarted.countDown();
+				try {
+					failingRelease.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				throw new OutOfMemoryError("Java heap space");
+			}));
+			failingStarted.await();
+			long coalesced = cache.coalescedCount();
+			Future<CpraResultCache.Entry> waiter = executor.submit(() -> cache.get("optn_2015:A1",
+					() -> new CpraResultCache.Entry(expected)));
+			while (cache.coalescedCount() == coalesced) {
+				Thread.sleep(10);
+			}
+			failingRelease.countDown();
+			for (Future<CpraResultCache.Entry> result : Arrays.asList(leader, waiter)) {
+				Throwable failure = null;
+				try {
+					result.get(10, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					failure = e.getCause();
+				}
+				assertThatWrapper("\nExpected value for failure is <{}>.\nResult is {}", failure instanceof OutOfMemoryError, equalTo(true));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+		assertThatWrapper("\nExpected value for in flight is <{}>.\nResult is {}", cache.inFlightCount(), equalTo(0));
+	}
+
+	@Test
+	public void testCpraResultStoreRestart() throws Exception {
+		log.info("Test Case Name: testCpraResultStoreRestart");
+		CpraDTO expected = testCurrentWithAntibodyList("A9;B57");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		config.setResultStorePath(temporaryFolder.newFolder("results").toString());
+
+		CpraService service = CpraService.standalone(config);
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		service.calculate(request);
+		service.getResultStore().flush();
+		service.close();
+
+		// a restarted service answers the profile from the store, without calculating it again
+		service = CpraService.standalone(config);
+		try {
+			assertThatWrapper("\nExpected value for stored results is <{}>.\nResult is {}", service.getResultStore().size(), equalTo(1));
+			request = new CpraRequest("optn_2015");
+			request.addAntibodies("b57;a9");
+			CpraDTO dto = service.calculate(request);
+			assertThatWrapper("\nExpected value for dto.getCalculatedPRA() is <{}>.\nResult is {}", dto.getCalculatedPRA(), equalTo(expected.getCalculatedPRA()));
+			assertThatWrapper("\nExpected value for dto.getUnacceptableAntigenList() is <{}>.\nResult is {}", dto.getUnacceptableAntigenList(), equalTo(expected.getUnacceptableAntigenList()));
+		} finally {
+			service.close();
+		}
+	}
+
+	@Test
+	public void testCpraResultStoreCompaction() throws Exception {
+		log.info("Test Case Name: testCpraResultStoreCompaction");
+		CpraResultCache.Entry entry = new CpraResultCache.Entry(testCurrentWithAntibodyList("A9;B57"));
+		Path directory = temporaryFolder.newFolder("compaction").toPath();
+
+		CpraResultStore store = CpraResultStore.open(directory);
+		store.retainChecksums(Collections.singletonMap("optn_2015", "c1"));
+		for (int i = 0; i < 100; i++) {
+			store.put("optn_2015:c1:A" + i, entry);
+		}
+		store.put("optn_2015:c0:A1", entry);  // superseded checksums are not stored
+		store.flush();
+		assertThatWrapper("\nExpected value for stored results is <{}>.\nResult is {}", store.size(), equalTo(100));
+
+		// a new data set checksum drops the old results; compaction keeps only the current ones
+		store.retainChecksums(Collections.singletonMap("optn_2015", "c2"));
+		store.put("optn_2015:c2:A1", entry);
+		store.flush();
+		assertThatWrapper("\nExpected value for stored results is <{}>.\nResult is {}", store.size(), equalTo(1));
+		long before = store.getLogBytes();
+		store.compact();
+		assertThatWrapper("\nExpected value for compacted is <{}>.\nResult is {}", store.getLogBytes() < before / 50, equalTo(true));
+		assertThatWrapper("\nExpected value for stored result is <{}>.\nResult is {}", store.get("optn_2015:c2:A1").result("optn_2015", Arrays.asList("A9", "B57")).toString(), equalTo(entry.result("optn_2015", Arrays.asList("A9", "B57")).toString()));
+		assertThatWrapper("\nExpected value for superseded result is <{}>.\nResult is {}", store.get("optn_2015:c1:A1") == null, equalTo(true));
+		long logBytes = store.getLogBytes();
+		store.close();
+
+		// a torn record at the end of the log is ignored when the store is opened again
+		try (FileChannel channel = FileChannel.open(directory.resolve(CpraResultStore.LOG_FILE), StandardOpenOption.WRITE)) {
+			channel.write(ByteBuffer.wrap(new byte[] {0, 0, 0, 42, 1, 2, 3, 4, 5}), logBytes);
+		}
+		store = CpraResultStore.open(directory);
+		try {
+			store.retainChecksums(Collections.singletonMap("optn_2015", "c2"));
+			assertThatWrapper("\nExpected value for stored results is <{}>.\nResult is {}", store.size(), equalTo(1));
+			assertThatWrapper("\nExpected value for log bytes is <{}>.\nResult is {}", store.getLogBytes(), equalTo(logBytes));
+		} finally {
+			store.close();
+		}
+	}
+
+	private ResponseEntity<String> getIfNoneMatch(String url, String etag) {
+		HttpHeaders headers = new HttpHeaders();
+		if (etag != null) {
+			headers.setIfNoneMatch(etag);
+		}
+		return this.restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), String.class);
+	}
+
+	@Test
+	public void testCpraConditionalRequests() throws Exception {
+		log.info("Test Case Name: testCpraConditionalRequests");
+		String url = "/api/cpra/optn_2015/calculate?antibodyList=A9;B57";
+		ResponseEntity<String> response = getIfNoneMatch(url, null);
+		String etag = response.getHeaders().getETag();
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.OK));
+		assertThatWrapper("\nExpected value for ETag is <{}>.\nResult is {}", etag != null && etag.startsWith("\""), equalTo(true));
+		assertThatWrapper("\nExpected value for Cache-Control is <{}>.\nResult is {}", response.getHeaders().getCacheControl(), equalTo("max-age=60, must-revalidate, public"));
+
+		// the current tag gets 304 without a calculation
+		long requests = this.cpraService.getResultCacheStats().requestCount();
+		response = getIfNoneMatch(url, etag);
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+		assertThatWrapper("\nExpected value for body is <{}>.\nResult is {}", response.getBody() == null, equalTo(true));
+		assertThatWrapper("\nExpected value for cache requests is <{}>.\nResult is {}", this.cpraService.getResultCacheStats().requestCount(), equalTo(requests));
+
+		// the response echoes the antibody list, so another spelling or option has its own tag
+		response = getIfNoneMatch("/api/cpra/optn_2015/calculate?antibodyList=B57;A9", etag);
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.OK));
+		response = getIfNoneMatch(url + "&contributions=true", etag);
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.OK));
+
+		for (String resource : Arrays.asList("/api/cpra/versions", "/api/cpra/self-check")) {
+			response = getIfNoneMatch(resource, null);
+			response = getIfNoneMatch(resource, response.getHeaders().getETag());
+			assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+		}
+	}
+
+	@Test
+	public void testCpraPrewarm() throws Exception {
+		log.info("Test Case Name: testCpraPrewarm");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		config.setPrewarmEnabled(true);
+		config.setPrewarmFile(temporaryFolder.getRoot().toPath().resolve("prewarm/recent-profiles.tsv").toString());
+
+		// the running service remembers its recent profiles, in canonical spelling
+		CpraService service = CpraService.standalone(config);
+		for (String antibodyList : Arrays.asList("b57;a9", "A9;B57", "DR52")) {
+			CpraRequest request = new CpraRequest("current");
+			request.addAntibodies(antibodyList);
+			service.calculate(request);
+		}
+		CpraReadiness readiness = new CpraReadiness();
+		CpraPrewarmService prewarmService = new CpraPrewarmService(config, service, readiness, new SimpleMeterRegistry());
+		prewarmService.save();
+		List<String> lines = Files.readAllLines(temporaryFolder.getRoot().toPath().resolve("prewarm/recent-profiles.tsv"), StandardCharsets.UTF_8);
+		assertThatWrapper("\nExpected value for lines is <{}>.\nResult is {}", lines, equalTo(Arrays.asList("optn_2015\tA9;B57", "optn_2015\tDR52")));
+
+		// a restarted service is not ready until the saved profiles are in its result cache
+		service = CpraService.standalone(config);
+		readiness = new CpraReadiness();
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		prewarmService = new CpraPrewarmService(config, service, readiness, meterRegistry);
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(false));
+		prewarmService.start();
+		try {
+			awaitReady(readiness);
+		} finally {
+			prewarmService.stop();
+		}
+		assertThatWrapper("\nExpected value for warmed is <{}>.\nResult is {}", meterRegistry.get("cpra.prewarm.profiles").tag("outcome", "warmed").counter().count(), equalTo(2.0));
+		assertThatWrapper("\nExpected value for progress is <{}>.\nResult is {}", meterRegistry.get("cpra.prewarm.progress").gauge().value(), equalTo(1.0));
+
+		long hits = service.getResultCacheStats().hitCount();
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		service.calculate(request);
+		assertThatWrapper("\nExpected value for hits is <{}>.\nResult is {}", service.getResultCacheStats().hitCount() - hits, equalTo(1L));
+	}
+
+	@Test
+	public void testCpraWarmup() throws Exception {
+		log.info("Test Case Name: testCpraWarmup");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		config.setWarmupTimeBudgetMillis(2000);
+		config.setWarmupWindowMillis(100);
+		config.setWarmupThreads(1);
+		CpraService service = CpraService.standalone(config);
+		CpraReadiness readiness = new CpraReadiness();
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+		// not ready until the calculators are warmed up, and the result cache is left alone
+		CpraWarmupService warmupService = new CpraWarmupService(config, service, readiness, meterRegistry);
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(false));
+		warmupService.start();
+		awaitReady(readiness);
+		CpraWarmup.Result result = warmupService.getResult();
+		assertThatWrapper("\nExpected value for duration is <{}>.\nResult is {}", result.getDurationMillis(), lessThan(3000L));
+		assertThatWrapper("\nExpected value for failures is <{}>.\nResult is {}", result.getFailures(), equalTo(0L));
+		assertThatWrapper("\nExpected value for profiles is <{}>.\nResult is {}", meterRegistry.get("cpra.warmup.profiles").counter().count(), equalTo((double) result.getProfiles()));
+		assertThatWrapper("\nExpected value for throughput is <{}>.\nResult is {}", meterRegistry.get("cpra.warmup.throughput").gauge().value(), greaterThan(0.0));
+		assertThatWrapper("\nExpected value for cache requests is <{}>.\nResult is {}", service.getResultCacheStats().requestCount(), equalTo(0L));
+	}
+
+	/*
+	 * Wait for the services' own background threads to open their readiness gates.
+	 */
+	private void awaitReady(CpraReadiness readiness) throws Exception {
+		for (int i = 0; i < 1000 && !readiness.isReady(); i++) {
+			Thread.sleep(10);
+		}
+		assertThatWrapper("\nExpected value for readiness.isReady() is <{}>.\nResult is {}", readiness.isReady(), equalTo(true));
+	}
+
+	@Test
+	public void testCpraComputeExecutor() throws Exception {
+		log.info("Test Case Name: testCpraComputeExecutor");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setComputeThreads(1);
+		config.setComputeQueueCapacity(1);
+		config.setComputeTimeoutMillis(200);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CpraComputeExecutor executor = new CpraComputeExecutor(config, meterRegistry);
+		CountDownLatch release = new CountDownLatch(1);
+		try {
+			// one running, one queued; the next is rejected
+			CompletableFuture<String> running = executor.submit(blocking(release, "running"));
+			awaitActive(executor, Lane.INTERACTIVE, 1);
+			CompletableFuture<String> queued = executor.submit(blocking(release, "queued"));
+			CompletableFuture<String> rejected = executor.submit(() -> "rejected");
+			assertThatWrapper("\nExpected value for rejected is <{}>.\nResult is {}", failure(rejected) instanceof CpraOverloadedException, equalTo(true));
+
+			// neither completes within the time limit while the pool is blocked
+			assertThatWrapper("\nExpected value for timed out is <{}>.\nResult is {}", failure(running) instanceof CpraOverloadedException, equalTo(true));
+			assertThatWrapper("\nExpected value for timed out is <{}>.\nResult is {}", failure(queued) instanceof CpraOverloadedException, equalTo(true));
+			assertThatWrapper("\nExpected value for rejections is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.rejected").tag("reason", "queue-full").counter().count(), equalTo(1.0));
+			// the timer counts a timeout just after failing the request
+			for (int i = 0; i < 100 && meterRegistry.get("cpra.compute.timeouts").counter().count() < 2.0; i++) {
+				Thread.sleep(10);
+			}
+			assertThatWrapper("\nExpected value for timeouts is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.timeouts").counter().count(), equalTo(2.0));
+
+			// errors of the calculation itself are passed on
+			release.countDown();
+			CompletableFuture<String> failing = executor.submit(() -> {
+				throw new CpraRuntimeException("Invalid antibody in the input");
+			});
+			assertThatWrapper("\nExpected value for error is <{}>.\nResult is {}", failure(failing).getMessage(), equalTo("Invalid antibody in the input"));
+			assertThatWrapper("\nExpected value for result is <{}>.\nResult is {}", executor.submit(() -> "done").get(), equalTo("done"));
+		} finally {
+			release.countDown();
+			executor.shutdown();
+		}
+
+		// calculator errors on the compute pool still reach the client as before
+		ResponseEntity<String> response = getIfNoneMatch("/api/cpra/optn_2015/calculate?antibodyList=XX1", null);
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", response.getStatusCode(), equalTo(HttpStatus.INTERNAL_SERVER_ERROR));
+	}
+
+	private static Supplier<String> blocking(CountDownLatch release, String value) {
+		return () -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return value;
+		};
+	}
+
+	private void awaitActive(CpraComputeExecutor executor, Lane lane, int count) throws Exception {
+		for (int i = 0; i < 500 && executor.getActive(lane) != count; i++) {
+			Thread.sleep(10);
+		}
+		assertThatWrapper("\nExpected value for executor.getActive(lane) is <{}>.\nResult is {}", executor.getActive(lane), equalTo(count));
+	}
+
+	@Test
+	public void testCpraComputeLanes() throws Exception {
+		log.info("Test Case Name: testCpraComputeLanes");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setComputeThreads(3);
+		config.setBatchThreads(1);
+		config.setComputeInteractiveReservedThreads(1);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CpraComputeExecutor executor = new CpraComputeExecutor(config, meterRegistry);
+		CountDownLatch releaseBatch1 = new CountDownLatch(1);
+		CountDownLatch releaseBatch2 = new CountDownLatch(1);
+		CountDownLatch releaseInteractive = new CountDownLatch(1);
+		try {
+			// with the interactive lane idle, batch work steals all but the reserved thread
+			CompletableFuture<String> batch1 = executor.submit(Lane.BATCH, blocking(releaseBatch1, "batch1"));
+			CompletableFuture<String> batch2 = executor.submit(Lane.BATCH, blocking(releaseBatch2, "batch2"));
+			CompletableFuture<String> batch3 = executor.submit(Lane.BATCH, () -> "batch3");
+			awaitActive(executor, Lane.BATCH, 2);
+			assertThatWrapper("\nExpected value for batch queued is <{}>.\nResult is {}", executor.getQueued(Lane.BATCH), equalTo(1));
+
+			// an interactive request starts right away on the reserved thread
+			CompletableFuture<String> interactive = executor.submit(Lane.INTERACTIVE, blocking(releaseInteractive, "interactive"));
+			awaitActive(executor, Lane.INTERACTIVE, 1);
+
+			// while it runs, batch work is held to its share of one thread
+			releaseBatch1.countDown();
+			assertThatWrapper("\nExpected value for batch1 is <{}>.\nResult is {}", batch1.get(), equalTo("batch1"));
+			Thread.sleep(100);
+			assertThatWrapper("\nExpected value for batch3 done is <{}>.\nResult is {}", batch3.isDone(), equalTo(false));
+
+			// once the interactive lane is idle again the queued batch work is taken
+			releaseInteractive.countDown();
+			assertThatWrapper("\nExpected value for interactive is <{}>.\nResult is {}", interactive.get(), equalTo("interactive"));
+			assertThatWrapper("\nExpected value for batch3 is <{}>.\nResult is {}", batch3.get(), equalTo("batch3"));
+			releaseBatch2.countDown();
+			assertThatWrapper("\nExpected value for batch2 is <{}>.\nResult is {}", batch2.get(), equalTo("batch2"));
+			assertThatWrapper("\nExpected value for interactive waits is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.queue.wait").tag("lane", "interactive").timer().count(), equalTo(1L));
+			assertThatWrapper("\nExpected value for batch waits is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.queue.wait").tag("lane", "batch").timer().count(), equalTo(3L));
+		} finally {
+			releaseBatch1.countDown();
+			releaseBatch2.countDown();
+			releaseInteractive.countDown();
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testCpraCostAdmission() throws Exception {
+		log.info("Test Case Name: testCpraCostAdmission");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setComputeThreads(2);
+		config.setComputeInteractiveReservedThreads(0);
+		config.setComputeCostBudget(100);
+		config.setComputeMaxRequestCost(80);
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		CpraComputeExecutor executor = new CpraComputeExecutor(config, meterRegistry);
+		CountDownLatch releaseFirst = new CountDownLatch(1);
+		CountDownLatch releaseSecond = new CountDownLatch(1);
+		try {
+			// more than the maximum is rejected outright
+			CompletableFuture<String> expensive = executor.submit(Lane.INTERACTIVE, 90, () -> "expensive");
+			assertThatWrapper("\nExpected value for rejected is <{}>.\nResult is {}", failure(expensive) instanceof CpraTooExpensiveException, equalTo(true));
+			assertThatWrapper("\nExpected value for rejections is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.rejected").tag("reason", "too-expensive").counter().count(), equalTo(1.0));
+
+			// a cost estimated lazily is estimated on a compute worker, not the caller's thread, and rejected the same way
+			AtomicReference<String> estimatedOn = new AtomicReference<>();
+			CompletableFuture<String> lazy = executor.submit(Lane.INTERACTIVE, () -> {
+				estimatedOn.set(Thread.currentThread().getName());
+				return 90;
+			}, () -> "lazy");
+			assertThatWrapper("\nExpected value for rejected is <{}>.\nResult is {}", failure(lazy) instanceof CpraTooExpensiveException, equalTo(true));
+			assertThatWrapper("\nExpected value for estimated on is <{}>.\nResult is {}", estimatedOn.get(), startsWith("cpra-compute-"));
+
+			// with a thread free, a request beyond the remaining budget waits for the running one
+			CompletableFuture<String> first = executor.submit(Lane.INTERACTIVE, 60, blocking(releaseFirst, "first"));
+			awaitActive(executor, Lane.INTERACTIVE, 1);
+			CompletableFuture<String> second = executor.submit(Lane.INTERACTIVE, () -> 50, blocking(releaseSecond, "second"));
+			Thread.sleep(100);
+			assertThatWrapper("\nExpected value for queued is <{}>.\nResult is {}", executor.getQueued(Lane.INTERACTIVE), equalTo(1));
+			assertThatWrapper("\nExpected value for running cost is <{}>.\nResult is {}", executor.getRunningCost(), equalTo(60L));
+			releaseFirst.countDown();
+			assertThatWrapper("\nExpected value for first is <{}>.\nResult is {}", first.get(), equalTo("first"));
+			awaitActive(executor, Lane.INTERACTIVE, 1);
+			assertThatWrapper("\nExpected value for running cost is <{}>.\nResult is {}", executor.getRunningCost(), equalTo(50L));
+			releaseSecond.countDown();
+			assertThatWrapper("\nExpected value for second is <{}>.\nResult is {}", second.get(), equalTo("second"));
+			assertThatWrapper("\nExpected value for admitted cost is <{}>.\nResult is {}", meterRegistry.get("cpra.compute.cost").tag("lane", "interactive").summary().totalAmount(), equalTo(110.0));
+		} finally {
+			releaseFirst.countDown();
+			releaseSecond.countDown();
+			executor.shutdown();
+		}
+
+		// the cost grows with the product of the per locus antigen counts
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		long cost = cpraService.estimateCost(request);
+		request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57;DR52;C1;DQ7");
+		assertThatWrapper("\nExpected value for larger cost is <{}>.\nResult is {}", cpraService.estimateCost(request) > cost, equalTo(true));
+
+		// a calculation past its deadline stops at the next check
+		CpraRequest late = request;
+		RuntimeException aborted = null;
+		try {
+			CpraDeadline.run(System.nanoTime() - 1, () -> cpraService.calculate(late));
+		} catch (RuntimeException e) {
+			aborted = e;
+		}
+		assertThatWrapper("\nExpected value for aborted is <{}>.\nResult is {}", aborted instanceof CpraOverloadedException, equalTo(true));
+
+		// the estimate is part of the response
+		ResponseEntity<String> response = getIfNoneMatch("/api/cpra/optn_2015/calculate?antibodyList=A9;B57", null);
+		assertThatWrapper("\nExpected value for estimated cost is <{}>.\nResult is {}", response.getBody().contains("\"estimatedCost\":" + cost), equalTo(true));
+	}
+
+	@Test
+	public void testCpraEngineSnapshotReload() throws Exception {
+		log.info("Test Case Name: testCpraEngineSnapshotReload");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		CpraService service = CpraService.standalone(config);
+		List<String> versions = service.getVersionList();
+		String versionsEtag = service.versionsEtag();
+		String selfCheckEtag = service.selfCheckEtag();
+		CpraRequest request = new CpraRequest("optn_2015");
+		request.addAntibodies("A9;B57");
+		double cpra = service.calculate(request).getCalculatedPRA();
+
+		// a reload publishes a new snapshot of the same data sets; readers of the old one are not affected
+		Thread.sleep(5);
+		service.initService();
+		assertThatWrapper("\nExpected value for versions is <{}>.\nResult is {}", service.getVersionList(), equalTo(versions));
+		assertThatWrapper("\nExpected value for versions etag changed is <{}>.\nResult is {}", service.versionsEtag().equals(versionsEtag), equalTo(false));
+		assertThatWrapper("\nExpected value for self-check etag is <{}>.\nResult is {}", service.selfCheckEtag(), equalTo(selfCheckEtag));
+		request = new CpraRequest("current");
+		request.addAntibodies("A9;B57");
+		assertThatWrapper("\nExpected value for cpra is <{}>.\nResult is {}", service.calculate(request).getCalculatedPRA(), equalTo(cpra));
+
+		// the snapshot cannot be changed through its accessors
+		RuntimeException immutable = null;
+		try {
+			versions.add("changed");
+		} catch (UnsupportedOperationException e) {
+			immutable = e;
+		}
+		assertThatWrapper("\nExpected value for immutable is <{}>.\nResult is {}", immutable != null, equalTo(true));
+	}
+
+	@Test
+	public void testCpraBackgroundLoading() throws Exception {
+		log.info("Test Case Name: testCpraBackgroundLoading");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		CountDownLatch filesReadable = new CountDownLatch(1);
+		CpraResourceResolver resolver = new SpringResourceResolver();
+		CpraService service = new CpraService(config, new CpraConfigHashMap(location -> {
+			try {
+				filesReadable.await();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			return resolver.resolve(location);
+		}));
+		CpraReadiness readiness = new CpraReadiness();
+		service.setReadiness(readiness);
+		CompletableFuture<Void> loaded = service.loadInBackground();
+
+		// while the data sets load, requests get 503 with Retry-After and the service is not ready
+		CpraRequest request = new CpraRequest("current");
+		request.addAntibodies("A9");
+		CpraOverloadedException loading = null;
+		try {
+			service.calculate(request);
+		} catch (CpraOverloadedException e) {
+			loading = e;
+		}
+		assertThatWrapper("\nExpected value for loading is <{}>.\nResult is {}", loading != null, equalTo(true));
+		assertThatWrapper("\nExpected value for retry after is <{}>.\nResult is {}", loading.getRetryAfterSeconds(), equalTo(5L));
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(false));
+
+		// then every version is loaded, with its load time
+		filesReadable.countDown();
+		loaded.get();
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(true));
+		JsonNode versions = new ObjectMapper().valueToTree(service.versions()).get("versions");
+		for (JsonNode version : versions) {
+			assertThatWrapper("\nExpected value for state is <{}>.\nResult is {}", version.get("state").asText(), equalTo("loaded"));
+			assertThatWrapper("\nExpected value for load millis is <{}>.\nResult is {}", version.has("loadMillis"), equalTo(true));
+		}
+		request = new CpraRequest("current");
+		request.addAntibodies("A9");
+		assertThatWrapper("\nExpected value for cpra is <{}>.\nResult is {}", service.calculate(request).getCalculatedPRA(), equalTo(0.23667027217061132));
+
+		// the web tier reports the load states too
+		String body = restTemplate.getForObject("/api/cpra/versions", String.class);
+		assertThatWrapper("\nExpected value for loaded state is <{}>.\nResult is {}", body.contains("\"state\":\"loaded\""), equalTo(true));
+
+		// a load that fails with an Error is done too, and leaves the service not ready
+		CpraService failing = new CpraService(config, new CpraConfigHashMap(location -> {
+			throw new OutOfMemoryError("Java heap space");
+		}));
+		CpraReadiness failingReadiness = new CpraReadiness();
+		failing.setReadiness(failingReadiness);
+		CompletableFuture<Void> failed = failing.loadInBackground();
+		failing.awaitLoaded();
+		assertThatWrapper("\nExpected value for failed is <{}>.\nResult is {}", failed.isCompletedExceptionally(), equalTo(true));
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", failingReadiness.isReady(), equalTo(false));
+	}
+
+	@Test
+	public void testCpraReloadKeepsFailingVersion() throws Exception {
+		log.info("Test Case Name: testCpraReloadKeepsFailingVersion");
+		CpraConfiguration config = new CpraConfiguration();
+		config.setConfigPath("classpath*:/*.csv");
+		// a file read after the data sets that breaks the calculator type of one version
+		Path broken = temporaryFolder.newFile("broken.csv").toPath();
+		AtomicReference<String> brokenVersion = new AtomicReference<>("optn_2015");
+		CpraResourceResolver resolver = new SpringResourceResolver();
+		CpraService service = new CpraService(config, new CpraConfigHashMap(location -> {
+			Files.write(broken, Arrays.asList("key,value,comment",
+					"\"hlaCpraCalculatorType:" + brokenVersion.get() + "\", \"bogus\""));
+			List<URL> urls = new ArrayList<>(resolver.resolve(location));
+			urls.add(broken.toUri().toURL());
+			return urls;
+		}));
+		CpraReadiness readiness = new CpraReadiness();
+		service.setReadiness(readiness);
+		service.initService();
+
+		// the first configured version failed; it stays the only default, and current is not answered by another one
+		JsonNode versions = new ObjectMapper().valueToTree(service.versions()).get("versions");
+		int defaults = 0;
+		for (JsonNode version : versions) {
+			if (version.get("isDefault").asBoolean()) {
+				defaults++;
+				assertThatWrapper("\nExpected value for default is <{}>.\nResult is {}", version.get("name").asText(), equalTo("optn_2015"));
+				assertThatWrapper("\nExpected value for state is <{}>.\nResult is {}", version.get("state").asText(), equalTo("failed"));
+			}
+		}
+		assertThatWrapper("\nExpected value for defaults is <{}>.\nResult is {}", defaults, equalTo(1));
+		CpraRequest request = new CpraRequest("current");
+		request.addAntibodies("A9");
+		CpraRuntimeException failed = null;
+		try {
+			service.calculate(request);
+		} catch (CpraRuntimeException e) {
+			failed = e;
+		}
+		assertThatWrapper("\nExpected value for failed is <{}>.\nResult is {}", failed != null, equalTo(true));
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(false));
+		request = new CpraRequest("bwh_2017");
+		request.addAntibodies("A9;B57");
+		Double bwh = service.calculate(request).getCalculatedPRA();
+		String bwhChecksum = service.getDatasetChecksum("bwh_2017");
+
+		// a reload in which the other version fails keeps serving that one from its previous data set
+		brokenVersion.set("bwh_2017");
+		service.initService();
+		assertThatWrapper("\nExpected value for ready is <{}>.\nResult is {}", readiness.isReady(), equalTo(true));
+		request = new CpraRequest("current");
+		request.addAntibodies("A9");
+		assertThatWrapper("\nExpected value for cpra is <{}>.\nResult is {}", service.calculate(request).getCalculatedPRA(), equalTo(0.23667027217061132));
+		request = new CpraRequest("bwh_2017");
+		request.addAntibodies("A9;B57");
+		assertThatWrapper("\nExpected value for cpra is <{}>.\nResult is {}", service.calculate(request).getCalculatedPRA(), equalTo(bwh));
+		assertThatWrapper("\nExpected value for checksum is <{}>.\nResult is {}", service.getDatasetChecksum("bwh_2017"), equalTo(bwhChecksum));
+		for (JsonNode version : new ObjectMapper().valueToTree(service.versions()).get("versions")) {
+			assertThatWrapper("\nExpected value for state is <{}>.\nResult is {}", version.get("state").asText(), equalTo("loaded"));
+			assertThatWrapper("\nExpected value for default is <{}>.\nResult is {}", version.get("isDefault").asBoolean(), equalTo(version.get("name").asText().equals("optn_2015")));
+			assertThatWrapper("\nExpected value for error is <{}>.\nResult is {}", version.has("error"), equalTo(version.get("name").asText().equals("bwh_2017")));
+		}
+		service.close();
+	}
+
+	@Test
+	public void testCpraSelfCheckReport() throws Exception {
+		log.info("Test Case Name: testCpraSelfCheckReport");
+		ArrayOfCpraSelfCheckDTO report = this.cpraService.selfCheck();
+		CpraDataSet optn = report.getCpraDataSet().get(0);
+		assertThatWrapper("\nExpected value for version is <{}>.\nResult is {}", optn.getVersion(), equalTo("optn_2015"));
+		assertThatWrapper("\nExpected value for warnings is <{}>.\nResult is {}", optn.getWarnings() == null, equalTo(true));
+		assertThatWrapper("\nExpected value for allele checks is <{}>.\nResult is {}", optn.getAlleleChecks().size(), equalTo(5));
+		CpraAlleleCheck a = optn.getAlleleChecks().get(0);
+		assertThatWrapper("\nExpected value for allele is <{}>.\nResult is {}", a.getAllele(), equalTo("A"));
+		assertThatWrapper("\nExpected value for A antigens is <{}>.\nResult is {}", a.getAntigens(), equalTo(27));
+		for (CpraAlleleCheck check : optn.getAlleleChecks()) {
+			for (double sum : check.getFrequencySums()) {
+				assertThatWrapper("\nExpected value for S1 sum near 1 is <{}>.\nResult is {}", Math.abs(sum - 1.0) < 1e-5, equalTo(true));
+			}
+		}
+		CpraDataSet bwh = report.getCpraDataSet().get(1);
+		assertThatWrapper("\nExpected value for version is <{}>.\nResult is {}", bwh.getVersion(), equalTo("bwh_2017"));
+		assertThatWrapper("\nExpected value for warnings is <{}>.\nResult is {}", bwh.getWarnings() == null, equalTo(true));
+		assertThatWrapper("\nExpected value for diplotypes is <{}>.\nResult is {}", bwh.getFrequencyKeys(), equalTo(1411L));
+
+		// the report is built once per load and served as the same JSON
+		assertThatWrapper("\nExpected value for same report is <{}>.\nResult is {}", this.cpraService.selfCheck() == report, equalTo(true));
+		ResponseEntity<String> response = getIfNoneMatch("/api/cpra/self-check", null);
+		assertThatWrapper("\nExpected value for content type is <{}>.\nResult is {}", MediaType.APPLICATION_JSON.isCompatibleWith(response.getHeaders().getContentType()), equalTo(true));
+		assertThatWrapper("\nExpected value for body is <{}>.\nResult is {}", response.getBody(), equalTo(new String(this.cpraService.selfCheckJson(), StandardCharsets.UTF_8)));
+		assertThatWrapper("\nExpected value for allele checks in body is <{}>.\nResult is {}", response.getBody().contains("\"alleleChecks\":[{\"allele\":\"A\",\"antigens\":27"), equalTo(true));
+	}
+
+	private ResponseEntity<byte[]> getAccept(String url, String accept) {
+		HttpHeaders headers = new HttpHeaders();
+		headers.set(HttpHeaders.ACCEPT, accept);
+		return this.restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+	}
+
+	@Test
+	public void testCpraResponseEncodings() throws Exception {
+		log.info("Test Case Name: testCpraResponseEncodings");
+		String url = "/api/cpra/optn_2015/calculate?antibodyList=A9;B57";
+		ResponseEntity<String> json = getIfNoneMatch(url, null);
+		CpraDTO expected = new ObjectMapper().readValue(json.getBody(), CpraDTO.class);
+		assertThatWrapper("\nExpected value for ethnic cpras is <{}>.\nResult is {}", expected.getEthnicCalculatedPRA().size(), equalTo(4));
+		assertThatWrapper("\nExpected value for Vary is <{}>.\nResult is {}", json.getHeaders().getVary(), equalTo(Arrays.asList(HttpHeaders.ACCEPT)));
+
+		// the binary encodings carry the same document in fewer bytes
+		for (ObjectMapper mapper : Arrays.asList(new ObjectMapper(new SmileFactory()), new ObjectMapper(new CBORFactory()))) {
+			String mediaType = mapper.getFactory() instanceof SmileFactory ? "application/x-jackson-smile" : "application/cbor";
+			ResponseEntity<byte[]> binary = getAccept(url, mediaType);
+			assertThatWrapper("\nExpected value for content type is <{}>.\nResult is {}", MediaType.valueOf(mediaType).isCompatibleWith(binary.getHeaders().getContentType()), equalTo(true));
+			assertThatWrapper("\nExpected value for smaller is <{}>.\nResult is {}", binary.getBody().length < json.getBody().length(), equalTo(true));
+			CpraDTO dto = mapper.readValue(binary.getBody(), CpraDTO.class);
+			assertThatWrapper("\nExpected value for dto is <{}>.\nResult is {}", dto.toString(), equalTo(expected.toString()));
+
+			// different bytes, so a different entity tag; the JSON tag does not revalidate the binary body
+			assertThatWrapper("\nExpected value for etag changed is <{}>.\nResult is {}", binary.getHeaders().getETag().equals(json.getHeaders().getETag()), equalTo(false));
+			HttpHeaders headers = new HttpHeaders();
+			headers.set(HttpHeaders.ACCEPT, mediaType);
+			headers.setIfNoneMatch(json.getHeaders().getETag());
+			ResponseEntity<byte[]> revalidated = this.restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+			assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", revalidated.getStatusCode(), equalTo(HttpStatus.OK));
+			headers.setIfNoneMatch(binary.getHeaders().getETag());
+			revalidated = this.restTemplate.exchange(url, HttpMethod.GET, new HttpEntity<>(headers), byte[].class);
+			assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", revalidated.getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+		}
+
+		// a projection only writes the listed fields and has its own entity tag
+		ResponseEntity<String> projected = getIfNoneMatch(url + "&fields=calculatedPRA", null);
+		assertThatWrapper("\nExpected value for body is <{}>.\nResult is {}", projected.getBody(), equalTo("{\"calculatedPRA\":" + expected.getCalculatedPRA() + "}"));
+		assertThatWrapper("\nExpected value for etag changed is <{}>.\nResult is {}", projected.getHeaders().getETag().equals(json.getHeaders().getETag()), equalTo(false));
+		projected = getIfNoneMatch(url + "&fields=calculatedPRA", projected.getHeaders().getETag());
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", projected.getStatusCode(), equalTo(HttpStatus.NOT_MODIFIED));
+		projected = getIfNoneMatch(url + "&fields=version;ethnicCalculatedPRA", null);
+		assertThatWrapper("\nExpected value for body is <{}>.\nResult is {}", projected.getBody().startsWith("{\"version\":\"optn_2015\",\"ethnicCalculatedPRA\":[{\"ethnicity\":\"Caucasian\","), equalTo(true));
+		projected = getIfNoneMatch(url + "&fields=cpra", null);
+		assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", projected.getStatusCode(), equalTo(HttpStatus.BAD_REQUEST));
+		// and so is a projection without any field
+		for (String fields : Arrays.asList("", ";", " , ;")) {
+			projected = getIfNoneMatch(url + "&fields=" + fields, null);
+			assertThatWrapper("\nExpected value for status is <{}>.\nResult is {}", projected.getStatusCode(), equalTo(HttpStatus.BAD_REQUEST));
+		}
+	}
+
+	private static Throwable failure(CompletableFuture<?> future) throws InterruptedException {
+		try {
+			future.get();
+			return null;
+		} catch (ExecutionException e) {
+			return e.getCause();
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/**
+ * This Source Code Form is subject to the terms of the Mozilla Public License, v.
+ * 2.0 with a Healthcare Disclaimer.
+ *
+ * A copy of the Mozilla Public License, v. 2.0 with the Healthcare Disclaimer can
+ * be found under the top level directory, named LICENSE.
+ *
+ * If a copy of the MPL was not distributed with this file, You can obtain one at
+ * http://mozilla.org/MPL/2.0/.
+ *
+ * If a copy of the Healthcare Disclaimer was not distributed with this file, You
+ * can obtain one at the project website https://github.com/persistentsystems/open-cpra-calculator.
+ *
+ * Copyright (C) 2016-2018 Persistent Systems, Inc.
+ */
+package org.partners.ppm.cpra.service;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.hamcrest.Matcher;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.partners.ppm.cpra.CpraApplication;
+import org.partners.ppm.cpra.CpraRuntimeException;
+import org.partners.ppm.cpra.CpraSessionNotFoundException;
+import org.partners.ppm.cpra.web.rest.dto.CpraDTO;
+import org.partners.ppm.cpra.web.rest.dto.CpraRequest;
+import org.partners.ppm.cpra.web.rest.dto.CpraSessionDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+
+@RunWith(SpringRunner.class)
+@SpringBootTest(classes = CpraApplication.class, webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test, standalone")
+public class CpraSessionServiceIntegrationTest {
+
+	private final Logger log = LoggerFactory.getLogger(CpraSessionServiceIntegrationTest.class);
+
+	@Autowired
+	private CpraService cpraService;
+
+	@Autowired
+	private CpraSessionService cpraSessionService;
+
+	/*
+	 * The session result must match a full calculation of the same profile.
+	 */
+	private void assertSessionMatchesCalculator(CpraSessionDTO session, String version, String antibodyList) {
+		CpraRequest request = new CpraRequest(version);
+		request.addAntibodies(antibodyList);
+		CpraDTO expected = cpraService.calculate(request);
+		CpraDTO actual = session.getCpra();
+		log.info("Session {} = {}; calculated = {}", antibodyList, actual, expected);
+		assertThatWrapper("\nExpected value for actual.getCalculatedPRA() is <{}>.\nResult is {}", actual.getCalculatedPRA(), closeTo(expected.getCalculatedPRA(), 1e-12));
+		assertThatWrapper("\nExpected value for actual.getUnacceptableAntigenList() is <{}>.\nResult is {}", actual.getUnacceptableAntigenList(), equalTo(expected.getUnacceptableAntigenList()));
+		assertThatWrapper("\nExpected value for actual.getWarnings() is <{}>.\nResult is {}", actual.getWarnings(), equalTo(expected.getWarnings()));
+		assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA().size() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA().size(), equalTo(expected.getEthnicCalculatedPRA().size()));
+		for (int i = 0; i < expected.getEthnicCalculatedPRA().size(); i++) {
+			assertThatWrapper("\nExpected value for actual.getEthnicCalculatedPRA().get(i).getCalculatedPRA() is <{}>.\nResult is {}", actual.getEthnicCalculatedPRA().get(i).getCalculatedPRA(), closeTo(expected.getEthnicCalculatedPRA().get(i).getCalculatedPRA(), 1e-12));
+		}
+	}
+
+	/*
+	 * A wrapper method for assertThat. It logs to log.info the expected and the actual result from assertThat.
+	 */
+	private <T> void assertThatWrapper(String message, T actual, Matcher<? super T> matcher) {
+		log.info(message, actual, matcher);
+		assertThat(actual, matcher);
+	}
+
+	@Test
+	public void testHaplotypeSessionToggles() throws Exception {
+		log.info("Test Case Name: testHaplotypeSessionToggles");
+		CpraSessionDTO session = cpraSessionService.create("optn_2015", Arrays.asList("A9", "B57"));
+		String id = session.getSessionId();
+		assertSessionMatchesCalculator(session, "optn_2015", "A9;B57");
+
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "DR52"), "optn_2015", "A9;B57;DR52");
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "DQ7"), "optn_2015", "A9;B57;DR52;DQ7");
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "Cw7"), "optn_2015", "A9;B57;DR52;DQ7;CW7");
+		assertSessionMatchesCalculator(cpraSessionService.removeAntibody(id, "B57"), "optn_2015", "A9;DR52;DQ7;CW7");
+		// A24 is also an equivalent of A9, so it stays unacceptable until A9 goes
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "A24"), "optn_2015", "A9;DR52;DQ7;CW7;A24");
+		assertSessionMatchesCalculator(cpraSessionService.removeAntibody(id, "A9"), "optn_2015", "DR52;DQ7;CW7;A24");
+		assertSessionMatchesCalculator(cpraSessionService.get(id), "optn_2015", "DR52;DQ7;CW7;A24");
+
+		for (String antibody : new ArrayList<>(cpraSessionService.get(id).getCpra().getAntibodyList())) {
+			session = cpraSessionService.removeAntibody(id, antibody);
+		}
+		assertThatWrapper("\nExpected value for session.getCpra().getCalculatedPRA() is <{}>.\nResult is {}", session.getCpra().getCalculatedPRA(), equalTo(0.0));
+	}
+
+	@Test
+	public void testDiplotypeSessionToggles() throws Exception {
+		log.info("Test Case Name: testDiplotypeSessionToggles");
+		CpraSessionDTO session = cpraSessionService.create("bwh_2017", Collections.emptyList());
+		String id = session.getSessionId();
+		assertThatWrapper("\nExpected value for session.getCpra().getCalculatedPRA() is <{}>.\nResult is {}", session.getCpra().getCalculatedPRA(), equalTo(0.0));
+
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "A2"), "bwh_2017", "A2");
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "B44"), "bwh_2017", "A2;B44");
+		assertSessionMatchesCalculator(cpraSessionService.addAntibody(id, "A1"), "bwh_2017", "A2;B44;A1");
+		assertSessionMatchesCalculator(cpraSessionService.removeAntibody(id, "A2"), "bwh_2017", "B44;A1");
+		session = cpraSessionService.removeAntibody(id, "B44");
+		session = cpraSessionService.removeAntibody(id, "A1");
+		assertThatWrapper("\nExpected value for session.getCpra().getCalculatedPRA() is <{}>.\nResult is {}", session.getCpra().getCalculatedPRA(), equalTo(0.0));
+	}
+
+	@Test(expected = CpraSessionNotFoundException.class)
+	public void testDeletedSession() throws Exception {
+		log.info("Test Case Name: testDeletedSession");
+		String id = cpraSessionService.create("current", Arrays.asList("A1")).getSessionId();
+		cpraSessionService.delete(id);
+		cpraSessionService.get(id);
+	}
+
+	@Test(expected = CpraRuntimeException.class)
+	public void testInvalidAntibodyRemoval() throws Exception {
+		log.info("Test Case Name: testInvalidAntibodyRemoval");
+		String id = cpraSessionService.create("current", Arrays.asList("A1")).getSessionId();
+		cpraSessionService.removeAntibody(id, "A1;B8");
+	}
+}
@@ -15,4 +15,5 @@
 # Copyright (C) 2016-2018 Persistent Systems, Inc.
 #
 
-./mvnw clean compile package install --update-snapshots docker:build -DskipTests
+./mvnw clean install --update-snapshots -DskipTests
+./mvnw -pl cpra-service docker:build